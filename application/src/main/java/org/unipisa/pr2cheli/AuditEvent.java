@@ -0,0 +1,86 @@
+package org.unipisa.pr2cheli;
+
+import java.time.Instant;
+
+/**
+ * A change of a board, recorded by an AuditLog.
+ * Fields that do not apply to the type are null, or -1 for the post.
+ */
+public class AuditEvent {
+    /**
+     * The kinds of change, with the level they are recorded at.
+     */
+    public enum Type {
+        CATEGORY_CREATED(AuditLevel.INFO),
+        CATEGORY_REMOVED(AuditLevel.INFO),
+        FRIEND_ADDED(AuditLevel.INFO),
+        FRIEND_REMOVED(AuditLevel.INFO),
+        PUT(AuditLevel.INFO),
+        REMOVE(AuditLevel.INFO),
+        LIKE(AuditLevel.DEBUG);
+
+        private final AuditLevel level;
+
+        Type(AuditLevel level) {
+            this.level = level;
+        }
+
+        public AuditLevel getLevel() {
+            return this.level;
+        }
+    }
+
+    private final long time;
+    private final Type type;
+    private final String owner;
+    private final String category;
+    private final String friend;
+    private final long post;
+
+    AuditEvent(long time, Type type, String owner, String category, String friend, long post) {
+        this.time = time;
+        this.type = type;
+        this.owner = owner;
+        this.category = category;
+        this.friend = friend;
+        this.post = post;
+    }
+
+    /** @return when the change was made, in milliseconds since the epoch */
+    public long getTime() {
+        return this.time;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    /** @return the owner of the board */
+    public String getOwner() {
+        return this.owner;
+    }
+
+    public String getCategory() {
+        return this.category;
+    }
+
+    /** @return the friend added, removed or liking, null for the other types */
+    public String getFriend() {
+        return this.friend;
+    }
+
+    /** @return the id of the post put, removed or liked, -1 for the other types */
+    public long getPost() {
+        return this.post;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append(Instant.ofEpochMilli(this.time)).append(' ').append(this.type).append(' ').append(this.owner);
+        b.append(" category=").append(this.category);
+        if(this.friend != null) b.append(" friend=").append(this.friend);
+        if(this.post != -1) b.append(" post=").append(this.post);
+        return b.toString();
+    }
+}
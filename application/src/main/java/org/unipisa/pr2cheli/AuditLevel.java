@@ -0,0 +1,10 @@
+package org.unipisa.pr2cheli;
+
+/**
+ * How much an AuditLog records, each level includes the ones before it.
+ * INFO records the changes of the structure of a board and of its posts,
+ * DEBUG adds the likes, which are the most frequent operation.
+ */
+public enum AuditLevel {
+    OFF, INFO, DEBUG
+}
@@ -0,0 +1,221 @@
+package org.unipisa.pr2cheli;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the changes of boards and writes them to an AuditSink on a background thread.
+ * record() puts the event in a bounded ring shared by every recording thread, without
+ * locks: a slot is claimed with a compare and set of the tail and published by its
+ * sequence number. When the ring is full the event is dropped and counted, so a slow
+ * sink never slows down a board. A single writer thread drains the ring in batches,
+ * flushing the sink after each batch, and sleeps for a millisecond when it is empty.
+ * An event of a type above the level is discarded before it is built, so the boards
+ * pay a read and a comparison for the events nobody wants.
+ *
+ * Representation Invariant: slots.length() == sequences.length() == mask + 1 is a
+ *  power of two, head <= tail.get() <= head + mask + 1, the event of position p is
+ *  published in slot p & mask when the sequence of the slot is p + 1, and the slot
+ *  is free for position p when its sequence is p.
+ */
+public class AuditLog implements Closeable {
+    private static final int BATCH = 256;
+    private static final long IDLE_NANOS = 1000000;
+    private static final AuditLog DISABLED = new AuditLog();
+
+    private final AuditSink sink;
+    private final AtomicReferenceArray<AuditEvent> slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail;
+    private final AtomicLong dropped;
+    private final AtomicLong failures;
+    private final Thread writer;
+    private volatile int level;
+    private volatile boolean closed;
+    // only read and written by the writer thread
+    private long head;
+
+    private AuditLog() {
+        this.sink = null;
+        this.slots = null;
+        this.sequences = null;
+        this.mask = 0;
+        this.tail = null;
+        this.dropped = new AtomicLong();
+        this.failures = new AtomicLong();
+        this.writer = null;
+        this.level = AuditLevel.OFF.ordinal();
+    }
+
+    /**
+     * Start a log and its writer thread.
+     * @param sink where the events are written
+     * @param capacity the number of events the ring holds, rounded up to a power of two
+     * @param level the events recorded
+     * @throws IllegalArgumentException if capacity is not positive
+     * @throws NullPointerException if sink or level are null
+     */
+    public AuditLog(AuditSink sink, int capacity, AuditLevel level) {
+        if(sink == null || level == null) throw new NullPointerException();
+        if(capacity <= 0 || capacity > 1 << 30) throw new IllegalArgumentException("capacity " + capacity);
+        int n = Integer.highestOneBit(capacity);
+        if(n < capacity) n <<= 1;
+        this.sink = sink;
+        this.slots = new AtomicReferenceArray<AuditEvent>(n);
+        this.sequences = new AtomicLongArray(n);
+        for(int i = 0; i < n; i++) this.sequences.set(i, i);
+        this.mask = n - 1;
+        this.tail = new AtomicLong();
+        this.dropped = new AtomicLong();
+        this.failures = new AtomicLong();
+        this.level = level.ordinal();
+        this.writer = new Thread(this::drain, "audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * @return the log the boards use by default, which records nothing and has no thread
+     */
+    public static AuditLog disabled() {
+        return DISABLED;
+    }
+
+    public AuditLevel getLevel() {
+        return AuditLevel.values()[this.level];
+    }
+
+    /**
+     * modifies this
+     * @param level the events recorded from now on
+     * @throws NullPointerException if level is null
+     * @throws UnsupportedOperationException if this is the disabled log
+     */
+    public void setLevel(AuditLevel level) {
+        if(level == null) throw new NullPointerException();
+        if(this.sink == null) throw new UnsupportedOperationException("the disabled log records nothing");
+        this.level = level.ordinal();
+    }
+
+    /**
+     * @return true if the events of level are recorded, to skip building many of them
+     */
+    public boolean isEnabled(AuditLevel level) {
+        return level.ordinal() <= this.level;
+    }
+
+    /**
+     * Record a change, if its type is within the level.
+     * modifies this
+     * @param type the kind of change
+     * @param owner the owner of the board
+     * @param category the category changed
+     * @param friend the friend added, removed or liking, null for the other types
+     * @param post the id of the post put, removed or liked, -1 for the other types
+     */
+    public void record(AuditEvent.Type type, String owner, String category, String friend, long post) {
+        if(type.getLevel().ordinal() > this.level) return;
+        this.offer(new AuditEvent(System.currentTimeMillis(), type, owner, category, friend, post));
+    }
+
+    private void offer(AuditEvent event) {
+        if(this.closed) {
+            this.dropped.incrementAndGet();
+            return;
+        }
+        while(true) {
+            long t = this.tail.get();
+            int i = (int)t & this.mask;
+            long s = this.sequences.get(i);
+            if(s == t) {
+                if(this.tail.compareAndSet(t, t + 1)) {
+                    this.slots.lazySet(i, event);
+                    this.sequences.lazySet(i, t + 1);
+                    return;
+                }
+            } else if(s < t) {
+                // the writer has not freed the slot of a lap ago yet
+                this.dropped.incrementAndGet();
+                return;
+            }
+            // otherwise another thread claimed t first
+        }
+    }
+
+    private void drain() {
+        while(true) {
+            if(this.writeBatch() > 0) continue;
+            if(this.closed) {
+                // the events published before close() was seen
+                while(this.writeBatch() > 0);
+                return;
+            }
+            LockSupport.parkNanos(this, IDLE_NANOS);
+        }
+    }
+
+    private int writeBatch() {
+        int n = 0;
+        while(n < BATCH) {
+            int i = (int)this.head & this.mask;
+            if(this.sequences.get(i) != this.head + 1) break;
+            AuditEvent e = this.slots.get(i);
+            this.slots.lazySet(i, null);
+            this.sequences.lazySet(i, this.head + this.mask + 1);
+            this.head++;
+            n++;
+            try {
+                this.sink.write(e);
+            } catch(Exception x) {
+                this.failures.incrementAndGet();
+            }
+        }
+        if(n > 0) {
+            try {
+                this.sink.flush();
+            } catch(Exception x) {
+                this.failures.incrementAndGet();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of events dropped because the ring was full or the log closed
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * @return the number of writes and flushes of the sink that threw
+     */
+    public long getFailures() {
+        return this.failures.get();
+    }
+
+    /**
+     * Stop recording, write the events already in the ring and stop the writer thread.
+     * Events recorded while the log is closing may be dropped.
+     * modifies this
+     */
+    @Override
+    public void close() {
+        if(this.writer == null) return;
+        this.closed = true;
+        LockSupport.unpark(this.writer);
+        boolean interrupted = false;
+        while(this.writer.isAlive()) {
+            try {
+                this.writer.join();
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+}
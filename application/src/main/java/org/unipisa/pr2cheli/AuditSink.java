@@ -0,0 +1,38 @@
+package org.unipisa.pr2cheli;
+
+import java.io.PrintStream;
+
+/**
+ * Where an AuditLog writes its events, called only by the writer thread of the log.
+ */
+public interface AuditSink {
+    /**
+     * @param event the next event, in the order it was recorded
+     */
+    public void write(AuditEvent event) throws Exception;
+
+    /**
+     * Called after every batch of events, and before the log is closed.
+     */
+    default public void flush() throws Exception {
+    }
+
+    /**
+     * @param out the stream to print to
+     * @return a sink printing an event per line
+     */
+    public static AuditSink printing(PrintStream out) {
+        if(out == null) throw new NullPointerException();
+        return new AuditSink() {
+            @Override
+            public void write(AuditEvent event) {
+                out.println(event);
+            }
+
+            @Override
+            public void flush() {
+                out.flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.SortedSet;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Helpers shared by the boards to validate a batch before applying any of it.
+ */
+class Batches {
+    /**
+     * Copy the posts of a batch for a category.
+     * @param data the posts to store
+     * @param owner the owner of the board
+     * @param category the category they go to
+     * @param sorted receives the copies, sorted by DataElement.compareTo
+     * @return the copies in the iteration order of data
+     * @throws InvalidDataException if a post is not by owner
+     * @throws DuplicateDataException if two posts of data are equal
+     * @throws NullPointerException if a post is null
+     */
+    static <E extends DataElement> ArrayList<E> copies(Collection<? extends E> data, String owner,
+            String category, SortedSet<E> sorted) throws InvalidDataException, DuplicateDataException {
+        ArrayList<E> copies = new ArrayList<E>(data.size());
+        for(E dato : data) {
+            if(dato == null) throw new NullPointerException();
+            if(!dato.getAuthor().equals(owner)) throw new InvalidDataException("Author-Owner mismatch");
+            E cloned = DataElement.copy(dato);
+            cloned.setCategory(category);
+            if(!sorted.add(cloned)) throw new DuplicateDataException(cloned.display() + " in category " + category);
+            copies.add(cloned);
+        }
+        return copies;
+    }
+
+    /**
+     * @param ids ids of posts
+     * @return the ids in order
+     * @throws DataNotFoundException if an id appears twice, it would not be found the second time
+     * @throws NullPointerException if an id is null
+     */
+    static LinkedHashSet<Long> distinct(Collection<Long> ids) throws DataNotFoundException {
+        LinkedHashSet<Long> s = new LinkedHashSet<Long>(ids.size() * 4 / 3 + 1);
+        for(Long id : ids) {
+            if(id == null) throw new NullPointerException();
+            if(!s.add(id)) throw new DataNotFoundException("post: " + id);
+        }
+        return s;
+    }
+
+    /**
+     * Group likes by post, so that each post is replaced once however many likes it gets.
+     * @param likes the likes to insert
+     * @return the users liking each post, posts in order of first like
+     * @throws InvalidDataException if a user is invalid
+     * @throws DuplicateDataException if a user likes the same post twice
+     * @throws NullPointerException if a like is null
+     */
+    static LinkedHashMap<Long, ArrayList<String>> byPost(List<Like> likes)
+    throws InvalidDataException, DuplicateDataException {
+        LinkedHashMap<Long, ArrayList<String>> m = new LinkedHashMap<Long, ArrayList<String>>();
+        for(Like l : likes) {
+            DataValidator.validateUser(l.getFriend());
+            ArrayList<String> friends = m.get(l.getId());
+            if(friends == null) {
+                friends = new ArrayList<String>(2);
+                m.put(l.getId(), friends);
+            }
+            if(friends.contains(l.getFriend())) throw new DuplicateDataException("like by: " + l.getFriend());
+            friends.add(l.getFriend());
+        }
+        return m;
+    }
+}
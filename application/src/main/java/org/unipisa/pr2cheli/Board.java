@@ -1,14 +1,22 @@
 
 package org.unipisa.pr2cheli;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.TreeSet;
-import java.util.HashSet;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.unipisa.pr2cheli.Exceptions.*;
 
@@ -19,13 +27,35 @@ import org.unipisa.pr2cheli.Exceptions.*;
  * Abstract invariant: Owner and passwd exist and are valid usernames and passwords,
  * contents and friends MUST not be null and MUST contain the same keys or be empty. The values of contents are sorted by likes and valid posts.
  * Each value in contents contains the category in which it resides.
- * The values or friends are empty or contain only valid usernames.
+ * The values or friends are empty or contain only ids of valid usernames in SymbolTable.USERS.
+ * all contains exactly the posts of every value of contents, sorted by likes.
+ * shared maps the id of each friend to the ids in SymbolTable.CATEGORIES of the categories
+ * whose friends contain it, it has no empty values.
+ * posts maps the id of every post in contents to the post, ids are assigned once by put
+ * and never reused.
+ * index holds the terms of the text of every post in posts, by id.
+ * If arena is not null the texts of the posts in contents are stored in it, the posts
+ * removed from the board keep their text on the heap.
+ * Every change of contents is published to feed with the friends of its category,
+ * every change of shared is logged in feed as a sharing change of the friend.
+ * likes is the sum of the likes of the posts in all.
  */
-public class Board <E extends DataElement> implements DataBoard<E> {
+public class Board <E extends DataElement> implements DataBoard<E>, BoardGauges {
     private HashMap<String, TreeSet<E>> contents;
-    private HashMap<String, HashSet<String>> friends;
+    private HashMap<String, IntSet> friends;
+    private TreeSet<E> all;
+    private HashMap<Integer, IntSet> shared;
+    private HashMap<Long, E> posts;
+    private TextIndex index;
+    private long lastId;
     private String owner;
     private String passw;
+    private String token;
+    private TextArena arena;
+    private AtomicInteger checkpoints;
+    private ChangeFeed<E> feed;
+    private long likes;
+    private AuditLog audit;
 
     /**
      * Constructor for Board
@@ -40,8 +70,74 @@ public class Board <E extends DataElement> implements DataBoard<E> {
         DataValidator.validatePassw(passw);
         this.owner = owner;
         this.passw = passw;
+        this.token = Session.token(passw);
         this.contents = new HashMap<String, TreeSet<E>>();
-        this.friends = new HashMap<String, HashSet<String>>();
+        this.friends = new HashMap<String, IntSet>();
+        this.all = new TreeSet<E>();
+        this.shared = new HashMap<Integer, IntSet>();
+        this.posts = new HashMap<Long, E>();
+        this.index = new TextIndex();
+        this.lastId = 0;
+        this.checkpoints = new AtomicInteger();
+        this.feed = new ChangeFeed<E>();
+        this.audit = AuditLog.disabled();
+    }
+
+    /**
+     * Constructor for a Board keeping the text of its posts off the heap
+     * @param owner the owner, must be a valid username
+     * @param passw the password, must be a valid password
+     * @param arena where the texts are stored, used only by this board
+     * @throws InvalidDataException if owner or password are invalid
+     * @throws NullPointerException if arena is null
+     * @see org.unipisa.pr2cheli.TextArena
+     */
+    public Board(String owner, String passw, TextArena arena) throws InvalidDataException {
+        this(owner, passw);
+        if(arena == null) throw new NullPointerException();
+        this.arena = arena;
+    }
+
+    /**
+     * Rebuild a board from a snapshot image, the posts are used as they are.
+     * @param image the image, its posts must be sorted by category
+     * @param passw the password, must be a valid password
+     * @throws InvalidDataException if the owner of image or password are invalid
+     */
+    @SuppressWarnings("unchecked")
+    private Board(Snapshot.Image image, String passw) throws InvalidDataException {
+        this(image.owner, passw);
+        this.posts = new HashMap<Long, E>(image.countPosts() * 4 / 3 + 1);
+        ArrayList<E[]> sorted = new ArrayList<E[]>(image.size());
+        for(int i = 0; i < image.size(); i++) {
+            String category = image.categories.get(i);
+            E[] p = (E[])image.posts.get(i);
+            sorted.add(p);
+            this.contents.put(category, Snapshot.sortedSet(p));
+            IntSet frs = Snapshot.users(image.friends.get(i));
+            this.friends.put(category, frs);
+            int cat = SymbolTable.CATEGORIES.intern(category);
+            for(int friend : frs.toArray()) this.share(friend, cat);
+            for(E e : p) {
+                this.posts.put(e.getId(), e);
+                this.index.add(e);
+                this.likes += e.getNumlikes();
+            }
+        }
+        this.all = Snapshot.mergedSet(sorted);
+        this.lastId = image.lastId;
+    }
+
+    /**
+     * Load a board from a snapshot.
+     * @param path the snapshot, written by writeSnapshot or checkpoint
+     * @param passw the password of the loaded board, must be a valid password
+     * @return the board as it was when the snapshot was taken
+     * @throws IOException if the snapshot can not be read or is corrupt
+     * @throws InvalidDataException if password is invalid
+     */
+    public static Board<DataElement> loadSnapshot(Path path, String passw) throws IOException, InvalidDataException {
+        return new Board<DataElement>(Snapshot.read(path), passw);
     }
 
     /**
@@ -51,6 +147,17 @@ public class Board <E extends DataElement> implements DataBoard<E> {
         return new String(this.owner);
     }
 
+    /**
+     * Record the changes of this board in a log, by default they are not recorded.
+     * modifies this.audit
+     * @param audit the log, shared with other boards if needed
+     * @throws NullPointerException if audit is null
+     */
+    public void setAuditLog(AuditLog audit) {
+        if(audit == null) throw new NullPointerException();
+        this.audit = audit;
+    }
+
     /**
      * Checks if the password is correct
      * @param p the password to check, must be shorter than 128 characters
@@ -58,10 +165,224 @@ public class Board <E extends DataElement> implements DataBoard<E> {
      * @throws InvalidDataException if the password is invalid
     */
     public void checkPasswd(String p) throws UnauthorizedLoginException, InvalidDataException {
+        // a session carries this.token, the token of this.passw
+        if(p == this.token) return;
         DataValidator.validatePassw(p);
         if(!this.passw.equals(p)) throw new UnauthorizedLoginException("Wrong Credentials");
     }
 
+    /**
+     * Open a session of the owner.
+     * @param passw The password, must be a matching and valid password
+     * @param ttlMillis How long the session lasts, in milliseconds
+     * @return a session accepted in place of the password until it expires or is revoked
+     * @throws InvalidDataException if passwd or ttlMillis are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        return Session.open(this.token, ttlMillis);
+    }
+
+    /**
+     * @return the structure of the board, in time linear in the number of posts
+     */
+    private Snapshot.Image capture() {
+        Snapshot.Image image = new Snapshot.Image(this.owner, this.lastId);
+        for(Map.Entry<String, TreeSet<E>> c : this.contents.entrySet()) {
+            image.add(c.getKey(), this.friends.get(c.getKey()), c.getValue());
+        }
+        return image;
+    }
+
+    /**
+     * Write a snapshot of the board.
+     * @param passw The board password, must be a valid and matching password
+     * @param path The snapshot file, replaced when the new one is complete
+     * @throws IOException if the snapshot can not be written
+     * @throws InvalidDataException if password is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    public void writeSnapshot(String passw, Path path)
+    throws IOException, UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Snapshot.write(this.capture(), path);
+    }
+
+    /**
+     * Write a snapshot of the board in the background.
+     * Only the references to the posts are copied before returning, the file is written
+     * on executor while the board keeps accepting changes, which the snapshot does not see.
+     * @param passw The board password, must be a valid and matching password
+     * @param path The snapshot file, replaced when the new one is complete
+     * @param executor Runs the write
+     * @return completes when the snapshot is on disk, exceptionally with an UncheckedIOException
+     * @throws InvalidDataException if password is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    public CompletableFuture<Void> checkpoint(String passw, Path path, Executor executor)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        // counted until written, however many are running
+        this.checkpoints.incrementAndGet();
+        CompletableFuture<Void> f;
+        try {
+            f = Snapshot.writeAsync(this.capture(), path, executor);
+        } catch(RuntimeException e) {
+            this.checkpoints.decrementAndGet();
+            throw e;
+        }
+        f.whenComplete((v, e) -> this.checkpoints.decrementAndGet());
+        return f;
+    }
+
+    /**
+     * Find the stored post matching dato in a category.
+     * @param t the posts of a category
+     * @param dato the post to look for, its category may be unset
+     * @return the stored post, null if t does not contain dato
+     */
+    private E find(TreeSet<E> t, E dato) {
+        E s = t.ceiling(dato);
+        if(s != null && s.compareTo(dato) == 0) return s;
+        return null;
+    }
+
+    /**
+     * Replace a stored post with a copy liked by friend.
+     * modifies t this.all this.posts this.likes
+     * @param t the posts of the category of s
+     * @param s the stored post
+     * @return the liked copy now stored in place of s
+     * @throws DuplicateDataException if s was already liked by friend
+     * @throws InvalidDataException if friend is invalid
+     */
+    private E like(TreeSet<E> t, E s, String friend)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        t.remove(s);
+        this.all.remove(s);
+        E x = DataElement.copy(s);
+        try {
+            x.addLike(friend);
+
+        } catch(Exception e) {
+            t.add(x);
+            this.all.add(x);
+            this.posts.put(x.getId(), x);
+            throw e;
+        }
+        t.add(x);
+        this.all.add(x);
+        this.posts.put(x.getId(), x);
+        this.likes++;
+        this.feed.publish(BoardEvent.Type.LIKED, x, this.friends.get(x.getCategory()));
+        this.audit.record(AuditEvent.Type.LIKE, this.owner, x.getCategory(), friend, x.getId());
+        return x;
+    }
+
+    /**
+     * Replace a stored post with a copy liked by every user of friends, who must be
+     * able to see it and must not have liked it yet.
+     * modifies t this.all this.posts this.likes
+     * @param t the posts of the category of s
+     * @param s the stored post
+     */
+    private void likeAll(TreeSet<E> t, E s, List<String> friends)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        t.remove(s);
+        this.all.remove(s);
+        E x = DataElement.copy(s);
+        for(String friend : friends) x.addLike(friend);
+        t.add(x);
+        this.all.add(x);
+        this.posts.put(x.getId(), x);
+        this.likes += friends.size();
+        this.feed.publish(BoardEvent.Type.LIKED, x, this.friends.get(x.getCategory()));
+        if(this.audit.isEnabled(AuditLevel.DEBUG)) {
+            for(String friend : friends) this.audit.record(AuditEvent.Type.LIKE, this.owner, x.getCategory(), friend, x.getId());
+        }
+    }
+
+    /**
+     * @return true if a checkpoint may still be reading the posts
+     */
+    private boolean checkpointing() {
+        return this.checkpoints.get() > 0;
+    }
+
+    /**
+     * Give the text of a post removed from the board back to the heap.
+     * While a checkpoint is reading the post the text stays where it is.
+     * modifies this.arena
+     */
+    private void release(E e) {
+        if(this.arena != null) this.arena.release(e, !this.checkpointing());
+    }
+
+    /**
+     * Compact the arena once most of it holds the texts of removed posts,
+     * not while a checkpoint is reading the posts.
+     * modifies this.arena and the posts in this.all
+     */
+    private void compactArena() {
+        if(this.arena != null && this.arena.needsCompaction() && !this.checkpointing())
+            this.arena.compact(this.all);
+    }
+
+    /**
+     * Remove a post from the indexes and publish the removal.
+     * modifies this.contents this.all this.posts this.arena this.likes
+     * @param s a stored post
+     */
+    private void unlink(E s) {
+        this.contents.get(s.getCategory()).remove(s);
+        this.all.remove(s);
+        this.posts.remove(s.getId());
+        this.index.remove(s);
+        this.likes -= s.getNumlikes();
+        this.feed.publish(BoardEvent.Type.REMOVED, s, this.friends.get(s.getCategory()));
+        this.audit.record(AuditEvent.Type.REMOVE, this.owner, s.getCategory(), null, s.getId());
+        this.release(s);
+    }
+
+    /**
+     * Record that friend can see category.
+     * modifies this.shared this.feed
+     */
+    private void share(int friend, int category) {
+        this.feed.sharing(friend);
+        IntSet cats = this.shared.get(friend);
+        if(cats == null) {
+            cats = new IntSet();
+            this.shared.put(friend, cats);
+        }
+        cats.add(category);
+    }
+
+    /**
+     * Record that friend can no longer see category.
+     * modifies this.shared this.feed
+     */
+    private void unshare(int friend, int category) {
+        this.feed.sharing(friend);
+        IntSet cats = this.shared.get(friend);
+        if(cats == null) return;
+        cats.remove(category);
+        if(cats.isEmpty()) this.shared.remove(friend);
+    }
+
+    /**
+     * @return the ids of the categories friend can see, never null
+     */
+    private int[] sharedWith(String friend) {
+        int user = SymbolTable.USERS.lookup(friend);
+        IntSet cats = user < 0 ? null : this.shared.get(user);
+        if(cats == null) return new int[0];
+        return cats.toArray();
+    }
+
     /**
      * Create a new category.
      * modifies this.contents and this.friends
@@ -80,12 +401,14 @@ public class Board <E extends DataElement> implements DataBoard<E> {
         if(this.contents.containsKey(category)) throw new DuplicateDataException(category);
         if(this.friends.containsKey(category)) throw new DuplicateDataException(category);
         this.contents.put(category, new TreeSet<E>());
-        this.friends.put(category, new HashSet<String>());
+        this.friends.put(category, new IntSet());
+        SymbolTable.CATEGORIES.intern(category);
+        this.audit.record(AuditEvent.Type.CATEGORY_CREATED, this.owner, category, null, -1);
     }
 
     /**
      * Remove an already existing category.
-     * modifies this.contents this.friends
+     * modifies this.contents this.friends this.all this.shared this.posts this.likes
      * @param category The category name to create, must be a valid category
      * @param passw The password, must be a matching and valid password
      * @throws DataNotFoundException if category does not exists
@@ -98,13 +421,30 @@ public class Board <E extends DataElement> implements DataBoard<E> {
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
         DataValidator.validateCategory(category);
         this.checkPasswd(passw);
-        if(this.contents.remove(category) == null) throw new DataNotFoundException("category: " + category);
-        if(this.friends.remove(category) == null) throw new DataNotFoundException("category: " + category);
+        TreeSet<E> removed = this.contents.remove(category);
+        if(removed == null) throw new DataNotFoundException("category: " + category);
+        IntSet frs = this.friends.remove(category);
+        if(frs == null) throw new DataNotFoundException("category: " + category);
+        this.all.removeAll(removed);
+        for(E e : removed) {
+            this.posts.remove(e.getId());
+            this.index.remove(e);
+            this.likes -= e.getNumlikes();
+            // the friends of the category get a sharing change, the posts are not logged
+            this.feed.deliver(BoardEvent.Type.REMOVED, e, frs);
+            this.release(e);
+        }
+        this.compactArena();
+        int cat = SymbolTable.CATEGORIES.intern(category);
+        for(int friend : frs.toArray()) {
+            this.unshare(friend, cat);
+        }
+        this.audit.record(AuditEvent.Type.CATEGORY_REMOVED, this.owner, category, null, -1);
     }
 
     /**
      * Add a friend to a category.
-     * modifies this.friends
+     * modifies this.friends this.shared
      * @param category The category name to create, must be a valid category name
      * @param friend The friend name to add to the category, must be a valid username
      * @param passw The password, must be a matching and valid password
@@ -121,16 +461,18 @@ public class Board <E extends DataElement> implements DataBoard<E> {
         DataValidator.validateUser(friend);
         this.checkPasswd(passw);
         if(!this.friends.containsKey(category)) throw new DataNotFoundException("category: " + category);
-        HashSet<String> frs = this.friends.get(category);
+        IntSet frs = this.friends.get(category);
         // this should not happen
         if(frs == null) throw new NullPointerException();
-        if(frs.contains(friend)) throw new DuplicateDataException("friend: " + friend);
-        frs.add(friend);
+        int user = SymbolTable.USERS.intern(friend);
+        if(!frs.add(user)) throw new DuplicateDataException("friend: " + friend);
+        this.share(user, SymbolTable.CATEGORIES.intern(category));
+        this.audit.record(AuditEvent.Type.FRIEND_ADDED, this.owner, category, friend, -1);
     }
 
     /**
      * Remove a friend from a category.
-     * modifies this.friends
+     * modifies this.friends this.shared
      * @param category The category name to create, must be a valid category name
      * @param friend The friend name to add to the category, must be a valid username
      * @param passw The password, must be a matching and valid password
@@ -146,16 +488,18 @@ public class Board <E extends DataElement> implements DataBoard<E> {
         DataValidator.validateUser(friend);
         this.checkPasswd(passw);
         if(!this.friends.containsKey(category)) throw new DataNotFoundException("category: " + category);
-        HashSet<String> frs = this.friends.get(category);
+        IntSet frs = this.friends.get(category);
         // this should not happen
         if(frs == null) throw new NullPointerException();
-        if(!frs.contains(friend)) throw new DataNotFoundException("friend: " + friend);
-        frs.remove(friend);
+        int user = SymbolTable.USERS.lookup(friend);
+        if(!frs.remove(user)) throw new DataNotFoundException("friend: " + friend);
+        this.unshare(user, SymbolTable.CATEGORIES.intern(category));
+        this.audit.record(AuditEvent.Type.FRIEND_REMOVED, this.owner, category, friend, -1);
     }
 
     /**
-     * Add a post to a category.
-     * modifies this.contents
+     * Add a post to a category, the stored copy gets a new id.
+     * modifies this.contents this.all this.posts this.likes
      * @param category The category name to create, must be a valid category name
      * @param dato The element to add to the category posts
      * @param passw The password, must be a matching and valid password
@@ -177,13 +521,68 @@ public class Board <E extends DataElement> implements DataBoard<E> {
         // this should not happen
         if(cts == null) throw new NullPointerException();
         if(!dato.getAuthor().equals(this.getOwner())) throw new InvalidDataException("Author-Owner mismatch");
-        E cloned = (E)dato.clone();
+        E cloned = DataElement.copy(dato);
         cloned.setCategory(category);
         if(cts.contains(cloned)) throw new DuplicateDataException(cloned.display() + " in category " + category);
+        cloned.setId(++this.lastId);
+        if(this.arena != null) this.arena.store(cloned);
         cts.add(cloned);
+        this.all.add(cloned);
+        this.posts.put(cloned.getId(), cloned);
+        this.index.add(cloned);
+        this.likes += cloned.getNumlikes();
+        this.feed.publish(BoardEvent.Type.ADDED, cloned, this.friends.get(category));
+        this.audit.record(AuditEvent.Type.PUT, this.owner, category, null, cloned.getId());
         return true;
     }
 
+    /**
+     * Add the posts of a collection to a category, all of them or none.
+     * The password and the category are checked once for the whole batch, the posts
+     * are sorted and merged into the category, an empty category takes the sorted batch.
+     * modifies this.contents this.all this.posts this.likes
+     * @param passw The password, must be a matching and valid password
+     * @param category The category name, must be a valid category name
+     * @param data The posts to add, the stored copies get new ids in iteration order
+     * @return the number of posts added
+     * @throws DuplicateDataException if a post is already in category or appears twice in data
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, a post author, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if data or one of its posts is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        if(data == null) throw new NullPointerException();
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        TreeSet<E> cts = this.contents.get(category);
+        if(cts == null) throw new DataNotFoundException("category: " + category);
+        TreeSet<E> sorted = new TreeSet<E>();
+        ArrayList<E> copies = Batches.copies(data, this.owner, category, sorted);
+        for(E e : sorted) {
+            if(cts.contains(e)) throw new DuplicateDataException(e.display() + " in category " + category);
+        }
+        for(E e : copies) {
+            e.setId(++this.lastId);
+            if(this.arena != null) this.arena.store(e);
+            this.posts.put(e.getId(), e);
+            this.index.add(e);
+            this.likes += e.getNumlikes();
+        }
+        if(cts.isEmpty()) this.contents.put(category, sorted);
+        else cts.addAll(sorted);
+        this.all.addAll(sorted);
+        IntSet frs = this.friends.get(category);
+        for(E e : copies) this.feed.publish(BoardEvent.Type.ADDED, e, frs);
+        if(this.audit.isEnabled(AuditLevel.INFO)) {
+            for(E e : copies) this.audit.record(AuditEvent.Type.PUT, this.owner, category, null, e.getId());
+        }
+        return copies.size();
+    }
+
     /**
      * Get a post. (???)
      * @param dato The element to get from the category posts
@@ -208,8 +607,9 @@ public class Board <E extends DataElement> implements DataBoard<E> {
     }
 
     /**
-     * Remove a post.
-     * modifies this.contents
+     * Remove a post from every category containing it.
+     * modifies this.contents this.all this.posts this.likes
+     * @return the removed post as it was stored
      * @param dato The post to remove
      * @param passw The password, must be a matching and valid password
      * @throws DataNotFoundException if the post does not exists
@@ -225,12 +625,113 @@ public class Board <E extends DataElement> implements DataBoard<E> {
         this.checkPasswd(passw);
         E x = null;
         for(TreeSet<E> t : this.contents.values()) {
-            if(t.remove(dato)) x = dato;
+            E s = this.find(t, dato);
+            if(s != null) {
+                this.unlink(s);
+                x = s;
+            }
         }
         if(x == null) throw new DataNotFoundException(dato.display());
+        this.compactArena();
         return x;
     }
 
+    /**
+     * Get a copy of a post by id.
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        E s = this.posts.get(id);
+        if(s == null) throw new DataNotFoundException("post: " + id);
+        return DataElement.copy(s);
+    }
+
+    /**
+     * Remove a post by id.
+     * modifies this.contents this.all this.posts this.likes
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @return the removed post
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        E s = this.posts.get(id);
+        if(s == null) throw new DataNotFoundException("post: " + id);
+        this.unlink(s);
+        this.compactArena();
+        return s;
+    }
+
+    /**
+     * Get a copy of the posts with the given ids.
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the copies, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        ArrayList<E> l = new ArrayList<E>(ids.size());
+        for(long id : ids) {
+            E s = this.posts.get(id);
+            if(s == null) throw new DataNotFoundException("post: " + id);
+            l.add(DataElement.copy(s));
+        }
+        return l;
+    }
+
+    /**
+     * Remove the posts with the given ids, all of them or none.
+     * modifies this.contents this.all this.posts this.likes
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the removed posts, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists or an id appears twice
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        LinkedHashSet<Long> distinct = Batches.distinct(ids);
+        for(long id : distinct) {
+            if(!this.posts.containsKey(id)) throw new DataNotFoundException("post: " + id);
+        }
+        ArrayList<E> removed = new ArrayList<E>(distinct.size());
+        for(long id : distinct) {
+            E s = this.posts.get(id);
+            this.unlink(s);
+            removed.add(s);
+        }
+        this.compactArena();
+        return removed;
+    }
+
     /**
      * Get a List of posts in a category.
      * @param passw The password, must be a matching and valid password
@@ -254,6 +755,8 @@ public class Board <E extends DataElement> implements DataBoard<E> {
 
     /**
      * Add a like to a post.
+     * Only the categories shared with friend are visited.
+     * modifies this.contents this.all this.posts this.likes
      * @param dato The element to add to the category posts
      * @param friend The friend that liked the post
      * @throws DuplicateDataException if post was already liked by friend
@@ -267,30 +770,73 @@ public class Board <E extends DataElement> implements DataBoard<E> {
     throws DuplicateDataException, InvalidDataException, DataNotFoundException {
         if(dato == null) throw new NullPointerException();
         E x = null;
-        for(String category : this.contents.keySet()) {
+        for(int cat : this.sharedWith(friend)) {
+            String category = SymbolTable.CATEGORIES.name(cat);
             TreeSet<E> t = this.contents.get(category);
-            if(this.friends.get(category) == null) throw new NullPointerException("friends list in " + category);
-            if(this.friends.get(category).contains(friend)) {
-                if(t.contains(dato)) {
-                    t.remove(dato);
-                    x = (E) dato.clone();
-                    try {
-                        x.addLike(friend);
-
-                    } catch(Exception e) {
-                        t.add(x);
-                        throw e;
-                    }
-                    System.out.println("Just added like by " + friend + " to " + x.display());
-                    t.add(x);
-                }
-            }
+            if(t == null) throw new NullPointerException("contents of " + category);
+            E s = this.find(t, dato);
+            if(s != null) x = this.like(t, s, friend);
         }
         if(x == null) throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
     }
 
+    /**
+     * Add a like to a post by id.
+     * modifies this.contents this.all this.posts this.likes
+     * @param id The id of the post
+     * @param friend The friend that liked the post
+     * @throws DuplicateDataException if post was already liked by friend
+     * @throws DataNotFoundException if the post does not exists or friend can not see it
+     * @throws InvalidDataException if friend is invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        E s = this.posts.get(id);
+        int user = SymbolTable.USERS.lookup(friend);
+        IntSet cats = user < 0 ? null : this.shared.get(user);
+        if(s == null || cats == null || !cats.contains(s.getCategoryId()))
+            throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+        this.like(this.contents.get(s.getCategory()), s, friend);
+    }
+
+    /**
+     * Add a list of likes by post id, all of them or none.
+     * The likes are grouped by post, so each post is replaced once in the sorted sets.
+     * modifies this.contents this.all this.posts this.likes
+     * @param likes The likes to add
+     * @throws DuplicateDataException if a post was already liked by a friend, or a like appears twice
+     * @throws DataNotFoundException if a post does not exists or its friend can not see it
+     * @throws InvalidDataException if a friend is invalid
+     * @throws NullPointerException if likes or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        if(likes == null) throw new NullPointerException();
+        LinkedHashMap<Long, ArrayList<String>> byPost = Batches.byPost(likes);
+        for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+            E s = this.posts.get(l.getKey());
+            for(String friend : l.getValue()) {
+                int user = SymbolTable.USERS.lookup(friend);
+                IntSet cats = user < 0 ? null : this.shared.get(user);
+                if(s == null || cats == null || !cats.contains(s.getCategoryId()))
+                    throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+                if(s.isLikedBy(friend)) throw new DuplicateDataException("like by: " + friend);
+            }
+        }
+        for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+            E s = this.posts.get(l.getKey());
+            this.likeAll(this.contents.get(s.getCategory()), s, l.getValue());
+        }
+    }
+
     /**
      * Get an iterator for all posts sorted by like number.
+     * The iterator is a view over the board index, nothing is copied:
+     * modifying the board while iterating throws ConcurrentModificationException.
      * @param passw The board password, must be a valid and matching password
      * @throws NullPointerException if data is corrupted
      * @throws InvalidDataException if password is invalid or data contents are invalid
@@ -301,19 +847,14 @@ public class Board <E extends DataElement> implements DataBoard<E> {
     public Iterator<E> getIterator(String passw)
     throws UnauthorizedLoginException, InvalidDataException {
         this.checkPasswd(passw);
-        TreeSet <E> all = new TreeSet<E>();
-        for(TreeSet<E> t : this.contents.values()) {
-            for(E e : t) {
-                all.add(e);
-            }
-        }
-
-        SortedSet<E> unmodifiableAll = Collections.unmodifiableSortedSet(all);
+        SortedSet<E> unmodifiableAll = Collections.unmodifiableSortedSet(this.all);
         return unmodifiableAll.iterator();
     }
 
     /**
-     * Get an iterator for all posts accessible by a friend.
+     * Get an iterator for all posts accessible by a friend, sorted by like number.
+     * The categories shared with friend are merged lazily, nothing is copied:
+     * modifying the board while iterating throws ConcurrentModificationException.
      * @param friend The friend, must be a  valid and matching username
      * @throws NullPointerException if data is corrupted
      * @throws InvalidDataException if password is invalid or data contents are invalid
@@ -323,16 +864,198 @@ public class Board <E extends DataElement> implements DataBoard<E> {
     public Iterator<E> getFriendIterator(String friend)
     throws InvalidDataException {
         DataValidator.validateUser(friend);
-        ArrayList <E> all = new ArrayList<E>();
-        for(String cat : this.contents.keySet()) {
-            if(this.friends.get(cat).contains(friend)) {
-                for(E e : this.contents.get(cat)) {
-                    all.add(e);
-                }
-            }
+        ArrayList<TreeSet<E>> visible = new ArrayList<TreeSet<E>>();
+        for(int cat : this.sharedWith(friend)) {
+            visible.add(this.contents.get(SymbolTable.CATEGORIES.name(cat)));
         }
+        return new MergeIterator<E>(visible);
+    }
 
-        List<E> unmodifiableAll = Collections.unmodifiableList(all);
-        return unmodifiableAll.iterator();
+    /**
+     * Get the k posts with most likes.
+     * Only the first k entries of the board index are visited.
+     * @param passw The board password, must be a valid and matching password
+     * @param k The number of posts
+     * @throws InvalidDataException if password is invalid or k is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Feeds.validateSize(k);
+        return Feeds.first(this.all.iterator(), k);
+    }
+
+    /**
+     * Get the k posts with most likes accessible by a friend.
+     * @param friend The friend, must be a valid username
+     * @param k The number of posts
+     * @throws InvalidDataException if friend is invalid or k is negative
+     */
+    @Override
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        Feeds.validateSize(k);
+        return Feeds.first(this.getFriendIterator(friend), k);
+    }
+
+    /**
+     * Get a page of all posts sorted by like number.
+     * The page starts with a lookup in the board index, in O(log n + size).
+     * @param passw The board password, must be a valid and matching password
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if password is invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        return Feeds.page(Feeds.after(this.all, cursor).iterator(), size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend, sorted by like number.
+     * Each shared category is entered after cursor and merged lazily.
+     * @param friend The friend, must be a valid username
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend is invalid or size is negative
+     */
+    @Override
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        Feeds.validateSize(size);
+        ArrayList<SortedSet<E>> visible = new ArrayList<SortedSet<E>>();
+        for(int cat : this.sharedWith(friend)) {
+            visible.add(Feeds.after(this.contents.get(SymbolTable.CATEGORIES.name(cat)), cursor));
+        }
+        return Feeds.page(new MergeIterator<E>(visible), size);
+    }
+
+    /**
+     * Get a page of the posts in a category, sorted by like number.
+     * @param passw The board password, must be a valid and matching password
+     * @param category The category name, must be a valid category name
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category or password are invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        TreeSet<E> cts = this.contents.get(category);
+        if(cts == null) throw new DataNotFoundException("category: " + category);
+        return Feeds.page(Feeds.after(cts, cursor).iterator(), size);
+    }
+
+    /**
+     * Get a page of the posts containing all the words of a query, sorted by like number.
+     * Only the posts listed by the index under the rarest word of the query are read.
+     * @param passw The board password, must be a valid and matching password
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if query or password are invalid, query has no words or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        String[] terms = TextIndex.query(query);
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        return TextIndex.rank(this.index.match(terms), this.posts::get, e -> true, cursor, size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend containing all the words of a query,
+     * sorted by like number.
+     * @param friend The friend, must be a valid username
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend or query are invalid, query has no words or size is negative
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        String[] terms = TextIndex.query(query);
+        Feeds.validateSize(size);
+        int user = SymbolTable.USERS.lookup(friend);
+        IntSet cats = user < 0 ? null : this.shared.get(user);
+        if(cats == null) return new Page<E>(new ArrayList<E>(), null);
+        return TextIndex.rank(this.index.match(terms), this.posts::get, e -> cats.contains(e.getCategoryId()), cursor, size);
+    }
+
+    /**
+     * Subscribe a friend to the changes of the categories shared with it.
+     * Visibility is checked when a change happens, so a friend added to a category
+     * later gets its changes from then on, not the posts already in it.
+     * modifies this.feed
+     * @param friend The friend, must be a valid username
+     * @param capacity The size of the queue of the subscription, must be positive
+     * @param executor Runs listener
+     * @param listener Receives the events
+     * @return the subscription, to be cancelled when the friend stops listening
+     * @throws InvalidDataException if friend or capacity are invalid
+     * @throws NullPointerException if executor or listener are null
+     */
+    @Override
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        return this.feed.subscribe(friend, capacity, executor, listener);
+    }
+
+    /**
+     * Get the changes of the posts accessible by a friend since a version.
+     * The changes are read from the log of feed in time linear in their number,
+     * the friend gets its whole feed instead when the version is older than the log,
+     * unknown, or earlier than a change of the categories shared with it.
+     * @param friend The friend, must be a valid username
+     * @param version The version of the last changes the friend applied, any other
+     * value (0 the first time) for its whole feed
+     * @return the changes and the new version
+     * @throws InvalidDataException if friend is invalid
+     */
+    @Override
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        int user = SymbolTable.USERS.lookup(friend);
+        IntSet cats = user < 0 ? null : this.shared.get(user);
+        Changes<E> c = this.feed.changesSince(user, version, cat -> cats != null && cats.contains(cat), this.posts::get);
+        if(c != null) return c;
+        long now = this.feed.version();
+        ArrayList<E> l = new ArrayList<E>();
+        for(Iterator<E> it = this.getFriendIterator(friend); it.hasNext(); ) l.add(it.next());
+        return new Changes<E>(now, true, l, new ArrayList<Long>());
+    }
+
+    @Override
+    public int getCategoryCount() {
+        return this.contents.size();
+    }
+
+    @Override
+    public int getPostCount() {
+        return this.posts.size();
+    }
+
+    @Override
+    public long getLikeCount() {
+        return this.likes;
     }
-}
\ No newline at end of file
+}
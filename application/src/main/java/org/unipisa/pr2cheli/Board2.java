@@ -1,13 +1,23 @@
 
 package org.unipisa.pr2cheli;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.TreeSet;
 import java.util.HashSet;
+import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 import org.unipisa.pr2cheli.Exceptions.*;
 
@@ -16,12 +26,31 @@ import org.unipisa.pr2cheli.Exceptions.*;
 /**
  * Board2 ADT.
  * Abstract invariant: Owner and passwd exist and are valid usernames and passwords,
- * categories is not null and contains valid categories which in turn contain valid posts.
+ * categories is not null and contains valid categories which in turn contain valid posts,
+ * each one under its name, in creation order.
+ * all contains exactly the posts of every category, sorted by likes.
+ * shared maps the id in SymbolTable.USERS of each friend to the categories whose friends
+ * contain it, it has no empty values.
+ * posts maps the id of every stored post to the post and owners maps it to its category,
+ * ids are assigned once by put and never reused; index holds the terms of their texts.
+ * Every change of a category is published to feed with the friends of the category,
+ * and every change of shared is logged in feed as a sharing change of the friend.
+ * likes is the sum of the likes of the posts in all.
  */
-public class Board2 <E extends DataElement> implements DataBoard<E> {
-    private ArrayList<Category<E>> categories;
+public class Board2 <E extends DataElement> implements DataBoard<E>, BoardGauges {
+    private LinkedHashMap<String, Category<E>> categories;
+    private TreeSet<E> all;
+    private HashMap<Integer, HashSet<Category<E>>> shared;
+    private HashMap<Long, E> posts;
+    private HashMap<Long, Category<E>> owners;
+    private TextIndex index;
+    private long lastId;
     private String owner;
     private String passw;
+    private String token;
+    private ChangeFeed<E> feed;
+    private long likes;
+    private AuditLog audit;
 
     /**
      * Constructor for Board
@@ -36,7 +65,60 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
         DataValidator.validatePassw(passw);
         this.owner = owner;
         this.passw = passw;
-        this.categories = new ArrayList<Category<E>>();
+        this.token = Session.token(passw);
+        this.categories = new LinkedHashMap<String, Category<E>>();
+        this.all = new TreeSet<E>();
+        this.shared = new HashMap<Integer, HashSet<Category<E>>>();
+        this.posts = new HashMap<Long, E>();
+        this.owners = new HashMap<Long, Category<E>>();
+        this.index = new TextIndex();
+        this.lastId = 0;
+        this.feed = new ChangeFeed<E>();
+        this.audit = AuditLog.disabled();
+    }
+
+    /**
+     * Rebuild a board from a snapshot image, the posts are used as they are.
+     * @param image the image, its posts must be sorted by category
+     * @param passw the password, must be a valid password
+     * @throws InvalidDataException if the owner of image or password are invalid
+     */
+    @SuppressWarnings("unchecked")
+    private Board2(Snapshot.Image image, String passw) throws InvalidDataException {
+        this(image.owner, passw);
+        int n = image.countPosts();
+        this.posts = new HashMap<Long, E>(n * 4 / 3 + 1);
+        this.owners = new HashMap<Long, Category<E>>(n * 4 / 3 + 1);
+        ArrayList<E[]> sorted = new ArrayList<E[]>(image.size());
+        for(int i = 0; i < image.size(); i++) {
+            Category<E> c = new Category<E>(image.categories.get(i));
+            E[] p = (E[])image.posts.get(i);
+            sorted.add(p);
+            c.setContents(Snapshot.sortedSet(p));
+            c.setFriends(Snapshot.users(image.friends.get(i)));
+            for(int friend : c.getFriends().toArray()) this.share(friend, c);
+            for(E e : p) {
+                this.posts.put(e.getId(), e);
+                this.owners.put(e.getId(), c);
+                this.index.add(e);
+                this.likes += e.getNumlikes();
+            }
+            this.categories.put(c.getCategory(), c);
+        }
+        this.all = Snapshot.mergedSet(sorted);
+        this.lastId = image.lastId;
+    }
+
+    /**
+     * Load a board from a snapshot.
+     * @param path the snapshot, written by writeSnapshot or checkpoint
+     * @param passw the password of the loaded board, must be a valid password
+     * @return the board as it was when the snapshot was taken
+     * @throws IOException if the snapshot can not be read or is corrupt
+     * @throws InvalidDataException if password is invalid
+     */
+    public static Board2<DataElement> loadSnapshot(Path path, String passw) throws IOException, InvalidDataException {
+        return new Board2<DataElement>(Snapshot.read(path), passw);
     }
 
     /**
@@ -46,6 +128,17 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
         return new String(this.owner);
     }
 
+    /**
+     * Record the changes of this board in a log, by default they are not recorded.
+     * modifies this.audit
+     * @param audit the log, shared with other boards if needed
+     * @throws NullPointerException if audit is null
+     */
+    public void setAuditLog(AuditLog audit) {
+        if(audit == null) throw new NullPointerException();
+        this.audit = audit;
+    }
+
     /**
      * Checks if the password is correct
      * @param p the password to check, must be shorter than 128 characters
@@ -53,10 +146,173 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
      * @throws InvalidDataException if the password is invalid
     */
     public void checkPasswd(String p) throws UnauthorizedLoginException, InvalidDataException {
+        // a session carries this.token, the token of this.passw
+        if(p == this.token) return;
         DataValidator.validatePassw(p);
         if(!this.passw.equals(p)) throw new UnauthorizedLoginException("Wrong Credentials");
     }
 
+    /**
+     * Open a session of the owner.
+     * @param passw The password, must be a matching and valid password
+     * @param ttlMillis How long the session lasts, in milliseconds
+     * @return a session accepted in place of the password until it expires or is revoked
+     * @throws InvalidDataException if passwd or ttlMillis are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        return Session.open(this.token, ttlMillis);
+    }
+
+    /**
+     * @return the structure of the board, in time linear in the number of posts
+     */
+    private Snapshot.Image capture() {
+        Snapshot.Image image = new Snapshot.Image(this.owner, this.lastId);
+        for(Category<E> c : this.categories.values()) {
+            image.add(c.getCategory(), c.getFriends(), c.getContents());
+        }
+        return image;
+    }
+
+    /**
+     * Write a snapshot of the board.
+     * @param passw The board password, must be a valid and matching password
+     * @param path The snapshot file, replaced when the new one is complete
+     * @throws IOException if the snapshot can not be written
+     * @throws InvalidDataException if password is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    public void writeSnapshot(String passw, Path path)
+    throws IOException, UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Snapshot.write(this.capture(), path);
+    }
+
+    /**
+     * Write a snapshot of the board in the background.
+     * Only the references to the posts are copied before returning, the file is written
+     * on executor while the board keeps accepting changes, which the snapshot does not see.
+     * @param passw The board password, must be a valid and matching password
+     * @param path The snapshot file, replaced when the new one is complete
+     * @param executor Runs the write
+     * @return completes when the snapshot is on disk, exceptionally with an UncheckedIOException
+     * @throws InvalidDataException if password is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    public CompletableFuture<Void> checkpoint(String passw, Path path, Executor executor)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        return Snapshot.writeAsync(this.capture(), path, executor);
+    }
+
+    /**
+     * Find the stored post matching dato in a category.
+     * @param t the posts of a category
+     * @param dato the post to look for, its category may be unset
+     * @return the stored post, null if t does not contain dato
+     */
+    private E find(TreeSet<E> t, E dato) {
+        E s = t.ceiling(dato);
+        if(s != null && s.compareTo(dato) == 0) return s;
+        return null;
+    }
+
+    /**
+     * Replace a stored post with a copy liked by friend.
+     * modifies c this.all this.posts this.likes
+     * @param c the category of s
+     * @param s the stored post
+     * @return the liked copy now stored in place of s
+     * @throws DuplicateDataException if s was already liked by friend
+     * @throws InvalidDataException if friend is invalid
+     */
+    private E like(Category<E> c, E s, String friend)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        TreeSet<E> t = c.getContents();
+        t.remove(s);
+        this.all.remove(s);
+        E x = DataElement.copy(s);
+        try {
+            x.addLike(friend);
+        } catch(Exception e) {
+            t.add(x);
+            this.all.add(x);
+            this.posts.put(x.getId(), x);
+            throw e;
+        }
+        t.add(x);
+        this.all.add(x);
+        this.posts.put(x.getId(), x);
+        this.likes++;
+        this.feed.publish(BoardEvent.Type.LIKED, x, c.getFriends());
+        this.audit.record(AuditEvent.Type.LIKE, this.owner, c.getCategory(), friend, x.getId());
+        return x;
+    }
+
+    /**
+     * Replace a stored post with a copy liked by every user of friends, who must be
+     * able to see it and must not have liked it yet.
+     * modifies c this.all this.posts this.likes
+     * @param c the category of s
+     * @param s the stored post
+     */
+    private void likeAll(Category<E> c, E s, List<String> friends)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        TreeSet<E> t = c.getContents();
+        t.remove(s);
+        this.all.remove(s);
+        E x = DataElement.copy(s);
+        for(String friend : friends) x.addLike(friend);
+        t.add(x);
+        this.all.add(x);
+        this.posts.put(x.getId(), x);
+        this.likes += friends.size();
+        this.feed.publish(BoardEvent.Type.LIKED, x, c.getFriends());
+        if(this.audit.isEnabled(AuditLevel.DEBUG)) {
+            for(String friend : friends) this.audit.record(AuditEvent.Type.LIKE, this.owner, c.getCategory(), friend, x.getId());
+        }
+    }
+
+    /**
+     * Record that friend can see category.
+     * modifies this.shared this.feed
+     */
+    private void share(int friend, Category<E> category) {
+        this.feed.sharing(friend);
+        HashSet<Category<E>> cats = this.shared.get(friend);
+        if(cats == null) {
+            cats = new HashSet<Category<E>>();
+            this.shared.put(friend, cats);
+        }
+        cats.add(category);
+    }
+
+    /**
+     * Record that friend can no longer see category.
+     * modifies this.shared this.feed
+     */
+    private void unshare(int friend, Category<E> category) {
+        this.feed.sharing(friend);
+        HashSet<Category<E>> cats = this.shared.get(friend);
+        if(cats == null) return;
+        cats.remove(category);
+        if(cats.isEmpty()) this.shared.remove(friend);
+    }
+
+    /**
+     * @return the categories friend can see, never null
+     */
+    private Set<Category<E>> sharedWith(String friend) {
+        int user = SymbolTable.USERS.lookup(friend);
+        HashSet<Category<E>> cats = user < 0 ? null : this.shared.get(user);
+        if(cats == null) return Collections.<Category<E>>emptySet();
+        return cats;
+    }
+
     /**
      * Create a new category.
      * modifies this.contents and this.friends
@@ -72,16 +328,14 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
         DataValidator.validateCategory(category);
         this.checkPasswd(passw);
-        for(Category<E> c : this.categories) {
-            if(c.getCategory().equals(category)) throw new DuplicateDataException(category);
-        }
-        Category<E> newCat = new Category<E>(category);
-        this.categories.add(newCat);
+        if(this.categories.containsKey(category)) throw new DuplicateDataException(category);
+        this.categories.put(category, new Category<E>(category));
+        this.audit.record(AuditEvent.Type.CATEGORY_CREATED, this.owner, category, null, -1);
     }
 
     /**
      * Remove an already existing category.
-     * modifies this.contents this.friends
+     * modifies this.categories this.all this.shared this.posts this.owners this.likes
      * @param category The category name to create, must be a valid category
      * @param passw The password, must be a matching and valid password
      * @throws DataNotFoundException if category does not exists
@@ -94,19 +348,25 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
         DataValidator.validateCategory(category);
         this.checkPasswd(passw);
-        Category<E> toRemove = null;
-        for(Category<E> c : this.categories) {
-            if(c.getCategory().equals(category)) {
-                toRemove = c;
-            }
-        }
+        Category<E> toRemove = this.categories.remove(category);
         if(toRemove == null) throw new DataNotFoundException("category: " + category);
-        this.categories.remove(toRemove);
+        this.all.removeAll(toRemove.getContents());
+        for(E e : toRemove.getContents()) {
+            this.posts.remove(e.getId());
+            this.owners.remove(e.getId());
+            this.index.remove(e);
+            this.likes -= e.getNumlikes();
+            this.feed.deliver(BoardEvent.Type.REMOVED, e, toRemove.getFriends());
+        }
+        for(int friend : toRemove.getFriends().toArray()) {
+            this.unshare(friend, toRemove);
+        }
+        this.audit.record(AuditEvent.Type.CATEGORY_REMOVED, this.owner, category, null, -1);
     }
 
     /**
      * Add a friend to a category.
-     * modifies this.friends
+     * modifies this.categories this.shared
      * @param category The category name to create, must be a valid category name
      * @param friend The friend name to add to the category, must be a valid username
      * @param passw The password, must be a matching and valid password
@@ -122,29 +382,21 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
         DataValidator.validateCategory(category);
         DataValidator.validateUser(friend);
         this.checkPasswd(passw);
-        Category<E> toAdd = null;
-        for(Category<E> c : this.categories) {
-            if(c.getCategory().equals(category)) {
-                toAdd = c;
-            }
-        }
+        Category<E> toAdd = this.categories.get(category);
         if(toAdd == null) throw new DataNotFoundException("category: " + category);
-        this.categories.remove(toAdd);
-        HashSet<String> frs = toAdd.getFriends();
+        IntSet frs = toAdd.getFriends();
         // this should not happen
         if(frs == null) throw new NullPointerException();
-        if(frs.contains(friend)) {
-            this.categories.add(toAdd);
-            throw new DuplicateDataException("friend: " + friend);
-        }
-        frs.add(friend);
-        toAdd.setFriends(frs);
-        this.categories.add(toAdd);
+        int user = SymbolTable.USERS.intern(friend);
+        if(frs.contains(user)) throw new DuplicateDataException("friend: " + friend);
+        frs.add(user);
+        this.share(user, toAdd);
+        this.audit.record(AuditEvent.Type.FRIEND_ADDED, this.owner, category, friend, -1);
     }
 
     /**
      * Remove a friend from a category.
-     * modifies this.friends
+     * modifies this.categories this.shared
      * @param category The category name to create, must be a valid category name
      * @param friend The friend name to add to the category, must be a valid username
      * @param passw The password, must be a matching and valid password
@@ -159,29 +411,21 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
         DataValidator.validateCategory(category);
         DataValidator.validateUser(friend);
         this.checkPasswd(passw);
-        Category<E> toRemove = null;
-        for(Category<E> c : this.categories) {
-            if(c.getCategory().equals(category)) {
-                toRemove = c;
-            }
-        }
+        Category<E> toRemove = this.categories.get(category);
         if(toRemove == null) throw new DataNotFoundException("category: " + category);
-        this.categories.remove(toRemove);
-        HashSet<String> frs = toRemove.getFriends();
+        IntSet frs = toRemove.getFriends();
         // this should not happen
         if(frs == null) throw new NullPointerException();
-        if(!frs.contains(friend)) {
-            this.categories.add(toRemove);
-            throw new DataNotFoundException("friend: " + friend);
-        }
-        frs.remove(friend);
-        toRemove.setFriends(frs);
-        this.categories.add(toRemove);
+        int user = SymbolTable.USERS.lookup(friend);
+        if(!frs.contains(user)) throw new DataNotFoundException("friend: " + friend);
+        frs.remove(user);
+        this.unshare(user, toRemove);
+        this.audit.record(AuditEvent.Type.FRIEND_REMOVED, this.owner, category, friend, -1);
     }
 
     /**
-     * Add a post to a category.
-     * modifies this.contents
+     * Add a post to a category, the stored copy gets a new id.
+     * modifies this.categories this.all this.posts this.owners this.likes
      * @param category The category name to create, must be a valid category name
      * @param dato The element to add to the category posts
      * @param passw The password, must be a matching and valid password
@@ -199,30 +443,75 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
         if(!dato.getAuthor().equals(this.getOwner())) throw new InvalidDataException("Author-Owner mismatch");
         DataValidator.validateCategory(category);
         this.checkPasswd(passw);
-        Category<E> toAdd = null;
-        for(Category<E> c : this.categories) {
-            System.out.println("I'm visiting category" + c.getCategory());
-            if(c.getCategory().equals(category)) {
-                toAdd = c;
-            }
-        }
+        Category<E> toAdd = this.categories.get(category);
         if(toAdd == null) throw new DataNotFoundException("category: " + category);
-        this.categories.remove(toAdd);
         TreeSet<E> cts = toAdd.getContents();
         // this should not happen
         if(cts == null) throw new NullPointerException();
-        E cloned = (E)dato.clone();
+        E cloned = DataElement.copy(dato);
         cloned.setCategory(category);
-        if(cts.contains(cloned)) {
-            this.categories.add(toAdd);
-            throw new DuplicateDataException(cloned.display() + " in category " + category);
-        }
+        if(cts.contains(cloned)) throw new DuplicateDataException(cloned.display() + " in category " + category);
+        cloned.setId(++this.lastId);
         cts.add(cloned);
-        toAdd.setContents(cts);
-        this.categories.add(toAdd);
+        this.all.add(cloned);
+        this.posts.put(cloned.getId(), cloned);
+        this.owners.put(cloned.getId(), toAdd);
+        this.index.add(cloned);
+        this.likes += cloned.getNumlikes();
+        this.feed.publish(BoardEvent.Type.ADDED, cloned, toAdd.getFriends());
+        this.audit.record(AuditEvent.Type.PUT, this.owner, category, null, cloned.getId());
         return true;
     }
 
+    /**
+     * Add the posts of a collection to a category, all of them or none.
+     * The password and the category are checked once for the whole batch, the posts
+     * are sorted and merged into the category, an empty category takes the sorted batch.
+     * modifies this.categories this.all this.posts this.owners this.likes
+     * @param passw The password, must be a matching and valid password
+     * @param category The category name, must be a valid category name
+     * @param data The posts to add, the stored copies get new ids in iteration order
+     * @return the number of posts added
+     * @throws DuplicateDataException if a post is already in category or appears twice in data
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, a post author, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if data or one of its posts is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        if(data == null) throw new NullPointerException();
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        Category<E> toAdd = this.categories.get(category);
+        if(toAdd == null) throw new DataNotFoundException("category: " + category);
+        TreeSet<E> cts = toAdd.getContents();
+        // this should not happen
+        if(cts == null) throw new NullPointerException();
+        TreeSet<E> sorted = new TreeSet<E>();
+        ArrayList<E> copies = Batches.copies(data, this.owner, category, sorted);
+        for(E e : sorted) {
+            if(cts.contains(e)) throw new DuplicateDataException(e.display() + " in category " + category);
+        }
+        for(E e : copies) {
+            e.setId(++this.lastId);
+            this.posts.put(e.getId(), e);
+            this.owners.put(e.getId(), toAdd);
+            this.index.add(e);
+            this.likes += e.getNumlikes();
+        }
+        if(cts.isEmpty()) toAdd.setContents(sorted);
+        else cts.addAll(sorted);
+        this.all.addAll(sorted);
+        for(E e : copies) this.feed.publish(BoardEvent.Type.ADDED, e, toAdd.getFriends());
+        if(this.audit.isEnabled(AuditLevel.INFO)) {
+            for(E e : copies) this.audit.record(AuditEvent.Type.PUT, this.owner, category, null, e.getId());
+        }
+        return copies.size();
+    }
+
     /**
      * Get a post. (???)
      * @param dato The element to get from the category posts
@@ -239,7 +528,7 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
         if(dato == null) throw new NullPointerException();
         this.checkPasswd(passw);
         E x = null;
-        for(Category<E> c : this.categories) {
+        for(Category<E> c : this.categories.values()) {
             if(c.getContents().contains(dato)) x = dato;
         }
         if(x == null) throw new DataNotFoundException(dato.display());
@@ -247,8 +536,9 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     }
 
     /**
-     * Remove a post.
-     * modifies this.contents
+     * Remove a post from every category containing it.
+     * modifies this.categories this.all this.posts this.owners this.likes
+     * @return the removed post as it was stored
      * @param dato The post to remove
      * @param passw The password, must be a matching and valid password
      * @throws DataNotFoundException if the post does not exists
@@ -262,17 +552,131 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
         if(dato == null) throw new NullPointerException();
         this.checkPasswd(passw);
-        Category<E> toRemove = null;
         E x = null;
-        for(Category<E> c : this.categories) {
-            if(c.getContents().remove(dato)) {
-                x = dato;
+        for(Category<E> c : this.categories.values()) {
+            E s = this.find(c.getContents(), dato);
+            if(s != null) {
+                c.getContents().remove(s);
+                this.all.remove(s);
+                this.posts.remove(s.getId());
+                this.owners.remove(s.getId());
+                this.index.remove(s);
+                this.likes -= s.getNumlikes();
+                this.feed.publish(BoardEvent.Type.REMOVED, s, c.getFriends());
+                this.audit.record(AuditEvent.Type.REMOVE, this.owner, c.getCategory(), null, s.getId());
+                x = s;
             }
         }
         if(x == null) throw new DataNotFoundException(dato.display());
         return x;
     }
 
+    /**
+     * Get a copy of a post by id.
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        E s = this.posts.get(id);
+        if(s == null) throw new DataNotFoundException("post: " + id);
+        return DataElement.copy(s);
+    }
+
+    /**
+     * Remove a post by id.
+     * modifies this.categories this.all this.posts this.owners this.likes
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @return the removed post
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        E s = this.posts.remove(id);
+        if(s == null) throw new DataNotFoundException("post: " + id);
+        Category<E> c = this.owners.remove(id);
+        c.getContents().remove(s);
+        this.all.remove(s);
+        this.index.remove(s);
+        this.likes -= s.getNumlikes();
+        this.feed.publish(BoardEvent.Type.REMOVED, s, c.getFriends());
+        this.audit.record(AuditEvent.Type.REMOVE, this.owner, c.getCategory(), null, s.getId());
+        return s;
+    }
+
+    /**
+     * Get a copy of the posts with the given ids.
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the copies, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        ArrayList<E> l = new ArrayList<E>(ids.size());
+        for(long id : ids) {
+            E s = this.posts.get(id);
+            if(s == null) throw new DataNotFoundException("post: " + id);
+            l.add(DataElement.copy(s));
+        }
+        return l;
+    }
+
+    /**
+     * Remove the posts with the given ids, all of them or none.
+     * modifies this.categories this.all this.posts this.owners this.likes
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the removed posts, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists or an id appears twice
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        LinkedHashSet<Long> distinct = Batches.distinct(ids);
+        for(long id : distinct) {
+            if(!this.posts.containsKey(id)) throw new DataNotFoundException("post: " + id);
+        }
+        ArrayList<E> removed = new ArrayList<E>(distinct.size());
+        for(long id : distinct) {
+            E s = this.posts.remove(id);
+            Category<E> c = this.owners.remove(id);
+            c.getContents().remove(s);
+            this.all.remove(s);
+            this.index.remove(s);
+            this.likes -= s.getNumlikes();
+            this.feed.publish(BoardEvent.Type.REMOVED, s, c.getFriends());
+            this.audit.record(AuditEvent.Type.REMOVE, this.owner, c.getCategory(), null, s.getId());
+            removed.add(s);
+        }
+        return removed;
+    }
+
     /**
      * Get a List of posts in a category.
      * @param passw The password, must be a matching and valid password
@@ -287,12 +691,7 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
         DataValidator.validateCategory(category);
         this.checkPasswd(passw);
-        Category<E> toReturn = null;
-        for(Category<E> c : this.categories) {
-            if(c.getCategory().equals(category)) {
-                toReturn = c;
-            }
-        }
+        Category<E> toReturn = this.categories.get(category);
         if(toReturn == null) throw new DataNotFoundException("category: " + category);
         TreeSet<E> cts = toReturn.getContents();
         // this should not happen
@@ -302,6 +701,8 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
 
     /**
      * Add a like to a post.
+     * Only the categories shared with friend are visited.
+     * modifies this.categories this.all this.posts this.likes
      * @param dato The element to add to the category posts
      * @param friend The friend that liked the post
      * @throws DuplicateDataException if post was already liked by friend
@@ -315,29 +716,67 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     throws DuplicateDataException, InvalidDataException, DataNotFoundException {
         if(dato == null) throw new NullPointerException();
         E x = null;
-        Category<E> updated = null;
-        for(Category<E> c : this.categories) {
-            TreeSet<E> t = c.getContents();
-            if(c.getFriends().contains(friend) && t.contains(dato)) {
-                updated = c;
-                t.remove(dato);
-                x = (E) dato.clone();
-                try {
-                    x.addLike(friend);
-                } catch(Exception e) {
-                    t.add(x);
-                    throw e;
-                }
-                System.out.println("Just added like by " + friend + " to " + x.display());
-                t.add(x);
-                c.setContents(t);
+        for(Category<E> c : this.sharedWith(friend)) {
+            E s = this.find(c.getContents(), dato);
+            if(s != null) x = this.like(c, s, friend);
+        }
+        if(x == null) throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+    }
+
+    /**
+     * Add a like to a post by id.
+     * modifies this.categories this.all this.posts this.likes
+     * @param id The id of the post
+     * @param friend The friend that liked the post
+     * @throws DuplicateDataException if post was already liked by friend
+     * @throws DataNotFoundException if the post does not exists or friend can not see it
+     * @throws InvalidDataException if friend is invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        E s = this.posts.get(id);
+        Category<E> c = this.owners.get(id);
+        if(s == null || !this.sharedWith(friend).contains(c))
+            throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+        this.like(c, s, friend);
+    }
+
+    /**
+     * Add a list of likes by post id, all of them or none.
+     * The likes are grouped by post, so each post is replaced once in the sorted sets.
+     * modifies this.categories this.all this.posts this.likes
+     * @param likes The likes to add
+     * @throws DuplicateDataException if a post was already liked by a friend, or a like appears twice
+     * @throws DataNotFoundException if a post does not exists or its friend can not see it
+     * @throws InvalidDataException if a friend is invalid
+     * @throws NullPointerException if likes or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        if(likes == null) throw new NullPointerException();
+        LinkedHashMap<Long, ArrayList<String>> byPost = Batches.byPost(likes);
+        for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+            E s = this.posts.get(l.getKey());
+            Category<E> c = this.owners.get(l.getKey());
+            for(String friend : l.getValue()) {
+                if(s == null || !this.sharedWith(friend).contains(c))
+                    throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+                if(s.isLikedBy(friend)) throw new DuplicateDataException("like by: " + friend);
             }
         }
-        if(x == null || updated == null) throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+        for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+            this.likeAll(this.owners.get(l.getKey()), this.posts.get(l.getKey()), l.getValue());
+        }
     }
 
     /**
      * Get an iterator for all posts sorted by like number.
+     * The iterator is a view over the board index, nothing is copied:
+     * modifying the board while iterating throws ConcurrentModificationException.
      * @param passw The board password, must be a valid and matching password
      * @throws NullPointerException if data is corrupted
      * @throws InvalidDataException if password is invalid or data contents are invalid
@@ -348,19 +787,14 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     public Iterator<E> getIterator(String passw)
     throws UnauthorizedLoginException, InvalidDataException {
         this.checkPasswd(passw);
-        TreeSet <E> all = new TreeSet<E>();
-        for(Category<E> c : this.categories) {
-            for(E e : c.getContents()) {
-                all.add(e);
-            }
-        }
-
-        SortedSet<E> unmodifiableAll = Collections.unmodifiableSortedSet(all);
+        SortedSet<E> unmodifiableAll = Collections.unmodifiableSortedSet(this.all);
         return unmodifiableAll.iterator();
     }
 
     /**
-     * Get an iterator for all posts accessible by a friend.
+     * Get an iterator for all posts accessible by a friend, sorted by like number.
+     * The categories shared with friend are merged lazily, nothing is copied:
+     * modifying the board while iterating throws ConcurrentModificationException.
      * @param friend The friend, must be a  valid and matching username
      * @throws NullPointerException if data is corrupted
      * @throws InvalidDataException if password is invalid or data contents are invalid
@@ -370,15 +804,193 @@ public class Board2 <E extends DataElement> implements DataBoard<E> {
     public Iterator<E> getFriendIterator(String friend)
     throws InvalidDataException {
         DataValidator.validateUser(friend);
-        ArrayList <E> all = new ArrayList<E>();
-        for(Category<E> c : this.categories) {
-            if(c.getFriends().contains(friend)) {
-                for(E e : c.getContents()) {
-                    all.add(e);
-                }
-            }
+        ArrayList<TreeSet<E>> visible = new ArrayList<TreeSet<E>>();
+        for(Category<E> c : this.sharedWith(friend)) {
+            visible.add(c.getContents());
         }
-        List<E> unmodifiableAll = Collections.unmodifiableList(all);
-        return unmodifiableAll.iterator();
+        return new MergeIterator<E>(visible);
+    }
+
+    /**
+     * Get the k posts with most likes.
+     * Only the first k entries of the board index are visited.
+     * @param passw The board password, must be a valid and matching password
+     * @param k The number of posts
+     * @throws InvalidDataException if password is invalid or k is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Feeds.validateSize(k);
+        return Feeds.first(this.all.iterator(), k);
+    }
+
+    /**
+     * Get the k posts with most likes accessible by a friend.
+     * @param friend The friend, must be a valid username
+     * @param k The number of posts
+     * @throws InvalidDataException if friend is invalid or k is negative
+     */
+    @Override
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        Feeds.validateSize(k);
+        return Feeds.first(this.getFriendIterator(friend), k);
+    }
+
+    /**
+     * Get a page of all posts sorted by like number.
+     * The page starts with a lookup in the board index, in O(log n + size).
+     * @param passw The board password, must be a valid and matching password
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if password is invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        return Feeds.page(Feeds.after(this.all, cursor).iterator(), size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend, sorted by like number.
+     * Each shared category is entered after cursor and merged lazily.
+     * @param friend The friend, must be a valid username
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend is invalid or size is negative
+     */
+    @Override
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        Feeds.validateSize(size);
+        ArrayList<SortedSet<E>> visible = new ArrayList<SortedSet<E>>();
+        for(Category<E> c : this.sharedWith(friend)) {
+            visible.add(Feeds.after(c.getContents(), cursor));
+        }
+        return Feeds.page(new MergeIterator<E>(visible), size);
+    }
+
+    /**
+     * Get a page of the posts in a category, sorted by like number.
+     * @param passw The board password, must be a valid and matching password
+     * @param category The category name, must be a valid category name
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category or password are invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        Category<E> toReturn = this.categories.get(category);
+        if(toReturn == null) throw new DataNotFoundException("category: " + category);
+        return Feeds.page(Feeds.after(toReturn.getContents(), cursor).iterator(), size);
+    }
+
+    /**
+     * Get a page of the posts containing all the words of a query, sorted by like number.
+     * @param passw The board password, must be a valid and matching password
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if query or password are invalid, query has no words or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        String[] terms = TextIndex.query(query);
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        return TextIndex.rank(this.index.match(terms), this.posts::get, e -> true, cursor, size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend containing all the words of a query,
+     * sorted by like number. The category of each match is found through owners.
+     * @param friend The friend, must be a valid username
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend or query are invalid, query has no words or size is negative
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        String[] terms = TextIndex.query(query);
+        Feeds.validateSize(size);
+        Set<Category<E>> cats = this.sharedWith(friend);
+        return TextIndex.rank(this.index.match(terms), this.posts::get, e -> cats.contains(this.owners.get(e.getId())),
+            cursor, size);
+    }
+
+    /**
+     * Subscribe a friend to the changes of the categories shared with it,
+     * as they are shared when each change happens.
+     * modifies this.feed
+     * @param friend The friend, must be a valid username
+     * @param capacity The size of the queue of the subscription, must be positive
+     * @param executor Runs listener
+     * @param listener Receives the events
+     * @return the subscription
+     * @throws InvalidDataException if friend or capacity are invalid
+     * @throws NullPointerException if executor or listener are null
+     */
+    @Override
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        return this.feed.subscribe(friend, capacity, executor, listener);
+    }
+
+    /**
+     * Get the changes of the posts accessible by a friend since a version,
+     * or its whole feed if the version is not in the log of feed or the categories
+     * shared with the friend changed after it.
+     * @param friend The friend, must be a valid username
+     * @param version The version of the last changes the friend applied
+     * @return the changes and the new version
+     * @throws InvalidDataException if friend is invalid
+     */
+    @Override
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        Set<Category<E>> cats = this.sharedWith(friend);
+        Changes<E> c = this.feed.changesSince(SymbolTable.USERS.lookup(friend), version,
+            cat -> cats.contains(this.categories.get(SymbolTable.CATEGORIES.name(cat))), this.posts::get);
+        if(c != null) return c;
+        long now = this.feed.version();
+        ArrayList<E> l = new ArrayList<E>();
+        for(Iterator<E> it = this.getFriendIterator(friend); it.hasNext(); ) l.add(it.next());
+        return new Changes<E>(now, true, l, new ArrayList<Long>());
+    }
+
+    @Override
+    public int getCategoryCount() {
+        return this.categories.size();
+    }
+
+    @Override
+    public int getPostCount() {
+        return this.posts.size();
+    }
+
+    @Override
+    public long getLikeCount() {
+        return this.likes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package org.unipisa.pr2cheli;
+
+/**
+ * A change of a board seen by a friend subscribed with DataBoard.subscribe.
+ * The post is a copy taken when the change happened, later changes do not affect it.
+ *
+ * Representation Invariant: type != null, post == null iff type == OVERFLOW
+ */
+public class BoardEvent<E extends DataElement> {
+    public enum Type {
+        /** a post was added to a category shared with the friend */
+        ADDED,
+        /** a post was removed, by itself or with its category */
+        REMOVED,
+        /** a post got new likes, the post carries the new count */
+        LIKED,
+        /** events were dropped because the queue of the subscriber was full,
+         * the friend should fetch the feed again */
+        OVERFLOW
+    }
+
+    private final Type type;
+    private final E post;
+
+    BoardEvent(Type type, E post) {
+        this.type = type;
+        this.post = post;
+    }
+
+    /**
+     * @return what happened
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * @return the post as it is after the change, as it was before a removal,
+     * null for OVERFLOW
+     */
+    public E getPost() {
+        return this.post;
+    }
+
+    @Override
+    public String toString() {
+        return this.post == null ? this.type.toString() : this.type + " " + this.post.display();
+    }
+}
@@ -0,0 +1,23 @@
+package org.unipisa.pr2cheli;
+
+/**
+ * Sizes of a board, cheap enough to be polled by monitoring while the board is in use:
+ * they are kept up to date by the operations, reading them never walks nor locks the board.
+ * A board that is not thread safe may report a slightly stale value to another thread.
+ */
+public interface BoardGauges {
+    /**
+     * @return the number of categories
+     */
+    public int getCategoryCount();
+
+    /**
+     * @return the number of posts
+     */
+    public int getPostCount();
+
+    /**
+     * @return the number of likes of all the posts
+     */
+    public long getLikeCount();
+}
@@ -0,0 +1,14 @@
+package org.unipisa.pr2cheli;
+
+/**
+ * Receives the events of a subscription, one at a time and in the order they were queued,
+ * on the executor given to DataBoard.subscribe.
+ */
+@FunctionalInterface
+public interface BoardListener<E extends DataElement> {
+    /**
+     * @param event the change, a RuntimeException thrown here is counted and the next
+     * events are still delivered
+     */
+    public void onEvent(BoardEvent<E> event);
+}
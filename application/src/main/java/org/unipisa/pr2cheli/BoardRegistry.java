@@ -0,0 +1,317 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * The boards of many owners, one board per owner.
+ * Owners are spread by hash over a power of two number of partitions, each one with its
+ * own map and lock: creations, lookups and evictions of owners in different partitions
+ * never contend, and a partition lock is only held for a map access.
+ * Each board has its own lock too, withBoard() runs an operation holding it, so boards
+ * that are not thread safe (Board, Board2) can be shared by many threads and operations
+ * on different boards run in parallel.
+ *
+ * Representation Invariant: partitions.size() is a power of two, every owner is in
+ *  the partition of index(owner) only, an evicted entry is in no partition
+ */
+public class BoardRegistry<E extends DataElement> {
+    /**
+     * Creates the board of an owner on first use.
+     */
+    @FunctionalInterface
+    public interface Factory<E extends DataElement> {
+        /**
+         * @param owner a username
+         * @param passw the password of the new board
+         * @throws InvalidDataException if owner or passw are invalid
+         */
+        public DataBoard<E> create(String owner, String passw) throws InvalidDataException;
+    }
+
+    /**
+     * An operation on a board, run by withBoard() holding the lock of the board.
+     */
+    @FunctionalInterface
+    public interface Operation<E extends DataElement, R> {
+        public R apply(DataBoard<E> board)
+        throws DataNotFoundException, DuplicateDataException, InvalidDataException, UnauthorizedLoginException;
+    }
+
+    /**
+     * A board and its lock, which also guards evicted.
+     */
+    private static class Entry<E extends DataElement> {
+        final DataBoard<E> board;
+        boolean evicted;
+
+        Entry(DataBoard<E> board) {
+            this.board = board;
+        }
+    }
+
+    /**
+     * A shard of the registry, its fields are guarded by its monitor.
+     */
+    private static class Partition<E extends DataElement> {
+        final HashMap<String, Entry<E>> boards = new HashMap<String, Entry<E>>();
+        long lookups;
+        long misses;
+        long created;
+        long evicted;
+    }
+
+    /**
+     * Counters summed over the partitions, each partition is read consistently
+     * but the partitions are read one after the other.
+     */
+    public static class Stats {
+        private final int partitions;
+        private final long boards;
+        private final long lookups;
+        private final long misses;
+        private final long created;
+        private final long evicted;
+
+        Stats(int partitions, long boards, long lookups, long misses, long created, long evicted) {
+            this.partitions = partitions;
+            this.boards = boards;
+            this.lookups = lookups;
+            this.misses = misses;
+            this.created = created;
+            this.evicted = evicted;
+        }
+
+        /** @return the number of partitions */
+        public int getPartitions() {
+            return this.partitions;
+        }
+
+        /** @return the number of resident boards */
+        public long getBoards() {
+            return this.boards;
+        }
+
+        /** @return the number of lookups, including those creating the board */
+        public long getLookups() {
+            return this.lookups;
+        }
+
+        /** @return the number of lookups of an owner without a board */
+        public long getMisses() {
+            return this.misses;
+        }
+
+        /** @return the number of boards created */
+        public long getCreated() {
+            return this.created;
+        }
+
+        /** @return the number of boards evicted */
+        public long getEvicted() {
+            return this.evicted;
+        }
+
+        @Override
+        public String toString() {
+            return this.boards + " boards in " + this.partitions + " partitions, " + this.lookups + " lookups ("
+                + this.misses + " misses), " + this.created + " created, " + this.evicted + " evicted";
+        }
+    }
+
+    private final ArrayList<Partition<E>> partitions;
+    private final Factory<E> factory;
+
+    /**
+     * A registry with 16 partitions per available processor.
+     * @param factory creates the boards
+     */
+    public BoardRegistry(Factory<E> factory) {
+        this(16 * Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    /**
+     * @param partitions the number of partitions, rounded up to a power of two
+     * @param factory creates the boards
+     * @throws IllegalArgumentException if partitions is not positive
+     * @throws NullPointerException if factory is null
+     */
+    public BoardRegistry(int partitions, Factory<E> factory) {
+        if(partitions <= 0) throw new IllegalArgumentException("partitions " + partitions);
+        if(factory == null) throw new NullPointerException();
+        int n = Integer.highestOneBit(partitions);
+        if(n < partitions) n <<= 1;
+        this.partitions = new ArrayList<Partition<E>>(n);
+        for(int i = 0; i < n; i++) this.partitions.add(new Partition<E>());
+        this.factory = factory;
+    }
+
+    private Partition<E> partition(String owner) {
+        int h = owner.hashCode() * 0x9E3779B9;
+        return this.partitions.get((h ^ (h >>> 16)) & (this.partitions.size() - 1));
+    }
+
+    private Entry<E> entry(String owner) throws DataNotFoundException {
+        if(owner == null) throw new NullPointerException();
+        Partition<E> p = this.partition(owner);
+        synchronized(p) {
+            p.lookups++;
+            Entry<E> e = p.boards.get(owner);
+            if(e == null) {
+                p.misses++;
+                throw new DataNotFoundException("board of: " + owner);
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Create the board of owner.
+     * modifies this
+     * @param owner a valid username
+     * @param passw the password of the board
+     * @return the new board
+     * @throws DuplicateDataException if owner already has a board
+     * @throws InvalidDataException if owner or passw are invalid
+     */
+    public DataBoard<E> create(String owner, String passw) throws DuplicateDataException, InvalidDataException {
+        if(owner == null) throw new NullPointerException();
+        // the board is built outside the lock, the partition is only locked to publish it
+        DataBoard<E> board = this.factory.create(owner, passw);
+        Partition<E> p = this.partition(owner);
+        synchronized(p) {
+            if(p.boards.containsKey(owner)) throw new DuplicateDataException("board of: " + owner);
+            p.boards.put(owner, new Entry<E>(board));
+            p.created++;
+        }
+        return board;
+    }
+
+    /**
+     * Get the board of owner, creating it with passw if owner has none.
+     * The password of an existing board is not checked here, its operations check it.
+     * modifies this
+     * @param owner a valid username
+     * @param passw the password of the board if it is created
+     * @return the board of owner
+     * @throws InvalidDataException if the board is created and owner or passw are invalid
+     */
+    public DataBoard<E> getOrCreate(String owner, String passw) throws InvalidDataException {
+        if(owner == null) throw new NullPointerException();
+        Partition<E> p = this.partition(owner);
+        synchronized(p) {
+            p.lookups++;
+            Entry<E> e = p.boards.get(owner);
+            if(e != null) return e.board;
+            p.misses++;
+        }
+        DataBoard<E> board = this.factory.create(owner, passw);
+        synchronized(p) {
+            // another thread may have created it meanwhile, its board wins
+            Entry<E> e = p.boards.get(owner);
+            if(e != null) return e.board;
+            p.boards.put(owner, new Entry<E>(board));
+            p.created++;
+        }
+        return board;
+    }
+
+    /**
+     * Get the board of owner. The board is shared: unless it is thread safe
+     * it must only be used through withBoard().
+     * @param owner a username
+     * @return the board of owner
+     * @throws DataNotFoundException if owner has no board
+     */
+    public DataBoard<E> get(String owner) throws DataNotFoundException {
+        return this.entry(owner).board;
+    }
+
+    /**
+     * Run an operation on the board of owner holding the lock of the board,
+     * operations on the same board are serialized.
+     * @param owner a username
+     * @param op the operation, must not keep the board
+     * @return the result of op
+     * @throws DataNotFoundException if owner has no board, or thrown by op
+     * @throws DuplicateDataException if thrown by op
+     * @throws InvalidDataException if thrown by op
+     * @throws UnauthorizedLoginException if thrown by op
+     */
+    public <R> R withBoard(String owner, Operation<E, R> op)
+    throws DataNotFoundException, DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        Entry<E> e = this.entry(owner);
+        synchronized(e) {
+            // evicted after the lookup, its changes would be lost
+            if(e.evicted) throw new DataNotFoundException("board of: " + owner);
+            return op.apply(e.board);
+        }
+    }
+
+    /**
+     * Remove the board of owner, once the operations running on it through withBoard()
+     * are complete: the caller can then save it.
+     * modifies this
+     * @param owner a username
+     * @return the evicted board
+     * @throws DataNotFoundException if owner has no board
+     */
+    public DataBoard<E> evict(String owner) throws DataNotFoundException {
+        if(owner == null) throw new NullPointerException();
+        Partition<E> p = this.partition(owner);
+        Entry<E> e;
+        synchronized(p) {
+            e = p.boards.remove(owner);
+            if(e == null) throw new DataNotFoundException("board of: " + owner);
+            p.evicted++;
+        }
+        synchronized(e) {
+            e.evicted = true;
+        }
+        return e.board;
+    }
+
+    /**
+     * @param owner a username
+     * @return true if owner has a board
+     */
+    public boolean contains(String owner) {
+        if(owner == null) throw new NullPointerException();
+        Partition<E> p = this.partition(owner);
+        synchronized(p) {
+            return p.boards.containsKey(owner);
+        }
+    }
+
+    /**
+     * @return the number of resident boards
+     */
+    public long size() {
+        long n = 0;
+        for(Partition<E> p : this.partitions) {
+            synchronized(p) {
+                n += p.boards.size();
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return the counters of the registry, summed over the partitions
+     */
+    public Stats stats() {
+        long boards = 0, lookups = 0, misses = 0, created = 0, evicted = 0;
+        for(Partition<E> p : this.partitions) {
+            synchronized(p) {
+                boards += p.boards.size();
+                lookups += p.lookups;
+                misses += p.misses;
+                created += p.created;
+                evicted += p.evicted;
+            }
+        }
+        return new Stats(this.partitions.size(), boards, lookups, misses, created, evicted);
+    }
+}
@@ -0,0 +1,378 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * The state of a VersionedBoard after one of its changes, immutable.
+ * Every read of the board is made on the version current when it starts, and
+ * VersionedBoard.view() hands out the version itself for a series of reads that must
+ * agree with each other. Reading a version takes no lock and never sees the changes made
+ * after it, however long it lasts: its iterators can be walked while the board is written.
+ * A version shares with the following ones all that they did not change, and is reclaimed
+ * by the garbage collector once no reader holds it or one of its iterators.
+ * Reads are consistent across the whole board, not per category as in ConcurrentBoard.
+ *
+ * Representation Invariant: categories maps the id in SymbolTable.CATEGORIES of each
+ *  category to its state, posts maps the id of every post to the post as stored in the
+ *  posts of its category, which like a TreeSet keep only the first of the posts comparing
+ *  equal (same likes, category and text) that reached them, shared maps the id in SymbolTable.USERS of each friend to the
+ *  sorted ids of the categories whose friends contain it and has no empty arrays,
+ *  terms maps the id in words of each term of the text of a post in posts to the ids of
+ *  the posts containing it, each mapped to itself, and has no empty values,
+ *  likes is the sum of the likes of the posts
+ */
+public class BoardVersion<E extends DataElement> implements BoardGauges {
+    /**
+     * A category as it is in a version: posts sorted by DataElement.compareTo and the friends.
+     * Neither is modified once the version is published, a change copies them.
+     */
+    static final class CategoryVersion<E extends DataElement> {
+        final String name;
+        final int id;
+        final E[] posts;
+        final IntSet friends;
+
+        @SuppressWarnings("unchecked")
+        CategoryVersion(String name) {
+            this(name, SymbolTable.CATEGORIES.intern(name), (E[]) new DataElement[0], new IntSet());
+        }
+
+        private CategoryVersion(String name, int id, E[] posts, IntSet friends) {
+            this.name = name;
+            this.id = id;
+            this.posts = posts;
+            this.friends = friends;
+        }
+
+        CategoryVersion<E> withPosts(E[] posts) {
+            return new CategoryVersion<E>(this.name, this.id, posts, this.friends);
+        }
+
+        CategoryVersion<E> withFriends(IntSet friends) {
+            return new CategoryVersion<E>(this.name, this.id, this.posts, friends);
+        }
+
+        /**
+         * @return the stored post comparing equal to dato, null if none
+         */
+        E find(E dato) {
+            int i = Arrays.binarySearch(this.posts, dato);
+            return i < 0 ? null : this.posts[i];
+        }
+
+        /**
+         * @return a copy of the posts with x inserted in order
+         */
+        E[] plus(E x) {
+            int i = -Arrays.binarySearch(this.posts, x) - 1;
+            E[] a = Arrays.copyOf(this.posts, this.posts.length + 1);
+            System.arraycopy(this.posts, i, a, i + 1, this.posts.length - i);
+            a[i] = x;
+            return a;
+        }
+
+        /**
+         * @return a copy of the posts without s, the posts themselves if none compares equal to s
+         */
+        E[] minus(E s) {
+            int i = Arrays.binarySearch(this.posts, s);
+            if(i < 0) return this.posts;
+            E[] a = Arrays.copyOf(this.posts, this.posts.length - 1);
+            System.arraycopy(this.posts, i + 1, a, i, a.length - i);
+            return a;
+        }
+
+        /**
+         * Replace a post with a copy that sorts elsewhere, moving only the posts in between.
+         * If another post compares equal to x it stays and x is left out, as a TreeSet does.
+         * @return a copy of the posts with x in place of s
+         */
+        E[] replaced(E s, E x) {
+            int to = Arrays.binarySearch(this.posts, x);
+            if(to >= 0) return this.minus(s);
+            to = -to - 1;
+            E[] a = this.posts.clone();
+            int from = Arrays.binarySearch(a, s);
+            if(from < 0) return this.plus(x);
+            if(to > from) {
+                to--;
+                System.arraycopy(a, from + 1, a, from, to - from);
+            } else {
+                System.arraycopy(a, to, a, to + 1, from - to);
+            }
+            a[to] = x;
+            return a;
+        }
+
+        /**
+         * @param sorted posts not in this category, sorted
+         * @return a copy of the posts merged with sorted
+         */
+        E[] merged(List<E> sorted) {
+            E[] a = Arrays.copyOf(this.posts, this.posts.length + sorted.size());
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while(j < sorted.size()) {
+                if(i < this.posts.length && this.posts[i].compareTo(sorted.get(j)) < 0) a[k++] = this.posts[i++];
+                else a[k++] = sorted.get(j++);
+            }
+            while(i < this.posts.length) a[k++] = this.posts[i++];
+            return a;
+        }
+
+        /**
+         * @return the posts strictly after cursor, as a view of the array in O(log n)
+         */
+        List<E> after(Cursor cursor) {
+            List<E> l = Arrays.asList(this.posts);
+            if(cursor == null) return l;
+            DataElement probe = cursor.probe();
+            if(probe == null) return l.subList(l.size(), l.size());
+            int i = Arrays.binarySearch(this.posts, probe);
+            return l.subList(i < 0 ? -i - 1 : i + 1, l.size());
+        }
+    }
+
+    private final long number;
+    final IdTrie<CategoryVersion<E>> categories;
+    final IdTrie<E> posts;
+    final IdTrie<int[]> shared;
+    final SymbolTable words;
+    final IdTrie<IdTrie<Long>> terms;
+    private final long likes;
+
+    BoardVersion(long number, IdTrie<CategoryVersion<E>> categories, IdTrie<E> posts, IdTrie<int[]> shared,
+        SymbolTable words, IdTrie<IdTrie<Long>> terms, long likes) {
+        this.number = number;
+        this.categories = categories;
+        this.posts = posts;
+        this.shared = shared;
+        this.words = words;
+        this.terms = terms;
+        this.likes = likes;
+    }
+
+    /**
+     * @return the number of the version, one more for each change of the board
+     */
+    public long getNumber() {
+        return this.number;
+    }
+
+    /**
+     * @return the category named name, null if it does not exist
+     */
+    CategoryVersion<E> category(String name) {
+        int id = SymbolTable.CATEGORIES.lookup(name);
+        return id < 0 ? null : this.categories.get(id);
+    }
+
+    /**
+     * @return the categories friend can see, in order of id
+     */
+    List<CategoryVersion<E>> sharedWith(String friend) {
+        int user = SymbolTable.USERS.lookup(friend);
+        int[] ids = user < 0 ? null : this.shared.get(user);
+        if(ids == null) return Collections.<CategoryVersion<E>>emptyList();
+        ArrayList<CategoryVersion<E>> l = new ArrayList<CategoryVersion<E>>(ids.length);
+        for(int id : ids) l.add(this.categories.get(id));
+        return l;
+    }
+
+    /**
+     * @return the posts of every category, each sorted
+     */
+    private List<List<E>> sources(Cursor cursor) {
+        ArrayList<List<E>> l = new ArrayList<List<E>>(this.categories.size());
+        this.categories.forEach(c -> l.add(c.after(cursor)));
+        return l;
+    }
+
+    private List<List<E>> sharedSources(String friend, Cursor cursor) throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        List<CategoryVersion<E>> cats = this.sharedWith(friend);
+        ArrayList<List<E>> l = new ArrayList<List<E>>(cats.size());
+        for(CategoryVersion<E> c : cats) l.add(c.after(cursor));
+        return l;
+    }
+
+    /**
+     * @param query terms returned by TextIndex.query
+     * @return the ids of the posts containing all of them, walking the rarest term
+     */
+    private long[] match(String[] query) {
+        ArrayList<IdTrie<Long>> ps = new ArrayList<IdTrie<Long>>(query.length);
+        for(String t : query) {
+            int term = this.words.lookup(t);
+            IdTrie<Long> p = term < 0 ? null : this.terms.get(term);
+            if(p == null) return new long[0];
+            ps.add(p);
+        }
+        ps.sort((a, b) -> a.size() - b.size());
+        long[] ids = new long[ps.get(0).size()];
+        int[] n = new int[1];
+        ps.get(0).forEach(id -> {
+            for(int j = 1; j < ps.size(); j++) if(ps.get(j).get(id) == null) return;
+            ids[n[0]++] = id;
+        });
+        return Arrays.copyOf(ids, n[0]);
+    }
+
+    /**
+     * Get a copy of a post by id.
+     * @param id The id of the post
+     * @throws DataNotFoundException if the post does not exists
+     */
+    public E get(long id) throws DataNotFoundException {
+        E s = this.posts.get(id);
+        if(s == null) throw new DataNotFoundException("post: " + id);
+        return DataElement.copy(s);
+    }
+
+    /**
+     * Get a List of posts in a category.
+     * @param category The category name, must be a valid category name
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category is invalid
+     */
+    public List<E> getDataCategory(String category) throws DataNotFoundException, InvalidDataException {
+        DataValidator.validateCategory(category);
+        CategoryVersion<E> c = this.category(category);
+        if(c == null) throw new DataNotFoundException("category: " + category);
+        return new ArrayList<E>(Arrays.asList(c.posts));
+    }
+
+    /**
+     * Get an iterator (without remove) for all posts sorted by like number,
+     * merging the categories lazily.
+     */
+    public Iterator<E> getIterator() {
+        return new MergeIterator<E>(this.sources(null));
+    }
+
+    /**
+     * Get an iterator (without remove) for all posts accessible by a friend, sorted by like number.
+     * @param friend The friend, must be a valid username
+     * @throws InvalidDataException if friend is invalid
+     */
+    public Iterator<E> getFriendIterator(String friend) throws InvalidDataException {
+        return new MergeIterator<E>(this.sharedSources(friend, null));
+    }
+
+    /**
+     * Get the k posts with most likes.
+     * @param k The number of posts
+     * @throws InvalidDataException if k is negative
+     */
+    public List<E> getTopK(int k) throws InvalidDataException {
+        Feeds.validateSize(k);
+        return Feeds.first(this.getIterator(), k);
+    }
+
+    /**
+     * Get the k posts with most likes accessible by a friend.
+     * @param friend The friend, must be a valid username
+     * @param k The number of posts
+     * @throws InvalidDataException if friend is invalid or k is negative
+     */
+    public List<E> getFriendTopK(String friend, int k) throws InvalidDataException {
+        return this.getFriendPage(friend, null, k).getItems();
+    }
+
+    /**
+     * Get a page of all posts sorted by like number.
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if size is negative
+     */
+    public Page<E> getPage(Cursor cursor, int size) throws InvalidDataException {
+        Feeds.validateSize(size);
+        return Feeds.page(new MergeIterator<E>(this.sources(cursor)), size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend, sorted by like number.
+     * @param friend The friend, must be a valid username
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend is invalid or size is negative
+     */
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size) throws InvalidDataException {
+        Feeds.validateSize(size);
+        return Feeds.page(new MergeIterator<E>(this.sharedSources(friend, cursor)), size);
+    }
+
+    /**
+     * Get a page of the posts in a category, sorted by like number.
+     * @param category The category name, must be a valid category name
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category is invalid or size is negative
+     */
+    public Page<E> getCategoryPage(String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException {
+        DataValidator.validateCategory(category);
+        Feeds.validateSize(size);
+        CategoryVersion<E> c = this.category(category);
+        if(c == null) throw new DataNotFoundException("category: " + category);
+        return Feeds.page(c.after(cursor).iterator(), size);
+    }
+
+    /**
+     * Get a page of the posts containing all the words of a query, sorted by like number.
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if query is invalid or has no words, or size is negative
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    public Page<E> search(String query, Cursor cursor, int size) throws InvalidDataException {
+        String[] terms = TextIndex.query(query);
+        Feeds.validateSize(size);
+        return TextIndex.rank(this.match(terms), this.posts::get, e -> true, cursor, size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend containing all the words of a query,
+     * sorted by like number.
+     * @param friend The friend, must be a valid username
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend or query are invalid, query has no words or size is negative
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size) throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        String[] terms = TextIndex.query(query);
+        Feeds.validateSize(size);
+        int user = SymbolTable.USERS.lookup(friend);
+        int[] cats = user < 0 ? null : this.shared.get(user);
+        if(cats == null) return new Page<E>(new ArrayList<E>(), null);
+        return TextIndex.rank(this.match(terms), this.posts::get,
+            e -> Arrays.binarySearch(cats, e.getCategoryId()) >= 0, cursor, size);
+    }
+
+    @Override
+    public int getCategoryCount() {
+        return this.categories.size();
+    }
+
+    @Override
+    public int getPostCount() {
+        return this.posts.size();
+    }
+
+    @Override
+    public long getLikeCount() {
+        return this.likes;
+    }
+}
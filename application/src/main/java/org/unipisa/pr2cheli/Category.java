@@ -1,24 +1,24 @@
 package org.unipisa.pr2cheli;
 
+import java.util.ArrayList;
 import java.util.TreeSet;
-import java.util.HashSet;
 
 /**
  * Category class for 2nd implementation (Board2).
  * contents and friends must not be null.
  * The values of contents are sorted by likes and valid posts.
  * Each value in contents contains the category in which it resides.
- * The values or friends are empty or contain only valid usernames.
+ * friends contains the ids in SymbolTable.USERS of valid usernames.
  */
 public class Category<E extends DataElement> {
     private String category;
     private TreeSet<E> contents;
-    private HashSet<String> friends;
+    private IntSet friends;
 
     public Category(String name) {
         this.category = name;
         this.contents = new TreeSet<E>();
-        this.friends = new HashSet<String>();
+        this.friends = new IntSet();
     }
 
     /**
@@ -36,12 +36,31 @@ public class Category<E extends DataElement> {
     }
 
     /**
-     * @return the friends
+     * @return the ids of the friends in SymbolTable.USERS
      */
-    public HashSet<String> getFriends() {
+    public IntSet getFriends() {
         return friends;
     }
 
+    /**
+     * @param friend a username
+     * @return true if friend is a friend of the category
+     */
+    public boolean hasFriend(String friend) {
+        return this.friends.contains(SymbolTable.USERS.lookup(friend));
+    }
+
+    /**
+     * @return a new list of the usernames of the friends
+     */
+    public ArrayList<String> getFriendNames() {
+        ArrayList<String> l = new ArrayList<String>(this.friends.size());
+        for(int user : this.friends.toArray()) {
+            l.add(SymbolTable.USERS.name(user));
+        }
+        return l;
+    }
+
     /**
      * @param category the category to set
      */
@@ -59,7 +78,7 @@ public class Category<E extends DataElement> {
     /**
      * @param friends the friends to set
      */
-    public void setFriends(HashSet<String> friends) {
+    public void setFriends(IntSet friends) {
         this.friends = friends;
     }
 
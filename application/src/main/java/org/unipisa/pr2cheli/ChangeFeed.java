@@ -0,0 +1,378 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+import java.util.function.LongFunction;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * The subscriptions to the changes of a board.
+ * The board publishes every change with the friends of the category it happened in, the
+ * event is offered to the bounded queue of each subscription of those friends and the
+ * queue is drained on the executor of the subscription. Publishing never waits:
+ * when a queue is full the event is dropped and the subscriber gets an OVERFLOW event
+ * instead, and with no subscriptions publish() returns without allocating.
+ * The feed also numbers the changes with a version and keeps the last LOG_SIZE of them
+ * in a ring, for friends who ask for the changes since the version they last saw.
+ * Changes in categories without friends take a version but no slot and do not take the
+ * monitor of the feed, so with no friends and no subscriptions publishing a change costs
+ * an atomic increment. A change of what a friend can see is logged as a sharing change
+ * that makes it start over.
+ * Thread safe: ConcurrentBoard publishes from many threads at once.
+ *
+ * Representation Invariant: subscribers maps the id of a friend to a non empty list of
+ *  its subscriptions that are not cancelled, never modified once in the map, count is the
+ *  total size of the lists.
+ *  The log fields are guarded by the monitor of the feed and a logged change takes its
+ *  version holding it: the size slots before head, included, hold changes of increasing
+ *  version <= version going forward, and every logged change of version > floor is in them
+ */
+class ChangeFeed<E extends DataElement> {
+    /* Events delivered per run on the executor, so that a busy subscription does not hold a thread */
+    private static final int BURST = 256;
+    /* Changes kept for changesSince */
+    private static final int LOG_SIZE = 4096;
+    private static final byte ADDED = (byte)BoardEvent.Type.ADDED.ordinal();
+    private static final byte REMOVED = (byte)BoardEvent.Type.REMOVED.ordinal();
+    private static final byte SHARING = -1;
+
+    private final ConcurrentHashMap<Integer, List<Subscriber<E>>> subscribers;
+    private volatile int count;
+    /* The log: parallel arrays used as a ring, sharing changes have type SHARING */
+    private long[] versions;
+    private long[] ids;
+    private int[] targets;
+    private byte[] types;
+    private int head;
+    private int size;
+    private final AtomicLong version;
+    private long floor;
+
+    ChangeFeed() {
+        this.subscribers = new ConcurrentHashMap<Integer, List<Subscriber<E>>>();
+        this.count = 0;
+        this.versions = new long[0];
+        this.ids = new long[0];
+        this.targets = new int[0];
+        this.types = new byte[0];
+        // versions start at a random point, a version of another instance of the board,
+        // before a restart, is almost surely out of the log and gets a resync
+        this.version = new AtomicLong((long)ThreadLocalRandom.current().nextInt(1, 1 << 30) << 32);
+        this.floor = this.version.get();
+    }
+
+    /**
+     * A subscription: its queue and the state of its delivery.
+     */
+    private static class Subscriber<E extends DataElement> implements Subscription, Runnable {
+        final ChangeFeed<E> feed;
+        final int friend;
+        final ArrayBlockingQueue<BoardEvent<E>> queue;
+        final Executor executor;
+        final BoardListener<E> listener;
+        /* true while a run is submitted to the executor or running */
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        /* true if events were dropped since the last OVERFLOW was delivered */
+        final AtomicBoolean overflow = new AtomicBoolean();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        volatile boolean cancelled;
+
+        Subscriber(ChangeFeed<E> feed, int friend, int capacity, Executor executor, BoardListener<E> listener) {
+            this.feed = feed;
+            this.friend = friend;
+            this.queue = new ArrayBlockingQueue<BoardEvent<E>>(capacity);
+            this.executor = executor;
+            this.listener = listener;
+        }
+
+        void offer(BoardEvent<E> event) {
+            if(this.cancelled) return;
+            if(!this.queue.offer(event)) {
+                this.dropped.incrementAndGet();
+                this.overflow.set(true);
+            }
+            this.schedule();
+        }
+
+        private void schedule() {
+            if(!this.scheduled.compareAndSet(false, true)) return;
+            try {
+                this.executor.execute(this);
+            } catch(RejectedExecutionException e) {
+                // the executor is shut down, nobody will ever drain the queue
+                this.scheduled.set(false);
+                this.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for(int i = 0; i < BURST && !this.cancelled; i++) {
+                    BoardEvent<E> e;
+                    if(this.overflow.getAndSet(false)) e = new BoardEvent<E>(BoardEvent.Type.OVERFLOW, null);
+                    else e = this.queue.poll();
+                    if(e == null) break;
+                    try {
+                        this.listener.onEvent(e);
+                    } catch(RuntimeException x) {
+                        this.failures.incrementAndGet();
+                    }
+                }
+            } finally {
+                this.scheduled.set(false);
+            }
+            // events offered after the last poll found the run still scheduled
+            if(!this.cancelled && (!this.queue.isEmpty() || this.overflow.get())) this.schedule();
+        }
+
+        @Override
+        public void cancel() {
+            if(this.cancelled) return;
+            this.cancelled = true;
+            this.feed.remove(this);
+            this.queue.clear();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        @Override
+        public long getDropped() {
+            return this.dropped.get();
+        }
+
+        @Override
+        public int getPending() {
+            return this.queue.size();
+        }
+
+        @Override
+        public long getFailures() {
+            return this.failures.get();
+        }
+    }
+
+    /**
+     * Subscribe a friend to the changes of the categories it can see when they happen.
+     * modifies this
+     * @param friend a username
+     * @param capacity the size of the queue of the subscription, must be positive
+     * @param executor runs the listener
+     * @param listener receives the events
+     * @return the subscription
+     * @throws InvalidDataException if friend or capacity are invalid
+     * @throws NullPointerException if executor or listener are null
+     */
+    Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        if(capacity <= 0) throw new InvalidDataException("Invalid queue capacity");
+        if(executor == null || listener == null) throw new NullPointerException();
+        int user = SymbolTable.USERS.intern(friend);
+        Subscriber<E> s = new Subscriber<E>(this, user, capacity, executor, listener);
+        synchronized(this) {
+            List<Subscriber<E>> old = this.subscribers.get(user);
+            ArrayList<Subscriber<E>> a = old == null ? new ArrayList<Subscriber<E>>(1) : new ArrayList<Subscriber<E>>(old);
+            a.add(s);
+            this.subscribers.put(user, a);
+            this.count++;
+        }
+        return s;
+    }
+
+    private synchronized void remove(Subscriber<E> s) {
+        List<Subscriber<E>> old = this.subscribers.get(s.friend);
+        if(old == null) return;
+        ArrayList<Subscriber<E>> a = new ArrayList<Subscriber<E>>(old);
+        if(!a.remove(s)) return;
+        if(a.isEmpty()) this.subscribers.remove(s.friend);
+        else this.subscribers.put(s.friend, a);
+        this.count--;
+    }
+
+    /**
+     * Log a change and offer it to the subscriptions of the friends who can see it.
+     * @param type ADDED, REMOVED or LIKED
+     * @param post the post as stored by the board
+     * @param friends the friends of the category of post, read by the caller holding
+     * whatever lock guards them
+     */
+    void publish(BoardEvent.Type type, E post, IntSet friends) {
+        // nobody can see it, a friend added to the category later gets a resync
+        if(friends.isEmpty()) {
+            this.version.incrementAndGet();
+            return;
+        }
+        synchronized(this) {
+            this.append(this.version.incrementAndGet(), (byte)type.ordinal(), post.getId(), post.getCategoryId());
+        }
+        this.deliver(type, post, friends);
+    }
+
+    /**
+     * Log that the categories friend can see changed: a category was shared with it,
+     * unshared or removed. Its next changesSince is a resync.
+     * @param friend the id of the friend in SymbolTable.USERS
+     */
+    synchronized void sharing(int friend) {
+        this.append(this.version.incrementAndGet(), SHARING, 0, friend);
+    }
+
+    /**
+     * Log a change, the ring grows up to LOG_SIZE and then overwrites its oldest change.
+     * @param version the version taken by the change while holding the monitor
+     */
+    private void append(long version, byte type, long id, int target) {
+        if(this.size == this.versions.length && this.size < LOG_SIZE) {
+            int n = Math.max(16, this.size * 2);
+            long[] v = new long[n];
+            long[] d = new long[n];
+            int[] t = new int[n];
+            byte[] y = new byte[n];
+            // unroll the ring, oldest first
+            for(int i = 0; i < this.size; i++) {
+                int j = (this.head + 1 + i) % this.size;
+                v[i] = this.versions[j];
+                d[i] = this.ids[j];
+                t[i] = this.targets[j];
+                y[i] = this.types[j];
+            }
+            this.versions = v;
+            this.ids = d;
+            this.targets = t;
+            this.types = y;
+            this.head = this.size - 1;
+        }
+        this.head = (this.head + 1) % this.versions.length;
+        if(this.size == this.versions.length) this.floor = this.versions[this.head];
+        else this.size++;
+        this.versions[this.head] = version;
+        this.ids[this.head] = id;
+        this.targets[this.head] = target;
+        this.types[this.head] = type;
+    }
+
+    /**
+     * @return the version of the last change
+     */
+    long version() {
+        return this.version.get();
+    }
+
+    /**
+     * The posts changed since a version in the categories a friend can see.
+     * Visibility is checked after reading the log, against the categories shared with
+     * the friend then: if they changed after the log was read the next call is a resync.
+     * @param friend the id of the friend in SymbolTable.USERS
+     * @param since the version the friend saw last
+     * @param visible tells if friend can see the category with a given id in SymbolTable.CATEGORIES
+     * @param posts the stored post with a given id, null if it was removed
+     * @return the changes, or null if friend must resync: since is not a version of the
+     * log, or what friend can see changed after it
+     */
+    Changes<E> changesSince(int friend, long since, IntPredicate visible, LongFunction<E> posts) {
+        long now;
+        byte[] types;
+        long[] ids;
+        int[] targets;
+        synchronized(this) {
+            now = this.version.get();
+            if(since < this.floor || since > now) return null;
+            int n = 0;
+            while(n < this.size && this.versions[this.slot(n)] > since) n++;
+            // copied oldest first
+            types = new byte[n];
+            ids = new long[n];
+            targets = new int[n];
+            for(int i = 0; i < n; i++) {
+                int j = this.slot(n - 1 - i);
+                types[i] = this.types[j];
+                ids[i] = this.ids[j];
+                targets[i] = this.targets[j];
+                if(types[i] == SHARING && targets[i] == friend) return null;
+            }
+        }
+        LinkedHashSet<Long> updated = new LinkedHashSet<Long>();
+        LinkedHashSet<Long> removed = new LinkedHashSet<Long>();
+        HashSet<Long> added = new HashSet<Long>();
+        for(int i = 0; i < types.length; i++) {
+            if(types[i] == SHARING || !visible.test(targets[i])) continue;
+            Long id = ids[i];
+            if(types[i] == REMOVED) {
+                updated.remove(id);
+                // a post added and removed since was never seen
+                if(!added.remove(id)) removed.add(id);
+            } else {
+                if(types[i] == ADDED) added.add(id);
+                updated.add(id);
+            }
+        }
+        ArrayList<E> l = new ArrayList<E>(updated.size());
+        for(long id : updated) {
+            // removed after now, the removal comes with the next changes
+            E e = posts.apply(id);
+            if(e != null) l.add(e);
+        }
+        Collections.sort(l);
+        return new Changes<E>(now, false, l, new ArrayList<Long>(removed));
+    }
+
+    /**
+     * @return the slot of the n-th change before the last one
+     */
+    private int slot(int n) {
+        return (this.head - n + this.versions.length) % this.versions.length;
+    }
+
+    /**
+     * Offer a change to the subscriptions of the friends who can see it, without logging it.
+     * The event holds a copy of post with its text on the heap, made once for all of them.
+     * @param type ADDED, REMOVED or LIKED
+     * @param post the post as stored by the board
+     * @param friends the friends of the category of post
+     */
+    void deliver(BoardEvent.Type type, E post, IntSet friends) {
+        if(this.count == 0 || friends.isEmpty()) return;
+        BoardEvent<E> event = null;
+        // walk the smaller side: the friends of the category or the subscribed friends
+        if(friends.size() <= this.subscribers.size()) {
+            PrimitiveIterator.OfInt it = friends.iterator();
+            while(it.hasNext()) {
+                List<Subscriber<E>> a = this.subscribers.get(it.nextInt());
+                if(a == null) continue;
+                if(event == null) event = event(type, post);
+                for(Subscriber<E> s : a) s.offer(event);
+            }
+        } else {
+            for(Map.Entry<Integer, List<Subscriber<E>>> e : this.subscribers.entrySet()) {
+                if(!friends.contains(e.getKey())) continue;
+                if(event == null) event = event(type, post);
+                for(Subscriber<E> s : e.getValue()) s.offer(event);
+            }
+        }
+    }
+
+    private static <E extends DataElement> BoardEvent<E> event(BoardEvent.Type type, E post) {
+        E copy = DataElement.copy(post);
+        copy.materializeText();
+        return new BoardEvent<E>(type, copy);
+    }
+}
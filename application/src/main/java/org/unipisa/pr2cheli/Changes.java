@@ -0,0 +1,62 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes of the posts a friend can see, returned by DataBoard.getFriendChangesSince.
+ * Applying them to the feed of the friend as of the version it asked for gives its feed
+ * as of getVersion(). After a resync getUpdated() is the whole feed and replaces it.
+ *
+ * Representation Invariant: updated and removed are not null, removed is empty if resync
+ */
+public class Changes<E extends DataElement> {
+    private final long version;
+    private final boolean resync;
+    private final List<E> updated;
+    private final List<Long> removed;
+
+    Changes(long version, boolean resync, List<E> updated, List<Long> removed) {
+        this.version = version;
+        this.resync = resync;
+        this.updated = Collections.unmodifiableList(updated);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * @return the version to ask for next time
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return true if the version asked for was too old or unknown, and getUpdated()
+     * is the whole feed
+     */
+    public boolean isResync() {
+        return this.resync;
+    }
+
+    /**
+     * @return the posts added or with new likes, as they are now, sorted by likes;
+     * they replace the posts with the same id
+     */
+    public List<E> getUpdated() {
+        return this.updated;
+    }
+
+    /**
+     * @return the ids of the posts removed
+     */
+    public List<Long> getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * @return true if there is nothing to apply
+     */
+    public boolean isEmpty() {
+        return !this.resync && this.updated.isEmpty() && this.removed.isEmpty();
+    }
+}
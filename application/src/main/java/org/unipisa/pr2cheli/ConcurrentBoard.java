@@ -0,0 +1,1092 @@
+package org.unipisa.pr2cheli;
+
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Thread-safe Board ADT.
+ * Abstract invariant: same as Board. Every category is guarded by its own read/write lock,
+ * so operations on different categories proceed in parallel and readers of a category
+ * never block each other. Operations spanning several categories (get, remove, insertLike,
+ * the iterators) lock one category at a time: they are consistent per category,
+ * not across the whole board.
+ * all contains the posts of every category, sorted by likes; it is updated while holding
+ * the write lock of the category the post belongs to.
+ * shared maps the id of each friend in SymbolTable.USERS to the categories whose friends
+ * contain it, it is updated while holding the write lock of the category and has no empty values.
+ * posts maps the id of every stored post to the post, it is updated while holding the
+ * write lock of the category of the post, and owners maps it to that category, so that a
+ * category removed and created again under the same name is never taken for the old one.
+ * Ids are assigned once by put and never reused.
+ * index holds the terms of the posts in posts; it is shared by all the categories, so it is
+ * guarded by its own monitor, always taken last and only for the update or the lookup.
+ * Only the batch operations hold several category locks at once, taken in order of name.
+ * Changes are published to feed under the write lock of their category, so the events
+ * of one category are queued and logged in the order the changes happened; changes of
+ * shared are logged as sharing changes of the friend, under the same lock.
+ * likes is the sum of the likes of the posts in all, updated with them.
+ */
+public class ConcurrentBoard <E extends DataElement> implements DataBoard<E>, BoardGauges {
+    private final ConcurrentHashMap<String, LockedCategory<E>> categories;
+    private final ConcurrentSkipListSet<E> all;
+    private final ConcurrentHashMap<Integer, Set<LockedCategory<E>>> shared;
+    private final ConcurrentHashMap<Long, E> posts;
+    private final ConcurrentHashMap<Long, LockedCategory<E>> owners;
+    private final TextIndex index;
+    private final AtomicLong lastId;
+    private final String owner;
+    private final String passw;
+    private final String token;
+    private final ChangeFeed<E> feed;
+    private final LongAdder likes;
+    private volatile AuditLog audit;
+
+    /**
+     * Constructor for ConcurrentBoard
+     * @param owner the owner, must be a valid username
+     * @param passw the password, must be a valid password
+     * @throws InvalidDataException if owner or password are invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    public ConcurrentBoard(String owner, String passw) throws InvalidDataException {
+        DataValidator.validateUser(owner);
+        DataValidator.validatePassw(passw);
+        this.owner = owner;
+        this.passw = passw;
+        this.token = Session.token(passw);
+        this.categories = new ConcurrentHashMap<String, LockedCategory<E>>();
+        this.all = new ConcurrentSkipListSet<E>();
+        this.shared = new ConcurrentHashMap<Integer, Set<LockedCategory<E>>>();
+        this.posts = new ConcurrentHashMap<Long, E>();
+        this.owners = new ConcurrentHashMap<Long, LockedCategory<E>>();
+        this.index = new TextIndex();
+        this.lastId = new AtomicLong();
+        this.feed = new ChangeFeed<E>();
+        this.likes = new LongAdder();
+        this.audit = AuditLog.disabled();
+    }
+
+    /**
+     * @return the owner
+     */
+    public String getOwner() {
+        return new String(this.owner);
+    }
+
+    /**
+     * Record the changes of this board in a log, by default they are not recorded.
+     * The operations already running may still record in the previous log.
+     * modifies this.audit
+     * @param audit the log, shared with other boards if needed
+     * @throws NullPointerException if audit is null
+     */
+    public void setAuditLog(AuditLog audit) {
+        if(audit == null) throw new NullPointerException();
+        this.audit = audit;
+    }
+
+    /**
+     * Checks if the password is correct
+     * @param p the password to check, must be shorter than 128 characters
+     * @throws UnauthorizedLoginException if password is wrong
+     * @throws InvalidDataException if the password is invalid
+    */
+    public void checkPasswd(String p) throws UnauthorizedLoginException, InvalidDataException {
+        // a session carries this.token, the token of this.passw
+        if(p == this.token) return;
+        DataValidator.validatePassw(p);
+        if(!this.passw.equals(p)) throw new UnauthorizedLoginException("Wrong Credentials");
+    }
+
+    /**
+     * Open a session of the owner.
+     * @param passw The password, must be a matching and valid password
+     * @param ttlMillis How long the session lasts, in milliseconds
+     * @return a session accepted in place of the password until it expires or is revoked
+     * @throws InvalidDataException if passwd or ttlMillis are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        return Session.open(this.token, ttlMillis);
+    }
+
+    /**
+     * @return the category named category
+     * @throws DataNotFoundException if category does not exists
+     */
+    private LockedCategory<E> lookup(String category) throws DataNotFoundException {
+        LockedCategory<E> c = this.categories.get(category);
+        if(c == null) throw new DataNotFoundException("category: " + category);
+        return c;
+    }
+
+    /**
+     * Find the stored post matching dato in a category.
+     * @param t the posts of a category
+     * @param dato the post to look for, its category may be unset
+     * @return the stored post, null if t does not contain dato
+     */
+    private E find(TreeSet<E> t, E dato) {
+        E s = t.ceiling(dato);
+        if(s != null && s.compareTo(dato) == 0) return s;
+        return null;
+    }
+
+    /**
+     * Replace a stored post with a copy liked by friend, must hold the write lock of c.
+     * modifies the contents of c, this.all, this.posts and this.likes
+     * @param c the category of s
+     * @param s the stored post
+     * @return the liked copy now stored in place of s
+     * @throws DuplicateDataException if s was already liked by friend
+     * @throws InvalidDataException if friend is invalid
+     */
+    private E like(LockedCategory<E> c, E s, String friend)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        TreeSet<E> t = c.getContents();
+        t.remove(s);
+        this.all.remove(s);
+        E x = DataElement.copy(s);
+        try {
+            x.addLike(friend);
+        } finally {
+            t.add(x);
+            this.all.add(x);
+            this.posts.put(x.getId(), x);
+        }
+        this.likes.increment();
+        this.feed.publish(BoardEvent.Type.LIKED, x, c.getFriends());
+        this.audit.record(AuditEvent.Type.LIKE, this.owner, c.getCategory(), friend, x.getId());
+        return x;
+    }
+
+    /**
+     * Record that friend can see category, must hold the write lock of category.
+     * modifies this.shared this.feed
+     */
+    private void share(int friend, final LockedCategory<E> category) {
+        this.feed.sharing(friend);
+        this.shared.compute(friend, (k, cats) -> {
+            if(cats == null) cats = ConcurrentHashMap.newKeySet();
+            cats.add(category);
+            return cats;
+        });
+    }
+
+    /**
+     * Record that friend can no longer see category, must hold the write lock of category.
+     * modifies this.shared this.feed
+     */
+    private void unshare(int friend, final LockedCategory<E> category) {
+        this.feed.sharing(friend);
+        this.shared.computeIfPresent(friend, (k, cats) -> {
+            cats.remove(category);
+            return cats.isEmpty() ? null : cats;
+        });
+    }
+
+    /**
+     * Add a stored post to index.
+     * modifies this.index
+     */
+    private void index(E e) {
+        synchronized(this.index) {
+            this.index.add(e);
+        }
+    }
+
+    /**
+     * Drop a removed post from index.
+     * modifies this.index
+     */
+    private void unindex(E e) {
+        synchronized(this.index) {
+            this.index.remove(e);
+        }
+    }
+
+    /**
+     * @param terms terms returned by TextIndex.query
+     * @return the ids of the posts containing all of them
+     */
+    private long[] match(String[] terms) {
+        synchronized(this.index) {
+            return this.index.match(terms);
+        }
+    }
+
+    /**
+     * @return the categories friend can see, never null
+     */
+    private Set<LockedCategory<E>> sharedWith(String friend) {
+        int user = SymbolTable.USERS.lookup(friend);
+        Set<LockedCategory<E>> cats = user < 0 ? null : this.shared.get(user);
+        if(cats == null) return Collections.<LockedCategory<E>>emptySet();
+        return cats;
+    }
+
+    /**
+     * Create a new category.
+     * modifies this.categories
+     * @param category The category name to create, must be a valid category
+     * @param passw The password, must be a valid password
+     * @throws DuplicateDataException if category already exists
+     * @throws InvalidDataException if category or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void createCategory(String category, String passw)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        if(this.categories.putIfAbsent(category, new LockedCategory<E>(category)) != null)
+            throw new DuplicateDataException(category);
+        this.audit.record(AuditEvent.Type.CATEGORY_CREATED, this.owner, category, null, -1);
+    }
+
+    /**
+     * Remove an already existing category.
+     * modifies this.categories this.all this.shared this.posts this.likes
+     * @param category The category name to create, must be a valid category
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void removeCategory(String category, String passw)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        LockedCategory<E> c = this.categories.remove(category);
+        if(c == null) throw new DataNotFoundException("category: " + category);
+        // wait for the operations already running on the category
+        c.writeLock().lock();
+        try {
+            c.setRemoved();
+            this.all.removeAll(c.getContents());
+            for(E e : c.getContents()) {
+                this.posts.remove(e.getId());
+                this.owners.remove(e.getId());
+                this.unindex(e);
+                this.likes.add(-e.getNumlikes());
+                this.feed.deliver(BoardEvent.Type.REMOVED, e, c.getFriends());
+            }
+            for(int friend : c.getFriends().toArray()) {
+                this.unshare(friend, c);
+            }
+            this.audit.record(AuditEvent.Type.CATEGORY_REMOVED, this.owner, category, null, -1);
+        } finally {
+            c.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a friend to a category.
+     * modifies the friends of category and this.shared
+     * @param category The category name to create, must be a valid category name
+     * @param friend The friend name to add to the category, must be a valid username
+     * @param passw The password, must be a matching and valid password
+     * @throws DuplicateDataException if friend already associated to category
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, friend or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void addFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        DataValidator.validateCategory(category);
+        DataValidator.validateUser(friend);
+        this.checkPasswd(passw);
+        LockedCategory<E> c = this.lookup(category);
+        c.writeLock().lock();
+        try {
+            if(c.isRemoved()) throw new DataNotFoundException("category: " + category);
+            int user = SymbolTable.USERS.intern(friend);
+            if(!c.getFriends().add(user)) throw new DuplicateDataException("friend: " + friend);
+            this.share(user, c);
+            this.audit.record(AuditEvent.Type.FRIEND_ADDED, this.owner, category, friend, -1);
+        } finally {
+            c.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a friend from a category.
+     * modifies the friends of category and this.shared
+     * @param category The category name to create, must be a valid category name
+     * @param friend The friend name to add to the category, must be a valid username
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, friend or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void removeFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        DataValidator.validateUser(friend);
+        this.checkPasswd(passw);
+        LockedCategory<E> c = this.lookup(category);
+        c.writeLock().lock();
+        try {
+            if(c.isRemoved()) throw new DataNotFoundException("category: " + category);
+            int user = SymbolTable.USERS.lookup(friend);
+            if(!c.getFriends().remove(user)) throw new DataNotFoundException("friend: " + friend);
+            this.unshare(user, c);
+            this.audit.record(AuditEvent.Type.FRIEND_REMOVED, this.owner, category, friend, -1);
+        } finally {
+            c.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a post to a category, the stored copy gets a new id.
+     * modifies the contents of category, this.all, this.posts and this.likes
+     * @param category The category name to create, must be a valid category name
+     * @param dato The element to add to the category posts
+     * @param passw The password, must be a matching and valid password
+     * @throws DuplicateDataException if dato is already associated to category
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, post author or contents, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public boolean put(String passw, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        if(dato == null) throw new NullPointerException();
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        LockedCategory<E> c = this.lookup(category);
+        if(!dato.getAuthor().equals(this.owner)) throw new InvalidDataException("Author-Owner mismatch");
+        E cloned = DataElement.copy(dato);
+        cloned.setCategory(category);
+        c.writeLock().lock();
+        try {
+            if(c.isRemoved()) throw new DataNotFoundException("category: " + category);
+            TreeSet<E> cts = c.getContents();
+            if(cts.contains(cloned)) throw new DuplicateDataException(cloned.display() + " in category " + category);
+            cloned.setId(this.lastId.incrementAndGet());
+            cts.add(cloned);
+            this.all.add(cloned);
+            this.posts.put(cloned.getId(), cloned);
+            this.owners.put(cloned.getId(), c);
+            this.index(cloned);
+            this.likes.add(cloned.getNumlikes());
+            this.feed.publish(BoardEvent.Type.ADDED, cloned, c.getFriends());
+            this.audit.record(AuditEvent.Type.PUT, this.owner, category, null, cloned.getId());
+        } finally {
+            c.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Add the posts of a collection to a category, all of them or none.
+     * The password and the category are checked once for the whole batch, the posts
+     * are copied and sorted before taking the write lock of the category, once.
+     * modifies the contents of the category, this.all, this.posts and this.likes
+     * @param passw The password, must be a matching and valid password
+     * @param category The category name, must be a valid category name
+     * @param data The posts to add, the stored copies get new ids in iteration order
+     * @return the number of posts added
+     * @throws DuplicateDataException if a post is already in category or appears twice in data
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, a post author, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if data or one of its posts is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        if(data == null) throw new NullPointerException();
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        LockedCategory<E> c = this.lookup(category);
+        TreeSet<E> sorted = new TreeSet<E>();
+        ArrayList<E> copies = Batches.copies(data, this.owner, category, sorted);
+        c.writeLock().lock();
+        try {
+            if(c.isRemoved()) throw new DataNotFoundException("category: " + category);
+            TreeSet<E> cts = c.getContents();
+            for(E e : sorted) {
+                if(cts.contains(e)) throw new DuplicateDataException(e.display() + " in category " + category);
+            }
+            long id = this.lastId.getAndAdd(copies.size());
+            for(E e : copies) e.setId(++id);
+            if(cts.isEmpty()) c.setContents(sorted);
+            else cts.addAll(sorted);
+            this.all.addAll(sorted);
+            for(E e : copies) {
+                this.posts.put(e.getId(), e);
+                this.owners.put(e.getId(), c);
+                this.index(e);
+                this.likes.add(e.getNumlikes());
+                this.feed.publish(BoardEvent.Type.ADDED, e, c.getFriends());
+                this.audit.record(AuditEvent.Type.PUT, this.owner, category, null, e.getId());
+            }
+        } finally {
+            c.writeLock().unlock();
+        }
+        return copies.size();
+    }
+
+    /**
+     * Get a post.
+     * @param dato The element to get from the category posts
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E get(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(dato == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        for(LockedCategory<E> c : this.categories.values()) {
+            c.readLock().lock();
+            try {
+                // removed after the iterator returned it, its posts are gone
+                if(c.isRemoved()) continue;
+                if(c.getContents().contains(dato)) return dato;
+            } finally {
+                c.readLock().unlock();
+            }
+        }
+        throw new DataNotFoundException(dato.display());
+    }
+
+    /**
+     * Remove a post from every category containing it.
+     * modifies the contents of the categories, this.all, this.posts and this.likes
+     * @return the removed post as it was stored
+     * @param dato The post to remove
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E remove(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(dato == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        E x = null;
+        for(LockedCategory<E> c : this.categories.values()) {
+            c.writeLock().lock();
+            try {
+                // removed after the iterator returned it, its posts are unlinked already
+                if(c.isRemoved()) continue;
+                E s = this.find(c.getContents(), dato);
+                if(s != null) {
+                    c.getContents().remove(s);
+                    this.all.remove(s);
+                    this.posts.remove(s.getId());
+                    this.owners.remove(s.getId());
+                    this.unindex(s);
+                    this.likes.add(-s.getNumlikes());
+                    this.feed.publish(BoardEvent.Type.REMOVED, s, c.getFriends());
+                    this.audit.record(AuditEvent.Type.REMOVE, this.owner, c.getCategory(), null, s.getId());
+                    x = s;
+                }
+            } finally {
+                c.writeLock().unlock();
+            }
+        }
+        if(x == null) throw new DataNotFoundException(dato.display());
+        return x;
+    }
+
+    /**
+     * Lock the category of the post with the given id for writing.
+     * @return the locked category, whose contents still hold the post
+     * @throws DataNotFoundException if the post does not exists
+     */
+    private LockedCategory<E> lockOwner(long id) throws DataNotFoundException {
+        LockedCategory<E> c = this.owners.get(id);
+        if(c == null) throw new DataNotFoundException("post: " + id);
+        c.writeLock().lock();
+        // the post may have been removed before the lock was taken, a post never changes category
+        if(c.isRemoved() || this.owners.get(id) != c) {
+            c.writeLock().unlock();
+            throw new DataNotFoundException("post: " + id);
+        }
+        return c;
+    }
+
+    /**
+     * Lock for writing the categories of the posts with the given ids, in order of name
+     * so that two batches can not deadlock.
+     * @return the locked categories by name, whose contents still hold the posts
+     * @throws DataNotFoundException if one of the posts does not exists
+     */
+    private TreeMap<String, LockedCategory<E>> lockOwners(Collection<Long> ids) throws DataNotFoundException {
+        TreeMap<String, LockedCategory<E>> owners = new TreeMap<String, LockedCategory<E>>();
+        for(long id : ids) {
+            LockedCategory<E> c = this.owners.get(id);
+            if(c == null) throw new DataNotFoundException("post: " + id);
+            LockedCategory<E> o = owners.put(c.getCategory(), c);
+            // a post of a category being removed, while another one has taken its name
+            if(o != null && o != c) throw new DataNotFoundException("post: " + id);
+        }
+        ArrayList<LockedCategory<E>> locked = new ArrayList<LockedCategory<E>>(owners.size());
+        try {
+            for(LockedCategory<E> c : owners.values()) {
+                c.writeLock().lock();
+                locked.add(c);
+                if(c.isRemoved()) throw new DataNotFoundException("category: " + c.getCategory());
+            }
+            // a post may have been removed before the locks were taken, a post never changes category
+            for(long id : ids) {
+                LockedCategory<E> c = this.owners.get(id);
+                if(c == null || owners.get(c.getCategory()) != c) throw new DataNotFoundException("post: " + id);
+            }
+        } catch(DataNotFoundException e) {
+            unlockAll(locked);
+            throw e;
+        }
+        return owners;
+    }
+
+    private static <E extends DataElement> void unlockAll(Collection<LockedCategory<E>> locked) {
+        for(LockedCategory<E> c : locked) c.writeLock().unlock();
+    }
+
+    /**
+     * Get a copy of a post by id.
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        E s = this.posts.get(id);
+        if(s == null) throw new DataNotFoundException("post: " + id);
+        return DataElement.copy(s);
+    }
+
+    /**
+     * Remove a post by id.
+     * modifies the contents of the category of the post, this.all, this.posts and this.likes
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @return the removed post
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        LockedCategory<E> c = this.lockOwner(id);
+        try {
+            E s = this.posts.remove(id);
+            this.owners.remove(id);
+            c.getContents().remove(s);
+            this.all.remove(s);
+            this.unindex(s);
+            this.likes.add(-s.getNumlikes());
+            this.feed.publish(BoardEvent.Type.REMOVED, s, c.getFriends());
+            this.audit.record(AuditEvent.Type.REMOVE, this.owner, c.getCategory(), null, s.getId());
+            return s;
+        } finally {
+            c.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get a copy of the posts with the given ids.
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the copies, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        ArrayList<E> l = new ArrayList<E>(ids.size());
+        for(long id : ids) {
+            E s = this.posts.get(id);
+            if(s == null) throw new DataNotFoundException("post: " + id);
+            l.add(DataElement.copy(s));
+        }
+        return l;
+    }
+
+    /**
+     * Remove the posts with the given ids, all of them or none.
+     * The categories of the posts are locked together for the whole batch.
+     * modifies the contents of the categories of the posts, this.all, this.posts and this.likes
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the removed posts, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists or an id appears twice
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        LinkedHashSet<Long> distinct = Batches.distinct(ids);
+        TreeMap<String, LockedCategory<E>> owners = this.lockOwners(distinct);
+        try {
+            ArrayList<E> removed = new ArrayList<E>(distinct.size());
+            for(long id : distinct) {
+                E s = this.posts.remove(id);
+                this.owners.remove(id);
+                LockedCategory<E> c = owners.get(s.getCategory());
+                c.getContents().remove(s);
+                this.all.remove(s);
+                this.unindex(s);
+                this.likes.add(-s.getNumlikes());
+                this.feed.publish(BoardEvent.Type.REMOVED, s, c.getFriends());
+                this.audit.record(AuditEvent.Type.REMOVE, this.owner, c.getCategory(), null, s.getId());
+                removed.add(s);
+            }
+            return removed;
+        } finally {
+            unlockAll(owners.values());
+        }
+    }
+
+    /**
+     * Get a List of posts in a category.
+     * @param passw The password, must be a matching and valid password
+     * @param category The category name to create, must be a valid category name
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> getDataCategory(String passw, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        LockedCategory<E> c = this.lookup(category);
+        c.readLock().lock();
+        try {
+            if(c.isRemoved()) throw new DataNotFoundException("category: " + category);
+            return new ArrayList<E>(c.getContents());
+        } finally {
+            c.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add a like to a post.
+     * Only the categories shared with friend are visited: each one is first probed
+     * under its read lock, and locked for writing only if it contains the post.
+     * @param dato The element to add to the category posts
+     * @param friend The friend that liked the post
+     * @throws DuplicateDataException if post was already liked by friend
+     * @throws DataNotFoundException if category or post do not exists
+     * @throws InvalidDataException if dato's content is invalid
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLike(String friend, E dato)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        if(dato == null) throw new NullPointerException();
+        E x = null;
+        for(LockedCategory<E> c : this.sharedWith(friend)) {
+            boolean visible;
+            c.readLock().lock();
+            try {
+                visible = c.getContents().contains(dato);
+            } finally {
+                c.readLock().unlock();
+            }
+            if(!visible) continue;
+            c.writeLock().lock();
+            try {
+                TreeSet<E> t = c.getContents();
+                // the category may have changed between the two locks
+                if(c.isRemoved() || !c.hasFriend(friend)) continue;
+                E s = this.find(t, dato);
+                if(s == null) continue;
+                x = this.like(c, s, friend);
+            } finally {
+                c.writeLock().unlock();
+            }
+        }
+        if(x == null) throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+    }
+
+    /**
+     * Add a like to a post by id.
+     * modifies the contents of the category of the post, this.all, this.posts and this.likes
+     * @param id The id of the post
+     * @param friend The friend that liked the post
+     * @throws DuplicateDataException if post was already liked by friend
+     * @throws DataNotFoundException if the post does not exists or friend can not see it
+     * @throws InvalidDataException if friend is invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        LockedCategory<E> c;
+        try {
+            c = this.lockOwner(id);
+        } catch(DataNotFoundException e) {
+            throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+        }
+        try {
+            if(!c.hasFriend(friend))
+                throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+            this.like(c, this.posts.get(id), friend);
+        } finally {
+            c.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add a list of likes by post id, all of them or none.
+     * The categories of the posts are locked together for the whole batch and the likes
+     * are grouped by post, so each post is replaced once in the sorted sets.
+     * modifies the contents of the categories of the posts, this.all, this.posts and this.likes
+     * @param likes The likes to add
+     * @throws DuplicateDataException if a post was already liked by a friend, or a like appears twice
+     * @throws DataNotFoundException if a post does not exists or its friend can not see it
+     * @throws InvalidDataException if a friend is invalid
+     * @throws NullPointerException if likes or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        if(likes == null) throw new NullPointerException();
+        LinkedHashMap<Long, ArrayList<String>> byPost = Batches.byPost(likes);
+        for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+            if(this.posts.get(l.getKey()) == null)
+                throw new DataNotFoundException("post not found or @" + l.getValue().get(0) + " is not authorized to view it");
+        }
+        TreeMap<String, LockedCategory<E>> owners = this.lockOwners(byPost.keySet());
+        try {
+            for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+                E s = this.posts.get(l.getKey());
+                LockedCategory<E> c = owners.get(s.getCategory());
+                for(String friend : l.getValue()) {
+                    if(!c.hasFriend(friend))
+                        throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+                    if(s.isLikedBy(friend)) throw new DuplicateDataException("like by: " + friend);
+                }
+            }
+            for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+                E s = this.posts.get(l.getKey());
+                LockedCategory<E> c = owners.get(s.getCategory());
+                TreeSet<E> t = c.getContents();
+                t.remove(s);
+                this.all.remove(s);
+                E x = DataElement.copy(s);
+                for(String friend : l.getValue()) x.addLike(friend);
+                t.add(x);
+                this.all.add(x);
+                this.posts.put(x.getId(), x);
+                this.likes.add(l.getValue().size());
+                this.feed.publish(BoardEvent.Type.LIKED, x, c.getFriends());
+                if(this.audit.isEnabled(AuditLevel.DEBUG)) {
+                    for(String friend : l.getValue()) this.audit.record(AuditEvent.Type.LIKE, this.owner, c.getCategory(), friend, x.getId());
+                }
+            }
+        } finally {
+            unlockAll(owners.values());
+        }
+    }
+
+    /**
+     * Get an iterator for all posts sorted by like number.
+     * The iterator is a weakly consistent view over the board index, nothing is copied.
+     * @param passw The board password, must be a valid and matching password
+     * @throws InvalidDataException if password is invalid or data contents are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public Iterator<E> getIterator(String passw)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        SortedSet<E> unmodifiableAll = Collections.unmodifiableSortedSet(this.all);
+        return unmodifiableAll.iterator();
+    }
+
+    /**
+     * Get an iterator for all posts accessible by a friend, sorted by like number.
+     * Each shared category is copied under its read lock, then the copies are merged lazily.
+     * @param friend The friend, must be a  valid and matching username
+     * @throws InvalidDataException if friend is invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public Iterator<E> getFriendIterator(String friend)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        ArrayList<List<E>> visible = new ArrayList<List<E>>();
+        for(LockedCategory<E> c : this.sharedWith(friend)) {
+            c.readLock().lock();
+            try {
+                // the friend may have been removed after sharedWith was read
+                if(!c.isRemoved() && c.hasFriend(friend)) visible.add(new ArrayList<E>(c.getContents()));
+            } finally {
+                c.readLock().unlock();
+            }
+        }
+        return new MergeIterator<E>(visible);
+    }
+
+    /**
+     * Get the k posts with most likes.
+     * Only the first k entries of the board index are visited.
+     * @param passw The board password, must be a valid and matching password
+     * @param k The number of posts
+     * @throws InvalidDataException if password is invalid or k is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Feeds.validateSize(k);
+        return Feeds.first(this.all.iterator(), k);
+    }
+
+    /**
+     * Get the k posts with most likes accessible by a friend.
+     * @param friend The friend, must be a valid username
+     * @param k The number of posts
+     * @throws InvalidDataException if friend is invalid or k is negative
+     */
+    @Override
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        return this.getFriendPage(friend, null, k).getItems();
+    }
+
+    /**
+     * Get a page of all posts sorted by like number.
+     * The page starts with a lookup in the board index, in O(log n + size),
+     * and is weakly consistent like getIterator.
+     * @param passw The board password, must be a valid and matching password
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if password is invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        return Feeds.page(Feeds.after(this.all, cursor).iterator(), size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend, sorted by like number.
+     * At most size + 1 posts after cursor are copied from each shared category
+     * under its read lock, then the copies are merged.
+     * @param friend The friend, must be a valid username
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend is invalid or size is negative
+     */
+    @Override
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        Feeds.validateSize(size);
+        ArrayList<List<E>> visible = new ArrayList<List<E>>();
+        for(LockedCategory<E> c : this.sharedWith(friend)) {
+            c.readLock().lock();
+            try {
+                // the friend may have been removed after sharedWith was read
+                if(!c.isRemoved() && c.hasFriend(friend))
+                    visible.add(Feeds.first(Feeds.after(c.getContents(), cursor).iterator(), size + 1));
+            } finally {
+                c.readLock().unlock();
+            }
+        }
+        return Feeds.page(new MergeIterator<E>(visible), size);
+    }
+
+    /**
+     * Get a page of the posts in a category, sorted by like number.
+     * The page is copied under the read lock of the category.
+     * @param passw The board password, must be a valid and matching password
+     * @param category The category name, must be a valid category name
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category or password are invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        LockedCategory<E> c = this.lookup(category);
+        c.readLock().lock();
+        try {
+            if(c.isRemoved()) throw new DataNotFoundException("category: " + category);
+            return Feeds.page(Feeds.after(c.getContents(), cursor).iterator(), size);
+        } finally {
+            c.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a page of the posts containing all the words of a query, sorted by like number.
+     * The index is read under its monitor, the matches then take no lock: a post removed
+     * in the meantime is skipped, one added is not seen.
+     * @param passw The board password, must be a valid and matching password
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if query or password are invalid, query has no words or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        String[] terms = TextIndex.query(query);
+        this.checkPasswd(passw);
+        Feeds.validateSize(size);
+        return TextIndex.rank(this.match(terms), this.posts::get, e -> true, cursor, size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend containing all the words of a query,
+     * sorted by like number. The categories shared with friend are read once, at the start.
+     * @param friend The friend, must be a valid username
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend or query are invalid, query has no words or size is negative
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        String[] terms = TextIndex.query(query);
+        Feeds.validateSize(size);
+        Set<LockedCategory<E>> cats = this.sharedWith(friend);
+        return TextIndex.rank(this.match(terms), this.posts::get, e -> {
+            LockedCategory<E> c = this.categories.get(e.getCategory());
+            return c != null && cats.contains(c);
+        }, cursor, size);
+    }
+
+    /**
+     * Subscribe a friend to the changes of the categories shared with it.
+     * The friends of a category are read under its write lock when a change happens.
+     * modifies this.feed
+     * @param friend The friend, must be a valid username
+     * @param capacity The size of the queue of the subscription, must be positive
+     * @param executor Runs listener
+     * @param listener Receives the events
+     * @return the subscription
+     * @throws InvalidDataException if friend or capacity are invalid
+     * @throws NullPointerException if executor or listener are null
+     */
+    @Override
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        return this.feed.subscribe(friend, capacity, executor, listener);
+    }
+
+    /**
+     * Get the changes of the posts accessible by a friend since a version,
+     * or its whole feed if the version is not in the log of feed or the categories
+     * shared with the friend changed after it.
+     * The posts are read after the version is taken, so they may already include later
+     * changes, which come again with the next call: applying them twice is harmless.
+     * @param friend The friend, must be a valid username
+     * @param version The version of the last changes the friend applied
+     * @return the changes and the new version
+     * @throws InvalidDataException if friend is invalid
+     */
+    @Override
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        Set<LockedCategory<E>> cats = this.sharedWith(friend);
+        Changes<E> c = this.feed.changesSince(SymbolTable.USERS.lookup(friend), version, cat -> {
+            LockedCategory<E> x = this.categories.get(SymbolTable.CATEGORIES.name(cat));
+            return x != null && cats.contains(x);
+        }, this.posts::get);
+        if(c != null) return c;
+        long now = this.feed.version();
+        ArrayList<E> l = new ArrayList<E>();
+        for(Iterator<E> it = this.getFriendIterator(friend); it.hasNext(); ) l.add(it.next());
+        return new Changes<E>(now, true, l, new ArrayList<Long>());
+    }
+
+    @Override
+    public int getCategoryCount() {
+        return this.categories.size();
+    }
+
+    @Override
+    public int getPostCount() {
+        return this.posts.size();
+    }
+
+    @Override
+    public long getLikeCount() {
+        return this.likes.sum();
+    }
+}
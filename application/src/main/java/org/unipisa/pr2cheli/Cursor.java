@@ -0,0 +1,80 @@
+package org.unipisa.pr2cheli;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Position in a feed sorted by DataElement.compareTo: the sort key of the last post seen.
+ * The next page starts right after that key, so it stays valid when posts are added,
+ * removed or liked between two requests.
+ * A cursor is sent to clients as an opaque token, see token() and fromToken().
+ *
+ * Representation Invariant: numlikes >= 0 && category != null && text != null
+ */
+public class Cursor {
+    private final int numlikes;
+    private final String category;
+    private final String text;
+
+    private Cursor(int numlikes, String category, String text) {
+        this.numlikes = numlikes;
+        this.category = category;
+        this.text = text;
+    }
+
+    /**
+     * @param e the last post seen, must be stored in a board
+     * @return the cursor pointing right after e
+     */
+    public static Cursor after(DataElement e) {
+        return new Cursor(e.getNumlikes(), e.getCategory(), e.getText());
+    }
+
+    /**
+     * The category is looked up, not interned, so that tokens made up by clients do not
+     * grow the table.
+     * @return a post comparing equal to the last post seen, for sorted set lookups,
+     * null if no post was ever in its category: the cursor is past the end of every feed
+     */
+    DataElement probe() {
+        int category = SymbolTable.CATEGORIES.lookup(this.category);
+        if(category < 0) return null;
+        return new DataElement(this.numlikes, category, this.text);
+    }
+
+    /**
+     * @return the cursor encoded as an url-safe string
+     */
+    public String token() {
+        String raw = this.numlikes + "\n" + this.category + "\n" + this.text;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token a string returned by token()
+     * @return the decoded cursor
+     * @throws InvalidDataException if token is malformed
+     */
+    public static Cursor fromToken(String token) throws InvalidDataException {
+        if(token == null) throw new NullPointerException();
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] f = raw.split("\n", 3);
+            if(f.length != 3) throw new InvalidDataException("Invalid cursor");
+            int likes = Integer.parseInt(f[0]);
+            if(likes < 0) throw new InvalidDataException("Invalid cursor");
+            DataValidator.validateCategory(f[1]);
+            DataValidator.validateText(f[2]);
+            return new Cursor(likes, f[1], f[2]);
+        } catch(IllegalArgumentException e) {
+            throw new InvalidDataException("Invalid cursor");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "after " + this.numlikes + " likes in " + this.category + ": " + this.text;
+    }
+}
@@ -1,7 +1,9 @@
 package org.unipisa.pr2cheli;
 
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.unipisa.pr2cheli.Exceptions.*;
 
@@ -31,6 +33,11 @@ public interface DataBoard<E extends DataElement> {
     public boolean put(String passw, E dato, String category)
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException;
 
+    /* Inserisce in una categoria tutti i dati di una collezione, o nessuno se uno non e' valido,
+    e restituisce il numero di dati inseriti */
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException;
+
     /* Restituisce una copia del dato in bacheca */
     public E get(String passw, E dato)
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
@@ -39,6 +46,22 @@ public interface DataBoard<E extends DataElement> {
     public E remove(String passw, E dato)
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
 
+    /* Restituisce una copia del dato in bacheca con identificativo id */
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
+
+    /* Rimuove e restituisce il dato in bacheca con identificativo id */
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
+
+    /* Restituisce una copia dei dati in bacheca con gli identificativi dati, nello stesso ordine */
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
+
+    /* Rimuove e restituisce tutti i dati con gli identificativi dati, o nessuno se uno manca */
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
+
     /* Crea la lista dei dati in bacheca di una determinata categoria */
     public List<E> getDataCategory(String passw, String category)
     throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
@@ -47,6 +70,14 @@ public interface DataBoard<E extends DataElement> {
     public void insertLike(String friend, E dato)
     throws DuplicateDataException, InvalidDataException, DataNotFoundException ;
 
+    /* Aggiunge un like al dato con identificativo id */
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException ;
+
+    /* Aggiunge tutti i like di una lista, o nessuno se uno non e' valido */
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException ;
+
     /* Restituisce un iteratore (senza remove) che genera tutti
     i dati in bacheca ordinati rispetto al numero di like */
     public Iterator<E> getIterator(String passw)
@@ -56,4 +87,147 @@ public interface DataBoard<E extends DataElement> {
     in bacheca condivisi */
     public Iterator<E> getFriendIterator(String friend)
     throws InvalidDataException;
-}
\ No newline at end of file
+
+    /* Restituisce i primi k dati in bacheca ordinati rispetto al numero di like */
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException;
+
+    /* Restituisce i primi k dati condivisi con friend ordinati rispetto al numero di like */
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException;
+
+    /* Restituisce la pagina di size dati in bacheca che segue cursor (null per la prima) */
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException;
+
+    /* Restituisce la pagina di size dati condivisi con friend che segue cursor */
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException;
+
+    /* Iscrive friend ai cambiamenti dei dati che puo' vedere: gli eventi vengono accodati
+    in una coda di capacity elementi e consegnati a listener su executor, senza mai
+    bloccare chi modifica la bacheca */
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException;
+
+    /* Restituisce i dati condivisi con friend aggiunti, rimossi o cambiati di posizione
+    dalla versione version insieme alla nuova versione, oppure tutti se version e' troppo vecchia */
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException;
+
+    /* Restituisce la pagina di size dati di una categoria che segue cursor */
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException;
+
+    /* Restituisce la pagina di size dati in bacheca che seguono cursor e contengono tutte le
+    parole di query, ordinati rispetto al numero di like */
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException;
+
+    /* Come search, tra i soli dati condivisi con friend */
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException;
+
+    /* Apre una sessione del proprietario che vale ttlMillis millisecondi, o fino a che non
+    viene revocata: i metodi che la accettano al posto della password non ripetono i controlli */
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException;
+
+    /* Apre una sessione del proprietario della durata predefinita */
+    default public Session login(String passw)
+    throws InvalidDataException, UnauthorizedLoginException {
+        return this.login(passw, Session.DEFAULT_TTL_MILLIS);
+    }
+
+    /* I metodi seguenti fanno come quelli con la password, se la sessione e' valida */
+
+    default public void createCategory(String category, Session session)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        this.createCategory(category, session.authorize());
+    }
+
+    default public void removeCategory(String category, Session session)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.removeCategory(category, session.authorize());
+    }
+
+    default public void addFriend(String category, Session session, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        this.addFriend(category, session.authorize(), friend);
+    }
+
+    default public void removeFriend(String category, Session session, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.removeFriend(category, session.authorize(), friend);
+    }
+
+    default public boolean put(Session session, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        return this.put(session.authorize(), dato, category);
+    }
+
+    default public int putAll(Session session, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        return this.putAll(session.authorize(), category, data);
+    }
+
+    default public E get(Session session, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.get(session.authorize(), dato);
+    }
+
+    default public E remove(Session session, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.remove(session.authorize(), dato);
+    }
+
+    default public E get(Session session, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.get(session.authorize(), id);
+    }
+
+    default public E remove(Session session, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.remove(session.authorize(), id);
+    }
+
+    default public List<E> getAll(Session session, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.getAll(session.authorize(), ids);
+    }
+
+    default public List<E> removeAll(Session session, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.removeAll(session.authorize(), ids);
+    }
+
+    default public List<E> getDataCategory(Session session, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.getDataCategory(session.authorize(), category);
+    }
+
+    default public Iterator<E> getIterator(Session session)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.getIterator(session.authorize());
+    }
+
+    default public List<E> getTopK(Session session, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.getTopK(session.authorize(), k);
+    }
+
+    default public Page<E> getPage(Session session, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.getPage(session.authorize(), cursor, size);
+    }
+
+    default public Page<E> getCategoryPage(Session session, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.getCategoryPage(session.authorize(), category, cursor, size);
+    }
+
+    default public Page<E> search(Session session, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.search(session.authorize(), query, cursor, size);
+    }
+}
@@ -9,23 +9,36 @@ import org.unipisa.pr2cheli.Exceptions.*;
  * Author must be an alphanumeric name less than 50 characters and not empty,
  * containing only words, digits, dash or underscore. Must begin with a letter or digit
  * Text must be less or equal than 128 characters and not empty
- * The number of likes must be equal to the number of elements in the like array
+ * The number of likes must be equal to the number of elements in the like set
+ * The id is 0 until the element is stored in a board, which assigns it a stable positive id
+ * Author and category are kept as ids interned in SymbolTable.USERS and SymbolTable.CATEGORIES,
+ * so each name is stored once however many posts refer to it
+ * A board with a TextArena keeps the text of its posts off the heap, the post keeps
+ * only its position in the arena and decodes it when asked
  */
 
-/* Abstraction Function(author, text) = <author, text> if author and text are valid, undefined otherwise
-   Representation Invariant = author != null && text != null
-    && 0 < author.length() <= 50 && 0 < text.length() <= 128
+/* Abstraction Function(author, text) = <USERS.name(author), text> if author and text are valid, undefined otherwise
+   Representation Invariant = author >= 0 && (text != null) != (textSegment != null) && category >= -1 (-1 if not set)
+    && textSegment != null ==> textSegment holds the UTF-8 encoding of the text at textOffset, textLength bytes
+    && 0 < USERS.name(author).length() <= 50 && 0 < text.length() <= 128
     && author contains only alphanumeric and dashes and begins with alphanum
-       This data type is immutable therefore the representation invariant is always valid
-    && numlikes = likes.length()
-   if it is valid after allocation, where validation is made.
+    && numlikes = likes.size()
+   The author and the text are fixed at allocation, where validation is made, but the
+   element is not immutable: the board storing it sets its id and category, adds likes,
+   and may move the text into a TextArena segment or back to the heap. Each of these
+   keeps the representation invariant, so it holds if it holds after allocation.
+   The search keys have author -1 and are never stored.
  */
 public class DataElement implements Comparable<DataElement> {
-    private String author;
+    private int author;
     private String text;
-    private String category;
+    private TextArena.Segment textSegment;
+    private int textOffset;
+    private int textLength;
+    private int category;
+    private long id;
     private int numlikes;
-    private ArrayList<String> likes;
+    private LikeSet likes;
 
     /**
      * Allocate a data element
@@ -36,21 +49,51 @@ public class DataElement implements Comparable<DataElement> {
     public DataElement(String author, String text) throws InvalidDataException {
         DataValidator.validateUser(author);
         DataValidator.validateText(text);
-        this.author = author;
+        this.author = SymbolTable.USERS.intern(author);
         this.text = text;
+        this.category = -1;
         this.numlikes = 0;
-        this.likes = new ArrayList<String>();
+        this.likes = new LikeSet();
+    }
+
+    /**
+     * Search key comparing equal to the stored posts with the same likes, category and text.
+     * Used for sorted set lookups only, its author is unset and its likes set is empty.
+     */
+    DataElement(int numlikes, int category, String text) {
+        this.author = -1;
+        this.text = text;
+        this.category = category;
+        this.numlikes = numlikes;
+        this.likes = new LikeSet();
+    }
+
+    /**
+     * Restore a stored post read back from a snapshot, without validation.
+     * @see org.unipisa.pr2cheli.Snapshot
+     */
+    DataElement(long id, int author, String text, int category, LikeSet likes) {
+        this.id = id;
+        this.author = author;
+        this.text = text;
+        this.category = category;
+        this.numlikes = likes.size();
+        this.likes = likes;
     }
 
     /**
      * Copy constructor
      */
     public DataElement(DataElement e) {
-        this.author = e.getAuthor();
-        this.text = e.getText();
-        this.category = e.getCategory();
+        this.author = e.author;
+        this.text = e.text;
+        this.textSegment = e.textSegment;
+        this.textOffset = e.textOffset;
+        this.textLength = e.textLength;
+        this.category = e.category;
+        this.id = e.getId();
         this.numlikes = e.getNumlikes();
-        this.likes = e.getLikes();
+        this.likes = e.likes.copy();
     }
 
     @Override
@@ -58,32 +101,113 @@ public class DataElement implements Comparable<DataElement> {
         return new DataElement(this);
     }
 
+    /**
+     * @return a clone of e, of the class of e
+     */
+    @SuppressWarnings("unchecked")
+    static <E extends DataElement> E copy(E e) {
+        return (E) e.clone();
+    }
+
     /**
      * @return the author
      */
     public String getAuthor() {
-        return author;
+        if(this.author < 0) return null;
+        return SymbolTable.USERS.name(this.author);
     }
 
     /**
      * @return the text
      */
     public String getText() {
-        return text;
+        if(this.text == null) return this.textSegment.decode(this.textOffset, this.textLength);
+        return this.text;
     }
 
     /**
      * @return the category
      */
     public String getCategory() {
-        return category;
+        if(this.category < 0) return null;
+        return SymbolTable.CATEGORIES.name(this.category);
     }
 
     /**
-     * @param category the category to set
+     * @param category the category to set, null to unset it
      */
     public void setCategory(String category) {
-        this.category = category;
+        this.category = category == null ? -1 : SymbolTable.CATEGORIES.intern(category);
+    }
+
+    /**
+     * @return the id of the author in SymbolTable.USERS
+     */
+    int getAuthorId() {
+        return this.author;
+    }
+
+    /**
+     * @return the id of the category in SymbolTable.CATEGORIES, -1 if not set
+     */
+    int getCategoryId() {
+        return this.category;
+    }
+
+    /**
+     * @return true if the text is stored in a TextArena
+     */
+    boolean inArena() {
+        return this.textSegment != null;
+    }
+
+    /**
+     * @return the position of the text in its arena, meaningful only if inArena()
+     */
+    TextArena.Segment textSegment() {
+        return this.textSegment;
+    }
+
+    int textOffset() {
+        return this.textOffset;
+    }
+
+    int textLength() {
+        return this.textLength;
+    }
+
+    /**
+     * Replace the text with its position in an arena.
+     * @param segment the segment holding the UTF-8 encoding of the text
+     */
+    void setTextRef(TextArena.Segment segment, int offset, int length) {
+        this.text = null;
+        this.textSegment = segment;
+        this.textOffset = offset;
+        this.textLength = length;
+    }
+
+    /**
+     * Bring the text back on the heap, dropping the reference to the arena.
+     */
+    void materializeText() {
+        if(this.text != null) return;
+        this.text = this.getText();
+        this.textSegment = null;
+    }
+
+    /**
+     * @return the id assigned by the board storing this element, 0 if not stored
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @param id the id to set, assigned by the board on put
+     */
+    void setId(long id) {
+        this.id = id;
     }
 
     /**
@@ -94,10 +218,25 @@ public class DataElement implements Comparable<DataElement> {
     }
 
     /**
-     * @return the likes
+     * @return a new list of the users who liked the post
      */
     public ArrayList<String> getLikes() {
-        return new ArrayList<String>(this.likes);
+        return this.likes.names();
+    }
+
+    /**
+     * @param who a username
+     * @return true if who liked the post
+     */
+    public boolean isLikedBy(String who) {
+        return this.likes.contains(who);
+    }
+
+    /**
+     * @return the set of likes, read only
+     */
+    LikeSet likeSet() {
+        return this.likes;
     }
 
     /**
@@ -126,9 +265,8 @@ public class DataElement implements Comparable<DataElement> {
     public void addLike(String who)
     throws InvalidDataException, DataNotFoundException, DuplicateDataException {
         DataValidator.validateUser(who);
-        if(this.likes.contains(who)) throw new DuplicateDataException("like by: " + who);
+        if(!this.likes.add(SymbolTable.USERS.intern(who))) throw new DuplicateDataException("like by: " + who);
         this.numlikes++;
-        this.likes.add(who);
     }
 
     /**
@@ -140,20 +278,32 @@ public class DataElement implements Comparable<DataElement> {
     public void removeLike(String who)
     throws InvalidDataException, DataNotFoundException {
         DataValidator.validateUser(who);
-        if(!this.likes.contains(who)) throw new DataNotFoundException("like by: " + who);
+        int user = SymbolTable.USERS.lookup(who);
+        if(user < 0 || !this.likes.remove(user)) throw new DataNotFoundException("like by: " + who);
         this.numlikes--;
-        this.likes.remove(who);
+    }
+
+    /**
+     * Compare the texts as String.compareTo does, without decoding those in an arena.
+     */
+    private int compareText(DataElement o) {
+        if(this.text != null && o.text != null) return this.text.compareTo(o.text);
+        if(this.text == null && o.text == null)
+            return TextArena.compare(this.textSegment, this.textOffset, this.textLength,
+                o.textSegment, o.textOffset, o.textLength);
+        if(this.text == null) return TextArena.compare(this.textSegment, this.textOffset, this.textLength, o.text);
+        return -TextArena.compare(o.textSegment, o.textOffset, o.textLength, this.text);
     }
 
     // Compare number of likes first, then compare text lexicographically
     public int compareTo(DataElement o) {
         if(this.equals(o)) return 0;
         if(this.numlikes == o.getNumlikes()) {
-            if(o.getCategory() != null && this.getCategory() != null) {
-                if(this.category.equals(o.getCategory())) return this.text.compareTo(o.getText());
-                return this.category.compareTo(o.getCategory());
+            if(o.category >= 0 && this.category >= 0) {
+                if(this.category == o.category) return this.compareText(o);
+                return this.getCategory().compareTo(o.getCategory());
             } else {
-                return this.text.compareTo(o.getText());
+                return this.compareText(o);
             }
         }
         return o.getNumlikes() - this.numlikes;
@@ -0,0 +1,17 @@
+package org.unipisa.pr2cheli;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Allocates the posts of a board when they are read back from disk,
+ * DataElement::new for a DataBoard&lt;DataElement&gt;.
+ */
+@FunctionalInterface
+public interface DataElementFactory<E extends DataElement> {
+    /**
+     * @param author a valid username
+     * @param text a valid post text
+     * @throws InvalidDataException if author or text are invalid
+     */
+    public E create(String author, String text) throws InvalidDataException;
+}
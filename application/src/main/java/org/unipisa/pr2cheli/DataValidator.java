@@ -7,6 +7,9 @@ import org.unipisa.pr2cheli.Exceptions.*;
  * DataValidator
  */
 public class DataValidator {
+    /* Usernames and categories: compiled once, Pattern is immutable and thread-safe */
+    private static final Pattern NAME = Pattern.compile("[\\w\\d]+[\\w\\d-_]*");
+
     /**
      * Validator method to check if the user is an alphanumeric value no longer than 50 characters
      * And beginning with a word or digit
@@ -18,7 +21,7 @@ public class DataValidator {
         if(user.length() == 0) throw new InvalidDataException("Username field is empty");
         if(user.length() > 50) throw new InvalidDataException("Username field is greater than 128 chars");
         /* Check alphanumeric regex */
-        if(! Pattern.compile("[\\w\\d]+[\\w\\d-_]*").matcher(user).matches())
+        if(! NAME.matcher(user).matches())
             throw new InvalidDataException("Invalid Username field");
     }
 
@@ -55,7 +58,7 @@ public class DataValidator {
         if(cat.length() == 0) throw new InvalidDataException("Category field is empty");
         if(cat.length() > 50) throw new InvalidDataException("Category field is greater than 128 chars");
         /* Check alphanumeric regex */
-        if(! Pattern.compile("[\\w\\d]+[\\w\\d-_]*").matcher(cat).matches())
+        if(! NAME.matcher(cat).matches())
             throw new InvalidDataException("Invalid Category field");
     }
 
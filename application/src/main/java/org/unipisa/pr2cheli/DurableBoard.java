@@ -0,0 +1,686 @@
+package org.unipisa.pr2cheli;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * A board whose mutations are recorded in a write-ahead log.
+ * On opening, the log is replayed on the decorated board, which must be empty,
+ * so the board is rebuilt as it was at the last durable record.
+ * A mutation is appended to the log and committed as the SyncPolicy of the log says
+ * before it is applied to the decorated board, so readers never see a change the log
+ * may lose. Mutations are applied in the order of their records, one at a time, while
+ * the writers waiting for their commit together still share the fsync of GROUP.
+ * Only the password is checked before logging: a mutation the decorated board refuses
+ * stays in the log and is refused again on replay, which skips it, since the board is
+ * rebuilt in the same state it was refused in.
+ * Reads are forwarded as they are. A batch is one record and one commit, so it is
+ * replayed whole or not at all.
+ * The log holds no password: replay uses the password the board is opened with, which
+ * the decorated board must accept, so a wrong one is refused before the log is read.
+ * If the log can not be written or forced the board stops accepting mutations: they
+ * throw UncheckedIOException and are not applied, the one that found the error and
+ * those appended after it may or may not be replayed on the next opening.
+ */
+public class DurableBoard<E extends DataElement> extends ForwardingBoard<E> implements Closeable {
+    private static final byte CREATE_CATEGORY = 1;
+    private static final byte REMOVE_CATEGORY = 2;
+    private static final byte ADD_FRIEND = 3;
+    private static final byte REMOVE_FRIEND = 4;
+    private static final byte PUT = 5;
+    private static final byte REMOVE = 6;
+    private static final byte REMOVE_ID = 7;
+    private static final byte LIKE = 8;
+    private static final byte LIKE_ID = 9;
+    private static final byte PUT_ALL = 10;
+    private static final byte REMOVE_ALL = 11;
+    private static final byte LIKES = 12;
+
+    private final WriteAheadLog log;
+    private final DataElementFactory<E> factory;
+    private final String passw;
+    private final String token;
+    private final ByteArrayOutputStream buffer;
+    private final DataOutputStream out;
+    private IOException failure;
+    /* The number of records appended and applied (or refused after a failure) since opening */
+    private long appended;
+    private long applied;
+
+    /**
+     * A record appended to the log, applied once the records before it are.
+     */
+    private static final class Turn {
+        final long number;
+        final long position;
+
+        Turn(long number, long position) {
+            this.number = number;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Open a durable board on a log file.
+     * @param board an empty board
+     * @param passw the password of board
+     * @param factory allocates the posts read from the log
+     * @param path the log file, created if missing
+     * @param policy when to force the log to the disk
+     * @throws IOException if the log can not be read or replayed
+     * @throws InvalidDataException if passw is invalid
+     * @throws UnauthorizedLoginException if board refuses passw
+     */
+    public DurableBoard(DataBoard<E> board, String passw, DataElementFactory<E> factory, Path path, SyncPolicy policy)
+    throws IOException, InvalidDataException, UnauthorizedLoginException {
+        this(board, passw, factory, new WriteAheadLog(path, policy));
+    }
+
+    /**
+     * Open a durable board on a log, the log is recovered and replayed on board.
+     * @param board an empty board
+     * @param passw the password of board
+     * @param factory allocates the posts read from the log
+     * @param log a log not yet recovered, closed if passw is refused
+     * @throws IOException if the log can not be read or replayed
+     * @throws InvalidDataException if passw is invalid
+     * @throws UnauthorizedLoginException if board refuses passw
+     */
+    public DurableBoard(DataBoard<E> board, String passw, DataElementFactory<E> factory, WriteAheadLog log)
+    throws IOException, InvalidDataException, UnauthorizedLoginException {
+        super(board);
+        if(passw == null || factory == null || log == null) throw new NullPointerException();
+        // with a wrong password the replay would be refused whole and the board left empty;
+        // the token is the very object the sessions of board carry
+        String token;
+        try {
+            token = board.login(passw).authorize();
+        } catch(InvalidDataException | UnauthorizedLoginException e) {
+            log.close();
+            throw e;
+        }
+        this.log = log;
+        this.factory = factory;
+        this.passw = passw;
+        this.token = token;
+        this.buffer = new ByteArrayOutputStream(256);
+        this.out = new DataOutputStream(this.buffer);
+        this.log.recover(this::replay);
+    }
+
+    /**
+     * @return the size of the log in bytes
+     */
+    public long logSize() {
+        return this.log.size();
+    }
+
+    /**
+     * Start a record in the buffer.
+     */
+    private DataOutputStream begin(byte op) throws IOException {
+        this.buffer.reset();
+        this.out.writeByte(op);
+        return this.out;
+    }
+
+    /**
+     * Check the record in the buffer fits the log, before its batch is applied.
+     * @throws InvalidDataException if the batch is too large for one record
+     */
+    private void checkBatchSize() throws InvalidDataException {
+        if(this.buffer.size() > WriteAheadLog.MAX_RECORD) throw new InvalidDataException("Batch too large for the log");
+    }
+
+    /**
+     * Append the record in the buffer, must hold the monitor.
+     * @return the turn of the record, to commit and then apply
+     */
+    private Turn end() {
+        long position;
+        try {
+            position = this.log.append(this.buffer.toByteArray());
+        } catch(IOException e) {
+            this.failure = e;
+            throw new UncheckedIOException("write-ahead log failed", e);
+        }
+        return new Turn(++this.appended, position);
+    }
+
+    /**
+     * Wait until the record of t is durable and the records before it are applied.
+     * A failure of the log is recorded, the caller finds it in checkWritable
+     * and must still call applied(t).
+     */
+    private void commit(Turn t) {
+        try {
+            this.log.commit(t.position);
+        } catch(IOException e) {
+            synchronized(this) {
+                if(this.failure == null) this.failure = e;
+            }
+        }
+        boolean interrupted = false;
+        synchronized(this) {
+            // the turn can not be given up, the records after it wait for it
+            while(this.applied != t.number - 1) {
+                try {
+                    this.wait();
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Pass the turn to the next record, must hold the monitor.
+     */
+    private void applied(Turn t) {
+        this.applied = t.number;
+        this.notifyAll();
+    }
+
+    /**
+     * Check a password before its mutation is logged: replay uses the password of the board.
+     * p passes exactly when the decorated board would accept it, which accepted this.passw
+     * on opening, so nothing it refuses for the password is logged.
+     * @throws InvalidDataException if p is invalid
+     * @throws UnauthorizedLoginException if p does not match
+     */
+    private void checkPasswd(String p) throws InvalidDataException, UnauthorizedLoginException {
+        // a session of the decorated board carries this.token, recognized by reference as the board does
+        if(p == this.token) return;
+        DataValidator.validatePassw(p);
+        if(!this.passw.equals(p)) throw new UnauthorizedLoginException("Wrong Credentials");
+    }
+
+    /**
+     * @throws UncheckedIOException if an earlier write to the log failed
+     */
+    private synchronized void checkWritable() {
+        if(this.failure != null) throw new UncheckedIOException("write-ahead log failed", this.failure);
+    }
+
+    private void writeElement(DataOutputStream o, E dato) throws IOException {
+        o.writeUTF(dato.getAuthor());
+        o.writeUTF(dato.getText());
+        o.writeBoolean(dato.getCategory() != null);
+        if(dato.getCategory() != null) o.writeUTF(dato.getCategory());
+        ArrayList<String> likes = dato.getLikes();
+        o.writeInt(likes.size());
+        for(String who : likes) o.writeUTF(who);
+    }
+
+    private E readElement(DataInputStream in)
+    throws IOException, InvalidDataException, DuplicateDataException, DataNotFoundException {
+        E dato = this.factory.create(in.readUTF(), in.readUTF());
+        if(in.readBoolean()) dato.setCategory(in.readUTF());
+        for(int n = in.readInt(); n > 0; n--) dato.addLike(in.readUTF());
+        return dato;
+    }
+
+    /**
+     * Apply a record to the decorated board, a record the board refuses was refused
+     * when it was logged too and is skipped.
+     * @throws IOException if the record is malformed or the board refuses the password
+     */
+    private void replay(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        try {
+            switch(op) {
+            case CREATE_CATEGORY:
+                this.board.createCategory(in.readUTF(), this.passw);
+                break;
+            case REMOVE_CATEGORY:
+                this.board.removeCategory(in.readUTF(), this.passw);
+                break;
+            case ADD_FRIEND:
+                this.board.addFriend(in.readUTF(), this.passw, in.readUTF());
+                break;
+            case REMOVE_FRIEND:
+                this.board.removeFriend(in.readUTF(), this.passw, in.readUTF());
+                break;
+            case PUT:
+                String category = in.readUTF();
+                this.board.put(this.passw, this.readElement(in), category);
+                break;
+            case REMOVE:
+                this.board.remove(this.passw, this.readElement(in));
+                break;
+            case REMOVE_ID:
+                this.board.remove(this.passw, in.readLong());
+                break;
+            case LIKE:
+                String friend = in.readUTF();
+                this.board.insertLike(friend, this.readElement(in));
+                break;
+            case LIKE_ID:
+                this.board.insertLike(in.readUTF(), in.readLong());
+                break;
+            case PUT_ALL:
+                String into = in.readUTF();
+                ArrayList<E> data = new ArrayList<E>();
+                for(int n = in.readInt(); n > 0; n--) data.add(this.readElement(in));
+                this.board.putAll(this.passw, into, data);
+                break;
+            case REMOVE_ALL:
+                ArrayList<Long> ids = new ArrayList<Long>();
+                for(int n = in.readInt(); n > 0; n--) ids.add(in.readLong());
+                this.board.removeAll(this.passw, ids);
+                break;
+            case LIKES:
+                ArrayList<Like> likes = new ArrayList<Like>();
+                for(int n = in.readInt(); n > 0; n--) likes.add(new Like(in.readUTF(), in.readLong()));
+                this.board.insertLikes(likes);
+                break;
+            default:
+                throw new IOException("unknown log record " + op);
+            }
+        } catch(DataNotFoundException | DuplicateDataException | InvalidDataException e) {
+            // the mutation failed when it was logged, the board is in the same state now
+        } catch(UnauthorizedLoginException e) {
+            // the password was checked on opening: the board is not the one the log belongs to
+            throw new IOException("the board refuses the password of its log", e);
+        }
+    }
+
+    /**
+     * Log the creation of a category, then create it.
+     * @see org.unipisa.pr2cheli.Board#createCategory
+     */
+    @Override
+    public void createCategory(String category, String passw)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                this.begin(CREATE_CATEGORY).writeUTF(category);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                this.board.createCategory(category, passw);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log the removal of a category, then remove it.
+     * @see org.unipisa.pr2cheli.Board#removeCategory
+     */
+    @Override
+    public void removeCategory(String category, String passw)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                this.begin(REMOVE_CATEGORY).writeUTF(category);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                this.board.removeCategory(category, passw);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log the addition of a friend to a category, then add it.
+     * @see org.unipisa.pr2cheli.Board#addFriend
+     */
+    @Override
+    public void addFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                DataOutputStream o = this.begin(ADD_FRIEND);
+                o.writeUTF(category);
+                o.writeUTF(friend);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                this.board.addFriend(category, passw, friend);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log the removal of a friend from a category, then remove it.
+     * @see org.unipisa.pr2cheli.Board#removeFriend
+     */
+    @Override
+    public void removeFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                DataOutputStream o = this.begin(REMOVE_FRIEND);
+                o.writeUTF(category);
+                o.writeUTF(friend);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                this.board.removeFriend(category, passw, friend);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log a post added to a category, then add it.
+     * @see org.unipisa.pr2cheli.Board#put
+     */
+    @Override
+    public boolean put(String passw, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                DataOutputStream o = this.begin(PUT);
+                o.writeUTF(category);
+                this.writeElement(o, dato);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                return this.board.put(passw, dato, category);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log the posts of a collection added to a category as one record, then add them.
+     * @see org.unipisa.pr2cheli.Board#putAll
+     * @throws InvalidDataException also if the batch does not fit in a log record
+     */
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        if(data == null) throw new NullPointerException();
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                DataOutputStream o = this.begin(PUT_ALL);
+                o.writeUTF(category);
+                o.writeInt(data.size());
+                for(E dato : data) {
+                    if(dato == null) throw new NullPointerException();
+                    this.writeElement(o, dato);
+                }
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.checkBatchSize();
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                return this.board.putAll(passw, category, data);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log the removal of a post, then remove it.
+     * @see org.unipisa.pr2cheli.Board#remove
+     */
+    @Override
+    public E remove(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                this.writeElement(this.begin(REMOVE), dato);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                return this.board.remove(passw, dato);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log the removal of a post by id, then remove it.
+     * @see org.unipisa.pr2cheli.Board#remove
+     */
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                this.begin(REMOVE_ID).writeLong(id);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                return this.board.remove(passw, id);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log the removal of the posts with the given ids as one record, then remove them.
+     * @see org.unipisa.pr2cheli.Board#removeAll
+     * @throws InvalidDataException also if the batch does not fit in a log record
+     */
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            this.checkPasswd(passw);
+            try {
+                DataOutputStream o = this.begin(REMOVE_ALL);
+                o.writeInt(ids.size());
+                for(long id : ids) o.writeLong(id);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.checkBatchSize();
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                return this.board.removeAll(passw, ids);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log a like to a post, then add it.
+     * @see org.unipisa.pr2cheli.Board#insertLike
+     */
+    @Override
+    public void insertLike(String friend, E dato)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            try {
+                DataOutputStream o = this.begin(LIKE);
+                o.writeUTF(friend);
+                this.writeElement(o, dato);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                this.board.insertLike(friend, dato);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log a like to a post by id, then add it.
+     * @see org.unipisa.pr2cheli.Board#insertLike
+     */
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            try {
+                DataOutputStream o = this.begin(LIKE_ID);
+                o.writeUTF(friend);
+                o.writeLong(id);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                this.board.insertLike(friend, id);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Log a list of likes by post id as one record, then add them.
+     * @see org.unipisa.pr2cheli.Board#insertLikes
+     * @throws InvalidDataException also if the batch does not fit in a log record
+     */
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        if(likes == null) throw new NullPointerException();
+        Turn t;
+        synchronized(this) {
+            this.checkWritable();
+            try {
+                DataOutputStream o = this.begin(LIKES);
+                o.writeInt(likes.size());
+                for(Like l : likes) {
+                    o.writeUTF(l.getFriend());
+                    o.writeLong(l.getId());
+                }
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.checkBatchSize();
+            t = this.end();
+        }
+        this.commit(t);
+        synchronized(this) {
+            try {
+                this.checkWritable();
+                this.board.insertLikes(likes);
+            } finally {
+                this.applied(t);
+            }
+        }
+    }
+
+    /**
+     * Force the log to the disk and close it, the board can still be read.
+     * @throws IOException if the log can not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        this.log.close();
+    }
+}
@@ -0,0 +1,58 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Helpers shared by the boards to cut top-k lists and pages out of sorted feeds.
+ */
+class Feeds {
+    /**
+     * @param k the requested number of posts
+     * @throws InvalidDataException if k is negative
+     */
+    static void validateSize(int k) throws InvalidDataException {
+        if(k < 0) throw new InvalidDataException("Negative page size");
+    }
+
+    /**
+     * @return the first k elements of it
+     */
+    static <E> List<E> first(Iterator<? extends E> it, int k) {
+        ArrayList<E> l = new ArrayList<E>(Math.min(k, 64));
+        while(l.size() < k && it.hasNext()) {
+            l.add(it.next());
+        }
+        return l;
+    }
+
+    /**
+     * @param set a set sorted by DataElement.compareTo
+     * @param cursor the last position seen, null for the beginning
+     * @return the view of set strictly after cursor, in O(log n)
+     */
+    @SuppressWarnings("unchecked")
+    static <E extends DataElement> NavigableSet<E> after(NavigableSet<E> set, Cursor cursor) {
+        if(cursor == null) return set;
+        DataElement probe = cursor.probe();
+        if(probe == null) return Collections.<E>emptyNavigableSet();
+        return set.tailSet((E) probe, false);
+    }
+
+    /**
+     * @param it a sorted feed, already positioned after the cursor
+     * @param size the page size
+     * @return the next size elements of it, with the cursor of the following page
+     */
+    static <E extends DataElement> Page<E> page(Iterator<E> it, int size) {
+        List<E> items = first(it, size);
+        Cursor next = null;
+        if(!items.isEmpty() && it.hasNext()) next = Cursor.after(items.get(items.size() - 1));
+        return new Page<E>(items, next);
+    }
+}
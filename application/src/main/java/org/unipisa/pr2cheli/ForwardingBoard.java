@@ -0,0 +1,209 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * A board forwarding every operation to another board.
+ * Decorators extend it and override only the operations they change.
+ * The gauges are those of the decorated board, -1 if it does not keep them.
+ */
+public abstract class ForwardingBoard<E extends DataElement> implements DataBoard<E>, BoardGauges {
+    protected final DataBoard<E> board;
+
+    /**
+     * @param board the decorated board
+     * @throws NullPointerException if board is null
+     */
+    protected ForwardingBoard(DataBoard<E> board) {
+        if(board == null) throw new NullPointerException();
+        this.board = board;
+    }
+
+    @Override
+    public void createCategory(String category, String passw)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        this.board.createCategory(category, passw);
+    }
+
+    @Override
+    public void removeCategory(String category, String passw)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.board.removeCategory(category, passw);
+    }
+
+    @Override
+    public void addFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        this.board.addFriend(category, passw, friend);
+    }
+
+    @Override
+    public void removeFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.board.removeFriend(category, passw, friend);
+    }
+
+    @Override
+    public boolean put(String passw, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        return this.board.put(passw, dato, category);
+    }
+
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        return this.board.putAll(passw, category, data);
+    }
+
+    @Override
+    public E get(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.get(passw, dato);
+    }
+
+    @Override
+    public E remove(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.remove(passw, dato);
+    }
+
+    @Override
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.get(passw, id);
+    }
+
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.remove(passw, id);
+    }
+
+    @Override
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.getAll(passw, ids);
+    }
+
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.removeAll(passw, ids);
+    }
+
+    @Override
+    public List<E> getDataCategory(String passw, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.getDataCategory(passw, category);
+    }
+
+    @Override
+    public void insertLike(String friend, E dato)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        this.board.insertLike(friend, dato);
+    }
+
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        this.board.insertLike(friend, id);
+    }
+
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        this.board.insertLikes(likes);
+    }
+
+    @Override
+    public Iterator<E> getIterator(String passw)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.getIterator(passw);
+    }
+
+    @Override
+    public Iterator<E> getFriendIterator(String friend)
+    throws InvalidDataException {
+        return this.board.getFriendIterator(friend);
+    }
+
+    @Override
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.getTopK(passw, k);
+    }
+
+    @Override
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        return this.board.getFriendTopK(friend, k);
+    }
+
+    @Override
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.getPage(passw, cursor, size);
+    }
+
+    @Override
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        return this.board.getFriendPage(friend, cursor, size);
+    }
+
+    @Override
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.getCategoryPage(passw, category, cursor, size);
+    }
+
+    @Override
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.search(passw, query, cursor, size);
+    }
+
+    @Override
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        return this.board.searchAsFriend(friend, query, cursor, size);
+    }
+
+    @Override
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        return this.board.subscribe(friend, capacity, executor, listener);
+    }
+
+    @Override
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        return this.board.getFriendChangesSince(friend, version);
+    }
+
+    @Override
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        return this.board.login(passw, ttlMillis);
+    }
+
+    @Override
+    public int getCategoryCount() {
+        return this.board instanceof BoardGauges ? ((BoardGauges) this.board).getCategoryCount() : -1;
+    }
+
+    @Override
+    public int getPostCount() {
+        return this.board instanceof BoardGauges ? ((BoardGauges) this.board).getPostCount() : -1;
+    }
+
+    @Override
+    public long getLikeCount() {
+        return this.board instanceof BoardGauges ? ((BoardGauges) this.board).getLikeCount() : -1;
+    }
+}
@@ -0,0 +1,116 @@
+package org.unipisa.pr2cheli;
+
+import java.util.function.Consumer;
+
+/**
+ * Immutable map from non negative long keys to values, as a 32-way radix tree.
+ * with() copies only the path from the root to the changed slot, O(log32 n), and shares
+ * every other node with the map it was made from, so the maps made before stay valid
+ * and unchanged for whoever still holds them. Nodes emptied by a removal are dropped.
+ * Meant for dense keys, as the ids a board assigns in sequence or the SymbolTable ids:
+ * sparse keys waste most of each node.
+ *
+ * Representation Invariant: root == null iff size == 0, keys below 1 << (shift + 5) fit,
+ *  the nodes above shift 0 hold nodes or null, those at shift 0 hold values or null,
+ *  no node but the root is all null, size is the number of values
+ */
+final class IdTrie<V> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final IdTrie<Object> EMPTY = new IdTrie<Object>(null, 0, 0);
+
+    private final Object[] root;
+    private final int shift;
+    private final int size;
+
+    private IdTrie(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    /**
+     * @return the empty map
+     */
+    @SuppressWarnings("unchecked")
+    static <V> IdTrie<V> empty() {
+        return (IdTrie<V>) EMPTY;
+    }
+
+    /**
+     * @return the number of keys with a value
+     */
+    int size() {
+        return this.size;
+    }
+
+    private static boolean fits(long key, int shift) {
+        return shift + BITS >= 63 || (key >>> (shift + BITS)) == 0;
+    }
+
+    /**
+     * @return the value of key, null if none
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if(key < 0 || this.root == null || !fits(key, this.shift)) return null;
+        Object[] node = this.root;
+        for(int s = this.shift; s > 0; s -= BITS) {
+            node = (Object[]) node[(int)(key >>> s) & MASK];
+            if(node == null) return null;
+        }
+        return (V) node[(int)key & MASK];
+    }
+
+    /**
+     * @param key a non negative key
+     * @param value the new value of key, null to remove it
+     * @return the map with value for key, this if nothing changes
+     * @throws IllegalArgumentException if key is negative
+     */
+    IdTrie<V> with(long key, V value) {
+        if(key < 0) throw new IllegalArgumentException("negative key " + key);
+        V old = this.get(key);
+        if(old == value) return this;
+        int size = this.size + (old == null ? 1 : 0) - (value == null ? 1 : 0);
+        if(size == 0) return empty();
+        Object[] root = this.root;
+        int shift = this.shift;
+        while(!fits(key, shift)) {
+            // grow by one level, the old tree becomes the first child
+            Object[] up = new Object[WIDTH];
+            up[0] = root;
+            root = up;
+            shift += BITS;
+        }
+        return new IdTrie<V>(set(root, shift, key, value), shift, size);
+    }
+
+    private static Object[] set(Object[] node, int shift, long key, Object value) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int i = (int)(key >>> shift) & MASK;
+        copy[i] = shift == 0 ? value : set((Object[]) copy[i], shift - BITS, key, value);
+        if(copy[i] == null) {
+            for(Object o : copy) if(o != null) return copy;
+            return null;
+        }
+        return copy;
+    }
+
+    /**
+     * @param action applied to every value, in order of key
+     */
+    void forEach(Consumer<? super V> action) {
+        if(this.root != null) walk(this.root, this.shift, action);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void walk(Object[] node, int shift, Consumer<? super V> action) {
+        for(Object o : node) {
+            if(o == null) continue;
+            if(shift == 0) action.accept((V) o);
+            else walk((Object[]) o, shift - BITS, action);
+        }
+    }
+}
@@ -0,0 +1,563 @@
+package org.unipisa.pr2cheli;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * A board measuring every operation of the decorated board: calls, errors by exception
+ * type and a latency histogram per operation, read through getOperations() or JMX
+ * once register() has published the board.
+ * A call costs two reads of System.nanoTime() and one atomic increment, the map of the
+ * errors is only touched when the operation throws, so it can be left on.
+ * The iterators are measured while they are created, not while they are walked.
+ * The board is as thread safe as the decorated one, the meters can be read at any time.
+ */
+public class InstrumentedBoard<E extends DataElement> extends ForwardingBoard<E> implements InstrumentedBoardMXBean {
+    /**
+     * The counters of one operation, thread safe.
+     */
+    private static class Meter {
+        final String name;
+        final LatencyHistogram latencies = new LatencyHistogram();
+        final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<String, LongAdder>();
+
+        Meter(String name) {
+            this.name = name;
+        }
+
+        void record(long start) {
+            this.latencies.record(System.nanoTime() - start);
+        }
+
+        void error(Exception e) {
+            String type = e.getClass().getSimpleName();
+            LongAdder n = this.errors.get(type);
+            if(n == null) n = this.errors.computeIfAbsent(type, k -> new LongAdder());
+            n.increment();
+        }
+
+        OperationReport report() {
+            Map<String, Long> byType = new HashMap<String, Long>();
+            for(Map.Entry<String, LongAdder> e : this.errors.entrySet()) byType.put(e.getKey(), e.getValue().sum());
+            return new OperationReport(this.name, this.latencies.getCount(), byType,
+                this.latencies.getValueAtPercentile(50), this.latencies.getValueAtPercentile(99),
+                this.latencies.getValueAtPercentile(99.9), this.latencies.getMax());
+        }
+
+        void reset() {
+            this.latencies.reset();
+            this.errors.clear();
+        }
+    }
+
+    private final List<Meter> meters;
+    private final Meter createCategory;
+    private final Meter removeCategory;
+    private final Meter addFriend;
+    private final Meter removeFriend;
+    private final Meter put;
+    private final Meter putAll;
+    private final Meter get;
+    private final Meter remove;
+    private final Meter getById;
+    private final Meter removeById;
+    private final Meter getAll;
+    private final Meter removeAll;
+    private final Meter getDataCategory;
+    private final Meter insertLike;
+    private final Meter insertLikeById;
+    private final Meter insertLikes;
+    private final Meter getIterator;
+    private final Meter getFriendIterator;
+    private final Meter getTopK;
+    private final Meter getFriendTopK;
+    private final Meter getPage;
+    private final Meter getFriendPage;
+    private final Meter getCategoryPage;
+    private final Meter subscribe;
+    private final Meter getFriendChangesSince;
+    private final Meter login;
+    private final Meter search;
+    private final Meter searchAsFriend;
+    /**
+     * @param board the measured board
+     * @throws NullPointerException if board is null
+     */
+    public InstrumentedBoard(DataBoard<E> board) {
+        super(board);
+        this.meters = new ArrayList<Meter>();
+        this.createCategory = this.meter("createCategory");
+        this.removeCategory = this.meter("removeCategory");
+        this.addFriend = this.meter("addFriend");
+        this.removeFriend = this.meter("removeFriend");
+        this.put = this.meter("put");
+        this.putAll = this.meter("putAll");
+        this.get = this.meter("get");
+        this.remove = this.meter("remove");
+        this.getById = this.meter("getById");
+        this.removeById = this.meter("removeById");
+        this.getAll = this.meter("getAll");
+        this.removeAll = this.meter("removeAll");
+        this.getDataCategory = this.meter("getDataCategory");
+        this.insertLike = this.meter("insertLike");
+        this.insertLikeById = this.meter("insertLikeById");
+        this.insertLikes = this.meter("insertLikes");
+        this.getIterator = this.meter("getIterator");
+        this.getFriendIterator = this.meter("getFriendIterator");
+        this.getTopK = this.meter("getTopK");
+        this.getFriendTopK = this.meter("getFriendTopK");
+        this.getPage = this.meter("getPage");
+        this.getFriendPage = this.meter("getFriendPage");
+        this.getCategoryPage = this.meter("getCategoryPage");
+        this.subscribe = this.meter("subscribe");
+        this.getFriendChangesSince = this.meter("getFriendChangesSince");
+        this.login = this.meter("login");
+        this.search = this.meter("search");
+        this.searchAsFriend = this.meter("searchAsFriend");
+    }
+
+    private Meter meter(String name) {
+        Meter m = new Meter(name);
+        this.meters.add(m);
+        return m;
+    }
+
+    @Override
+    public List<OperationReport> getOperations() {
+        List<OperationReport> r = new ArrayList<OperationReport>(this.meters.size());
+        for(Meter m : this.meters) r.add(m.report());
+        return r;
+    }
+
+    /**
+     * @param name the name of an operation, as in OperationReport
+     * @return the report of the operation
+     * @throws IllegalArgumentException if there is no such operation
+     */
+    public OperationReport getOperation(String name) {
+        for(Meter m : this.meters) if(m.name.equals(name)) return m.report();
+        throw new IllegalArgumentException("no operation " + name);
+    }
+
+    @Override
+    public void reset() {
+        for(Meter m : this.meters) m.reset();
+    }
+
+    /**
+     * Publish this board on the platform MBean server.
+     * @param name identifies the board among the published ones
+     * @return the name it is published with, to unregister it
+     * @throws JMException if a board is already published with the same name
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName n = new ObjectName("org.unipisa.pr2cheli:type=InstrumentedBoard,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+        return n;
+    }
+
+    @Override
+    public void createCategory(String category, String passw)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            this.board.createCategory(category, passw);
+        } catch(Exception e) {
+            this.createCategory.error(e);
+            throw e;
+        } finally {
+            this.createCategory.record(start);
+        }
+    }
+
+    @Override
+    public void removeCategory(String category, String passw)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            this.board.removeCategory(category, passw);
+        } catch(Exception e) {
+            this.removeCategory.error(e);
+            throw e;
+        } finally {
+            this.removeCategory.record(start);
+        }
+    }
+
+    @Override
+    public void addFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        long start = System.nanoTime();
+        try {
+            this.board.addFriend(category, passw, friend);
+        } catch(Exception e) {
+            this.addFriend.error(e);
+            throw e;
+        } finally {
+            this.addFriend.record(start);
+        }
+    }
+
+    @Override
+    public void removeFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            this.board.removeFriend(category, passw, friend);
+        } catch(Exception e) {
+            this.removeFriend.error(e);
+            throw e;
+        } finally {
+            this.removeFriend.record(start);
+        }
+    }
+
+    @Override
+    public boolean put(String passw, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.put(passw, dato, category);
+        } catch(Exception e) {
+            this.put.error(e);
+            throw e;
+        } finally {
+            this.put.record(start);
+        }
+    }
+
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.putAll(passw, category, data);
+        } catch(Exception e) {
+            this.putAll.error(e);
+            throw e;
+        } finally {
+            this.putAll.record(start);
+        }
+    }
+
+    @Override
+    public E get(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.get(passw, dato);
+        } catch(Exception e) {
+            this.get.error(e);
+            throw e;
+        } finally {
+            this.get.record(start);
+        }
+    }
+
+    @Override
+    public E remove(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.remove(passw, dato);
+        } catch(Exception e) {
+            this.remove.error(e);
+            throw e;
+        } finally {
+            this.remove.record(start);
+        }
+    }
+
+    @Override
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.get(passw, id);
+        } catch(Exception e) {
+            this.getById.error(e);
+            throw e;
+        } finally {
+            this.getById.record(start);
+        }
+    }
+
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.remove(passw, id);
+        } catch(Exception e) {
+            this.removeById.error(e);
+            throw e;
+        } finally {
+            this.removeById.record(start);
+        }
+    }
+
+    @Override
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getAll(passw, ids);
+        } catch(Exception e) {
+            this.getAll.error(e);
+            throw e;
+        } finally {
+            this.getAll.record(start);
+        }
+    }
+
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.removeAll(passw, ids);
+        } catch(Exception e) {
+            this.removeAll.error(e);
+            throw e;
+        } finally {
+            this.removeAll.record(start);
+        }
+    }
+
+    @Override
+    public List<E> getDataCategory(String passw, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getDataCategory(passw, category);
+        } catch(Exception e) {
+            this.getDataCategory.error(e);
+            throw e;
+        } finally {
+            this.getDataCategory.record(start);
+        }
+    }
+
+    @Override
+    public void insertLike(String friend, E dato)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        long start = System.nanoTime();
+        try {
+            this.board.insertLike(friend, dato);
+        } catch(Exception e) {
+            this.insertLike.error(e);
+            throw e;
+        } finally {
+            this.insertLike.record(start);
+        }
+    }
+
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        long start = System.nanoTime();
+        try {
+            this.board.insertLike(friend, id);
+        } catch(Exception e) {
+            this.insertLikeById.error(e);
+            throw e;
+        } finally {
+            this.insertLikeById.record(start);
+        }
+    }
+
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        long start = System.nanoTime();
+        try {
+            this.board.insertLikes(likes);
+        } catch(Exception e) {
+            this.insertLikes.error(e);
+            throw e;
+        } finally {
+            this.insertLikes.record(start);
+        }
+    }
+
+    @Override
+    public Iterator<E> getIterator(String passw)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getIterator(passw);
+        } catch(Exception e) {
+            this.getIterator.error(e);
+            throw e;
+        } finally {
+            this.getIterator.record(start);
+        }
+    }
+
+    @Override
+    public Iterator<E> getFriendIterator(String friend)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getFriendIterator(friend);
+        } catch(Exception e) {
+            this.getFriendIterator.error(e);
+            throw e;
+        } finally {
+            this.getFriendIterator.record(start);
+        }
+    }
+
+    @Override
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getTopK(passw, k);
+        } catch(Exception e) {
+            this.getTopK.error(e);
+            throw e;
+        } finally {
+            this.getTopK.record(start);
+        }
+    }
+
+    @Override
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getFriendTopK(friend, k);
+        } catch(Exception e) {
+            this.getFriendTopK.error(e);
+            throw e;
+        } finally {
+            this.getFriendTopK.record(start);
+        }
+    }
+
+    @Override
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getPage(passw, cursor, size);
+        } catch(Exception e) {
+            this.getPage.error(e);
+            throw e;
+        } finally {
+            this.getPage.record(start);
+        }
+    }
+
+    @Override
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getFriendPage(friend, cursor, size);
+        } catch(Exception e) {
+            this.getFriendPage.error(e);
+            throw e;
+        } finally {
+            this.getFriendPage.record(start);
+        }
+    }
+
+    @Override
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getCategoryPage(passw, category, cursor, size);
+        } catch(Exception e) {
+            this.getCategoryPage.error(e);
+            throw e;
+        } finally {
+            this.getCategoryPage.record(start);
+        }
+    }
+
+    @Override
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.search(passw, query, cursor, size);
+        } catch(Exception e) {
+            this.search.error(e);
+            throw e;
+        } finally {
+            this.search.record(start);
+        }
+    }
+
+    @Override
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.searchAsFriend(friend, query, cursor, size);
+        } catch(Exception e) {
+            this.searchAsFriend.error(e);
+            throw e;
+        } finally {
+            this.searchAsFriend.record(start);
+        }
+    }
+
+    @Override
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.subscribe(friend, capacity, executor, listener);
+        } catch(Exception e) {
+            this.subscribe.error(e);
+            throw e;
+        } finally {
+            this.subscribe.record(start);
+        }
+    }
+
+    @Override
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        try {
+            return this.board.getFriendChangesSince(friend, version);
+        } catch(Exception e) {
+            this.getFriendChangesSince.error(e);
+            throw e;
+        } finally {
+            this.getFriendChangesSince.record(start);
+        }
+    }
+
+    @Override
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        try {
+            return this.board.login(passw, ttlMillis);
+        } catch(Exception e) {
+            this.login.error(e);
+            throw e;
+        } finally {
+            this.login.record(start);
+        }
+    }
+}
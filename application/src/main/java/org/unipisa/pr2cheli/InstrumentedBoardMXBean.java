@@ -0,0 +1,24 @@
+package org.unipisa.pr2cheli;
+
+import java.util.List;
+
+/**
+ * The management interface of an InstrumentedBoard, published on JMX.
+ */
+public interface InstrumentedBoardMXBean {
+    /**
+     * @return a report of every operation, in the order of DataBoard
+     */
+    public List<OperationReport> getOperations();
+
+    public int getCategoryCount();
+
+    public int getPostCount();
+
+    public long getLikeCount();
+
+    /**
+     * Forget the counters and latencies recorded so far.
+     */
+    public void reset();
+}
@@ -0,0 +1,161 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Set of non negative ints in an open addressing table with linear probing,
+ * without boxing: an element costs 4 to 8 bytes instead of a HashMap entry and an Integer.
+ *
+ * Representation Invariant: slots.length is a power of two >= 8, FREE marks the empty slots,
+ *  size is the number of other slots and size <= slots.length * 3 / 4,
+ *  every element is reachable from its hash by probing without crossing an empty slot
+ */
+public class IntSet {
+    private static final int FREE = -1;
+
+    private int[] slots;
+    private int size;
+
+    public IntSet() {
+        this.slots = new int[8];
+        Arrays.fill(this.slots, FREE);
+        this.size = 0;
+    }
+
+    /**
+     * Copy constructor
+     */
+    public IntSet(IntSet s) {
+        this.slots = s.slots.clone();
+        this.size = s.size;
+    }
+
+    private static int hash(int x) {
+        int h = x * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the slot holding x, or the empty slot where x would go
+     */
+    private int find(int x) {
+        int mask = this.slots.length - 1;
+        int i = hash(x) & mask;
+        while(this.slots[i] != FREE && this.slots[i] != x) i = (i + 1) & mask;
+        return i;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return true if the set has no elements
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @param x the element, negative values are never contained
+     * @return true if x is in the set
+     */
+    public boolean contains(int x) {
+        if(x < 0) return false;
+        return this.slots[this.find(x)] == x;
+    }
+
+    /**
+     * @param x the element, must not be negative
+     * @return false if x was already in the set
+     * @throws IllegalArgumentException if x is negative
+     */
+    public boolean add(int x) {
+        if(x < 0) throw new IllegalArgumentException("negative element " + x);
+        int i = this.find(x);
+        if(this.slots[i] == x) return false;
+        this.slots[i] = x;
+        if(++this.size > this.slots.length * 3 / 4) this.resize(this.slots.length * 2);
+        return true;
+    }
+
+    /**
+     * @param x the element
+     * @return false if x was not in the set
+     */
+    public boolean remove(int x) {
+        if(x < 0) return false;
+        int i = this.find(x);
+        if(this.slots[i] != x) return false;
+        // backward shift deletion: move up the elements of the probe run that would lose their slot
+        int mask = this.slots.length - 1;
+        int j = i;
+        while(true) {
+            j = (j + 1) & mask;
+            int y = this.slots[j];
+            if(y == FREE) break;
+            int home = hash(y) & mask;
+            if(((j - home) & mask) >= ((j - i) & mask)) {
+                this.slots[i] = y;
+                i = j;
+            }
+        }
+        this.slots[i] = FREE;
+        this.size--;
+        return true;
+    }
+
+    private void resize(int capacity) {
+        int[] old = this.slots;
+        this.slots = new int[capacity];
+        Arrays.fill(this.slots, FREE);
+        for(int x : old) {
+            if(x != FREE) this.slots[this.find(x)] = x;
+        }
+    }
+
+    /**
+     * @return an iterator (without remove) over the elements, in no particular order;
+     * the set must not be modified while iterating
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = this.advance(0);
+
+            private int advance(int i) {
+                while(i < IntSet.this.slots.length && IntSet.this.slots[i] == FREE) i++;
+                return i;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return this.next < IntSet.this.slots.length;
+            }
+
+            @Override
+            public int nextInt() {
+                if(!this.hasNext()) throw new NoSuchElementException();
+                int x = IntSet.this.slots[this.next];
+                this.next = this.advance(this.next + 1);
+                return x;
+            }
+        };
+    }
+
+    /**
+     * @return the elements in no particular order
+     */
+    public int[] toArray() {
+        int[] a = new int[this.size];
+        int n = 0;
+        for(int x : this.slots) {
+            if(x != FREE) a[n++] = x;
+        }
+        return a;
+    }
+}
@@ -0,0 +1,113 @@
+package org.unipisa.pr2cheli;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, with log-linear buckets: values below 32 have
+ * a bucket each, every power of two above is split in 32 buckets, so a value is reported
+ * within 1/32 of itself. Values up to 2^36 ns (about 68 seconds) are bucketed, longer
+ * ones go to the last bucket, the exact maximum is kept apart.
+ * Recording is one atomic increment, without locks or allocation, from any thread;
+ * readers see each counter up to date, not all of them at the same instant.
+ *
+ * Representation Invariant: counts.length == BUCKETS, every count >= 0,
+ *  max is the largest value recorded, 0 if none
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 35;
+    private static final int BUCKETS = SUB + (MAX_EXPONENT - SUB_BITS + 1) * SUB;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKETS);
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * @return the bucket of a non negative value
+     */
+    static int bucket(long value) {
+        if(value < SUB) return (int)value;
+        int e = 63 - Long.numberOfLeadingZeros(value);
+        if(e > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int)(value >>> (e - SUB_BITS)) & (SUB - 1);
+        return SUB + (e - SUB_BITS) * SUB + sub;
+    }
+
+    /**
+     * @return the largest value of a bucket
+     */
+    static long highest(int bucket) {
+        if(bucket < SUB) return bucket;
+        int e = (bucket - SUB) / SUB + SUB_BITS;
+        int sub = (bucket - SUB) % SUB;
+        return ((long)(SUB + sub + 1) << (e - SUB_BITS)) - 1;
+    }
+
+    /**
+     * Record a latency.
+     * modifies this
+     * @param nanos the latency, negative values count as 0
+     */
+    public void record(long nanos) {
+        if(nanos < 0) nanos = 0;
+        this.counts.incrementAndGet(bucket(nanos));
+        long m = this.max.get();
+        while(nanos > m && !this.max.compareAndSet(m, nanos)) m = this.max.get();
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    public long getCount() {
+        long n = 0;
+        for(int i = 0; i < BUCKETS; i++) n += this.counts.get(i);
+        return n;
+    }
+
+    /**
+     * @return the largest latency recorded, 0 if none
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency that percentile of the recorded ones do not exceed, rounded up
+     * to its bucket, 0 if none was recorded
+     * @throws IllegalArgumentException if percentile is out of range
+     */
+    public long getValueAtPercentile(double percentile) {
+        if(!(percentile >= 0 && percentile <= 100)) throw new IllegalArgumentException("percentile " + percentile);
+        long[] c = new long[BUCKETS];
+        long n = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            c[i] = this.counts.get(i);
+            n += c[i];
+        }
+        if(n == 0) return 0;
+        long rank = Math.max(1, (long)Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += c[i];
+            // the last bucket has no upper bound, only the maximum bounds it
+            if(seen >= rank) return i == BUCKETS - 1 ? this.max.get() : Math.min(highest(i), this.max.get());
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Forget every latency recorded. Latencies recorded meanwhile may be kept or lost.
+     * modifies this
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) this.counts.set(i, 0);
+        this.max.set(0);
+    }
+}
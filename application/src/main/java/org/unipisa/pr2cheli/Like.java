@@ -0,0 +1,41 @@
+package org.unipisa.pr2cheli;
+
+/**
+ * A like to be inserted by DataBoard.insertLikes: who likes the post with the given id.
+ *
+ * Representation Invariant: friend != null
+ */
+public class Like {
+    private final String friend;
+    private final long id;
+
+    /**
+     * @param friend who likes the post, validated by the board
+     * @param id the id of the post
+     * @throws NullPointerException if friend is null
+     */
+    public Like(String friend, long id) {
+        if(friend == null) throw new NullPointerException();
+        this.friend = friend;
+        this.id = id;
+    }
+
+    /**
+     * @return who likes the post
+     */
+    public String getFriend() {
+        return this.friend;
+    }
+
+    /**
+     * @return the id of the liked post
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return "like by " + this.friend + " to post " + this.id;
+    }
+}
@@ -0,0 +1,132 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Set of users who liked a post, stored as a sorted array of ids interned in SymbolTable.USERS.
+ * Membership is a binary search, adding or removing a like shifts the tail of the array.
+ * copy() is O(1): the two sets share the array until one of them is modified.
+ *
+ * Representation Invariant: ids != null && 0 <= size <= ids.length
+ *  && ids[0 .. size) is strictly increasing
+ *  && if shared, ids may be referenced by another LikeSet and must be copied before writing
+ */
+public class LikeSet {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids;
+    private int size;
+    private boolean shared;
+
+    public LikeSet() {
+        this.ids = EMPTY;
+        this.size = 0;
+        this.shared = false;
+    }
+
+    private LikeSet(int[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+        this.shared = true;
+    }
+
+    /**
+     * @param ids strictly increasing ids from SymbolTable.USERS, owned by the new set
+     * @return the set of ids
+     */
+    static LikeSet of(int[] ids) {
+        LikeSet s = new LikeSet();
+        s.ids = ids;
+        s.size = ids.length;
+        return s;
+    }
+
+    /**
+     * @return a copy of this set, sharing the array until either set is modified
+     */
+    public LikeSet copy() {
+        this.shared = true;
+        return new LikeSet(this.ids, this.size);
+    }
+
+    /**
+     * @return the number of likes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param i an index, 0 <= i < size()
+     * @return the i-th smallest id in the set
+     */
+    int get(int i) {
+        return this.ids[i];
+    }
+
+    /**
+     * @param user an id from SymbolTable.USERS
+     * @return true if user is in the set
+     */
+    public boolean contains(int user) {
+        return Arrays.binarySearch(this.ids, 0, this.size, user) >= 0;
+    }
+
+    /**
+     * @param who a username
+     * @return true if who is in the set
+     */
+    public boolean contains(String who) {
+        int user = SymbolTable.USERS.lookup(who);
+        return user >= 0 && this.contains(user);
+    }
+
+    /**
+     * @param user an id from SymbolTable.USERS
+     * @return false if user was already in the set
+     */
+    public boolean add(int user) {
+        int pos = Arrays.binarySearch(this.ids, 0, this.size, user);
+        if(pos >= 0) return false;
+        pos = -pos - 1;
+        int[] dst = this.ids;
+        if(this.shared || this.size == dst.length) {
+            dst = new int[Math.max(4, this.size + (this.size >> 1) + 1)];
+            System.arraycopy(this.ids, 0, dst, 0, pos);
+            this.shared = false;
+        }
+        System.arraycopy(this.ids, pos, dst, pos + 1, this.size - pos);
+        dst[pos] = user;
+        this.ids = dst;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * @param user an id from SymbolTable.USERS
+     * @return false if user was not in the set
+     */
+    public boolean remove(int user) {
+        int pos = Arrays.binarySearch(this.ids, 0, this.size, user);
+        if(pos < 0) return false;
+        if(this.shared) {
+            this.ids = Arrays.copyOf(this.ids, this.size);
+            this.shared = false;
+        }
+        System.arraycopy(this.ids, pos + 1, this.ids, pos, this.size - pos - 1);
+        this.size--;
+        return true;
+    }
+
+    /**
+     * @return the usernames in the set, ordered by id
+     */
+    public ArrayList<String> names() {
+        ArrayList<String> l = new ArrayList<String>(this.size);
+        for(int i = 0; i < this.size; i++) {
+            l.add(SymbolTable.USERS.name(this.ids[i]));
+        }
+        return l;
+    }
+}
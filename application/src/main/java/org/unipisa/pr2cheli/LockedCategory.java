@@ -0,0 +1,49 @@
+package org.unipisa.pr2cheli;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Category guarded by its own read/write lock, used by ConcurrentBoard.
+ * contents and friends must only be read while holding readLock()
+ * and only be modified while holding writeLock().
+ * Once removed is set the category is detached from its board and must not be modified.
+ */
+public class LockedCategory<E extends DataElement> extends Category<E> {
+    private final ReentrantReadWriteLock lock;
+    private boolean removed;
+
+    public LockedCategory(String name) {
+        super(name);
+        this.lock = new ReentrantReadWriteLock();
+        this.removed = false;
+    }
+
+    /**
+     * @return the shared lock, for readers
+     */
+    public Lock readLock() {
+        return this.lock.readLock();
+    }
+
+    /**
+     * @return the exclusive lock, for writers
+     */
+    public Lock writeLock() {
+        return this.lock.writeLock();
+    }
+
+    /**
+     * @return true if the category has been removed from its board
+     */
+    public boolean isRemoved() {
+        return removed;
+    }
+
+    /**
+     * Mark the category as removed, must hold writeLock()
+     */
+    public void setRemoved() {
+        this.removed = true;
+    }
+}
@@ -0,0 +1,86 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterator (without remove) merging k sorted sources into one sorted sequence.
+ * The sources are kept in a binary heap ordered by their current element:
+ * setup is O(k), each next() is O(log k) and allocates nothing, and the sources are
+ * consumed lazily, so a caller that stops early pays only for what it read.
+ * The sources must be sorted by the natural ordering of E and must not change while
+ * iterating; fail-fast sources such as TreeSet throw ConcurrentModificationException if they do.
+ *
+ * Representation Invariant: 0 <= size <= its.size(),
+ *  its[0 .. size) are the non exhausted sources and heads[i] is the element last read from its[i],
+ *  heads[0 .. size) is a min-heap.
+ */
+public class MergeIterator<E extends Comparable<? super E>> implements Iterator<E> {
+    private final ArrayList<Iterator<? extends E>> its;
+    private final Object[] heads;
+    private int size;
+
+    /**
+     * @param sources the sorted sources to merge
+     */
+    public MergeIterator(Iterable<? extends Iterable<? extends E>> sources) {
+        this.its = new ArrayList<Iterator<? extends E>>();
+        for(Iterable<? extends E> s : sources) {
+            Iterator<? extends E> it = s.iterator();
+            if(it.hasNext()) this.its.add(it);
+        }
+        this.heads = new Object[this.its.size()];
+        this.size = this.its.size();
+        for(int i = 0; i < this.size; i++) {
+            this.heads[i] = this.its.get(i).next();
+        }
+        for(int i = this.size / 2 - 1; i >= 0; i--) {
+            this.siftDown(i);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.size > 0;
+    }
+
+    @Override
+    public E next() {
+        if(this.size == 0) throw new NoSuchElementException();
+        E e = this.head(0);
+        if(this.its.get(0).hasNext()) {
+            this.heads[0] = this.its.get(0).next();
+        } else {
+            this.size--;
+            this.its.set(0, this.its.get(this.size));
+            this.heads[0] = this.heads[this.size];
+            this.its.set(this.size, null);
+            this.heads[this.size] = null;
+        }
+        this.siftDown(0);
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E head(int i) {
+        return (E) this.heads[i];
+    }
+
+    private void siftDown(int i) {
+        while(true) {
+            int l = 2 * i + 1;
+            if(l >= this.size) return;
+            int m = l;
+            if(l + 1 < this.size && this.head(l + 1).compareTo(this.head(l)) < 0) m = l + 1;
+            if(this.head(i).compareTo(this.head(m)) <= 0) return;
+            Iterator<? extends E> it = this.its.get(i);
+            Object h = this.heads[i];
+            this.its.set(i, this.its.get(m));
+            this.heads[i] = this.heads[m];
+            this.its.set(m, it);
+            this.heads[m] = h;
+            i = m;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The counters and latencies of one operation of an InstrumentedBoard, as they were
+ * when the report was taken. Latencies are in nanoseconds, rounded up to the bucket
+ * of the histogram, so within 1/32 of the exact value.
+ */
+public class OperationReport {
+    private final String name;
+    private final long calls;
+    private final long errors;
+    private final Map<String, Long> errorsByType;
+    private final long p50;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    OperationReport(String name, long calls, Map<String, Long> errorsByType, long p50, long p99, long p999, long max) {
+        this.name = name;
+        this.calls = calls;
+        long n = 0;
+        for(long e : errorsByType.values()) n += e;
+        this.errors = n;
+        this.errorsByType = Collections.unmodifiableMap(new TreeMap<String, Long>(errorsByType));
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /** @return the name of the operation, the method name, with ById for the overloads taking an id */
+    public String getName() {
+        return this.name;
+    }
+
+    /** @return the number of calls, including those that threw */
+    public long getCalls() {
+        return this.calls;
+    }
+
+    /** @return the number of calls that threw */
+    public long getErrors() {
+        return this.errors;
+    }
+
+    /** @return the number of calls that threw, by simple name of the exception class */
+    public Map<String, Long> getErrorsByType() {
+        return this.errorsByType;
+    }
+
+    /** @return the median latency */
+    public long getP50() {
+        return this.p50;
+    }
+
+    /** @return the 99th percentile of latency */
+    public long getP99() {
+        return this.p99;
+    }
+
+    /** @return the 99.9th percentile of latency */
+    public long getP999() {
+        return this.p999;
+    }
+
+    /** @return the largest latency */
+    public long getMax() {
+        return this.max;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ": " + this.calls + " calls, " + this.errors + " errors " + this.errorsByType
+            + ", p50 " + this.p50 + " ns, p99 " + this.p99 + " ns, p999 " + this.p999 + " ns, max " + this.max + " ns";
+    }
+}
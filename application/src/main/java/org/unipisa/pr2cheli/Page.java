@@ -0,0 +1,45 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A page of a feed: the posts in order and the cursor of the following page.
+ * getNext() is null on the last page.
+ */
+public class Page<E extends DataElement> implements Iterable<E> {
+    private final List<E> items;
+    private final Cursor next;
+
+    public Page(List<E> items, Cursor next) {
+        this.items = Collections.unmodifiableList(items);
+        this.next = next;
+    }
+
+    /**
+     * @return the posts of the page
+     */
+    public List<E> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the cursor of the following page, null if this is the last one
+     */
+    public Cursor getNext() {
+        return next;
+    }
+
+    /**
+     * @return true if there is a following page
+     */
+    public boolean hasNext() {
+        return this.next != null;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return this.items.iterator();
+    }
+}
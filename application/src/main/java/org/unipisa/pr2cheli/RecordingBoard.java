@@ -0,0 +1,730 @@
+package org.unipisa.pr2cheli;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * A board recording every call to the decorated board in a trace: the operation, its
+ * arguments, when it started, how long it took and what it returned or threw, so a
+ * sequence of calls can be replayed offline by a TraceReplayer.
+ * Records are buffered and appended under a lock in the order the calls return, the call
+ * itself is not serialized; the trace is complete only after close().
+ * The passwords are not recorded, only whether they were the password given here.
+ * The calls taking a session are recorded as the calls with the password they stand for.
+ * If the trace can not be written the recording stops and the board keeps working,
+ * getFailure() tells why.
+ */
+public class RecordingBoard<E extends DataElement> extends ForwardingBoard<E> implements Closeable {
+    private final Trace.Writer trace;
+
+    /**
+     * Record to a file.
+     * @param board the recorded board
+     * @param passw the password of board
+     * @param path the trace file, replaced if it exists
+     * @throws IOException if the file can not be created
+     */
+    public RecordingBoard(DataBoard<E> board, String passw, Path path) throws IOException {
+        this(board, passw, Files.newOutputStream(path));
+    }
+
+    /**
+     * Record to a stream, closed by close().
+     * @param board the recorded board
+     * @param passw the password of board
+     * @param out receives the trace
+     * @throws NullPointerException if an argument is null
+     */
+    public RecordingBoard(DataBoard<E> board, String passw, OutputStream out) {
+        super(board);
+        if(passw == null || out == null) throw new NullPointerException();
+        this.trace = new Trace.Writer(new DataOutputStream(new BufferedOutputStream(out, 1 << 16)), passw);
+    }
+
+    /**
+     * @return the exception that stopped the recording, null if it is going on
+     */
+    public IOException getFailure() {
+        synchronized(this.trace) {
+            return this.trace.getFailure();
+        }
+    }
+
+    /**
+     * Write the buffered records, so the trace so far can be read while recording.
+     */
+    public void flush() {
+        synchronized(this.trace) {
+            this.trace.flush();
+        }
+    }
+
+    /**
+     * Stop recording and close the trace, the board keeps working unrecorded.
+     * @throws IOException if the trace could not be written completely
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized(this.trace) {
+            this.trace.close();
+            if(this.trace.getFailure() != null) throw this.trace.getFailure();
+        }
+    }
+
+    @Override
+    public void createCategory(String category, String passw)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            this.board.createCategory(category, passw);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.CREATE_CATEGORY, start, end)) {
+                    this.trace.string(category);
+                    this.trace.passw(passw);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeCategory(String category, String passw)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            this.board.removeCategory(category, passw);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.REMOVE_CATEGORY, start, end)) {
+                    this.trace.string(category);
+                    this.trace.passw(passw);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            this.board.addFriend(category, passw, friend);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.ADD_FRIEND, start, end)) {
+                    this.trace.string(category);
+                    this.trace.passw(passw);
+                    this.trace.string(friend);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void removeFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            this.board.removeFriend(category, passw, friend);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.REMOVE_FRIEND, start, end)) {
+                    this.trace.string(category);
+                    this.trace.passw(passw);
+                    this.trace.string(friend);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean put(String passw, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        boolean r = false;
+        try {
+            return r = this.board.put(passw, dato, category);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.PUT, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.element(dato);
+                    this.trace.string(category);
+                    this.trace.end(error, r ? 1 : 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        int r = 0;
+        try {
+            return r = this.board.putAll(passw, category, data);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.PUT_ALL, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.string(category);
+                    this.trace.elements(data);
+                    this.trace.end(error, r);
+                }
+            }
+        }
+    }
+
+    @Override
+    public E get(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        E r = null;
+        try {
+            return r = this.board.get(passw, dato);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.element(dato);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public E remove(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        E r = null;
+        try {
+            return r = this.board.remove(passw, dato);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.REMOVE, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.element(dato);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        E r = null;
+        try {
+            return r = this.board.get(passw, id);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_ID, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.number(id);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        E r = null;
+        try {
+            return r = this.board.remove(passw, id);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.REMOVE_ID, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.number(id);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        List<E> r = null;
+        try {
+            return r = this.board.getAll(passw, ids);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_ALL, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.ids(ids);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        List<E> r = null;
+        try {
+            return r = this.board.removeAll(passw, ids);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.REMOVE_ALL, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.ids(ids);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<E> getDataCategory(String passw, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        List<E> r = null;
+        try {
+            return r = this.board.getDataCategory(passw, category);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_DATA_CATEGORY, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.string(category);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void insertLike(String friend, E dato)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            this.board.insertLike(friend, dato);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.LIKE, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.element(dato);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            this.board.insertLike(friend, id);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.LIKE_ID, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.number(id);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        long start = System.nanoTime();
+        Exception error = null;
+        try {
+            this.board.insertLikes(likes);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.LIKES, start, end)) {
+                    this.trace.likes(likes);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Iterator<E> getIterator(String passw)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Iterator<E> r = null;
+        try {
+            return r = this.board.getIterator(passw);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_ITERATOR, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Iterator<E> getFriendIterator(String friend)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Iterator<E> r = null;
+        try {
+            return r = this.board.getFriendIterator(friend);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_FRIEND_ITERATOR, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        List<E> r = null;
+        try {
+            return r = this.board.getTopK(passw, k);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_TOP_K, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.number(k);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        List<E> r = null;
+        try {
+            return r = this.board.getFriendTopK(friend, k);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_FRIEND_TOP_K, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.number(k);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Page<E> r = null;
+        try {
+            return r = this.board.getPage(passw, cursor, size);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_PAGE, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.cursor(cursor);
+                    this.trace.number(size);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Page<E> r = null;
+        try {
+            return r = this.board.getFriendPage(friend, cursor, size);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_FRIEND_PAGE, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.cursor(cursor);
+                    this.trace.number(size);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Page<E> r = null;
+        try {
+            return r = this.board.getCategoryPage(passw, category, cursor, size);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_CATEGORY_PAGE, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.string(category);
+                    this.trace.cursor(cursor);
+                    this.trace.number(size);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Page<E> r = null;
+        try {
+            return r = this.board.search(passw, query, cursor, size);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.SEARCH, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.string(query);
+                    this.trace.cursor(cursor);
+                    this.trace.number(size);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Page<E> r = null;
+        try {
+            return r = this.board.searchAsFriend(friend, query, cursor, size);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.SEARCH_AS_FRIEND, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.string(query);
+                    this.trace.cursor(cursor);
+                    this.trace.number(size);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Subscription r = null;
+        try {
+            return r = this.board.subscribe(friend, capacity, executor, listener);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.SUBSCRIBE, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.number(capacity);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Changes<E> r = null;
+        try {
+            return r = this.board.getFriendChangesSince(friend, version);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.GET_FRIEND_CHANGES_SINCE, start, end)) {
+                    this.trace.string(friend);
+                    this.trace.number(version);
+                    this.trace.end(error, Trace.digest(r));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        long start = System.nanoTime();
+        Exception error = null;
+        Session r = null;
+        try {
+            return r = this.board.login(passw, ttlMillis);
+        } catch(Exception e) {
+            error = e;
+            throw e;
+        } finally {
+            long end = System.nanoTime();
+            synchronized(this.trace) {
+                if(this.trace.begin(Trace.LOGIN, start, end)) {
+                    this.trace.passw(passw);
+                    this.trace.number(ttlMillis);
+                    this.trace.end(error, 0);
+                }
+            }
+        }
+    }
+}
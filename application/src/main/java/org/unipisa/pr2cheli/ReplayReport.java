@@ -0,0 +1,92 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The outcome of a TraceReplayer run: for each operation found in the trace, its latencies
+ * and errors as recorded and as replayed, and how many calls diverged, that is threw a
+ * different exception or returned a different result than recorded.
+ * Only the operations found in the trace are reported, in the order of DataBoard.
+ */
+public class ReplayReport {
+    private final long calls;
+    private final long elapsedNanos;
+    private final boolean truncated;
+    private final List<OperationReport> recorded;
+    private final List<OperationReport> replayed;
+    private final long divergences;
+    private final Map<String, Long> divergencesByOperation;
+    private final List<String> samples;
+
+    ReplayReport(long calls, long elapsedNanos, boolean truncated, List<OperationReport> recorded,
+        List<OperationReport> replayed, long divergences, Map<String, Long> divergencesByOperation, List<String> samples) {
+        this.calls = calls;
+        this.elapsedNanos = elapsedNanos;
+        this.truncated = truncated;
+        this.recorded = Collections.unmodifiableList(recorded);
+        this.replayed = Collections.unmodifiableList(replayed);
+        this.divergences = divergences;
+        this.divergencesByOperation = Collections.unmodifiableMap(new TreeMap<String, Long>(divergencesByOperation));
+        this.samples = Collections.unmodifiableList(samples);
+    }
+
+    /** @return the number of calls replayed */
+    public long getCalls() {
+        return this.calls;
+    }
+
+    /** @return how long the replay took, in nanoseconds */
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /** @return true if the trace ended in the middle of a record, which was not replayed */
+    public boolean isTruncated() {
+        return this.truncated;
+    }
+
+    /** @return the latencies and errors of the recorded calls, by operation */
+    public List<OperationReport> getRecorded() {
+        return this.recorded;
+    }
+
+    /** @return the latencies and errors of the replayed calls, by operation */
+    public List<OperationReport> getReplayed() {
+        return this.replayed;
+    }
+
+    /** @return the number of calls whose outcome differed from the recorded one */
+    public long getDivergences() {
+        return this.divergences;
+    }
+
+    /** @return the number of diverging calls, by operation name */
+    public Map<String, Long> getDivergencesByOperation() {
+        return this.divergencesByOperation;
+    }
+
+    /** @return the first diverging calls, with their position in the trace and both outcomes */
+    public List<String> getDivergenceSamples() {
+        return this.samples;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder(String.format("%d calls in %.3f s, %d diverged%s%n", this.calls,
+            this.elapsedNanos / 1e9, this.divergences, this.truncated ? ", trace truncated" : ""));
+        b.append(String.format("%-22s %10s %12s %12s %12s %12s %8s %8s %8s%n", "operation", "calls", "rec p50 ns",
+            "rep p50 ns", "rec p99 ns", "rep p99 ns", "rec err", "rep err", "diverged"));
+        for(int i = 0; i < this.recorded.size(); i++) {
+            OperationReport rec = this.recorded.get(i);
+            OperationReport rep = this.replayed.get(i);
+            Long d = this.divergencesByOperation.get(rec.getName());
+            b.append(String.format("%-22s %10d %12d %12d %12d %12d %8d %8d %8d%n", rec.getName(), rec.getCalls(),
+                rec.getP50(), rep.getP50(), rec.getP99(), rep.getP99(), rec.getErrors(), rep.getErrors(), d == null ? 0 : d));
+        }
+        for(String s : this.samples) b.append(s).append(System.lineSeparator());
+        return b.toString();
+    }
+}
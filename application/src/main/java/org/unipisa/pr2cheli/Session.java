@@ -0,0 +1,108 @@
+package org.unipisa.pr2cheli;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * A login to a board, returned by DataBoard.login() and accepted in place of the
+ * password until it expires or is revoked.
+ * The session does not hold the password but a token of it, a salted SHA-256 digest
+ * the board computes once and recognizes in place of the password; the salt is drawn
+ * at random when the class is loaded, so a token is worth nothing outside this process.
+ * Expiry is checked against the clock when the session is used.
+ * A session can be shared by many threads.
+ */
+public class Session {
+    /** The duration of a session opened with login(passw), 30 minutes */
+    public static final long DEFAULT_TTL_MILLIS = 30 * 60 * 1000;
+
+    private static final byte[] SALT = salt();
+
+    private final String token;
+    private final long expiry;
+    private volatile boolean revoked;
+
+    /**
+     * @param token the token of the password of the board
+     * @param ttlMillis the duration of the session, positive
+     */
+    private Session(String token, long ttlMillis) {
+        this.token = token;
+        long now = System.currentTimeMillis();
+        this.expiry = ttlMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + ttlMillis;
+    }
+
+    private static byte[] salt() {
+        byte[] salt = new byte[16];
+        new SecureRandom().nextBytes(salt);
+        return salt;
+    }
+
+    /**
+     * @return when the session expires, in milliseconds since the epoch
+     */
+    public long getExpiry() {
+        return this.expiry;
+    }
+
+    /**
+     * @return true if the session is neither revoked nor expired
+     */
+    public boolean isValid() {
+        return !this.revoked && System.currentTimeMillis() < this.expiry;
+    }
+
+    /**
+     * End the session, the operations already running are not affected.
+     * modifies this
+     */
+    public void revoke() {
+        this.revoked = true;
+    }
+
+    /**
+     * @return the token to pass to the board in place of the password
+     * @throws UnauthorizedLoginException if the session is revoked or expired
+     */
+    String authorize() throws UnauthorizedLoginException {
+        if(!this.isValid()) throw new UnauthorizedLoginException("Session expired or revoked");
+        return this.token;
+    }
+
+    /**
+     * @param token the token of the password of the board, see token()
+     * @param ttlMillis the duration of the session
+     * @return a new session carrying token
+     * @throws InvalidDataException if ttlMillis is not positive
+     */
+    static Session open(String token, long ttlMillis) throws InvalidDataException {
+        if(ttlMillis <= 0) throw new InvalidDataException("Invalid session duration");
+        return new Session(token, ttlMillis);
+    }
+
+    /**
+     * @param passw a password
+     * @return the token standing for passw in the sessions, the same string for equal passwords
+     */
+    static String token(String passw) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch(NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+        md.update(SALT);
+        byte[] digest = md.digest(passw.getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[2 * digest.length];
+        for(int i = 0; i < digest.length; i++) {
+            hex[2 * i] = Character.forDigit((digest[i] >> 4) & 0xf, 16);
+            hex[2 * i + 1] = Character.forDigit(digest[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+}
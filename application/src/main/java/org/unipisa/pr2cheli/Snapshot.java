@@ -0,0 +1,325 @@
+package org.unipisa.pr2cheli;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of a whole board.
+ * The file is written sequentially to a temporary file and moved over the old one
+ * when complete, it is read back through a MappedByteBuffer. Layout, big endian,
+ * strings as unsigned short length + UTF-8 bytes:
+ *   int magic, int version, string owner, long lastId,
+ *   int users, users * string                      (every user who liked a post)
+ *   int categories, categories * {
+ *     string name, int friends, friends * string,
+ *     int posts, posts * { long id, string text, int likes, likes * int user }
+ *   }
+ *   int crc32 of everything before it
+ * The posts of a category are written in DataElement.compareTo order, so the category
+ * sets and the board index are rebuilt with the linear bulk construction of TreeSet
+ * instead of one insertion per post, and posts are restored without validation.
+ */
+class Snapshot {
+    private static final int MAGIC = 0x50524253;
+    private static final int VERSION = 1;
+
+    /**
+     * The structure of a board at one instant.
+     * The posts are shared with the board, which never modifies a stored post,
+     * so an image can be written while the board keeps changing.
+     */
+    static class Image {
+        final String owner;
+        final long lastId;
+        final ArrayList<String> categories;
+        final ArrayList<String[]> friends;
+        final ArrayList<DataElement[]> posts;
+
+        Image(String owner, long lastId) {
+            this.owner = owner;
+            this.lastId = lastId;
+            this.categories = new ArrayList<String>();
+            this.friends = new ArrayList<String[]>();
+            this.posts = new ArrayList<DataElement[]>();
+        }
+
+        /**
+         * Copy the references to a category, posts must be sorted.
+         * @param friends the ids of the friends in SymbolTable.USERS
+         */
+        void add(String category, IntSet friends, Collection<? extends DataElement> posts) {
+            int[] ids = friends.toArray();
+            String[] names = new String[ids.length];
+            for(int i = 0; i < ids.length; i++) names[i] = SymbolTable.USERS.name(ids[i]);
+            this.categories.add(category);
+            this.friends.add(names);
+            this.posts.add(posts.toArray(new DataElement[0]));
+        }
+
+        int size() {
+            return this.categories.size();
+        }
+
+        int countPosts() {
+            int n = 0;
+            for(DataElement[] p : this.posts) n += p.length;
+            return n;
+        }
+    }
+
+    /**
+     * A sorted sequence seen as a SortedSet, only to hand it to the TreeSet constructor,
+     * which builds the tree in linear time when the source is sorted by the same comparator.
+     */
+    private static class SortedView<E> extends AbstractSet<E> implements SortedSet<E> {
+        private final int size;
+        private final Iterable<E> items;
+
+        SortedView(int size, Iterable<E> items) {
+            this.size = size;
+            this.items = items;
+        }
+
+        @Override
+        public Iterator<E> iterator() {
+            return this.items.iterator();
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+
+        @Override
+        public Comparator<? super E> comparator() {
+            return null;
+        }
+
+        @Override
+        public SortedSet<E> subSet(E from, E to) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<E> headSet(E to) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SortedSet<E> tailSet(E from) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public E first() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public E last() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @param names usernames
+     * @return the set of their ids in SymbolTable.USERS
+     */
+    static IntSet users(String[] names) {
+        IntSet s = new IntSet();
+        for(String n : names) s.add(SymbolTable.USERS.intern(n));
+        return s;
+    }
+
+    /**
+     * @param sorted posts in DataElement.compareTo order, without duplicates
+     * @return a TreeSet of the posts, built in linear time
+     */
+    static <E extends DataElement> TreeSet<E> sortedSet(E[] sorted) {
+        return new TreeSet<E>(new SortedView<E>(sorted.length, Arrays.asList(sorted)));
+    }
+
+    /**
+     * @param sorted the posts of each category in DataElement.compareTo order
+     * @return a TreeSet of the posts of every category, merged and built in linear time
+     */
+    static <E extends DataElement> TreeSet<E> mergedSet(List<E[]> sorted) {
+        int n = 0;
+        ArrayList<List<E>> lists = new ArrayList<List<E>>(sorted.size());
+        for(E[] p : sorted) {
+            n += p.length;
+            lists.add(Arrays.asList(p));
+        }
+        return new TreeSet<E>(new SortedView<E>(n, () -> new MergeIterator<E>(lists)));
+    }
+
+    /**
+     * Write an image to path, replacing it only once the snapshot is complete and on disk.
+     * @throws IOException if the file can not be written
+     */
+    static void write(Image image, Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        // users get local numbers in order of first appearance
+        int[] local = new int[SymbolTable.USERS.size()];
+        Arrays.fill(local, -1);
+        ArrayList<String> users = new ArrayList<String>();
+        for(DataElement[] p : image.posts) {
+            for(DataElement e : p) {
+                LikeSet l = e.likeSet();
+                for(int i = 0; i < l.size(); i++) {
+                    int u = l.get(i);
+                    if(local[u] >= 0) continue;
+                    local[u] = users.size();
+                    users.add(SymbolTable.USERS.name(u));
+                }
+            }
+        }
+        try(FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(file, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, image.owner);
+            out.writeLong(image.lastId);
+            out.writeInt(users.size());
+            for(String u : users) writeString(out, u);
+            out.writeInt(image.size());
+            for(int c = 0; c < image.size(); c++) {
+                writeString(out, image.categories.get(c));
+                String[] friends = image.friends.get(c);
+                out.writeInt(friends.length);
+                for(String f : friends) writeString(out, f);
+                DataElement[] posts = image.posts.get(c);
+                out.writeInt(posts.length);
+                for(DataElement e : posts) {
+                    out.writeLong(e.getId());
+                    writeString(out, e.getText());
+                    LikeSet l = e.likeSet();
+                    out.writeInt(l.size());
+                    for(int i = 0; i < l.size(); i++) out.writeInt(local[l.get(i)]);
+                }
+            }
+            out.flush();
+            new DataOutputStream(file).writeInt((int)checked.getChecksum().getValue());
+            file.getChannel().force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write an image on executor.
+     * @return completes when the snapshot is on disk, exceptionally with an UncheckedIOException
+     */
+    static CompletableFuture<Void> writeAsync(Image image, Path path, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write(image, path);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        if(b.length > 0xffff) throw new IOException("string too long for a snapshot");
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    private static String readString(ByteBuffer in, byte[] scratch) {
+        int n = in.getShort() & 0xffff;
+        in.get(scratch, 0, n);
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Map a snapshot and read it back.
+     * @return the image, the posts of each category are in DataElement.compareTo order
+     * @throws IOException if the file can not be read, is corrupt or larger than 2GB
+     */
+    static Image read(Path path) throws IOException {
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if(size > Integer.MAX_VALUE) throw new IOException("snapshot too large to map: " + size);
+            if(size < 12) throw new IOException("corrupt snapshot: " + path);
+            MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int end = (int)size - 4;
+            CRC32 crc = new CRC32();
+            ByteBuffer body = in.duplicate();
+            body.limit(end);
+            crc.update(body);
+            if((int)crc.getValue() != in.getInt(end)) throw new IOException("corrupt snapshot: " + path);
+            in.limit(end);
+            try {
+                return decode(in);
+            } catch(BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+                throw new IOException("corrupt snapshot: " + path, e);
+            }
+        }
+    }
+
+    private static Image decode(ByteBuffer in) throws IOException {
+        if(in.getInt() != MAGIC) throw new IOException("not a board snapshot");
+        int version = in.getInt();
+        if(version != VERSION) throw new IOException("unsupported snapshot version " + version);
+        byte[] scratch = new byte[0x10000];
+        String owner = readString(in, scratch);
+        int author = SymbolTable.USERS.intern(owner);
+        Image image = new Image(owner, in.getLong());
+        int[] users = new int[in.getInt()];
+        for(int i = 0; i < users.length; i++) {
+            users[i] = SymbolTable.USERS.intern(readString(in, scratch));
+        }
+        int categories = in.getInt();
+        for(int c = 0; c < categories; c++) {
+            String category = readString(in, scratch);
+            int cat = SymbolTable.CATEGORIES.intern(category);
+            String[] friends = new String[in.getInt()];
+            for(int i = 0; i < friends.length; i++) friends[i] = readString(in, scratch);
+            DataElement[] posts = new DataElement[in.getInt()];
+            for(int p = 0; p < posts.length; p++) {
+                long id = in.getLong();
+                String text = readString(in, scratch);
+                int[] likes = new int[in.getInt()];
+                for(int i = 0; i < likes.length; i++) likes[i] = users[in.getInt()];
+                Arrays.sort(likes);
+                for(int i = 1; i < likes.length; i++) {
+                    if(likes[i - 1] == likes[i]) throw new IOException("duplicate like in snapshot");
+                }
+                posts[p] = new DataElement(id, author, text, cat, LikeSet.of(likes));
+                if(p > 0 && posts[p - 1].compareTo(posts[p]) >= 0)
+                    throw new IOException("snapshot category out of order: " + category);
+            }
+            image.categories.add(category);
+            image.friends.add(friends);
+            image.posts.add(posts);
+        }
+        return image;
+    }
+}
@@ -0,0 +1,31 @@
+package org.unipisa.pr2cheli;
+
+/**
+ * A friend listening to the changes of a board, returned by DataBoard.subscribe.
+ */
+public interface Subscription {
+    /**
+     * Stop the delivery, the events still queued are discarded.
+     */
+    public void cancel();
+
+    /**
+     * @return true once cancelled, also when the executor refused to run the delivery
+     */
+    public boolean isCancelled();
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    public long getDropped();
+
+    /**
+     * @return the number of events queued and not yet delivered
+     */
+    public int getPending();
+
+    /**
+     * @return the number of events whose listener threw an exception
+     */
+    public long getFailures();
+}
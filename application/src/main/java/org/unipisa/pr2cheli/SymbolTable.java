@@ -0,0 +1,75 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interning table mapping names to dense int ids, starting from 0.
+ * Each distinct name is stored once, however many posts refer to it.
+ * Ids are never released: the table grows with the number of distinct names seen.
+ * Lookups are lock free, only the assignment of a new id is synchronized.
+ */
+public class SymbolTable {
+    /* Process-wide table of usernames */
+    public static final SymbolTable USERS = new SymbolTable();
+    /* Process-wide table of category names */
+    public static final SymbolTable CATEGORIES = new SymbolTable();
+
+    private final ConcurrentHashMap<String, Integer> ids;
+    private volatile String[] names;
+    private int size;
+
+    public SymbolTable() {
+        this.ids = new ConcurrentHashMap<String, Integer>();
+        this.names = new String[16];
+        this.size = 0;
+    }
+
+    /**
+     * @param name the name to intern, must not be null
+     * @return the id of name, assigning a new one if name was never seen
+     */
+    public int intern(String name) {
+        Integer id = this.ids.get(name);
+        if(id != null) return id;
+        synchronized(this) {
+            id = this.ids.get(name);
+            if(id != null) return id;
+            String[] n = this.names;
+            if(this.size == n.length) n = Arrays.copyOf(n, n.length * 2);
+            n[this.size] = name;
+            this.names = n;
+            // published after the name, so that name(id) works for every id handed out
+            this.ids.put(name, this.size);
+            return this.size++;
+        }
+    }
+
+    /**
+     * @param name the name to look up
+     * @return the id of name, -1 if name was never interned
+     */
+    public int lookup(String name) {
+        Integer id = this.ids.get(name);
+        if(id == null) return -1;
+        return id;
+    }
+
+    /**
+     * @param id an id returned by intern
+     * @return the name with the given id
+     * @throws IndexOutOfBoundsException if id was never assigned
+     */
+    public String name(int id) {
+        String n = this.names[id];
+        if(n == null) throw new IndexOutOfBoundsException("symbol: " + id);
+        return n;
+    }
+
+    /**
+     * @return the number of interned names
+     */
+    public int size() {
+        return this.ids.size();
+    }
+}
@@ -0,0 +1,15 @@
+package org.unipisa.pr2cheli;
+
+/**
+ * When the write-ahead log forces its records to the disk.
+ */
+public enum SyncPolicy {
+    /** never, the operating system writes the log back when it wants: a crash of the machine loses recent writes */
+    NONE,
+    /** once every interval, on a background thread, writes do not wait: a crash loses up to one interval of writes */
+    INTERVAL,
+    /** before returning, but one fsync covers every write waiting for it (group commit) */
+    GROUP,
+    /** before returning, one fsync for each write */
+    ALWAYS
+}
@@ -0,0 +1,250 @@
+package org.unipisa.pr2cheli;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Off-heap storage for the text of stored posts, UTF-8 encoded in direct ByteBuffer segments.
+ * A post in the arena keeps only its segment, offset and length, and decodes its text on demand.
+ * The arena is append-only: freed bytes are only accounted for, and compact() copies the
+ * live texts to fresh segments. A segment is never overwritten, so a copy of a post that
+ * escaped the board (an old version replaced by a like, a post handed out by an iterator)
+ * still reads its text from the old segment, which the garbage collector frees when no
+ * post refers to it any more.
+ * Not thread safe: the board owning the arena serializes its use.
+ *
+ * Representation Invariant: segments is not empty, current is its last element,
+ *  0 <= liveBytes <= usedBytes, usedBytes is the sum of the positions of segments,
+ *  liveBytes the sum of the lengths of the texts stored and not released
+ */
+public class TextArena {
+    /* The longest text in bytes: 128 UTF-16 units, at most 3 bytes each */
+    private static final int MAX_TEXT = 128 * 3;
+
+    static final class Segment {
+        final ByteBuffer bytes;
+
+        Segment(int capacity) {
+            this.bytes = ByteBuffer.allocateDirect(capacity);
+        }
+
+        String decode(int offset, int length) {
+            byte[] b = new byte[length];
+            ByteBuffer d = this.bytes.duplicate();
+            d.position(offset);
+            d.get(b);
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+
+    private final int segmentSize;
+    private ArrayList<Segment> segments;
+    private Segment current;
+    private long usedBytes;
+    private long liveBytes;
+
+    /**
+     * An arena of 1MB segments
+     */
+    public TextArena() {
+        this(1 << 20);
+    }
+
+    /**
+     * @param segmentSize the size in bytes of each segment, at least 384
+     * @throws IllegalArgumentException if segmentSize can not hold the longest text
+     */
+    public TextArena(int segmentSize) {
+        if(segmentSize < MAX_TEXT) throw new IllegalArgumentException("segment size " + segmentSize);
+        this.segmentSize = segmentSize;
+        this.segments = new ArrayList<Segment>();
+        this.current = this.newSegment(this.segments);
+    }
+
+    private Segment newSegment(ArrayList<Segment> list) {
+        Segment s = new Segment(this.segmentSize);
+        list.add(s);
+        return s;
+    }
+
+    /**
+     * @return the number of bytes held by stored texts
+     */
+    public long liveBytes() {
+        return this.liveBytes;
+    }
+
+    /**
+     * @return the number of bytes written since the last compaction
+     */
+    public long usedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * @return the off-heap memory reserved by the arena
+     */
+    public long capacity() {
+        return (long)this.segments.size() * this.segmentSize;
+    }
+
+    /**
+     * @return true if unpaired surrogates would not survive UTF-8 encoding
+     */
+    private static boolean encodable(String s) {
+        for(int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if(!Character.isSurrogate(c)) continue;
+            if(Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) i++;
+            else return false;
+        }
+        return true;
+    }
+
+    /**
+     * Append bytes to the current segment, opening a new one when it is full.
+     * @return the segment holding the bytes, at position - b.length
+     */
+    private Segment append(ArrayList<Segment> list, Segment cur, byte[] b) {
+        if(cur.bytes.remaining() < b.length) cur = this.newSegment(list);
+        cur.bytes.put(b);
+        return cur;
+    }
+
+    /**
+     * @return the UTF-8 bytes of the text of a post in an arena
+     */
+    private static byte[] bytes(DataElement e) {
+        byte[] b = new byte[e.textLength()];
+        ByteBuffer src = e.textSegment().bytes.duplicate();
+        src.position(e.textOffset());
+        src.get(b);
+        return b;
+    }
+
+    /**
+     * Move the text of a post to the arena, the post keeps only its position.
+     * Texts that can not be encoded exactly stay on the heap.
+     * modifies this, e
+     * @param e a post about to be stored, a fresh copy: its text is on the heap, or in
+     * the segment of the post it was copied from, which may be of another arena and
+     * is copied, so that every stored post accounts for its own bytes
+     */
+    void store(DataElement e) {
+        byte[] b;
+        if(e.inArena()) b = bytes(e);
+        else {
+            String text = e.getText();
+            if(!encodable(text)) return;
+            b = text.getBytes(StandardCharsets.UTF_8);
+        }
+        this.current = this.append(this.segments, this.current, b);
+        e.setTextRef(this.current, this.current.bytes.position() - b.length, b.length);
+        this.usedBytes += b.length;
+        this.liveBytes += b.length;
+    }
+
+    /**
+     * Forget the text of a post removed from the board,
+     * its bytes become garbage to be reclaimed by compact().
+     * modifies this, e
+     * @param e a post removed from the board
+     * @param materialize whether to bring the text back on the heap, so that e does
+     * not keep its segment alive; false if another thread may be reading e
+     */
+    void release(DataElement e, boolean materialize) {
+        if(!e.inArena()) return;
+        this.liveBytes -= e.textLength();
+        if(materialize) e.materializeText();
+    }
+
+    /**
+     * @return true if more than half of the bytes written are garbage
+     */
+    boolean needsCompaction() {
+        return this.usedBytes > this.segmentSize && this.usedBytes > 2 * this.liveBytes;
+    }
+
+    /**
+     * Copy the texts of the live posts to fresh segments and drop the old ones.
+     * modifies this and the posts in live
+     * @param live every post whose text is stored in the arena
+     */
+    void compact(Iterable<? extends DataElement> live) {
+        ArrayList<Segment> list = new ArrayList<Segment>();
+        Segment cur = this.newSegment(list);
+        long used = 0;
+        for(DataElement e : live) {
+            if(!e.inArena()) continue;
+            byte[] b = bytes(e);
+            cur = this.append(list, cur, b);
+            e.setTextRef(cur, cur.bytes.position() - b.length, b.length);
+            used += b.length;
+        }
+        this.segments = list;
+        this.current = cur;
+        this.usedBytes = used;
+        this.liveBytes = used;
+    }
+
+    /**
+     * @return the code point encoded at i
+     */
+    private static int decodeAt(ByteBuffer b, int i) {
+        int b0 = b.get(i) & 0xff;
+        if(b0 < 0x80) return b0;
+        if(b0 < 0xE0) return ((b0 & 0x1F) << 6) | (b.get(i + 1) & 0x3F);
+        if(b0 < 0xF0) return ((b0 & 0x0F) << 12) | ((b.get(i + 1) & 0x3F) << 6) | (b.get(i + 2) & 0x3F);
+        return ((b0 & 0x07) << 18) | ((b.get(i + 1) & 0x3F) << 12)
+            | ((b.get(i + 2) & 0x3F) << 6) | (b.get(i + 3) & 0x3F);
+    }
+
+    /**
+     * Compare two different code points in UTF-16 order, the order of String.compareTo:
+     * it differs from code point order when only one of them is above U+FFFF.
+     */
+    private static int compareCodePoints(int cp, int cq) {
+        if(Character.isSupplementaryCodePoint(cp) != Character.isSupplementaryCodePoint(cq)) {
+            int p = Character.isSupplementaryCodePoint(cp) ? Character.highSurrogate(cp) : cp;
+            int q = Character.isSupplementaryCodePoint(cq) ? Character.highSurrogate(cq) : cq;
+            return p < q ? -1 : 1;
+        }
+        return cp < cq ? -1 : 1;
+    }
+
+    /**
+     * Compare two UTF-8 texts in the order of String.compareTo.
+     * Equal bytes are skipped, the texts are decoded from the first code point that differs.
+     */
+    static int compare(Segment a, int aOffset, int aLength, Segment b, int bOffset, int bLength) {
+        int n = Math.min(aLength, bLength);
+        int i = 0;
+        while(i < n && a.bytes.get(aOffset + i) == b.bytes.get(bOffset + i)) i++;
+        if(i == n) return aLength - bLength;
+        // back to the first byte of the code point, shared by both texts
+        while(i > 0 && (a.bytes.get(aOffset + i) & 0xC0) == 0x80) i--;
+        return compareCodePoints(decodeAt(a.bytes, aOffset + i), decodeAt(b.bytes, bOffset + i));
+    }
+
+    /**
+     * Compare a UTF-8 text with a string in the order of String.compareTo, decoding on the fly.
+     */
+    static int compare(Segment a, int aOffset, int aLength, String s) {
+        int i = aOffset;
+        int end = aOffset + aLength;
+        int j = 0;
+        while(i < end && j < s.length()) {
+            int cp = decodeAt(a.bytes, i);
+            int cq = s.codePointAt(j);
+            // an unpaired surrogate in s has no UTF-8 counterpart, compare as strings
+            if(cq <= 0xFFFF && Character.isSurrogate((char)cq)) return a.decode(aOffset, aLength).compareTo(s);
+            if(cp != cq) return compareCodePoints(cp, cq);
+            i += cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+            j += Character.charCount(cq);
+        }
+        if(i < end) return 1;
+        if(j < s.length()) return -1;
+        return 0;
+    }
+}
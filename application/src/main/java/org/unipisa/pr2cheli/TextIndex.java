@@ -0,0 +1,182 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.LongFunction;
+import java.util.function.Predicate;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Inverted index of the words of the posts of a board: each term maps to the sorted ids
+ * of the posts whose text contains it, so a search reads only the posts matching its
+ * rarest term instead of the whole board.
+ * A term is a maximal run of letters and digits of the text, lower-cased; a query matches
+ * the posts containing all of its terms.
+ * Not thread-safe: ConcurrentBoard synchronizes on it, VersionedBoard keeps its own
+ * persistent postings and shares only terms() and rank().
+ *
+ * Representation Invariant: no posting list is empty, each is sorted without repetitions
+ */
+final class TextIndex {
+    /**
+     * The ids of the posts containing a term. Ids are assigned in increasing order, so
+     * adding a new post is an append.
+     */
+    private static final class Postings {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if(this.size == this.ids.length) this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            int i = this.size;
+            if(i > 0 && this.ids[i - 1] > id) {
+                i = Arrays.binarySearch(this.ids, 0, this.size, id);
+                if(i >= 0) return;
+                i = -i - 1;
+                System.arraycopy(this.ids, i, this.ids, i + 1, this.size - i);
+            } else if(i > 0 && this.ids[i - 1] == id) {
+                return;
+            }
+            this.ids[i] = id;
+            this.size++;
+        }
+
+        void remove(long id) {
+            int i = Arrays.binarySearch(this.ids, 0, this.size, id);
+            if(i < 0) return;
+            System.arraycopy(this.ids, i + 1, this.ids, i, this.size - i - 1);
+            this.size--;
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(this.ids, 0, this.size, id) >= 0;
+        }
+    }
+
+    private final HashMap<String, Postings> terms;
+
+    TextIndex() {
+        this.terms = new HashMap<String, Postings>();
+    }
+
+    /**
+     * @return the distinct terms of text, in order of first occurrence
+     */
+    static String[] terms(String text) {
+        ArrayList<String> l = new ArrayList<String>();
+        int i = 0;
+        while(i < text.length()) {
+            while(i < text.length() && !Character.isLetterOrDigit(text.charAt(i))) i++;
+            int start = i;
+            while(i < text.length() && Character.isLetterOrDigit(text.charAt(i))) i++;
+            if(start == i) break;
+            String t = text.substring(start, i).toLowerCase(Locale.ROOT);
+            if(!l.contains(t)) l.add(t);
+        }
+        return l.toArray(new String[l.size()]);
+    }
+
+    /**
+     * @param query the words to look for, must be a valid text with at least a term
+     * @return the distinct terms of query
+     * @throws InvalidDataException if query is invalid or has no terms
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    static String[] query(String query) throws InvalidDataException {
+        DataValidator.validateText(query);
+        String[] t = terms(query);
+        if(t.length == 0) throw new InvalidDataException("Query has no words");
+        return t;
+    }
+
+    /**
+     * Index a post stored with a new id.
+     * modifies this.terms
+     */
+    void add(DataElement e) {
+        for(String t : terms(e.getText())) {
+            Postings p = this.terms.get(t);
+            if(p == null) {
+                p = new Postings();
+                this.terms.put(t, p);
+            }
+            p.add(e.getId());
+        }
+    }
+
+    /**
+     * Drop a post removed from the board, before its text is released.
+     * modifies this.terms
+     */
+    void remove(DataElement e) {
+        for(String t : terms(e.getText())) {
+            Postings p = this.terms.get(t);
+            if(p == null) continue;
+            p.remove(e.getId());
+            if(p.size == 0) this.terms.remove(t);
+        }
+    }
+
+    /**
+     * @param query terms returned by query()
+     * @return the sorted ids of the posts containing all of them
+     */
+    long[] match(String[] query) {
+        Postings[] ps = new Postings[query.length];
+        for(int i = 0; i < query.length; i++) {
+            ps[i] = this.terms.get(query[i]);
+            if(ps[i] == null) return new long[0];
+        }
+        // walk the rarest term, probe the others
+        Arrays.sort(ps, (a, b) -> a.size - b.size);
+        long[] ids = new long[ps[0].size];
+        int n = 0;
+        for(int i = 0; i < ps[0].size; i++) {
+            long id = ps[0].ids[i];
+            boolean all = true;
+            for(int j = 1; j < ps.length && all; j++) all = ps[j].contains(id);
+            if(all) ids[n++] = id;
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Cut a page out of the matches of a search, sorted by DataElement.compareTo.
+     * Only the size + 1 first matches are kept while reading them, O(n log size).
+     * @param ids the ids of the matching posts
+     * @param posts the stored post with a given id, null if it was removed
+     * @param visible tells if a post can be returned
+     * @param cursor the cursor returned with the previous page, null for the first page
+     * @param size the page size
+     * @return the next size matches after cursor, with the cursor of the following page
+     */
+    static <E extends DataElement> Page<E> rank(long[] ids, LongFunction<E> posts, Predicate<? super E> visible,
+        Cursor cursor, int size) {
+        DataElement probe = cursor == null ? null : cursor.probe();
+        if(cursor != null && probe == null) return new Page<E>(new ArrayList<E>(), null);
+        // largest first, so the head is the one to drop when a better match comes
+        PriorityQueue<E> best = new PriorityQueue<E>(Math.min(size + 1, 64), Collections.reverseOrder());
+        for(long id : ids) {
+            E e = posts.apply(id);
+            if(e == null || !visible.test(e)) continue;
+            if(probe != null && e.compareTo(probe) <= 0) continue;
+            if(best.size() <= size) best.add(e);
+            else if(e.compareTo(best.peek()) < 0) {
+                best.poll();
+                best.add(e);
+            }
+        }
+        ArrayList<E> l = new ArrayList<E>(best);
+        Collections.sort(l);
+        List<E> items = l.size() > size ? new ArrayList<E>(l.subList(0, size)) : l;
+        Cursor next = null;
+        if(!items.isEmpty() && l.size() > size) next = Cursor.after(items.get(items.size() - 1));
+        return new Page<E>(items, next);
+    }
+}
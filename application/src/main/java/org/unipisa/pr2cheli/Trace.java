@@ -0,0 +1,453 @@
+package org.unipisa.pr2cheli;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * The binary format of the traces written by RecordingBoard and read by TraceReplayer.
+ * A trace is a header [int MAGIC][byte VERSION][long wall clock millis at the start]
+ * followed by one record per call, in the order the calls returned:
+ *  [byte op][varlong start, ns since the trace started][varlong duration, ns][arguments]
+ *  [byte 0][int digest of the result] or [byte 1][string simple name of the exception]
+ * Names are interned as they are first written: [varint 1][UTF] the first time, then
+ * [varint index + 2], [varint 0] for null, so names repeated by every call cost a byte or two;
+ * texts and cursors are rarely repeated and are written as [boolean not null][UTF].
+ * Passwords are never written, only their kind (PASSW_*), enough to replay the same checks.
+ * Signed numbers are zigzag varints, collections are [varint size + 1] with 0 for null.
+ * The digest of a result hashes the ids, authors, texts, categories and likes counts of the
+ * posts it holds, so two boards in the same state give the same digest; iterators,
+ * subscriptions and sessions are not digested.
+ */
+final class Trace {
+    static final int MAGIC = 0x50523254;
+    static final byte VERSION = 1;
+
+    static final byte CREATE_CATEGORY = 0;
+    static final byte REMOVE_CATEGORY = 1;
+    static final byte ADD_FRIEND = 2;
+    static final byte REMOVE_FRIEND = 3;
+    static final byte PUT = 4;
+    static final byte PUT_ALL = 5;
+    static final byte GET = 6;
+    static final byte REMOVE = 7;
+    static final byte GET_ID = 8;
+    static final byte REMOVE_ID = 9;
+    static final byte GET_ALL = 10;
+    static final byte REMOVE_ALL = 11;
+    static final byte GET_DATA_CATEGORY = 12;
+    static final byte LIKE = 13;
+    static final byte LIKE_ID = 14;
+    static final byte LIKES = 15;
+    static final byte GET_ITERATOR = 16;
+    static final byte GET_FRIEND_ITERATOR = 17;
+    static final byte GET_TOP_K = 18;
+    static final byte GET_FRIEND_TOP_K = 19;
+    static final byte GET_PAGE = 20;
+    static final byte GET_FRIEND_PAGE = 21;
+    static final byte GET_CATEGORY_PAGE = 22;
+    static final byte SUBSCRIBE = 23;
+    static final byte GET_FRIEND_CHANGES_SINCE = 24;
+    static final byte LOGIN = 25;
+    static final byte SEARCH = 26;
+    static final byte SEARCH_AS_FRIEND = 27;
+
+    /** The operation names by op, as in OperationReport */
+    static final String[] NAMES = {
+        "createCategory", "removeCategory", "addFriend", "removeFriend", "put", "putAll",
+        "get", "remove", "getById", "removeById", "getAll", "removeAll", "getDataCategory",
+        "insertLike", "insertLikeById", "insertLikes", "getIterator", "getFriendIterator",
+        "getTopK", "getFriendTopK", "getPage", "getFriendPage", "getCategoryPage",
+        "subscribe", "getFriendChangesSince", "login", "search", "searchAsFriend"
+    };
+
+    static final byte PASSW_NULL = 0;
+    static final byte PASSW_OWNER = 1;
+    static final byte PASSW_EMPTY = 2;
+    static final byte PASSW_TOO_LONG = 3;
+    static final byte PASSW_WRONG = 4;
+
+    private Trace() {
+    }
+
+    static int digest(DataElement e) {
+        if(e == null) return 0;
+        int h = Long.hashCode(e.getId());
+        h = 31 * h + e.getAuthor().hashCode();
+        h = 31 * h + e.getText().hashCode();
+        h = 31 * h + (e.getCategory() == null ? 0 : e.getCategory().hashCode());
+        return 31 * h + e.getNumlikes();
+    }
+
+    static int digest(List<? extends DataElement> l) {
+        if(l == null) return 0;
+        int h = l.size();
+        for(DataElement e : l) h = 31 * h + digest(e);
+        return h;
+    }
+
+    static int digest(Page<? extends DataElement> p) {
+        if(p == null) return 0;
+        return 31 * digest(p.getItems()) + (p.hasNext() ? 1 : 0);
+    }
+
+    static int digest(Changes<? extends DataElement> c) {
+        // the version is left out, its numbering is up to the implementation
+        if(c == null) return 0;
+        int h = 31 * digest(c.getUpdated()) + c.getRemoved().hashCode();
+        return 31 * h + (c.isResync() ? 1 : 0);
+    }
+
+    /**
+     * Encodes records, not thread safe: RecordingBoard holds its lock around a record.
+     * The first IOException is kept and ends the trace, the later writes are ignored.
+     */
+    static class Writer {
+        private final DataOutputStream out;
+        private final HashMap<String, Integer> strings;
+        private final long origin;
+        private final String passw;
+        private final String token;
+        private IOException failure;
+        private boolean closed;
+
+        /**
+         * Write the header.
+         * @param out the trace
+         * @param passw the password of the recorded board, to tell it from the others
+         */
+        Writer(DataOutputStream out, String passw) {
+            this.out = out;
+            this.strings = new HashMap<String, Integer>();
+            this.origin = System.nanoTime();
+            this.passw = passw;
+            this.token = Session.token(passw);
+            try {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(System.currentTimeMillis());
+            } catch(IOException e) {
+                this.failure = e;
+            }
+        }
+
+        /**
+         * @return the exception that ended the trace, null if none
+         */
+        IOException getFailure() {
+            return this.failure;
+        }
+
+        /**
+         * Start a record.
+         * @return false if the trace is closed or failed, the record must not be written
+         */
+        boolean begin(byte op, long start, long end) {
+            if(this.failure != null || this.closed) return false;
+            try {
+                this.out.writeByte(op);
+                this.varlong(start - this.origin);
+                this.varlong(end - start);
+            } catch(IOException e) {
+                this.failure = e;
+            }
+            return true;
+        }
+
+        /**
+         * End a record with the outcome of the call.
+         * @param error what the call threw, null if it returned
+         * @param digest the digest of what it returned
+         */
+        void end(Exception error, int digest) {
+            try {
+                if(error == null) {
+                    this.out.writeByte(0);
+                    this.out.writeInt(digest);
+                } else {
+                    this.out.writeByte(1);
+                    this.string(error.getClass().getSimpleName());
+                }
+            } catch(IOException e) {
+                this.failure = e;
+            }
+        }
+
+        void flush() {
+            if(this.failure != null || this.closed) return;
+            try {
+                this.out.flush();
+            } catch(IOException e) {
+                this.failure = e;
+            }
+        }
+
+        void close() {
+            if(this.closed) return;
+            this.closed = true;
+            try {
+                this.out.close();
+            } catch(IOException e) {
+                if(this.failure == null) this.failure = e;
+            }
+        }
+
+        private void varlong(long v) throws IOException {
+            while((v & ~0x7FL) != 0) {
+                this.out.writeByte((int)(v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            this.out.writeByte((int)v);
+        }
+
+        void number(long v) {
+            try {
+                this.varlong((v << 1) ^ (v >> 63));
+            } catch(IOException e) {
+                this.failure = e;
+            }
+        }
+
+        void string(String s) {
+            try {
+                if(s == null) {
+                    this.varlong(0);
+                    return;
+                }
+                Integer i = this.strings.get(s);
+                if(i != null) {
+                    this.varlong(i + 2);
+                    return;
+                }
+                this.strings.put(s, this.strings.size());
+                this.varlong(1);
+                this.out.writeUTF(s);
+            } catch(IOException e) {
+                this.failure = e;
+            }
+        }
+
+        void text(String s) {
+            try {
+                this.out.writeBoolean(s != null);
+                if(s != null) this.out.writeUTF(s);
+            } catch(IOException e) {
+                this.failure = e;
+            }
+        }
+
+        void passw(String p) {
+            byte kind;
+            if(p == null) kind = PASSW_NULL;
+            else if(p.equals(this.passw) || p.equals(this.token)) kind = PASSW_OWNER;
+            else if(p.isEmpty()) kind = PASSW_EMPTY;
+            else if(p.length() > 128) kind = PASSW_TOO_LONG;
+            else kind = PASSW_WRONG;
+            try {
+                this.out.writeByte(kind);
+            } catch(IOException e) {
+                this.failure = e;
+            }
+        }
+
+        void element(DataElement e) {
+            if(e == null) {
+                this.string(null);
+                return;
+            }
+            this.string(e.getAuthor());
+            this.text(e.getText());
+            this.string(e.getCategory());
+            this.number(e.getId());
+            ArrayList<String> likes = e.getLikes();
+            this.number(likes.size());
+            for(String who : likes) this.string(who);
+        }
+
+        void elements(Collection<? extends DataElement> c) {
+            this.number(c == null ? 0 : c.size() + 1);
+            if(c != null) for(DataElement e : c) this.element(e);
+        }
+
+        void ids(Collection<Long> c) {
+            this.number(c == null ? 0 : c.size() + 1);
+            if(c != null) for(Long id : c) this.number(id == null ? 0 : id);
+        }
+
+        void likes(List<Like> l) {
+            this.number(l == null ? 0 : l.size() + 1);
+            if(l != null) for(Like like : l) {
+                this.string(like.getFriend());
+                this.number(like.getId());
+            }
+        }
+
+        void cursor(Cursor c) {
+            this.text(c == null ? null : c.token());
+        }
+    }
+
+    /**
+     * Decodes the records of a trace written by a Writer.
+     */
+    static class Reader {
+        private final DataInputStream in;
+        private final ArrayList<String> strings;
+        private final long startMillis;
+
+        /**
+         * Read the header.
+         * @throws IOException if in is not a trace
+         */
+        Reader(DataInputStream in) throws IOException {
+            this.in = in;
+            this.strings = new ArrayList<String>();
+            if(in.readInt() != MAGIC) throw new IOException("not a board trace");
+            byte version = in.readByte();
+            if(version != VERSION) throw new IOException("unsupported trace version " + version);
+            this.startMillis = in.readLong();
+        }
+
+        /**
+         * @return the wall clock time the trace started at
+         */
+        long getStartMillis() {
+            return this.startMillis;
+        }
+
+        /**
+         * @return the op of the next record, -1 at the end of the trace
+         */
+        int op() throws IOException {
+            int op = this.in.read();
+            if(op >= NAMES.length) throw new IOException("unknown op " + op);
+            return op;
+        }
+
+        long varlong() throws IOException {
+            long v = 0;
+            for(int shift = 0; shift < 64; shift += 7) {
+                int b = this.in.readUnsignedByte();
+                v |= (long)(b & 0x7F) << shift;
+                if((b & 0x80) == 0) return v;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        long number() throws IOException {
+            long v = this.varlong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        int count() throws IOException {
+            long n = this.number();
+            if(n < 0 || n > Integer.MAX_VALUE) throw new IOException("malformed size " + n);
+            return (int)n;
+        }
+
+        String string() throws IOException {
+            long v = this.varlong();
+            if(v == 0) return null;
+            if(v == 1) {
+                String s = this.in.readUTF();
+                this.strings.add(s);
+                return s;
+            }
+            if(v - 2 >= this.strings.size()) throw new IOException("unknown string " + (v - 2));
+            return this.strings.get((int)(v - 2));
+        }
+
+        String text() throws IOException {
+            return this.in.readBoolean() ? this.in.readUTF() : null;
+        }
+
+        /**
+         * @param passw the password of the replayed board
+         * @return a password that fails or passes the checks as the recorded one did
+         */
+        String passw(String passw) throws IOException {
+            switch(this.in.readByte()) {
+            case PASSW_NULL:
+                return null;
+            case PASSW_OWNER:
+                return passw;
+            case PASSW_EMPTY:
+                return "";
+            case PASSW_TOO_LONG:
+                return new String(new char[129]).replace('\0', 'x');
+            case PASSW_WRONG:
+                return passw.equals("x") ? "y" : "x";
+            default:
+                throw new IOException("malformed password kind");
+            }
+        }
+
+        /**
+         * @return the post as it was passed, with its id, its category and its likes
+         * @throws InvalidDataException if the post can not be rebuilt with factory
+         */
+        <E extends DataElement> E element(DataElementFactory<E> factory)
+        throws IOException, InvalidDataException, DuplicateDataException, DataNotFoundException {
+            String author = this.string();
+            if(author == null) return null;
+            E e = factory.create(author, this.text());
+            e.setCategory(this.string());
+            e.setId(this.number());
+            for(int n = this.count(); n > 0; n--) e.addLike(this.string());
+            return e;
+        }
+
+        <E extends DataElement> List<E> elements(DataElementFactory<E> factory)
+        throws IOException, InvalidDataException, DuplicateDataException, DataNotFoundException {
+            int n = this.count();
+            if(n == 0) return null;
+            ArrayList<E> l = new ArrayList<E>(n - 1);
+            for(int i = 1; i < n; i++) l.add(this.element(factory));
+            return l;
+        }
+
+        List<Long> ids() throws IOException {
+            int n = this.count();
+            if(n == 0) return null;
+            ArrayList<Long> l = new ArrayList<Long>(n - 1);
+            for(int i = 1; i < n; i++) l.add(this.number());
+            return l;
+        }
+
+        List<Like> likes() throws IOException {
+            int n = this.count();
+            if(n == 0) return null;
+            ArrayList<Like> l = new ArrayList<Like>(n - 1);
+            for(int i = 1; i < n; i++) l.add(new Like(this.string(), this.number()));
+            return l;
+        }
+
+        Cursor cursor() throws IOException, InvalidDataException {
+            String token = this.text();
+            return token == null ? null : Cursor.fromToken(token);
+        }
+
+        /**
+         * @return the simple name of the exception the call threw, null if it returned
+         */
+        String error() throws IOException {
+            byte outcome = this.in.readByte();
+            if(outcome == 0) return null;
+            if(outcome != 1) throw new IOException("malformed outcome");
+            return this.string();
+        }
+
+        /**
+         * @return the digest of the result, after error() returned null
+         */
+        int digest() throws IOException {
+            return this.in.readInt();
+        }
+    }
+}
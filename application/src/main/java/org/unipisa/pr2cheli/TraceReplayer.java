@@ -0,0 +1,375 @@
+package org.unipisa.pr2cheli;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Replays a trace written by a RecordingBoard on a board, one call at a time in the order
+ * of the trace, and compares what each call returns or throws with what was recorded.
+ * The board must be in the state the recorded one was in when recording started, usually
+ * empty, and must accept the password given here in place of the recorded one.
+ * The calls are issued as fast as possible, or paced: each one not before its recorded
+ * start time from the start of the replay, later if the replay falls behind.
+ * Subscriptions are replayed with a listener ignoring the events, delivered on the
+ * replaying thread, and cancelled at the end together with the sessions opened.
+ * A trace cut short, by a crash while recording, is replayed up to its last whole record.
+ */
+public class TraceReplayer<E extends DataElement> {
+    private static final int SAMPLES = 100;
+
+    /**
+     * A decoded call, ready to be issued.
+     */
+    @FunctionalInterface
+    private interface Call {
+        /**
+         * @return the digest of the result
+         */
+        int run() throws Exception;
+    }
+
+    /**
+     * The outcomes of one operation, recorded and replayed.
+     */
+    private static class Tally {
+        final LatencyHistogram recorded = new LatencyHistogram();
+        final LatencyHistogram replayed = new LatencyHistogram();
+        final Map<String, Long> recordedErrors = new HashMap<String, Long>();
+        final Map<String, Long> replayedErrors = new HashMap<String, Long>();
+        long divergences;
+
+        OperationReport report(String name, LatencyHistogram h, Map<String, Long> errors) {
+            return new OperationReport(name, h.getCount(), errors, h.getValueAtPercentile(50),
+                h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMax());
+        }
+    }
+
+    private final DataBoard<E> board;
+    private final String passw;
+    private final DataElementFactory<E> factory;
+
+    /**
+     * @param board the board to replay on
+     * @param passw the password of board, used where the recorded password was the right one
+     * @param factory allocates the posts read from the trace
+     * @throws NullPointerException if an argument is null
+     */
+    public TraceReplayer(DataBoard<E> board, String passw, DataElementFactory<E> factory) {
+        if(board == null || passw == null || factory == null) throw new NullPointerException();
+        this.board = board;
+        this.passw = passw;
+        this.factory = factory;
+    }
+
+    /**
+     * Replay a trace file.
+     * @param path the trace
+     * @param paced true to issue the calls at the recorded pace, false as fast as possible
+     * @return the latencies and divergences by operation
+     * @throws IOException if the file can not be read or is not a trace
+     */
+    public ReplayReport replay(Path path, boolean paced) throws IOException {
+        try(InputStream in = Files.newInputStream(path)) {
+            return this.replay(in, paced);
+        }
+    }
+
+    /**
+     * Replay a trace read from a stream.
+     * @param in the trace, not closed
+     * @param paced true to issue the calls at the recorded pace, false as fast as possible
+     * @return the latencies and divergences by operation
+     * @throws IOException if the stream can not be read or is not a trace
+     */
+    public ReplayReport replay(InputStream in, boolean paced) throws IOException {
+        Trace.Reader r = new Trace.Reader(new DataInputStream(new BufferedInputStream(in, 1 << 16)));
+        Tally[] tallies = new Tally[Trace.NAMES.length];
+        List<String> samples = new ArrayList<String>();
+        List<Subscription> subscriptions = new ArrayList<Subscription>();
+        List<Session> sessions = new ArrayList<Session>();
+        long calls = 0;
+        long divergences = 0;
+        boolean truncated = false;
+        long origin = System.nanoTime();
+        try {
+            while(true) {
+                int op;
+                long start;
+                long duration;
+                Call call;
+                String recordedError;
+                int recordedDigest = 0;
+                try {
+                    op = r.op();
+                    if(op < 0) break;
+                    start = r.varlong();
+                    duration = r.varlong();
+                    call = this.decode(op, r, subscriptions, sessions);
+                    recordedError = r.error();
+                    if(recordedError == null) recordedDigest = r.digest();
+                } catch(EOFException e) {
+                    truncated = true;
+                    break;
+                }
+                if(paced) {
+                    long wait;
+                    while((wait = origin + start - System.nanoTime()) > 0) LockSupport.parkNanos(wait);
+                }
+                String error = null;
+                int digest = 0;
+                long t = System.nanoTime();
+                try {
+                    digest = call.run();
+                } catch(Exception e) {
+                    error = e.getClass().getSimpleName();
+                }
+                long elapsed = System.nanoTime() - t;
+                Tally tally = tallies[op];
+                if(tally == null) tally = tallies[op] = new Tally();
+                tally.recorded.record(duration);
+                tally.replayed.record(elapsed);
+                if(recordedError != null) tally.recordedErrors.merge(recordedError, 1L, Long::sum);
+                if(error != null) tally.replayedErrors.merge(error, 1L, Long::sum);
+                boolean same = recordedError == null ? error == null && digest == recordedDigest : recordedError.equals(error);
+                if(!same) {
+                    tally.divergences++;
+                    divergences++;
+                    if(samples.size() < SAMPLES) samples.add("#" + calls + " " + Trace.NAMES[op] + ": recorded "
+                        + outcome(recordedError, recordedDigest) + ", replayed " + outcome(error, digest));
+                }
+                calls++;
+            }
+        } finally {
+            for(Subscription s : subscriptions) s.cancel();
+            for(Session s : sessions) s.revoke();
+        }
+        long elapsed = System.nanoTime() - origin;
+        List<OperationReport> recorded = new ArrayList<OperationReport>();
+        List<OperationReport> replayed = new ArrayList<OperationReport>();
+        Map<String, Long> byOperation = new HashMap<String, Long>();
+        for(int op = 0; op < tallies.length; op++) {
+            Tally t = tallies[op];
+            if(t == null) continue;
+            recorded.add(t.report(Trace.NAMES[op], t.recorded, t.recordedErrors));
+            replayed.add(t.report(Trace.NAMES[op], t.replayed, t.replayedErrors));
+            if(t.divergences > 0) byOperation.put(Trace.NAMES[op], t.divergences);
+        }
+        return new ReplayReport(calls, elapsed, truncated, recorded, replayed, divergences, byOperation, samples);
+    }
+
+    private static String outcome(String error, int digest) {
+        return error == null ? "returned " + Integer.toHexString(digest) : "threw " + error;
+    }
+
+    /**
+     * Read the arguments of a record.
+     * @return the call to issue
+     * @throws IOException if the record is malformed
+     */
+    private Call decode(int op, Trace.Reader r, List<Subscription> subscriptions, List<Session> sessions)
+    throws IOException {
+        try {
+            switch(op) {
+            case Trace.CREATE_CATEGORY: {
+                String category = r.string();
+                String passw = r.passw(this.passw);
+                return () -> {
+                    this.board.createCategory(category, passw);
+                    return 0;
+                };
+            }
+            case Trace.REMOVE_CATEGORY: {
+                String category = r.string();
+                String passw = r.passw(this.passw);
+                return () -> {
+                    this.board.removeCategory(category, passw);
+                    return 0;
+                };
+            }
+            case Trace.ADD_FRIEND: {
+                String category = r.string();
+                String passw = r.passw(this.passw);
+                String friend = r.string();
+                return () -> {
+                    this.board.addFriend(category, passw, friend);
+                    return 0;
+                };
+            }
+            case Trace.REMOVE_FRIEND: {
+                String category = r.string();
+                String passw = r.passw(this.passw);
+                String friend = r.string();
+                return () -> {
+                    this.board.removeFriend(category, passw, friend);
+                    return 0;
+                };
+            }
+            case Trace.PUT: {
+                String passw = r.passw(this.passw);
+                E dato = r.element(this.factory);
+                String category = r.string();
+                return () -> this.board.put(passw, dato, category) ? 1 : 0;
+            }
+            case Trace.PUT_ALL: {
+                String passw = r.passw(this.passw);
+                String category = r.string();
+                Collection<E> data = r.elements(this.factory);
+                return () -> this.board.putAll(passw, category, data);
+            }
+            case Trace.GET: {
+                String passw = r.passw(this.passw);
+                E dato = r.element(this.factory);
+                return () -> Trace.digest(this.board.get(passw, dato));
+            }
+            case Trace.REMOVE: {
+                String passw = r.passw(this.passw);
+                E dato = r.element(this.factory);
+                return () -> Trace.digest(this.board.remove(passw, dato));
+            }
+            case Trace.GET_ID: {
+                String passw = r.passw(this.passw);
+                long id = r.number();
+                return () -> Trace.digest(this.board.get(passw, id));
+            }
+            case Trace.REMOVE_ID: {
+                String passw = r.passw(this.passw);
+                long id = r.number();
+                return () -> Trace.digest(this.board.remove(passw, id));
+            }
+            case Trace.GET_ALL: {
+                String passw = r.passw(this.passw);
+                List<Long> ids = r.ids();
+                return () -> Trace.digest(this.board.getAll(passw, ids));
+            }
+            case Trace.REMOVE_ALL: {
+                String passw = r.passw(this.passw);
+                List<Long> ids = r.ids();
+                return () -> Trace.digest(this.board.removeAll(passw, ids));
+            }
+            case Trace.GET_DATA_CATEGORY: {
+                String passw = r.passw(this.passw);
+                String category = r.string();
+                return () -> Trace.digest(this.board.getDataCategory(passw, category));
+            }
+            case Trace.LIKE: {
+                String friend = r.string();
+                E dato = r.element(this.factory);
+                return () -> {
+                    this.board.insertLike(friend, dato);
+                    return 0;
+                };
+            }
+            case Trace.LIKE_ID: {
+                String friend = r.string();
+                long id = r.number();
+                return () -> {
+                    this.board.insertLike(friend, id);
+                    return 0;
+                };
+            }
+            case Trace.LIKES: {
+                List<Like> likes = r.likes();
+                return () -> {
+                    this.board.insertLikes(likes);
+                    return 0;
+                };
+            }
+            case Trace.GET_ITERATOR: {
+                String passw = r.passw(this.passw);
+                return () -> {
+                    this.board.getIterator(passw);
+                    return 0;
+                };
+            }
+            case Trace.GET_FRIEND_ITERATOR: {
+                String friend = r.string();
+                return () -> {
+                    this.board.getFriendIterator(friend);
+                    return 0;
+                };
+            }
+            case Trace.GET_TOP_K: {
+                String passw = r.passw(this.passw);
+                int k = (int)r.number();
+                return () -> Trace.digest(this.board.getTopK(passw, k));
+            }
+            case Trace.GET_FRIEND_TOP_K: {
+                String friend = r.string();
+                int k = (int)r.number();
+                return () -> Trace.digest(this.board.getFriendTopK(friend, k));
+            }
+            case Trace.GET_PAGE: {
+                String passw = r.passw(this.passw);
+                Cursor cursor = r.cursor();
+                int size = (int)r.number();
+                return () -> Trace.digest(this.board.getPage(passw, cursor, size));
+            }
+            case Trace.GET_FRIEND_PAGE: {
+                String friend = r.string();
+                Cursor cursor = r.cursor();
+                int size = (int)r.number();
+                return () -> Trace.digest(this.board.getFriendPage(friend, cursor, size));
+            }
+            case Trace.GET_CATEGORY_PAGE: {
+                String passw = r.passw(this.passw);
+                String category = r.string();
+                Cursor cursor = r.cursor();
+                int size = (int)r.number();
+                return () -> Trace.digest(this.board.getCategoryPage(passw, category, cursor, size));
+            }
+            case Trace.SUBSCRIBE: {
+                String friend = r.string();
+                int capacity = (int)r.number();
+                return () -> {
+                    subscriptions.add(this.board.subscribe(friend, capacity, Runnable::run, e -> { }));
+                    return 0;
+                };
+            }
+            case Trace.GET_FRIEND_CHANGES_SINCE: {
+                String friend = r.string();
+                long version = r.number();
+                return () -> Trace.digest(this.board.getFriendChangesSince(friend, version));
+            }
+            case Trace.LOGIN: {
+                String passw = r.passw(this.passw);
+                long ttlMillis = r.number();
+                return () -> {
+                    sessions.add(this.board.login(passw, ttlMillis));
+                    return 0;
+                };
+            }
+            case Trace.SEARCH: {
+                String passw = r.passw(this.passw);
+                String query = r.string();
+                Cursor cursor = r.cursor();
+                int size = (int)r.number();
+                return () -> Trace.digest(this.board.search(passw, query, cursor, size));
+            }
+            case Trace.SEARCH_AS_FRIEND: {
+                String friend = r.string();
+                String query = r.string();
+                Cursor cursor = r.cursor();
+                int size = (int)r.number();
+                return () -> Trace.digest(this.board.searchAsFriend(friend, query, cursor, size));
+            }
+            default:
+                throw new IOException("unknown op " + op);
+            }
+        } catch(InvalidDataException | DuplicateDataException | DataNotFoundException e) {
+            throw new IOException("malformed post or cursor in the trace", e);
+        }
+    }
+}
@@ -0,0 +1,914 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+
+import org.unipisa.pr2cheli.BoardVersion.CategoryVersion;
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Thread-safe multi-version Board ADT.
+ * Abstract invariant: same as Board. The board is a sequence of immutable versions:
+ * readers take the current one and read it without locks, so a long iteration never
+ * blocks a writer nor sees its changes, and every read is consistent across categories.
+ * Writers are serialized on writer: each one builds the next version from the current
+ * one, copying only the categories and the paths of the tries it changes, and publishes
+ * it with a single volatile write, so readers see either none or all of a change, batches
+ * included. Nothing keeps the old versions but their readers, the garbage collector
+ * reclaims each one when the last reader drops it.
+ * A write copies the posts of the category it changes, O(posts of the category); reads of
+ * the whole board merge the sorted categories, so they start in O(categories).
+ * Changes are published to feed and audit after their version, under writer, so they are
+ * queued in the order they happened and a subscriber reading the board sees them.
+ *
+ * The words of the posts are indexed in each version too, so a search sees the same posts
+ * as the other reads of its version; words interns the terms ever indexed by this board.
+ *
+ * Representation Invariant: current is the last published version (see BoardVersion),
+ *  lastId is the largest id assigned, ids are never reused, words is the table of every version
+ */
+public class VersionedBoard<E extends DataElement> implements DataBoard<E>, BoardGauges {
+    private final Object writer;
+    private volatile BoardVersion<E> current;
+    private long lastId;
+    private final String owner;
+    private final String passw;
+    private final String token;
+    private final ChangeFeed<E> feed;
+    private final SymbolTable words;
+    private volatile AuditLog audit;
+
+    /**
+     * The next version being built by a writer, which holds writer.
+     * The changes to feed and audit are queued and sent once the version is published.
+     */
+    private final class Draft {
+        private final long number;
+        private IdTrie<CategoryVersion<E>> categories;
+        private IdTrie<E> posts;
+        private IdTrie<int[]> shared;
+        private IdTrie<IdTrie<Long>> terms;
+        private long likes;
+        private final ArrayList<Runnable> events;
+
+        Draft() {
+            BoardVersion<E> v = VersionedBoard.this.current;
+            this.number = v.getNumber() + 1;
+            this.categories = v.categories;
+            this.posts = v.posts;
+            this.shared = v.shared;
+            this.terms = v.terms;
+            this.likes = v.getLikeCount();
+            this.events = new ArrayList<Runnable>(2);
+        }
+
+        /**
+         * @return the category as it is in the draft
+         * @throws DataNotFoundException if category does not exist
+         */
+        CategoryVersion<E> category(String category) throws DataNotFoundException {
+            int id = SymbolTable.CATEGORIES.lookup(category);
+            CategoryVersion<E> c = id < 0 ? null : this.categories.get(id);
+            if(c == null) throw new DataNotFoundException("category: " + category);
+            return c;
+        }
+
+        CategoryVersion<E> set(CategoryVersion<E> c) {
+            this.categories = this.categories.with(c.id, c);
+            return c;
+        }
+
+        CategoryVersion<E> add(CategoryVersion<E> c, E x) {
+            c = this.set(c.withPosts(c.plus(x)));
+            this.posts = this.posts.with(x.getId(), x);
+            this.index(x, true);
+            this.likes += x.getNumlikes();
+            this.publish(BoardEvent.Type.ADDED, x, c.friends);
+            this.audit(AuditEvent.Type.PUT, c.name, null, x.getId());
+            return c;
+        }
+
+        CategoryVersion<E> remove(CategoryVersion<E> c, E s) {
+            c = this.set(c.withPosts(c.minus(s)));
+            this.posts = this.posts.with(s.getId(), null);
+            this.index(s, false);
+            this.likes -= s.getNumlikes();
+            this.publish(BoardEvent.Type.REMOVED, s, c.friends);
+            this.audit(AuditEvent.Type.REMOVE, c.name, null, s.getId());
+            return c;
+        }
+
+        /**
+         * Replace a post with a copy liked by friends, nothing changes if a like is refused.
+         * @throws DuplicateDataException if s was already liked by one of friends
+         * @throws InvalidDataException if one of friends is invalid
+         */
+        CategoryVersion<E> like(CategoryVersion<E> c, E s, List<String> friends)
+        throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+            E x = DataElement.copy(s);
+            for(String friend : friends) x.addLike(friend);
+            c = this.set(c.withPosts(c.replaced(s, x)));
+            this.posts = this.posts.with(x.getId(), x);
+            this.likes += friends.size();
+            this.publish(BoardEvent.Type.LIKED, x, c.friends);
+            for(String friend : friends) this.audit(AuditEvent.Type.LIKE, c.name, friend, x.getId());
+            return c;
+        }
+
+        /**
+         * Add a post to the postings of its terms, or drop it from them.
+         */
+        void index(E e, boolean add) {
+            SymbolTable words = VersionedBoard.this.words;
+            Long id = add ? e.getId() : null;
+            for(String t : TextIndex.terms(e.getText())) {
+                int term = add ? words.intern(t) : words.lookup(t);
+                IdTrie<Long> p = this.terms.get(term);
+                p = (p == null ? IdTrie.<Long>empty() : p).with(e.getId(), id);
+                this.terms = this.terms.with(term, p.size() == 0 ? null : p);
+            }
+        }
+
+        void share(int friend, int category) {
+            int[] cats = this.shared.get(friend);
+            if(cats == null) cats = new int[0];
+            int i = -Arrays.binarySearch(cats, category) - 1;
+            int[] a = new int[cats.length + 1];
+            System.arraycopy(cats, 0, a, 0, i);
+            System.arraycopy(cats, i, a, i + 1, cats.length - i);
+            a[i] = category;
+            this.shared = this.shared.with(friend, a);
+            this.events.add(() -> VersionedBoard.this.feed.sharing(friend));
+        }
+
+        void unshare(int friend, int category) {
+            int[] cats = this.shared.get(friend);
+            int i = Arrays.binarySearch(cats, category);
+            int[] a = new int[cats.length - 1];
+            System.arraycopy(cats, 0, a, 0, i);
+            System.arraycopy(cats, i + 1, a, i, a.length - i);
+            this.shared = this.shared.with(friend, a.length == 0 ? null : a);
+            this.events.add(() -> VersionedBoard.this.feed.sharing(friend));
+        }
+
+        void publish(BoardEvent.Type type, E post, IntSet friends) {
+            this.events.add(() -> VersionedBoard.this.feed.publish(type, post, friends));
+        }
+
+        void audit(AuditEvent.Type type, String category, String friend, long post) {
+            AuditLog log = VersionedBoard.this.audit;
+            if(log.isEnabled(type.getLevel()))
+                this.events.add(() -> log.record(type, VersionedBoard.this.owner, category, friend, post));
+        }
+
+        /**
+         * Publish the draft as the current version, then send its changes.
+         * modifies VersionedBoard.this.current
+         */
+        void commit() {
+            VersionedBoard.this.current = new BoardVersion<E>(this.number, this.categories, this.posts, this.shared,
+                VersionedBoard.this.words, this.terms, this.likes);
+            for(Runnable r : this.events) r.run();
+        }
+    }
+
+    /**
+     * Constructor for VersionedBoard
+     * @param owner the owner, must be a valid username
+     * @param passw the password, must be a valid password
+     * @throws InvalidDataException if owner or password are invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    public VersionedBoard(String owner, String passw) throws InvalidDataException {
+        DataValidator.validateUser(owner);
+        DataValidator.validatePassw(passw);
+        this.owner = owner;
+        this.passw = passw;
+        this.token = Session.token(passw);
+        this.writer = new Object();
+        this.words = new SymbolTable();
+        this.current = new BoardVersion<E>(0, IdTrie.<CategoryVersion<E>>empty(), IdTrie.<E>empty(),
+            IdTrie.<int[]>empty(), this.words, IdTrie.<IdTrie<Long>>empty(), 0);
+        this.feed = new ChangeFeed<E>();
+        this.audit = AuditLog.disabled();
+    }
+
+    /**
+     * @return the owner
+     */
+    public String getOwner() {
+        return new String(this.owner);
+    }
+
+    /**
+     * Record the changes of this board in a log, by default they are not recorded.
+     * modifies this.audit
+     * @param audit the log, shared with other boards if needed
+     * @throws NullPointerException if audit is null
+     */
+    public void setAuditLog(AuditLog audit) {
+        if(audit == null) throw new NullPointerException();
+        this.audit = audit;
+    }
+
+    /**
+     * Checks if the password is correct
+     * @param p the password to check, must be shorter than 128 characters
+     * @throws UnauthorizedLoginException if password is wrong
+     * @throws InvalidDataException if the password is invalid
+    */
+    public void checkPasswd(String p) throws UnauthorizedLoginException, InvalidDataException {
+        // a session carries this.token, the token of this.passw
+        if(p == this.token) return;
+        DataValidator.validatePassw(p);
+        if(!this.passw.equals(p)) throw new UnauthorizedLoginException("Wrong Credentials");
+    }
+
+    /**
+     * Open a session of the owner.
+     * @param passw The password, must be a matching and valid password
+     * @param ttlMillis How long the session lasts, in milliseconds
+     * @return a session accepted in place of the password until it expires or is revoked
+     * @throws InvalidDataException if passwd or ttlMillis are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        return Session.open(this.token, ttlMillis);
+    }
+
+    /**
+     * Take the current version, to make several reads that agree with each other.
+     * It stays the same however the board changes, and holding it keeps it in memory.
+     * @param passw The password, must be a matching and valid password
+     * @return the current version
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    public BoardVersion<E> view(String passw) throws InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        return this.current;
+    }
+
+    /**
+     * Create a new category.
+     * modifies this.current
+     * @param category The category name to create, must be a valid category
+     * @param passw The password, must be a valid password
+     * @throws DuplicateDataException if category already exists
+     * @throws InvalidDataException if category or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void createCategory(String category, String passw)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            CategoryVersion<E> c = new CategoryVersion<E>(category);
+            if(d.categories.get(c.id) != null) throw new DuplicateDataException(category);
+            d.set(c);
+            d.audit(AuditEvent.Type.CATEGORY_CREATED, category, null, -1);
+            d.commit();
+        }
+    }
+
+    /**
+     * Remove an already existing category.
+     * modifies this.current
+     * @param category The category name to create, must be a valid category
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void removeCategory(String category, String passw)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            CategoryVersion<E> c = d.category(category);
+            d.categories = d.categories.with(c.id, null);
+            for(E e : c.posts) {
+                d.posts = d.posts.with(e.getId(), null);
+                d.index(e, false);
+                d.likes -= e.getNumlikes();
+                d.events.add(() -> this.feed.deliver(BoardEvent.Type.REMOVED, e, c.friends));
+            }
+            for(int friend : c.friends.toArray()) d.unshare(friend, c.id);
+            d.audit(AuditEvent.Type.CATEGORY_REMOVED, category, null, -1);
+            d.commit();
+        }
+    }
+
+    /**
+     * Add a friend to a category.
+     * modifies this.current
+     * @param category The category name to create, must be a valid category name
+     * @param friend The friend name to add to the category, must be a valid username
+     * @param passw The password, must be a matching and valid password
+     * @throws DuplicateDataException if friend already associated to category
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, friend or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void addFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        DataValidator.validateCategory(category);
+        DataValidator.validateUser(friend);
+        this.checkPasswd(passw);
+        int user = SymbolTable.USERS.intern(friend);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            CategoryVersion<E> c = d.category(category);
+            if(c.friends.contains(user)) throw new DuplicateDataException("friend: " + friend);
+            IntSet friends = new IntSet(c.friends);
+            friends.add(user);
+            d.set(c.withFriends(friends));
+            d.share(user, c.id);
+            d.audit(AuditEvent.Type.FRIEND_ADDED, category, friend, -1);
+            d.commit();
+        }
+    }
+
+    /**
+     * Remove a friend from a category.
+     * modifies this.current
+     * @param category The category name to create, must be a valid category name
+     * @param friend The friend name to add to the category, must be a valid username
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, friend or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void removeFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        DataValidator.validateUser(friend);
+        this.checkPasswd(passw);
+        int user = SymbolTable.USERS.lookup(friend);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            CategoryVersion<E> c = d.category(category);
+            if(user < 0 || !c.friends.contains(user)) throw new DataNotFoundException("friend: " + friend);
+            IntSet friends = new IntSet(c.friends);
+            friends.remove(user);
+            d.set(c.withFriends(friends));
+            d.unshare(user, c.id);
+            d.audit(AuditEvent.Type.FRIEND_REMOVED, category, friend, -1);
+            d.commit();
+        }
+    }
+
+    /**
+     * Add a post to a category, the stored copy gets a new id.
+     * modifies this.current this.lastId
+     * @param category The category name to create, must be a valid category name
+     * @param dato The element to add to the category posts
+     * @param passw The password, must be a matching and valid password
+     * @throws DuplicateDataException if dato is already associated to category
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, post author or contents, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public boolean put(String passw, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        if(dato == null) throw new NullPointerException();
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        if(!dato.getAuthor().equals(this.owner)) throw new InvalidDataException("Author-Owner mismatch");
+        E cloned = DataElement.copy(dato);
+        cloned.setCategory(category);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            CategoryVersion<E> c = d.category(category);
+            if(c.find(cloned) != null) throw new DuplicateDataException(cloned.display() + " in category " + category);
+            cloned.setId(++this.lastId);
+            d.add(c, cloned);
+            d.commit();
+        }
+        return true;
+    }
+
+    /**
+     * Add the posts of a collection to a category, all of them or none.
+     * The posts are copied and sorted before taking writer, then merged into the category at once.
+     * modifies this.current this.lastId
+     * @param passw The password, must be a matching and valid password
+     * @param category The category name, must be a valid category name
+     * @param data The posts to add, the stored copies get new ids in iteration order
+     * @return the number of posts added
+     * @throws DuplicateDataException if a post is already in category or appears twice in data
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, a post author, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if data or one of its posts is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        if(data == null) throw new NullPointerException();
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        TreeSet<E> sorted = new TreeSet<E>();
+        ArrayList<E> copies = Batches.copies(data, this.owner, category, sorted);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            CategoryVersion<E> c = d.category(category);
+            for(E e : sorted) {
+                if(c.find(e) != null) throw new DuplicateDataException(e.display() + " in category " + category);
+            }
+            for(E e : copies) e.setId(++this.lastId);
+            c = d.set(c.withPosts(c.merged(new ArrayList<E>(sorted))));
+            for(E e : copies) {
+                d.posts = d.posts.with(e.getId(), e);
+                d.index(e, true);
+                d.likes += e.getNumlikes();
+                d.publish(BoardEvent.Type.ADDED, e, c.friends);
+                d.audit(AuditEvent.Type.PUT, category, null, e.getId());
+            }
+            d.commit();
+        }
+        return copies.size();
+    }
+
+    /**
+     * Get a post.
+     * @param dato The element to get from the category posts
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E get(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(dato == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        boolean[] found = new boolean[1];
+        this.current.categories.forEach(c -> found[0] |= c.find(dato) != null);
+        if(!found[0]) throw new DataNotFoundException(dato.display());
+        return dato;
+    }
+
+    /**
+     * Remove a post from every category containing it.
+     * modifies this.current
+     * @return the removed post as it was stored
+     * @param dato The post to remove
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E remove(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(dato == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            ArrayList<CategoryVersion<E>> cats = new ArrayList<CategoryVersion<E>>();
+            d.categories.forEach(cats::add);
+            E x = null;
+            for(CategoryVersion<E> c : cats) {
+                E s = c.find(dato);
+                if(s == null) continue;
+                d.remove(c, s);
+                x = s;
+            }
+            if(x == null) throw new DataNotFoundException(dato.display());
+            d.commit();
+            return x;
+        }
+    }
+
+    /**
+     * Get a copy of a post by id.
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        return this.current.get(id);
+    }
+
+    /**
+     * Remove a post by id.
+     * modifies this.current
+     * @param id The id of the post
+     * @param passw The password, must be a matching and valid password
+     * @return the removed post
+     * @throws DataNotFoundException if the post does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.checkPasswd(passw);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            E s = d.posts.get(id);
+            if(s == null) throw new DataNotFoundException("post: " + id);
+            d.remove(d.category(s.getCategory()), s);
+            d.commit();
+            return s;
+        }
+    }
+
+    /**
+     * Get a copy of the posts with the given ids, all from the same version.
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the copies, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        BoardVersion<E> v = this.current;
+        ArrayList<E> l = new ArrayList<E>(ids.size());
+        for(long id : ids) l.add(v.get(id));
+        return l;
+    }
+
+    /**
+     * Remove the posts with the given ids, all of them or none, in one version.
+     * modifies this.current
+     * @param ids The ids of the posts
+     * @param passw The password, must be a matching and valid password
+     * @return the removed posts, in the order of ids
+     * @throws DataNotFoundException if one of the posts does not exists or an id appears twice
+     * @throws InvalidDataException if passwd is invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @throws NullPointerException if ids or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        if(ids == null) throw new NullPointerException();
+        this.checkPasswd(passw);
+        LinkedHashSet<Long> distinct = Batches.distinct(ids);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            for(long id : distinct) {
+                if(d.posts.get(id) == null) throw new DataNotFoundException("post: " + id);
+            }
+            ArrayList<E> removed = new ArrayList<E>(distinct.size());
+            for(long id : distinct) {
+                E s = d.posts.get(id);
+                d.remove(d.category(s.getCategory()), s);
+                removed.add(s);
+            }
+            d.commit();
+            return removed;
+        }
+    }
+
+    /**
+     * Get a List of posts in a category.
+     * @param passw The password, must be a matching and valid password
+     * @param category The category name to create, must be a valid category name
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category, or passwd are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public List<E> getDataCategory(String passw, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        return this.current.getDataCategory(category);
+    }
+
+    /**
+     * Add a like to a post, in every category shared with friend that contains it.
+     * modifies this.current
+     * @param dato The element to add to the category posts
+     * @param friend The friend that liked the post
+     * @throws DuplicateDataException if post was already liked by friend
+     * @throws DataNotFoundException if category or post do not exists
+     * @throws InvalidDataException if dato's content is invalid
+     * @throws NullPointerException if dato is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLike(String friend, E dato)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        if(dato == null) throw new NullPointerException();
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            boolean found = false;
+            for(CategoryVersion<E> c : this.current.sharedWith(friend)) {
+                E s = c.find(dato);
+                if(s == null) continue;
+                d.like(c, s, Collections.singletonList(friend));
+                found = true;
+            }
+            if(!found) throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+            d.commit();
+        }
+    }
+
+    /**
+     * Add a like to a post by id.
+     * modifies this.current
+     * @param id The id of the post
+     * @param friend The friend that liked the post
+     * @throws DuplicateDataException if post was already liked by friend
+     * @throws DataNotFoundException if the post does not exists or friend can not see it
+     * @throws InvalidDataException if friend is invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            E s = d.posts.get(id);
+            CategoryVersion<E> c = s == null ? null : d.category(s.getCategory());
+            int user = SymbolTable.USERS.lookup(friend);
+            if(c == null || user < 0 || !c.friends.contains(user))
+                throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+            d.like(c, s, Collections.singletonList(friend));
+            d.commit();
+        }
+    }
+
+    /**
+     * Add a list of likes by post id, all of them or none, in one version.
+     * The likes are grouped by post, so each post is replaced once.
+     * modifies this.current
+     * @param likes The likes to add
+     * @throws DuplicateDataException if a post was already liked by a friend, or a like appears twice
+     * @throws DataNotFoundException if a post does not exists or its friend can not see it
+     * @throws InvalidDataException if a friend is invalid
+     * @throws NullPointerException if likes or one of them is null
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        if(likes == null) throw new NullPointerException();
+        LinkedHashMap<Long, ArrayList<String>> byPost = Batches.byPost(likes);
+        synchronized(this.writer) {
+            Draft d = new Draft();
+            for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+                E s = d.posts.get(l.getKey());
+                if(s == null)
+                    throw new DataNotFoundException("post not found or @" + l.getValue().get(0) + " is not authorized to view it");
+                CategoryVersion<E> c = d.category(s.getCategory());
+                for(String friend : l.getValue()) {
+                    int user = SymbolTable.USERS.lookup(friend);
+                    if(user < 0 || !c.friends.contains(user))
+                        throw new DataNotFoundException("post not found or @" + friend + " is not authorized to view it");
+                    if(s.isLikedBy(friend)) throw new DuplicateDataException("like by: " + friend);
+                }
+            }
+            for(Map.Entry<Long, ArrayList<String>> l : byPost.entrySet()) {
+                E s = d.posts.get(l.getKey());
+                d.like(d.category(s.getCategory()), s, l.getValue());
+            }
+            d.commit();
+        }
+    }
+
+    /**
+     * Get an iterator for all posts sorted by like number, over the current version:
+     * it takes no lock and is not affected by later changes.
+     * @param passw The board password, must be a valid and matching password
+     * @throws InvalidDataException if password is invalid or data contents are invalid
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public Iterator<E> getIterator(String passw)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        return this.current.getIterator();
+    }
+
+    /**
+     * Get an iterator for all posts accessible by a friend, sorted by like number,
+     * over the current version.
+     * @param friend The friend, must be a  valid and matching username
+     * @throws InvalidDataException if friend is invalid
+     * @see org.unipisa.pr2cheli.DataValidator
+     */
+    @Override
+    public Iterator<E> getFriendIterator(String friend)
+    throws InvalidDataException {
+        return this.current.getFriendIterator(friend);
+    }
+
+    /**
+     * Get the k posts with most likes.
+     * @param passw The board password, must be a valid and matching password
+     * @param k The number of posts
+     * @throws InvalidDataException if password is invalid or k is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        return this.current.getTopK(k);
+    }
+
+    /**
+     * Get the k posts with most likes accessible by a friend.
+     * @param friend The friend, must be a valid username
+     * @param k The number of posts
+     * @throws InvalidDataException if friend is invalid or k is negative
+     */
+    @Override
+    public List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        return this.current.getFriendTopK(friend, k);
+    }
+
+    /**
+     * Get a page of all posts sorted by like number.
+     * Each category is entered after cursor by binary search, then they are merged.
+     * @param passw The board password, must be a valid and matching password
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if password is invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        this.checkPasswd(passw);
+        return this.current.getPage(cursor, size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend, sorted by like number.
+     * @param friend The friend, must be a valid username
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend is invalid or size is negative
+     */
+    @Override
+    public Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        return this.current.getFriendPage(friend, cursor, size);
+    }
+
+    /**
+     * Get a page of the posts in a category, sorted by like number.
+     * @param passw The board password, must be a valid and matching password
+     * @param category The category name, must be a valid category name
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws DataNotFoundException if category does not exists
+     * @throws InvalidDataException if category or password are invalid or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     */
+    @Override
+    public Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        DataValidator.validateCategory(category);
+        this.checkPasswd(passw);
+        return this.current.getCategoryPage(category, cursor, size);
+    }
+
+    /**
+     * Get a page of the posts containing all the words of a query, sorted by like number,
+     * from the postings of the current version.
+     * @param passw The board password, must be a valid and matching password
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if query or password are invalid, query has no words or size is negative
+     * @throws UnauthorizedLoginException if there is a password mismatch
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        TextIndex.query(query);
+        this.checkPasswd(passw);
+        return this.current.search(query, cursor, size);
+    }
+
+    /**
+     * Get a page of the posts accessible by a friend containing all the words of a query,
+     * sorted by like number, from the current version.
+     * @param friend The friend, must be a valid username
+     * @param query The words to look for, must be a valid text
+     * @param cursor The cursor returned with the previous page, null for the first page
+     * @param size The page size
+     * @throws InvalidDataException if friend or query are invalid, query has no words or size is negative
+     * @see org.unipisa.pr2cheli.TextIndex
+     */
+    @Override
+    public Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        return this.current.searchAsFriend(friend, query, cursor, size);
+    }
+
+    /**
+     * Subscribe a friend to the changes of the categories shared with it.
+     * modifies this.feed
+     * @param friend The friend, must be a valid username
+     * @param capacity The size of the queue of the subscription, must be positive
+     * @param executor Runs listener
+     * @param listener Receives the events
+     * @return the subscription
+     * @throws InvalidDataException if friend or capacity are invalid
+     * @throws NullPointerException if executor or listener are null
+     */
+    @Override
+    public Subscription subscribe(String friend, int capacity, Executor executor, BoardListener<E> listener)
+    throws InvalidDataException {
+        return this.feed.subscribe(friend, capacity, executor, listener);
+    }
+
+    /**
+     * Get the changes of the posts accessible by a friend since a version,
+     * or its whole feed if the version is not in the log of feed or the categories
+     * shared with the friend changed after it.
+     * The posts are read from the version current after the log, so they may already
+     * include later changes, which come again with the next call.
+     * @param friend The friend, must be a valid username
+     * @param version The version of the last changes the friend applied
+     * @return the changes and the new version
+     * @throws InvalidDataException if friend is invalid
+     */
+    @Override
+    public Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        DataValidator.validateUser(friend);
+        int user = SymbolTable.USERS.lookup(friend);
+        long now = this.feed.version();
+        Changes<E> c = this.feed.changesSince(user, version, cat -> {
+            int[] cats = this.current.shared.get(user);
+            return cats != null && Arrays.binarySearch(cats, cat) >= 0;
+        }, id -> this.current.posts.get(id));
+        if(c != null) return c;
+        ArrayList<E> l = new ArrayList<E>();
+        for(Iterator<E> it = this.current.getFriendIterator(friend); it.hasNext(); ) l.add(it.next());
+        return new Changes<E>(now, true, l, new ArrayList<Long>());
+    }
+
+    @Override
+    public int getCategoryCount() {
+        return this.current.getCategoryCount();
+    }
+
+    @Override
+    public int getPostCount() {
+        return this.current.getPostCount();
+    }
+
+    @Override
+    public long getLikeCount() {
+        return this.current.getLikeCount();
+    }
+}
@@ -0,0 +1,261 @@
+package org.unipisa.pr2cheli;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of binary records on a FileChannel.
+ * Each record is framed as [int length][int crc32 of the payload][payload]:
+ * a record torn by a crash fails the length or checksum test and is cut away on recovery,
+ * together with everything after it.
+ * Writers append under the log lock and then wait in commit() for their record to be
+ * durable as the SyncPolicy says; with GROUP the writers waiting together share one fsync,
+ * with INTERVAL they do not wait and a thread shared by all the logs forces each of them
+ * once every interval, until it is closed.
+ *
+ * Representation Invariant: written is the end of the last appended record,
+ *  synced <= written is the end of the last record forced to the disk
+ */
+public class WriteAheadLog implements Closeable {
+    private static final int HEADER = 8;
+    static final int MAX_RECORD = 1 << 20;
+    /* Forces the INTERVAL logs */
+    private static final ScheduledThreadPoolExecutor FLUSHER = flusher();
+
+    /**
+     * Receives the payloads of the valid records during recovery.
+     */
+    @FunctionalInterface
+    public interface Replayer {
+        public void replay(byte[] payload) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+    private final ByteBuffer header;
+    private final CRC32 crc;
+    private final Object syncLock;
+    private final ScheduledFuture<?> flush;
+    private boolean recovered;
+    private long written;
+    private long synced;
+    private boolean syncing;
+    private volatile IOException flushFailure;
+
+    /**
+     * Open a log, INTERVAL syncs once a second.
+     * @param path the log file, created if missing
+     * @param policy when to force the records to the disk
+     * @throws IOException if the file can not be opened
+     */
+    public WriteAheadLog(Path path, SyncPolicy policy) throws IOException {
+        this(path, policy, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Open a log.
+     * @param path the log file, created if missing
+     * @param policy when to force the records to the disk
+     * @param interval the INTERVAL period, positive
+     * @param unit the unit of interval
+     * @throws IOException if the file can not be opened
+     * @throws IllegalArgumentException if the policy is INTERVAL and interval is not positive
+     */
+    public WriteAheadLog(Path path, SyncPolicy policy, long interval, TimeUnit unit) throws IOException {
+        if(policy == null || unit == null) throw new NullPointerException();
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.policy = policy;
+        this.header = ByteBuffer.allocate(HEADER);
+        this.crc = new CRC32();
+        this.syncLock = new Object();
+        if(policy != SyncPolicy.INTERVAL) this.flush = null;
+        else {
+            try {
+                this.flush = FLUSHER.scheduleWithFixedDelay(this::flush, interval, interval, unit);
+            } catch(IllegalArgumentException e) {
+                this.channel.close();
+                throw e;
+            }
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor flusher() {
+        ScheduledThreadPoolExecutor t = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "wal-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // closed logs leave the queue at once
+        t.setRemoveOnCancelPolicy(true);
+        return t;
+    }
+
+    /**
+     * Force what was appended since the last run, on the flusher.
+     * A failure is reported by the next commit().
+     */
+    private void flush() {
+        long target;
+        synchronized(this) {
+            if(!this.recovered || !this.channel.isOpen()) return;
+            target = this.written;
+        }
+        try {
+            this.sync(target);
+        } catch(IOException e) {
+            if(this.channel.isOpen()) this.flushFailure = e;
+        }
+    }
+
+    /**
+     * Read back every valid record, then truncate the log after the last one.
+     * Must be called once, before the first append.
+     * modifies this
+     * @param r receives the payloads in order
+     * @throws IOException if the file can not be read or r fails
+     */
+    public synchronized void recover(Replayer r) throws IOException {
+        if(this.recovered) throw new IllegalStateException("log already recovered");
+        long end = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+            Channels.newInputStream(this.channel.position(0)), 1 << 16));
+        while(true) {
+            byte[] payload;
+            try {
+                int length = in.readInt();
+                int sum = in.readInt();
+                if(length <= 0 || length > MAX_RECORD) break;
+                payload = new byte[length];
+                in.readFully(payload);
+                this.crc.reset();
+                this.crc.update(payload, 0, length);
+                if((int)this.crc.getValue() != sum) break;
+            } catch(EOFException e) {
+                break;
+            }
+            r.replay(payload);
+            end += HEADER + payload.length;
+        }
+        this.channel.truncate(end);
+        this.channel.position(end);
+        this.channel.force(true);
+        this.written = end;
+        this.synced = end;
+        this.recovered = true;
+    }
+
+    /**
+     * Append a record, it is durable only after commit() returns.
+     * modifies this
+     * @param payload the record
+     * @return the log position to pass to commit()
+     * @throws IOException if the write fails
+     */
+    public synchronized long append(byte[] payload) throws IOException {
+        if(!this.recovered) throw new IllegalStateException("log not recovered");
+        if(payload.length == 0 || payload.length > MAX_RECORD) throw new IllegalArgumentException("record size " + payload.length);
+        this.crc.reset();
+        this.crc.update(payload, 0, payload.length);
+        this.header.clear();
+        this.header.putInt(payload.length).putInt((int)this.crc.getValue()).flip();
+        ByteBuffer[] record = { this.header, ByteBuffer.wrap(payload) };
+        while(record[1].hasRemaining()) this.channel.write(record);
+        this.written += HEADER + payload.length;
+        return this.written;
+    }
+
+    /**
+     * Wait until the log is durable up to position as the policy requires.
+     * @param position a position returned by append()
+     * @throws IOException if the fsync fails
+     */
+    public void commit(long position) throws IOException {
+        switch(this.policy) {
+        case NONE:
+            return;
+        case INTERVAL:
+            // forced by the flusher
+            IOException e = this.flushFailure;
+            if(e != null) throw new IOException("write-ahead log flush failed", e);
+            return;
+        case ALWAYS:
+            this.channel.force(false);
+            synchronized(this.syncLock) {
+                this.synced = Math.max(this.synced, position);
+            }
+            return;
+        default:
+            this.sync(position);
+        }
+    }
+
+    /**
+     * Group commit: the first writer to arrive forces everything appended so far,
+     * the writers arriving meanwhile wait for it and return without their own fsync
+     * if it covered their records.
+     */
+    private void sync(long position) throws IOException {
+        long target;
+        synchronized(this.syncLock) {
+            while(true) {
+                if(this.synced >= position) return;
+                if(!this.syncing) break;
+                try {
+                    this.syncLock.wait();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted waiting for the log", e);
+                }
+            }
+            this.syncing = true;
+        }
+        boolean done = false;
+        synchronized(this) {
+            target = this.written;
+        }
+        try {
+            this.channel.force(false);
+            done = true;
+        } finally {
+            synchronized(this.syncLock) {
+                this.syncing = false;
+                if(done) this.synced = Math.max(this.synced, target);
+                this.syncLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return the size of the log in bytes
+     */
+    public synchronized long size() {
+        return this.written;
+    }
+
+    /**
+     * Force the log to the disk and close it.
+     * @throws IOException if the fsync or the close fail
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(this.flush != null) this.flush.cancel(false);
+        if(!this.channel.isOpen()) return;
+        try {
+            this.channel.force(false);
+        } finally {
+            this.channel.close();
+        }
+    }
+}
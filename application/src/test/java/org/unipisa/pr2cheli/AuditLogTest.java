@@ -0,0 +1,160 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * The events the boards record in an AuditLog, and the ring of the log.
+ */
+public class AuditLogTest extends TestCase {
+
+    /**
+     * Keeps the events written, and whether the last of them was flushed.
+     */
+    private static class Collecting implements AuditSink {
+        final List<String> written = Collections.synchronizedList(new ArrayList<String>());
+        volatile boolean flushed = true;
+
+        @Override
+        public void write(AuditEvent e) throws Exception {
+            this.written.add(e.getType() + " " + e.getCategory() + " " + e.getFriend() + " " + e.getPost());
+            this.flushed = false;
+        }
+
+        @Override
+        public void flush() {
+            this.flushed = true;
+        }
+    }
+
+    /**
+     * The same changes on any board, a refused one included.
+     */
+    private static void script(DataBoard<DataElement> b) throws Exception {
+        b.createCategory("c0", RandomOps.PASSW);
+        b.addFriend("c0", RandomOps.PASSW, "f0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        b.putAll(RandomOps.PASSW, "c0", Arrays.asList(new DataElement(RandomOps.OWNER, "b"),
+            new DataElement(RandomOps.OWNER, "c")));
+        b.insertLike("f0", 1);
+        try {
+            b.insertLike("f0", 1);
+            fail("liked twice");
+        } catch(DuplicateDataException e) {
+            // expected, and not recorded
+        }
+        b.remove(RandomOps.PASSW, 2);
+        b.removeFriend("c0", RandomOps.PASSW, "f0");
+        b.removeCategory("c0", RandomOps.PASSW);
+    }
+
+    private static List<String> recorded(DataBoard<DataElement> b, AuditLevel level) throws Exception {
+        Collecting sink = new Collecting();
+        AuditLog log = new AuditLog(sink, 64, level);
+        if(b instanceof Board) ((Board<DataElement>)b).setAuditLog(log);
+        else if(b instanceof Board2) ((Board2<DataElement>)b).setAuditLog(log);
+        else if(b instanceof ConcurrentBoard) ((ConcurrentBoard<DataElement>)b).setAuditLog(log);
+        else ((VersionedBoard<DataElement>)b).setAuditLog(log);
+        script(b);
+        log.close();
+        assertTrue(sink.flushed);
+        assertEquals(0, log.getDropped());
+        return sink.written;
+    }
+
+    public void testBoardsRecordTheirChanges() throws Exception {
+        List<String> expected = Arrays.asList(
+            "CATEGORY_CREATED c0 null -1", "FRIEND_ADDED c0 f0 -1", "PUT c0 null 1", "PUT c0 null 2", "PUT c0 null 3",
+            "LIKE c0 f0 1", "REMOVE c0 null 2", "FRIEND_REMOVED c0 f0 -1", "CATEGORY_REMOVED c0 null -1");
+        List<DataBoard<DataElement>> boards = Arrays.<DataBoard<DataElement>>asList(
+            new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        for(DataBoard<DataElement> b : boards) {
+            assertEquals(b.getClass().getSimpleName(), expected, recorded(b, AuditLevel.DEBUG));
+        }
+        List<String> info = new ArrayList<String>(expected);
+        info.remove("LIKE c0 f0 1");
+        assertEquals(info, recorded(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), AuditLevel.INFO));
+        assertTrue(recorded(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), AuditLevel.OFF).isEmpty());
+    }
+
+    public void testFullRingDropsEvents() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Collecting sink = new Collecting() {
+            @Override
+            public void write(AuditEvent e) throws Exception {
+                release.await();
+                super.write(e);
+            }
+        };
+        AuditLog log = new AuditLog(sink, 5, AuditLevel.DEBUG);
+        ExecutorService ex = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> recorders = new ArrayList<Future<?>>();
+            for(int t = 0; t < 4; t++) {
+                recorders.add(ex.submit(() -> {
+                    for(int i = 0; i < 250; i++) log.record(AuditEvent.Type.LIKE, RandomOps.OWNER, "c0", "f0", i);
+                }));
+            }
+            for(Future<?> f : recorders) f.get();
+        } finally {
+            ex.shutdown();
+        }
+        release.countDown();
+        log.close();
+        // the ring holds 8 events and the writer one more, stuck in the sink
+        assertTrue(log.getDropped() >= 1000 - 9);
+        assertEquals(1000, log.getDropped() + sink.written.size());
+        log.record(AuditEvent.Type.LIKE, RandomOps.OWNER, "c0", "f0", 0);
+        assertEquals(1001, log.getDropped() + sink.written.size());
+    }
+
+    public void testFailingSink() throws Exception {
+        Collecting sink = new Collecting() {
+            @Override
+            public void write(AuditEvent e) throws Exception {
+                if(e.getPost() == 1) throw new IllegalStateException();
+                super.write(e);
+            }
+        };
+        AuditLog log = new AuditLog(sink, 16, AuditLevel.INFO);
+        for(int i = 0; i < 3; i++) log.record(AuditEvent.Type.PUT, RandomOps.OWNER, "c0", null, i);
+        log.record(AuditEvent.Type.LIKE, RandomOps.OWNER, "c0", "f0", 5);
+        log.setLevel(AuditLevel.DEBUG);
+        log.record(AuditEvent.Type.LIKE, RandomOps.OWNER, "c0", "f0", 6);
+        log.close();
+        assertEquals(1, log.getFailures());
+        assertEquals(Arrays.asList("PUT c0 null 0", "PUT c0 null 2", "LIKE c0 f0 6"), sink.written);
+    }
+
+    public void testDisabled() {
+        AuditLog log = AuditLog.disabled();
+        assertFalse(log.isEnabled(AuditLevel.INFO));
+        log.record(AuditEvent.Type.PUT, RandomOps.OWNER, "c0", null, 1);
+        log.close();
+        try {
+            log.setLevel(AuditLevel.DEBUG);
+            fail("the disabled log turned on");
+        } catch(UnsupportedOperationException e) {
+            // expected
+        }
+        try {
+            new AuditLog(new Collecting(), 0, AuditLevel.INFO);
+            fail("a ring without room");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * putAll, removeAll and insertLikes apply a whole batch or none of it, on each board.
+ */
+public class BatchTest extends TestCase {
+
+    /**
+     * @return a board with the categories c0 and c1 shared with f0 and f1, and posts p0..p5
+     */
+    private static DataBoard<DataElement> fill(DataBoard<DataElement> b) throws Exception {
+        for(String c : new String[] { "c0", "c1" }) {
+            b.createCategory(c, RandomOps.PASSW);
+            b.addFriend(c, RandomOps.PASSW, "f0");
+            b.addFriend(c, RandomOps.PASSW, "f1");
+        }
+        for(int i = 0; i < 6; i++) b.put(RandomOps.PASSW, post("p" + i), "c" + (i % 2));
+        b.insertLike("f0", 1);
+        return b;
+    }
+
+    private static DataElement post(String text) throws Exception {
+        return new DataElement(RandomOps.OWNER, text);
+    }
+
+    private static String state(DataBoard<DataElement> b) throws Exception {
+        BoardGauges g = (BoardGauges)b;
+        return RandomOps.dump(b) + " posts " + g.getPostCount() + " likes " + g.getLikeCount();
+    }
+
+    /**
+     * Run op, which must be refused with one of the expected exceptions and leave b as it was.
+     */
+    @SafeVarargs
+    private static void assertRefused(String what, DataBoard<DataElement> b, RandomOps.Op op,
+            Class<? extends Exception>... expected) throws Exception {
+        String before = state(b);
+        try {
+            op.run(b);
+            fail(b.getClass().getSimpleName() + " accepted " + what);
+        } catch(Exception e) {
+            boolean known = false;
+            for(Class<? extends Exception> c : expected) known |= c.isInstance(e);
+            if(!known) throw e;
+        }
+        assertEquals(b.getClass().getSimpleName() + " after " + what, before, state(b));
+    }
+
+    private static void assertAllOrNothing(DataBoard<DataElement> b) throws Exception {
+        fill(b);
+        assertRefused("a post already in the category", b,
+            x -> x.putAll(RandomOps.PASSW, "c0", Arrays.asList(post("n0"), post("p2"))), DuplicateDataException.class);
+        assertRefused("two equal posts", b,
+            x -> x.putAll(RandomOps.PASSW, "c0", Arrays.asList(post("n0"), post("n1"), post("n0"))),
+            DuplicateDataException.class);
+        assertRefused("a post by someone else", b,
+            x -> x.putAll(RandomOps.PASSW, "c0", Arrays.asList(post("n0"), new DataElement("mallory", "n1"))),
+            InvalidDataException.class);
+        assertRefused("a null post", b,
+            x -> x.putAll(RandomOps.PASSW, "c0", Arrays.asList(post("n0"), null)), NullPointerException.class);
+        assertRefused("a missing category", b,
+            x -> x.putAll(RandomOps.PASSW, "c9", Arrays.asList(post("n0"))), DataNotFoundException.class);
+        assertRefused("a missing id", b,
+            x -> x.removeAll(RandomOps.PASSW, Arrays.asList(2L, 3L, 99L)), DataNotFoundException.class);
+        assertRefused("a repeated id", b,
+            x -> x.removeAll(RandomOps.PASSW, Arrays.asList(2L, 3L, 2L)), DataNotFoundException.class);
+        assertRefused("a like already given", b,
+            x -> { x.insertLikes(Arrays.asList(new Like("f1", 2), new Like("f0", 1))); return null; },
+            DuplicateDataException.class);
+        assertRefused("a like twice in the batch", b,
+            x -> { x.insertLikes(Arrays.asList(new Like("f1", 2), new Like("f1", 2))); return null; },
+            DuplicateDataException.class);
+        assertRefused("a like by a stranger", b,
+            x -> { x.insertLikes(Arrays.asList(new Like("f1", 2), new Like("f9", 3))); return null; },
+            DataNotFoundException.class);
+        assertRefused("a like of a missing post", b,
+            x -> { x.insertLikes(Arrays.asList(new Like("f1", 2), new Like("f1", 99))); return null; },
+            DataNotFoundException.class, DuplicateDataException.class);
+    }
+
+    private static void assertApplied(DataBoard<DataElement> b) throws Exception {
+        fill(b);
+        assertEquals(3, b.putAll(RandomOps.PASSW, "c1", Arrays.asList(post("n0"), post("n1"), post("n2"))));
+        assertEquals(0, b.putAll(RandomOps.PASSW, "c1", Collections.<DataElement>emptyList()));
+        List<Long> ids = Arrays.asList(9L, 1L, 7L, 4L);
+        List<String> got = new ArrayList<String>();
+        for(DataElement e : b.getAll(RandomOps.PASSW, ids)) got.add(e.getId() + ":" + e.getText());
+        assertEquals(Arrays.asList("9:n2", "1:p0", "7:n0", "4:p3"), got);
+        b.insertLikes(Arrays.asList(new Like("f0", 7), new Like("f1", 7), new Like("f1", 1)));
+        assertEquals(4, ((BoardGauges)b).getLikeCount());
+        assertEquals(2, b.get(RandomOps.PASSW, 1).getNumlikes());
+        List<String> removed = new ArrayList<String>();
+        for(DataElement e : b.removeAll(RandomOps.PASSW, Arrays.asList(7L, 2L))) removed.add(e.getId() + ":" + e.getText());
+        assertEquals(Arrays.asList("7:n0", "2:p1"), removed);
+        assertEquals(7, ((BoardGauges)b).getPostCount());
+        assertEquals(2, ((BoardGauges)b).getLikeCount());
+    }
+
+    public void testBoard() throws Exception {
+        assertAllOrNothing(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        assertApplied(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testBoard2() throws Exception {
+        assertAllOrNothing(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        assertApplied(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertAllOrNothing(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        assertApplied(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testVersionedBoard() throws Exception {
+        assertAllOrNothing(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        assertApplied(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+}
@@ -0,0 +1,90 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Board2, which indexes its categories by name, against Board.
+ */
+public class Board2Test extends TestCase {
+
+    public void testSameOutcomesAsBoard() throws Exception {
+        for(long seed = 1; seed <= 3; seed++) {
+            new RandomOps(seed).assertSameOutcomes(
+                new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+                new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 20000);
+        }
+    }
+
+    /**
+     * Many categories removed and created again under the same names, each call
+     * looking a category up by name.
+     */
+    public void testManyCategories() throws Exception {
+        Board<DataElement> expected = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        Board2<DataElement> actual = new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        Random r = new Random(21);
+        for(int i = 0; i < 30000; i++) {
+            String c = "cat" + r.nextInt(300), f = "f" + r.nextInt(20);
+            int kind = r.nextInt(8);
+            DataElement post = new DataElement(RandomOps.OWNER, "t" + i);
+            RandomOps.Op op;
+            switch(kind) {
+            case 0:
+                op = b -> { b.createCategory(c, RandomOps.PASSW); return null; };
+                break;
+            case 1:
+                op = b -> { b.removeCategory(c, RandomOps.PASSW); return null; };
+                break;
+            case 2:
+                op = b -> { b.addFriend(c, RandomOps.PASSW, f); return null; };
+                break;
+            case 3:
+                op = b -> { b.removeFriend(c, RandomOps.PASSW, f); return null; };
+                break;
+            case 4:
+            case 5:
+                op = b -> b.put(RandomOps.PASSW, post, c);
+                break;
+            case 6:
+                op = b -> b.getDataCategory(RandomOps.PASSW, c);
+                break;
+            default:
+                op = b -> b.getFriendTopK(f, 5);
+            }
+            assertEquals("call " + i, RandomOps.outcome(expected, op), RandomOps.outcome(actual, op));
+        }
+        assertEquals(expected.getCategoryCount(), actual.getCategoryCount());
+        assertEquals(expected.getPostCount(), actual.getPostCount());
+        assertTrue(actual.getCategoryCount() > 100);
+        assertEquals(RandomOps.dump(expected), RandomOps.dump(actual));
+    }
+
+    public void testRecreatedCategoryIsEmpty() throws Exception {
+        Board2<DataElement> b = new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.addFriend("c0", RandomOps.PASSW, "f0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        try {
+            b.createCategory("c0", RandomOps.PASSW);
+            fail("two categories with a name");
+        } catch(DuplicateDataException e) {
+            // expected
+        }
+        b.removeCategory("c0", RandomOps.PASSW);
+        try {
+            b.getDataCategory(RandomOps.PASSW, "c0");
+            fail("found a removed category");
+        } catch(DataNotFoundException e) {
+            // expected
+        }
+        b.createCategory("c0", RandomOps.PASSW);
+        assertTrue(b.getDataCategory(RandomOps.PASSW, "c0").isEmpty());
+        assertFalse(b.getFriendIterator("f0").hasNext());
+        assertEquals(1, b.getCategoryCount());
+        assertEquals(0, b.getPostCount());
+    }
+}
@@ -0,0 +1,134 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * BoardRegistry lookups, creations and evictions, one thread and many.
+ */
+public class BoardRegistryTest extends TestCase {
+
+    private static BoardRegistry<DataElement> registry() {
+        return new BoardRegistry<DataElement>(3, (owner, passw) -> {
+            Board<DataElement> b = new Board<DataElement>(owner, passw);
+            try {
+                b.createCategory("c0", passw);
+            } catch(DuplicateDataException | UnauthorizedLoginException e) {
+                throw new AssertionError(e);
+            }
+            return b;
+        });
+    }
+
+    public void testLookups() throws Exception {
+        BoardRegistry<DataElement> r = registry();
+        assertEquals(4, r.stats().getPartitions());
+        DataBoard<DataElement> b = r.create("alice", RandomOps.PASSW);
+        assertSame(b, r.get("alice"));
+        assertSame(b, r.getOrCreate("alice", "another1"));
+        try {
+            r.create("alice", RandomOps.PASSW);
+            fail("two boards for an owner");
+        } catch(DuplicateDataException e) {
+            // expected
+        }
+        try {
+            r.get("bob");
+            fail("found a board never created");
+        } catch(DataNotFoundException e) {
+            // expected
+        }
+        assertFalse(r.contains("bob"));
+        DataBoard<DataElement> bob = r.getOrCreate("bob", RandomOps.PASSW);
+        assertEquals(2, r.size());
+        assertSame(bob, r.evict("bob"));
+        assertFalse(r.contains("bob"));
+        try {
+            r.withBoard("bob", x -> x.getIterator(RandomOps.PASSW));
+            fail("ran on an evicted board");
+        } catch(DataNotFoundException e) {
+            // expected
+        }
+        BoardRegistry.Stats s = r.stats();
+        assertEquals(1, s.getBoards());
+        assertEquals(2, s.getCreated());
+        assertEquals(1, s.getEvicted());
+        try {
+            new BoardRegistry<DataElement>(0, (owner, passw) -> null);
+            fail("a registry without partitions");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testConcurrentGetOrCreateAgree() throws Exception {
+        BoardRegistry<DataElement> r = registry();
+        ExecutorService ex = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<DataBoard<DataElement>>> got = new ArrayList<Future<DataBoard<DataElement>>>();
+            for(int i = 0; i < 64; i++) got.add(ex.submit(() -> r.getOrCreate("owner0", RandomOps.PASSW)));
+            for(Future<DataBoard<DataElement>> f : got) assertSame(r.get("owner0"), f.get());
+        } finally {
+            ex.shutdown();
+        }
+        assertEquals(1, r.stats().getCreated());
+    }
+
+    /**
+     * Every post put through withBoard must be on a board returned by evict, once:
+     * an operation that found the board before an eviction and ran after it would be lost.
+     */
+    public void testNoWriteIsLostToEviction() throws Exception {
+        BoardRegistry<DataElement> r = registry();
+        r.create(RandomOps.OWNER, RandomOps.PASSW);
+        ExecutorService ex = Executors.newFixedThreadPool(5);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<Long>> writers = new ArrayList<Future<Long>>();
+            for(int w = 0; w < 4; w++) {
+                int writer = w;
+                writers.add(ex.submit(() -> {
+                    long written = 0;
+                    for(int i = 0; i < 5000; i++) {
+                        DataElement post = new DataElement(RandomOps.OWNER, "w" + writer + "p" + i);
+                        try {
+                            r.withBoard(RandomOps.OWNER, b -> b.put(RandomOps.PASSW, post, "c0"));
+                            written++;
+                        } catch(DataNotFoundException e) {
+                            r.getOrCreate(RandomOps.OWNER, RandomOps.PASSW);
+                        }
+                    }
+                    return written;
+                }));
+            }
+            Future<Long> evictor = ex.submit(() -> {
+                long posts = 0;
+                while(!done.get()) {
+                    try {
+                        posts += ((BoardGauges)r.evict(RandomOps.OWNER)).getPostCount();
+                    } catch(DataNotFoundException e) {
+                        Thread.yield();
+                    }
+                }
+                return posts;
+            });
+            long written = 0;
+            for(Future<Long> f : writers) written += f.get();
+            done.set(true);
+            long saved = evictor.get();
+            if(r.contains(RandomOps.OWNER)) saved += ((BoardGauges)r.evict(RandomOps.OWNER)).getPostCount();
+            assertEquals(written, saved);
+            assertTrue(r.stats().getEvicted() > 1);
+        } finally {
+            ex.shutdown();
+        }
+    }
+}
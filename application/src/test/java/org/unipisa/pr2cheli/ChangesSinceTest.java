@@ -0,0 +1,125 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * Feeds of friends kept up to date with getFriendChangesSince against getFriendIterator, on each board.
+ */
+public class ChangesSinceTest extends TestCase {
+
+    /**
+     * The feed of a friend as a client keeps it, by id.
+     */
+    private static class View {
+        final Map<Long, DataElement> posts = new HashMap<Long, DataElement>();
+        long version;
+        int resyncs;
+        int increments;
+
+        void sync(DataBoard<DataElement> b, String friend) throws Exception {
+            Changes<DataElement> c = b.getFriendChangesSince(friend, this.version);
+            if(c.isResync()) {
+                this.posts.clear();
+                this.resyncs++;
+                assertTrue(c.getRemoved().isEmpty());
+            } else this.increments++;
+            for(long id : c.getRemoved()) this.posts.remove(id);
+            for(DataElement e : c.getUpdated()) this.posts.put(e.getId(), e);
+            this.version = c.getVersion();
+        }
+
+        List<String> render() {
+            List<DataElement> l = new ArrayList<DataElement>(this.posts.values());
+            Collections.sort(l);
+            return ChangesSinceTest.render(l.iterator());
+        }
+    }
+
+    private static List<String> render(Iterator<DataElement> it) {
+        List<String> l = new ArrayList<String>();
+        while(it.hasNext()) {
+            DataElement e = it.next();
+            l.add(e.getId() + ":" + e.getNumlikes() + ":" + e.getText());
+        }
+        return l;
+    }
+
+    private static void assertInSync(DataBoard<DataElement> b, long seed) throws Exception {
+        RandomOps ops = new RandomOps(seed);
+        Map<String, View> views = new HashMap<String, View>();
+        for(String f : RandomOps.FRIENDS) views.put(f, new View());
+        for(int i = 0; i < 20000; i++) {
+            RandomOps.outcome(b, ops.next());
+            if(i % 25 != 0) continue;
+            String f = RandomOps.FRIENDS[(i / 25) % RandomOps.FRIENDS.length];
+            View v = views.get(f);
+            v.sync(b, f);
+            assertEquals(b.getClass().getSimpleName() + " call " + i + " " + f, render(b.getFriendIterator(f)), v.render());
+        }
+        for(View v : views.values()) {
+            assertTrue(v.resyncs > 0);
+            assertTrue(v.increments > 0);
+        }
+    }
+
+    public void testBoard() throws Exception {
+        assertInSync(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 171);
+    }
+
+    public void testBoard2() throws Exception {
+        assertInSync(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 172);
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertInSync(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 173);
+    }
+
+    public void testVersionedBoard() throws Exception {
+        assertInSync(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 174);
+    }
+
+    public void testResync() throws Exception {
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.createCategory("c1", RandomOps.PASSW);
+        b.addFriend("c0", RandomOps.PASSW, "f0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "hidden"), "c1");
+        // first call, and a version from the future
+        Changes<DataElement> c = b.getFriendChangesSince("f0", 0);
+        assertTrue(c.isResync());
+        assertEquals(1, c.getUpdated().size());
+        assertTrue(b.getFriendChangesSince("f0", c.getVersion() + 1000).isResync());
+        long v = c.getVersion();
+        assertTrue(b.getFriendChangesSince("f0", v).isEmpty());
+        // a change the friend can not see
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "hidden2"), "c1");
+        Changes<DataElement> d = b.getFriendChangesSince("f0", v);
+        assertTrue(d.isEmpty());
+        v = d.getVersion();
+        // a post added and removed between two calls is never seen
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "brief"), "c0");
+        b.remove(RandomOps.PASSW, 4);
+        d = b.getFriendChangesSince("f0", v);
+        assertTrue(d.isEmpty());
+        v = d.getVersion();
+        // sharing a category starts the friend over
+        b.addFriend("c1", RandomOps.PASSW, "f0");
+        d = b.getFriendChangesSince("f0", v);
+        assertTrue(d.isResync());
+        assertEquals(3, d.getUpdated().size());
+        v = d.getVersion();
+        // older than the log
+        for(int i = 0; i < 5000; i++) b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "p" + i), "c0");
+        d = b.getFriendChangesSince("f0", v);
+        assertTrue(d.isResync());
+        assertEquals(5003, d.getUpdated().size());
+    }
+}
@@ -0,0 +1,191 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * ConcurrentBoard against Board, one thread and many.
+ */
+public class ConcurrentBoardTest extends TestCase {
+
+    public void testSameOutcomesAsBoard() throws Exception {
+        for(long seed = 1; seed <= 3; seed++) {
+            new RandomOps(seed).assertSameOutcomes(
+                new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+                new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 20000);
+        }
+    }
+
+    public void testLikeOfRemovedCategoryWithReusedName() throws Exception {
+        ConcurrentBoard<DataElement> b = new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c", RandomOps.PASSW);
+        b.addFriend("c", RandomOps.PASSW, "bob");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "old"), "c");
+        long id = b.getDataCategory(RandomOps.PASSW, "c").get(0).getId();
+        b.removeCategory("c", RandomOps.PASSW);
+        b.createCategory("c", RandomOps.PASSW);
+        b.addFriend("c", RandomOps.PASSW, "bob");
+        try {
+            b.insertLike("bob", id);
+            fail("liked a removed post");
+        } catch(DataNotFoundException e) {
+            // expected
+        }
+        assertEquals(0, b.getLikeCount());
+        assertEquals(0, b.getPostCount());
+    }
+
+    /**
+     * A search key that stops at its first comparison until released, so a call
+     * scanning the categories can be held between two of them.
+     */
+    private static class HeldKey extends DataElement {
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        HeldKey(String text, String category) throws Exception {
+            super(RandomOps.OWNER, text);
+            this.setCategory(category);
+        }
+
+        @Override
+        public int compareTo(DataElement o) {
+            if(this.held.getCount() > 0) {
+                this.held.countDown();
+                try {
+                    this.release.await();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.compareTo(o);
+        }
+    }
+
+    /**
+     * @return a board with the categories a and c, scanned in this order, holding a post each
+     */
+    private static ConcurrentBoard<DataElement> twoCategories() throws Exception {
+        ConcurrentBoard<DataElement> b = new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("a", RandomOps.PASSW);
+        b.createCategory("c", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "other"), "a");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "p"), "c");
+        return b;
+    }
+
+    public void testRemoveSkipsCategoryRemovedDuringTheScan() throws Exception {
+        ConcurrentBoard<DataElement> b = twoCategories();
+        HeldKey key = new HeldKey("p", "c");
+        ExecutorService ex = Executors.newSingleThreadExecutor();
+        try {
+            Future<DataElement> removed = ex.submit(() -> b.remove(RandomOps.PASSW, key));
+            key.held.await();
+            // c goes away and comes back with an equal post while the scan is in a
+            b.removeCategory("c", RandomOps.PASSW);
+            b.createCategory("c", RandomOps.PASSW);
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "p"), "c");
+            key.release.countDown();
+            try {
+                removed.get();
+                fail("removed a post of a removed category");
+            } catch(ExecutionException e) {
+                assertTrue(e.getCause() instanceof DataNotFoundException);
+            }
+        } finally {
+            ex.shutdown();
+        }
+        assertEquals(2, b.getPostCount());
+        int posts = 0;
+        for(Iterator<DataElement> it = b.getIterator(RandomOps.PASSW); it.hasNext(); it.next()) posts++;
+        assertEquals(2, posts);
+    }
+
+    public void testGetSkipsCategoryRemovedDuringTheScan() throws Exception {
+        ConcurrentBoard<DataElement> b = twoCategories();
+        HeldKey key = new HeldKey("p", "c");
+        ExecutorService ex = Executors.newSingleThreadExecutor();
+        try {
+            Future<DataElement> found = ex.submit(() -> b.get(RandomOps.PASSW, key));
+            key.held.await();
+            b.removeCategory("c", RandomOps.PASSW);
+            key.release.countDown();
+            try {
+                found.get();
+                fail("found a post of a removed category");
+            } catch(ExecutionException e) {
+                assertTrue(e.getCause() instanceof DataNotFoundException);
+            }
+        } finally {
+            ex.shutdown();
+        }
+    }
+
+    public void testConcurrentWritersKeepTheCounts() throws Exception {
+        ConcurrentBoard<DataElement> b = new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        String[] categories = { "c0", "c1", "c2" };
+        for(String c : categories) {
+            b.createCategory(c, RandomOps.PASSW);
+            for(int f = 0; f < 8; f++) b.addFriend(c, RandomOps.PASSW, "f" + f);
+        }
+        ExecutorService ex = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<Future<?>>();
+            for(int w = 0; w < 4; w++) {
+                int writer = w;
+                writers.add(ex.submit(() -> {
+                    Random r = new Random(writer);
+                    for(int i = 0; i < 3000; i++) {
+                        try {
+                            switch(r.nextInt(4)) {
+                            case 0:
+                                b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "w" + writer + "p" + i),
+                                    categories[r.nextInt(categories.length)]);
+                                break;
+                            case 1:
+                                b.remove(RandomOps.PASSW, 1 + r.nextInt(2000));
+                                break;
+                            default:
+                                b.insertLike("f" + r.nextInt(8), 1 + r.nextInt(2000));
+                            }
+                        } catch(DataNotFoundException | DuplicateDataException e) {
+                            // a post removed or liked by another writer
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> f : writers) f.get();
+        } finally {
+            ex.shutdown();
+        }
+        int posts = 0;
+        long likes = 0;
+        DataElement prev = null;
+        for(Iterator<DataElement> it = b.getIterator(RandomOps.PASSW); it.hasNext();) {
+            DataElement e = it.next();
+            assertTrue(prev == null || prev.compareTo(e) <= 0);
+            assertEquals(e.getNumlikes(), b.get(RandomOps.PASSW, e.getId()).getNumlikes());
+            prev = e;
+            posts++;
+            likes += e.getNumlikes();
+        }
+        int inCategories = 0;
+        for(String c : categories) inCategories += b.getDataCategory(RandomOps.PASSW, c).size();
+        assertTrue(posts > 0);
+        assertEquals(posts, b.getPostCount());
+        assertEquals(posts, inCategories);
+        assertEquals(likes, b.getLikeCount());
+    }
+}
@@ -0,0 +1,76 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Usernames and categories accepted and refused by the shared name pattern.
+ */
+public class DataValidatorTest extends TestCase {
+    private static final String[] VALID = { "alice", "a", "1abc", "a-b", "a_b", "_a", "Bob-2_x" };
+    private static final String[] INVALID = { "", "-a", "a b", "a.b", "a@b", "x123456789x123456789x123456789x123456789x123456789x" };
+
+    private static boolean validUser(String name) {
+        try {
+            DataValidator.validateUser(name);
+            return true;
+        } catch(InvalidDataException e) {
+            return false;
+        }
+    }
+
+    private static boolean validCategory(String name) {
+        try {
+            DataValidator.validateCategory(name);
+            return true;
+        } catch(InvalidDataException e) {
+            return false;
+        }
+    }
+
+    public void testNames() {
+        for(String n : VALID) {
+            assertTrue(n, validUser(n));
+            assertTrue(n, validCategory(n));
+        }
+        for(String n : INVALID) {
+            assertFalse(n, validUser(n));
+            assertFalse(n, validCategory(n));
+        }
+    }
+
+    public void testNull() throws Exception {
+        try {
+            DataValidator.validateUser(null);
+            fail("null accepted");
+        } catch(NullPointerException e) {
+            // expected
+        }
+    }
+
+    public void testPatternSharedByThreads() throws Exception {
+        ExecutorService ex = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> runs = new ArrayList<Future<?>>();
+            for(int w = 0; w < 4; w++) {
+                runs.add(ex.submit(() -> {
+                    for(int i = 0; i < 20000; i++) {
+                        String n = VALID[i % VALID.length], m = INVALID[i % INVALID.length];
+                        if(!validUser(n) || validUser(m)) throw new AssertionError(n + " " + m);
+                    }
+                    return null;
+                }));
+            }
+            for(Future<?> f : runs) f.get();
+        } finally {
+            ex.shutdown();
+        }
+    }
+}
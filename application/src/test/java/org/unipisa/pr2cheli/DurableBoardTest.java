@@ -0,0 +1,139 @@
+package org.unipisa.pr2cheli;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * A DurableBoard reopened on its log is the board it was.
+ */
+public class DurableBoardTest extends TestCase {
+    private Path path;
+
+    @Override
+    protected void setUp() throws IOException {
+        this.path = Files.createTempFile("board", ".log");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(this.path);
+    }
+
+    private DurableBoard<DataElement> open(SyncPolicy policy) throws Exception {
+        return new DurableBoard<DataElement>(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            RandomOps.PASSW, DataElement::new, this.path, policy);
+    }
+
+    public void testReplayRebuildsTheBoard() throws Exception {
+        for(SyncPolicy policy : SyncPolicy.values()) {
+            Files.deleteIfExists(this.path);
+            DurableBoard<DataElement> b = this.open(policy);
+            RandomOps ops = new RandomOps(policy.ordinal());
+            // refused calls are logged too and must be refused again on replay
+            for(int i = 0; i < 3000; i++) RandomOps.outcome(b, ops.next());
+            String before = RandomOps.dump(b);
+            long size = b.logSize();
+            b.close();
+            DurableBoard<DataElement> r = this.open(policy);
+            try {
+                assertEquals(policy.toString(), before, RandomOps.dump(r));
+                assertEquals(size, r.logSize());
+            } finally {
+                r.close();
+            }
+        }
+    }
+
+    public void testTornLastRecordIsLost() throws Exception {
+        DurableBoard<DataElement> b = this.open(SyncPolicy.GROUP);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.addFriend("c0", RandomOps.PASSW, "f0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "kept"), "c0");
+        String before = RandomOps.dump(b);
+        long size = b.logSize();
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "torn"), "c0");
+        b.close();
+        try(FileChannel ch = FileChannel.open(this.path, StandardOpenOption.WRITE)) {
+            ch.truncate(ch.size() - 1);
+        }
+        DurableBoard<DataElement> r = this.open(SyncPolicy.GROUP);
+        try {
+            assertEquals(before, RandomOps.dump(r));
+            assertEquals(size, r.logSize());
+        } finally {
+            r.close();
+        }
+    }
+
+    public void testWrongPasswordIsRefusedOnOpening() throws Exception {
+        DurableBoard<DataElement> b = this.open(SyncPolicy.NONE);
+        b.createCategory("a", RandomOps.PASSW);
+        b.close();
+        try {
+            new DurableBoard<DataElement>(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+                "wrong", DataElement::new, this.path, SyncPolicy.NONE);
+            fail("opened with a wrong password");
+        } catch(UnauthorizedLoginException e) {
+            // expected
+        }
+        DurableBoard<DataElement> r = this.open(SyncPolicy.NONE);
+        try {
+            assertEquals(1, r.getCategoryCount());
+            try {
+                r.createCategory("x", "wrong");
+                fail("wrong password accepted");
+            } catch(UnauthorizedLoginException e) {
+                // expected
+            }
+        } finally {
+            r.close();
+        }
+        r = this.open(SyncPolicy.NONE);
+        try {
+            assertEquals(1, r.getCategoryCount());
+        } finally {
+            r.close();
+        }
+    }
+
+    public void testCopyOfSessionTokenIsNotLogged() throws Exception {
+        DurableBoard<DataElement> b = this.open(SyncPolicy.NONE);
+        String forged = new String(b.login(RandomOps.PASSW).authorize());
+        try {
+            b.createCategory("x", forged);
+            fail("a copy of the token accepted");
+        } catch(UnauthorizedLoginException e) {
+            // expected
+        }
+        b.close();
+        DurableBoard<DataElement> r = this.open(SyncPolicy.NONE);
+        try {
+            assertEquals(0, r.getCategoryCount());
+        } finally {
+            r.close();
+        }
+    }
+
+    public void testSessionCallsAreLogged() throws Exception {
+        DurableBoard<DataElement> b = this.open(SyncPolicy.NONE);
+        Session s = b.login(RandomOps.PASSW);
+        b.createCategory("c0", s);
+        b.put(s, new DataElement(RandomOps.OWNER, "by session"), "c0");
+        String before = RandomOps.dump(b);
+        b.close();
+        DurableBoard<DataElement> r = this.open(SyncPolicy.NONE);
+        try {
+            assertEquals(before, RandomOps.dump(r));
+            assertEquals(1, r.getDataCategory(RandomOps.PASSW, "c0").size());
+        } finally {
+            r.close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.unipisa.pr2cheli;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Top-k lists and cursor pages against the prefixes and walks of the iterators, on each board.
+ */
+public class FeedsTest extends TestCase {
+
+    /**
+     * A feed read page after page.
+     */
+    private interface Pages {
+        Page<DataElement> get(Cursor cursor, int size) throws Exception;
+    }
+
+    private static List<String> render(Iterable<DataElement> l) {
+        List<String> r = new ArrayList<String>();
+        for(DataElement e : l) r.add(e.getId() + ":" + e.getNumlikes() + ":" + e.getText());
+        return r;
+    }
+
+    private static List<DataElement> drain(Iterator<DataElement> it) {
+        List<DataElement> l = new ArrayList<DataElement>();
+        while(it.hasNext()) l.add(it.next());
+        return l;
+    }
+
+    /**
+     * @return the posts of the feed after from, following the cursors through their tokens
+     */
+    private static List<DataElement> walk(Pages feed, Cursor from, int size) throws Exception {
+        List<DataElement> l = new ArrayList<DataElement>();
+        Cursor c = from;
+        do {
+            Page<DataElement> p = feed.get(c, size);
+            assertTrue(p.getItems().size() <= size);
+            assertTrue(p.getNext() == null || p.getItems().size() == size);
+            l.addAll(p.getItems());
+            c = p.getNext() == null ? null : Cursor.fromToken(p.getNext().token());
+        } while(c != null);
+        return l;
+    }
+
+    private static void assertSameAsIterators(DataBoard<DataElement> b, long seed) throws Exception {
+        RandomOps ops = new RandomOps(seed);
+        Random r = new Random(seed);
+        for(int i = 0; i < 10000; i++) {
+            RandomOps.outcome(b, ops.next());
+            if(i % 100 != 0) continue;
+            String at = b.getClass().getSimpleName() + " call " + i;
+            int k = r.nextInt(8), size = 1 + r.nextInt(5);
+            List<String> all = render(drain(b.getIterator(RandomOps.PASSW)));
+            assertEquals(at, all.subList(0, Math.min(k, all.size())), render(b.getTopK(RandomOps.PASSW, k)));
+            assertEquals(at, all, render(walk((c, s) -> b.getPage(RandomOps.PASSW, c, s), null, size)));
+            for(String f : RandomOps.FRIENDS) {
+                List<String> shared = render(drain(b.getFriendIterator(f)));
+                assertEquals(at, shared.subList(0, Math.min(k, shared.size())), render(b.getFriendTopK(f, k)));
+                assertEquals(at, shared, render(walk((c, s) -> b.getFriendPage(f, c, s), null, size)));
+            }
+            for(String cat : RandomOps.CATEGORIES) {
+                List<String> posts;
+                try {
+                    posts = render(b.getDataCategory(RandomOps.PASSW, cat));
+                } catch(DataNotFoundException e) {
+                    continue;
+                }
+                assertEquals(at, posts, render(walk((c, s) -> b.getCategoryPage(RandomOps.PASSW, cat, c, s), null, size)));
+            }
+        }
+    }
+
+    public void testBoard() throws Exception {
+        assertSameAsIterators(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 91);
+    }
+
+    public void testBoard2() throws Exception {
+        assertSameAsIterators(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 92);
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertSameAsIterators(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 93);
+    }
+
+    public void testVersionedBoard() throws Exception {
+        assertSameAsIterators(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 94);
+    }
+
+    public void testCursorSurvivesChanges() throws Exception {
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.addFriend("c0", RandomOps.PASSW, "f0");
+        b.addFriend("c0", RandomOps.PASSW, "f1");
+        for(int i = 0; i < 10; i++) b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "p" + i), "c0");
+        Page<DataElement> first = b.getPage(RandomOps.PASSW, null, 4);
+        DataElement last = first.getItems().get(3);
+        // the last post seen goes away, one further on moves ahead and one is added
+        b.remove(RandomOps.PASSW, last.getId());
+        List<DataElement> rest = drain(b.getIterator(RandomOps.PASSW));
+        b.insertLike("f0", rest.get(rest.size() - 1).getId());
+        b.insertLike("f1", rest.get(rest.size() - 1).getId());
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "q"), "c0");
+        List<DataElement> expected = new ArrayList<DataElement>();
+        for(DataElement e : drain(b.getIterator(RandomOps.PASSW))) {
+            if(e.compareTo(last) > 0) expected.add(e);
+        }
+        assertEquals(render(expected), render(walk((c, s) -> b.getPage(RandomOps.PASSW, c, s), first.getNext(), 3)));
+    }
+
+    public void testInvalidRequests() throws Exception {
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "p"), "c0");
+        try {
+            b.getTopK(RandomOps.PASSW, -1);
+            fail("negative k accepted");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+        try {
+            b.getFriendPage("f0", null, -1);
+            fail("negative page size accepted");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+        try {
+            b.getCategoryPage(RandomOps.PASSW, "nope", null, 3);
+            fail("page of a missing category");
+        } catch(DataNotFoundException e) {
+            // expected
+        }
+        try {
+            Cursor.fromToken("not a cursor");
+            fail("malformed token accepted");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+        assertTrue(b.getTopK(RandomOps.PASSW, 0).isEmpty());
+        // a token made up by a client, in a category no post was ever in, is past the end of every feed
+        String raw = "0\nnever-used-category\np";
+        Cursor ghost = Cursor.fromToken(Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8)));
+        Page<DataElement> p = b.getPage(RandomOps.PASSW, ghost, 5);
+        assertTrue(p.getItems().isEmpty());
+        assertNull(p.getNext());
+    }
+}
@@ -0,0 +1,98 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * getFriendIterator against the categories each friend was added to, kept by hand.
+ */
+public class FriendIndexTest extends TestCase {
+
+    private static void assertIndexed(DataBoard<DataElement> b, long seed) throws Exception {
+        Random r = new Random(seed);
+        // the friends of each category, as the calls that succeeded left them
+        Map<String, Set<String>> shared = new HashMap<String, Set<String>>();
+        for(int i = 0; i < 10000; i++) {
+            String c = RandomOps.CATEGORIES[r.nextInt(RandomOps.CATEGORIES.length)];
+            String f = RandomOps.FRIENDS[r.nextInt(RandomOps.FRIENDS.length)];
+            try {
+                switch(r.nextInt(8)) {
+                case 0:
+                    b.createCategory(c, RandomOps.PASSW);
+                    shared.put(c, new HashSet<String>());
+                    break;
+                case 1:
+                    if(r.nextInt(5) != 0) break;
+                    b.removeCategory(c, RandomOps.PASSW);
+                    shared.remove(c);
+                    break;
+                case 2:
+                    b.addFriend(c, RandomOps.PASSW, f);
+                    shared.get(c).add(f);
+                    break;
+                case 3:
+                    b.removeFriend(c, RandomOps.PASSW, f);
+                    shared.get(c).remove(f);
+                    break;
+                case 4:
+                    b.insertLike(f, 1 + r.nextInt(i + 1));
+                    break;
+                case 5:
+                    b.remove(RandomOps.PASSW, 1 + r.nextInt(i + 1));
+                    break;
+                default:
+                    b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "t" + i), c);
+                }
+            } catch(DataNotFoundException | DuplicateDataException e) {
+                // refused, the model does not change
+            }
+            if(i % 100 != 0) continue;
+            for(String friend : RandomOps.FRIENDS) {
+                List<DataElement> expected = new ArrayList<DataElement>();
+                for(Map.Entry<String, Set<String>> s : shared.entrySet()) {
+                    if(s.getValue().contains(friend)) expected.addAll(b.getDataCategory(RandomOps.PASSW, s.getKey()));
+                }
+                Collections.sort(expected);
+                List<DataElement> actual = new ArrayList<DataElement>();
+                for(Iterator<DataElement> it = b.getFriendIterator(friend); it.hasNext();) actual.add(it.next());
+                assertEquals(b.getClass().getSimpleName() + " call " + i + " " + friend, expected, actual);
+            }
+        }
+    }
+
+    public void testBoard() throws Exception {
+        assertIndexed(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 41);
+    }
+
+    public void testBoard2() throws Exception {
+        assertIndexed(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 42);
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertIndexed(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 43);
+    }
+
+    public void testStranger() throws Exception {
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "t"), "c0");
+        assertFalse(b.getFriendIterator("nobody").hasNext());
+        try {
+            b.getFriendIterator("not a name");
+            fail("invalid friend accepted");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+    }
+}
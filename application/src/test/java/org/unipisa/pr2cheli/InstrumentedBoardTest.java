@@ -0,0 +1,123 @@
+package org.unipisa.pr2cheli;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * InstrumentedBoard against the board it decorates, its meters and LatencyHistogram.
+ */
+public class InstrumentedBoardTest extends TestCase {
+
+    public void testSameOutcomesAsDecorated() throws Exception {
+        new RandomOps(18).assertSameOutcomes(
+            new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new InstrumentedBoard<DataElement>(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW)), 20000);
+    }
+
+    public void testCallsAndErrors() throws Exception {
+        InstrumentedBoard<DataElement> b = new InstrumentedBoard<DataElement>(
+            new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        b.createCategory("c0", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "b"), "c0");
+        try {
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+            fail("duplicate accepted");
+        } catch(DuplicateDataException e) {
+            // expected
+        }
+        try {
+            b.put("wrong", new DataElement(RandomOps.OWNER, "c"), "c0");
+            fail("wrong password accepted");
+        } catch(UnauthorizedLoginException e) {
+            // expected
+        }
+        b.get(RandomOps.PASSW, 1);
+        OperationReport put = b.getOperation("put");
+        assertEquals(4, put.getCalls());
+        assertEquals(2, put.getErrors());
+        assertEquals(Long.valueOf(1), put.getErrorsByType().get("DuplicateDataException"));
+        assertEquals(Long.valueOf(1), put.getErrorsByType().get("UnauthorizedLoginException"));
+        assertTrue(put.getP50() <= put.getP99() && put.getP99() <= put.getP999() && put.getP999() <= put.getMax());
+        assertEquals(1, b.getOperation("getById").getCalls());
+        assertEquals(0, b.getOperation("get").getCalls());
+        assertEquals(2, b.getPostCount());
+        assertEquals(1, b.getCategoryCount());
+        b.reset();
+        assertEquals(0, b.getOperation("put").getCalls());
+        assertTrue(b.getOperation("put").getErrorsByType().isEmpty());
+        assertEquals(2, b.getPostCount());
+        try {
+            b.getOperation("nope");
+            fail("report of an unknown operation");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testRegister() throws Exception {
+        InstrumentedBoard<DataElement> b = new InstrumentedBoard<DataElement>(
+            new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        b.createCategory("c0", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName n = b.register("InstrumentedBoardTest");
+        try {
+            assertEquals(1, server.getAttribute(n, "PostCount"));
+            try {
+                b.register("InstrumentedBoardTest");
+                fail("published twice with the same name");
+            } catch(JMException e) {
+                // expected
+            }
+        } finally {
+            server.unregisterMBean(n);
+        }
+    }
+
+    public void testHistogramPrecision() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.getValueAtPercentile(50));
+        Random r = new Random(18);
+        long max = 0;
+        for(int i = 0; i < 10000; i++) {
+            long v = r.nextInt(3) == 0 ? r.nextInt(32) : (long)Math.exp(r.nextDouble() * 24);
+            h.record(v);
+            max = Math.max(max, v);
+            // a value is reported within 1/32 of itself
+            long high = LatencyHistogram.highest(LatencyHistogram.bucket(v));
+            assertTrue(v + " in a bucket up to " + high, high >= v && high - v <= v / 32);
+        }
+        h.record(-5);
+        assertEquals(10001, h.getCount());
+        assertEquals(max, h.getMax());
+        assertEquals(max, h.getValueAtPercentile(100));
+        assertEquals(0, h.getValueAtPercentile(0));
+        long last = 0;
+        for(double p = 1; p <= 100; p += 1) {
+            long v = h.getValueAtPercentile(p);
+            assertTrue(v >= last);
+            last = v;
+        }
+        try {
+            h.getValueAtPercentile(101);
+            fail("percentile out of range");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+        // beyond the last bucket the exact maximum is still reported
+        h.record(100000000000L);
+        assertEquals(100000000000L, h.getValueAtPercentile(100));
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+}
@@ -0,0 +1,106 @@
+package org.unipisa.pr2cheli;
+
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+/**
+ * IntSet against a HashSet, and the interned names of DataElement.
+ */
+public class IntSetTest extends TestCase {
+
+    private static Set<Integer> elements(IntSet s) {
+        Set<Integer> l = new HashSet<Integer>();
+        for(PrimitiveIterator.OfInt it = s.iterator(); it.hasNext();) assertTrue(l.add(it.nextInt()));
+        return l;
+    }
+
+    private static void assertSame(String at, Set<Integer> expected, IntSet actual) {
+        assertEquals(at, expected.size(), actual.size());
+        assertEquals(at, expected.isEmpty(), actual.isEmpty());
+        assertEquals(at, expected, elements(actual));
+        Set<Integer> array = new HashSet<Integer>();
+        for(int x : actual.toArray()) array.add(x);
+        assertEquals(at, expected, array);
+    }
+
+    public void testSameAsHashSet() {
+        // a narrow range keeps the probe runs long, so removals shift many elements back
+        for(int range : new int[] { 16, 200, 100000 }) {
+            Random r = new Random(range);
+            Set<Integer> expected = new HashSet<Integer>();
+            IntSet actual = new IntSet();
+            for(int i = 0; i < 50000; i++) {
+                int x = r.nextInt(range);
+                String at = "range " + range + " call " + i;
+                switch(r.nextInt(3)) {
+                case 0:
+                    assertEquals(at, expected.add(x), actual.add(x));
+                    break;
+                case 1:
+                    assertEquals(at, expected.remove(x), actual.remove(x));
+                    break;
+                default:
+                    assertEquals(at, expected.contains(x), actual.contains(x));
+                }
+                if(i % 1000 == 0) assertSame(at, expected, actual);
+            }
+            assertSame("range " + range, expected, actual);
+            for(int x : new HashSet<Integer>(expected)) assertTrue(actual.remove(x));
+            assertSame("range " + range + " emptied", new HashSet<Integer>(), actual);
+        }
+    }
+
+    public void testCopyIsIndependent() {
+        IntSet a = new IntSet();
+        for(int i = 0; i < 100; i++) a.add(i);
+        IntSet b = new IntSet(a);
+        b.remove(3);
+        b.add(1000);
+        assertTrue(a.contains(3));
+        assertFalse(a.contains(1000));
+        assertEquals(100, a.size());
+        assertEquals(100, b.size());
+    }
+
+    public void testNegativeElements() {
+        IntSet s = new IntSet();
+        assertFalse(s.contains(-1));
+        assertFalse(s.remove(-1));
+        try {
+            s.add(-1);
+            fail("added a negative element");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+        assertTrue(s.isEmpty());
+        PrimitiveIterator.OfInt it = s.iterator();
+        assertFalse(it.hasNext());
+        try {
+            it.nextInt();
+            fail("next past the end");
+        } catch(NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testInternedNames() throws Exception {
+        DataElement e = new DataElement("interned-author", "t");
+        e.setCategory("interned-category");
+        assertEquals("interned-author", e.getAuthor());
+        assertEquals("interned-category", e.getCategory());
+        assertEquals(SymbolTable.USERS.intern("interned-author"), e.getAuthorId());
+        assertEquals(SymbolTable.CATEGORIES.intern("interned-category"), e.getCategoryId());
+        DataElement f = new DataElement(new String("interned-author"), "t");
+        f.setCategory(new String("interned-category"));
+        assertEquals(e.getAuthorId(), f.getAuthorId());
+        assertEquals(0, e.compareTo(f));
+        e.setCategory(null);
+        assertEquals(-1, e.getCategoryId());
+        assertNull(e.getCategory());
+    }
+}
@@ -0,0 +1,63 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * The board-wide like order of getIterator against the categories sorted by hand.
+ */
+public class LikeIndexTest extends TestCase {
+
+    private static void assertIndexed(DataBoard<DataElement> b, long seed) throws Exception {
+        RandomOps ops = new RandomOps(seed);
+        for(int i = 0; i < 10000; i++) {
+            RandomOps.outcome(b, ops.next());
+            if(i % 100 != 0) continue;
+            List<DataElement> expected = new ArrayList<DataElement>();
+            for(String c : RandomOps.CATEGORIES) {
+                try {
+                    expected.addAll(b.getDataCategory(RandomOps.PASSW, c));
+                } catch(DataNotFoundException e) {
+                    // not created yet or removed
+                }
+            }
+            Collections.sort(expected);
+            List<DataElement> actual = new ArrayList<DataElement>();
+            for(Iterator<DataElement> it = b.getIterator(RandomOps.PASSW); it.hasNext();) actual.add(it.next());
+            assertEquals(b.getClass().getSimpleName() + " call " + i, expected, actual);
+        }
+    }
+
+    public void testBoard() throws Exception {
+        assertIndexed(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 31);
+    }
+
+    public void testBoard2() throws Exception {
+        assertIndexed(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 32);
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertIndexed(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 33);
+    }
+
+    public void testIteratorHasNoRemove() throws Exception {
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "t"), "c0");
+        Iterator<DataElement> it = b.getIterator(RandomOps.PASSW);
+        it.next();
+        try {
+            it.remove();
+            fail("removed through the iterator");
+        } catch(UnsupportedOperationException e) {
+            // expected
+        }
+        assertEquals(1, b.getPostCount());
+    }
+}
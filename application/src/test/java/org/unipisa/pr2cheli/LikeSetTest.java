@@ -0,0 +1,116 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * LikeSet against a TreeSet, and the SymbolTable its ids come from.
+ */
+public class LikeSetTest extends TestCase {
+
+    private static void assertSameIds(TreeSet<Integer> expected, LikeSet actual) {
+        assertEquals(expected.size(), actual.size());
+        int i = 0;
+        for(int id : expected) assertEquals(id, actual.get(i++));
+    }
+
+    public void testSameAsTreeSet() {
+        Random r = new Random(6);
+        LikeSet s = new LikeSet();
+        TreeSet<Integer> t = new TreeSet<Integer>();
+        for(int i = 0; i < 20000; i++) {
+            int id = r.nextInt(300);
+            if(r.nextInt(3) == 0) assertEquals(t.remove(id), s.remove(id));
+            else assertEquals(t.add(id), s.add(id));
+            assertEquals(t.contains(id), s.contains(id));
+            if(i % 500 == 0) assertSameIds(t, s);
+        }
+        assertSameIds(t, s);
+    }
+
+    public void testCopiesAreIndependent() {
+        LikeSet s = new LikeSet();
+        for(int id = 0; id < 10; id++) s.add(id);
+        LikeSet c = s.copy();
+        c.add(100);
+        s.remove(0);
+        assertTrue(c.contains(0));
+        assertFalse(s.contains(100));
+        LikeSet d = c.copy();
+        d.remove(5);
+        assertTrue(c.contains(5));
+        assertEquals(11, c.size());
+        assertEquals(9, s.size());
+        assertEquals(10, d.size());
+    }
+
+    public void testNames() throws Exception {
+        DataElement e = new DataElement("alice", "post");
+        e.addLike("bob");
+        e.addLike("carol");
+        try {
+            e.addLike("bob");
+            fail("liked twice");
+        } catch(DuplicateDataException x) {
+            // expected
+        }
+        assertEquals(2, e.getNumlikes());
+        assertTrue(e.isLikedBy("carol"));
+        assertFalse(e.isLikedBy("never-seen-before-user"));
+        assertEquals(2, e.getLikes().size());
+        assertTrue(e.getLikes().contains("bob"));
+    }
+
+    public void testSymbolTable() throws Exception {
+        SymbolTable t = new SymbolTable();
+        assertEquals(-1, t.lookup("a"));
+        int a = t.intern("a"), b = t.intern("b");
+        assertEquals(0, a);
+        assertEquals(1, b);
+        assertEquals(a, t.intern(new String("a")));
+        assertEquals(b, t.lookup("b"));
+        assertEquals("b", t.name(b));
+        assertEquals(2, t.size());
+        try {
+            t.name(2);
+            fail("name of an unassigned id");
+        } catch(IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testConcurrentInterning() throws Exception {
+        SymbolTable t = new SymbolTable();
+        ExecutorService ex = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> runs = new ArrayList<Future<int[]>>();
+            for(int w = 0; w < 4; w++) {
+                runs.add(ex.submit(() -> {
+                    int[] ids = new int[1000];
+                    for(int i = 0; i < ids.length; i++) ids[i] = t.intern("u" + i);
+                    return ids;
+                }));
+            }
+            int[] first = runs.get(0).get();
+            for(Future<int[]> f : runs) {
+                int[] ids = f.get();
+                for(int i = 0; i < ids.length; i++) {
+                    assertEquals(first[i], ids[i]);
+                    assertEquals("u" + i, t.name(ids[i]));
+                }
+            }
+        } finally {
+            ex.shutdown();
+        }
+        assertEquals(1000, t.size());
+    }
+}
@@ -0,0 +1,86 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * MergeIterator against sorting the concatenation of its sources.
+ */
+public class MergeIteratorTest extends TestCase {
+
+    private static List<Integer> drain(MergeIterator<Integer> it) {
+        List<Integer> l = new ArrayList<Integer>();
+        while(it.hasNext()) l.add(it.next());
+        return l;
+    }
+
+    public void testSameAsSortedConcatenation() {
+        Random r = new Random(8);
+        for(int run = 0; run < 200; run++) {
+            List<List<Integer>> sources = new ArrayList<List<Integer>>();
+            List<Integer> all = new ArrayList<Integer>();
+            for(int k = r.nextInt(12); k > 0; k--) {
+                List<Integer> s = new ArrayList<Integer>();
+                // empty sources and duplicates across sources included
+                for(int n = r.nextInt(20); n > 0; n--) s.add(r.nextInt(50));
+                Collections.sort(s);
+                sources.add(s);
+                all.addAll(s);
+            }
+            Collections.sort(all);
+            assertEquals(all, drain(new MergeIterator<Integer>(sources)));
+        }
+    }
+
+    public void testExhausted() {
+        List<List<Integer>> none = new ArrayList<List<Integer>>();
+        MergeIterator<Integer> it = new MergeIterator<Integer>(none);
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail("next past the end");
+        } catch(NoSuchElementException e) {
+            // expected
+        }
+    }
+
+    public void testNoRemove() {
+        List<List<Integer>> one = new ArrayList<List<Integer>>();
+        one.add(Collections.singletonList(1));
+        MergeIterator<Integer> it = new MergeIterator<Integer>(one);
+        it.next();
+        try {
+            it.remove();
+            fail("removed through the merge");
+        } catch(UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testChangedSourceFailsFast() {
+        TreeSet<Integer> a = new TreeSet<Integer>(), b = new TreeSet<Integer>();
+        for(int i = 0; i < 10; i++) {
+            a.add(2 * i);
+            b.add(2 * i + 1);
+        }
+        List<TreeSet<Integer>> sources = new ArrayList<TreeSet<Integer>>();
+        sources.add(a);
+        sources.add(b);
+        MergeIterator<Integer> it = new MergeIterator<Integer>(sources);
+        it.next();
+        a.add(100);
+        try {
+            drain(it);
+            fail("merged a changed source");
+        } catch(ConcurrentModificationException e) {
+            // expected
+        }
+    }
+}
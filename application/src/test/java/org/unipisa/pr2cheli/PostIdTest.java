@@ -0,0 +1,100 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Stable post ids and lookups by id, on every board.
+ */
+public class PostIdTest extends TestCase {
+
+    private static List<DataBoard<DataElement>> boards() throws Exception {
+        List<DataBoard<DataElement>> l = new ArrayList<DataBoard<DataElement>>();
+        l.add(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        l.add(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        l.add(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        l.add(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        for(DataBoard<DataElement> b : l) {
+            b.createCategory("c0", RandomOps.PASSW);
+            b.addFriend("c0", RandomOps.PASSW, "bob");
+        }
+        return l;
+    }
+
+    /**
+     * @return the id the board gave to the post with text in c0
+     */
+    private static long idOf(DataBoard<DataElement> b, String text) throws Exception {
+        for(DataElement e : b.getDataCategory(RandomOps.PASSW, "c0")) {
+            if(e.getText().equals(text)) return e.getId();
+        }
+        throw new AssertionError("no post " + text);
+    }
+
+    public void testIdsAreAssignedOnceAndNeverReused() throws Exception {
+        for(DataBoard<DataElement> b : boards()) {
+            String name = b.getClass().getSimpleName();
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "first"), "c0");
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "second"), "c0");
+            long first = idOf(b, "first"), second = idOf(b, "second");
+            assertTrue(name, first > 0);
+            assertTrue(name, second > first);
+            assertEquals(name, "second", b.remove(RandomOps.PASSW, second).getText());
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "third"), "c0");
+            assertTrue(name, idOf(b, "third") > second);
+            try {
+                b.get(RandomOps.PASSW, second);
+                fail(name + " found a removed id");
+            } catch(DataNotFoundException e) {
+                // expected
+            }
+            try {
+                b.remove(RandomOps.PASSW, second);
+                fail(name + " removed a removed id");
+            } catch(DataNotFoundException e) {
+                // expected
+            }
+        }
+    }
+
+    public void testLikeKeepsTheId() throws Exception {
+        for(DataBoard<DataElement> b : boards()) {
+            String name = b.getClass().getSimpleName();
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "post"), "c0");
+            long id = idOf(b, "post");
+            b.insertLike("bob", id);
+            DataElement e = b.get(RandomOps.PASSW, id);
+            assertEquals(name, id, e.getId());
+            assertEquals(name, 1, e.getNumlikes());
+            assertEquals(name, id, idOf(b, "post"));
+        }
+    }
+
+    public void testGetReturnsACopy() throws Exception {
+        for(DataBoard<DataElement> b : boards()) {
+            String name = b.getClass().getSimpleName();
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "post"), "c0");
+            long id = idOf(b, "post");
+            b.get(RandomOps.PASSW, id).addLike("eve");
+            assertEquals(name, 0, b.get(RandomOps.PASSW, id).getNumlikes());
+            assertEquals(name, 0, ((BoardGauges)b).getLikeCount());
+        }
+    }
+
+    public void testUnknownIds() throws Exception {
+        for(DataBoard<DataElement> b : boards()) {
+            for(long id : new long[] { 0, -1, 1, Long.MAX_VALUE }) {
+                try {
+                    b.get(RandomOps.PASSW, id);
+                    fail(b.getClass().getSimpleName() + " found post " + id);
+                } catch(DataNotFoundException e) {
+                    // expected
+                }
+            }
+        }
+    }
+}
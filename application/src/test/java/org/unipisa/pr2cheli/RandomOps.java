@@ -0,0 +1,157 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Random sequences of calls to compare two implementations of DataBoard.
+ * The texts of the posts are unique: a post liked into a copy equal to another post
+ * leaves the implementations in states that differ only in the post they keep.
+ */
+class RandomOps {
+    static final String OWNER = "alice";
+    static final String PASSW = "password1";
+
+    /**
+     * A call to a board.
+     */
+    interface Op {
+        Object run(DataBoard<DataElement> board) throws Exception;
+    }
+
+    static final String[] CATEGORIES = { "c0", "c1", "c2", "c3" };
+    static final String[] FRIENDS = { "f0", "f1", "f2", "f3", "f4" };
+
+    private final Random random;
+    private int texts;
+
+    RandomOps(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Run n random calls on both boards, failing at the first call with different outcomes.
+     */
+    void assertSameOutcomes(DataBoard<DataElement> expected, DataBoard<DataElement> actual, int n) {
+        for(int i = 0; i < n; i++) {
+            Op op = this.next();
+            Assert.assertEquals("call " + i, outcome(expected, op), outcome(actual, op));
+            BoardGauges e = (BoardGauges)expected, a = (BoardGauges)actual;
+            Assert.assertEquals("posts after call " + i, e.getPostCount(), a.getPostCount());
+            Assert.assertEquals("likes after call " + i, e.getLikeCount(), a.getLikeCount());
+            Assert.assertEquals("categories after call " + i, e.getCategoryCount(), a.getCategoryCount());
+        }
+    }
+
+    /**
+     * @return a random call
+     */
+    Op next() {
+        String c = CATEGORIES[this.random.nextInt(CATEGORIES.length)];
+        String f = FRIENDS[this.random.nextInt(FRIENDS.length)];
+        long id = 1 + this.random.nextInt(400);
+        String t = "t" + this.texts++;
+        switch(this.random.nextInt(21)) {
+        case 0:
+            return b -> { b.createCategory(c, PASSW); return null; };
+        case 1:
+            if(this.random.nextInt(10) == 0) return b -> { b.removeCategory(c, PASSW); return null; };
+            return b -> b.get(PASSW, id);
+        case 2:
+            return b -> { b.addFriend(c, PASSW, f); return null; };
+        case 3:
+            return b -> { b.removeFriend(c, PASSW, f); return null; };
+        case 4:
+        case 5:
+            return b -> b.put(PASSW, new DataElement(OWNER, t), c);
+        case 6:
+            return b -> b.putAll(PASSW, c, Arrays.asList(new DataElement(OWNER, t), new DataElement(OWNER, t + "x")));
+        case 7:
+            return b -> b.remove(PASSW, id);
+        case 8:
+            return b -> b.removeAll(PASSW, Arrays.asList(id, id + 1));
+        case 9:
+        case 10:
+            return b -> { b.insertLike(f, id); return null; };
+        case 11:
+            // which like of a refused batch is reported is not specified
+            return b -> {
+                try {
+                    b.insertLikes(Arrays.asList(new Like(f, id), new Like(FRIENDS[(int)(id % 5)], id + 2)));
+                    return null;
+                } catch(DuplicateDataException | DataNotFoundException e) {
+                    return "refused";
+                }
+            };
+        case 12:
+            return b -> b.getAll(PASSW, Arrays.asList(id, id + 1));
+        case 13:
+            return b -> b.getIterator(PASSW);
+        case 14:
+            return b -> b.getFriendIterator(f);
+        case 15:
+            return b -> b.getTopK(PASSW, 5);
+        case 16:
+            return b -> b.getFriendPage(f, null, 4);
+        case 17:
+            return b -> b.getDataCategory(PASSW, c);
+        case 18:
+            return b -> b.getCategoryPage(PASSW, c, null, 3);
+        case 19:
+            return b -> b.getFriendTopK(f, 3);
+        default:
+            return b -> b.getPage(PASSW, null, 5);
+        }
+    }
+
+    /**
+     * @return the posts of board in order, with ids, categories and likes, and what each friend sees
+     */
+    static String dump(DataBoard<DataElement> board) {
+        StringBuilder s = new StringBuilder(outcome(board, b -> b.getIterator(PASSW)));
+        for(String friend : FRIENDS) s.append('\n').append(outcome(board, b -> b.getFriendIterator(friend)));
+        return s.toString();
+    }
+
+    /**
+     * @return what the call returned, or the class of what it threw
+     */
+    static String outcome(DataBoard<DataElement> board, Op op) {
+        Object r;
+        try {
+            r = op.run(board);
+        } catch(Exception e) {
+            return e.getClass().getSimpleName();
+        }
+        if(r instanceof Iterator) {
+            List<Object> l = new ArrayList<Object>();
+            for(Iterator<?> it = (Iterator<?>)r; it.hasNext();) l.add(it.next());
+            return render(l);
+        }
+        if(r instanceof Page) {
+            Page<?> p = (Page<?>)r;
+            return render(p.getItems()) + " next " + (p.getNext() == null ? null : p.getNext().token());
+        }
+        if(r instanceof List) return render((List<?>)r);
+        return render(r);
+    }
+
+    private static String render(List<?> l) {
+        StringBuilder s = new StringBuilder("[");
+        for(Object o : l) s.append(render(o)).append(", ");
+        return s.append("]").toString();
+    }
+
+    private static String render(Object o) {
+        if(!(o instanceof DataElement)) return String.valueOf(o);
+        DataElement e = (DataElement)o;
+        return e + "#" + e.getId() + "@" + e.getCategory() + "+" + e.getNumlikes();
+    }
+}
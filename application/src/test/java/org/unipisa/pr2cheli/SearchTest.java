@@ -0,0 +1,159 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * search and searchAsFriend against a scan of every visible post, on each board.
+ */
+public class SearchTest extends TestCase {
+    private static final String[] WORDS = { "red", "Blue", "green", "cat", "dog", "sky", "Sea", "x1" };
+    private static final String[] CATEGORIES = { "c0", "c1", "c2" };
+
+    /**
+     * @return true if every word of query is a word of the text of e, ignoring case
+     */
+    private static boolean matches(DataElement e, String query) {
+        Set<String> words = new HashSet<String>(Arrays.asList(e.getText().toLowerCase(Locale.ROOT).split("[^a-z0-9]+")));
+        for(String w : query.toLowerCase(Locale.ROOT).split("[^a-z0-9]+")) {
+            if(!w.isEmpty() && !words.contains(w)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the posts found by query, following the cursors page after page
+     */
+    private static List<String> search(DataBoard<DataElement> b, String friend, String query, int size) throws Exception {
+        List<String> l = new ArrayList<String>();
+        Cursor c = null;
+        do {
+            Page<DataElement> p = friend == null ? b.search(RandomOps.PASSW, query, c, size)
+                : b.searchAsFriend(friend, query, c, size);
+            for(DataElement e : p.getItems()) l.add(e.getId() + ":" + e.getNumlikes() + ":" + e.getText());
+            c = p.getNext();
+        } while(c != null);
+        return l;
+    }
+
+    /**
+     * @return the posts matching query, scanning what friend sees
+     */
+    private static List<String> scan(DataBoard<DataElement> b, String friend, String query) throws Exception {
+        List<DataElement> found = new ArrayList<DataElement>();
+        Iterator<DataElement> it = friend == null ? b.getIterator(RandomOps.PASSW) : b.getFriendIterator(friend);
+        while(it.hasNext()) {
+            DataElement e = it.next();
+            if(matches(e, query)) found.add(e);
+        }
+        Collections.sort(found);
+        List<String> l = new ArrayList<String>();
+        for(DataElement e : found) l.add(e.getId() + ":" + e.getNumlikes() + ":" + e.getText());
+        return l;
+    }
+
+    private static void assertSameAsScan(DataBoard<DataElement> b) throws Exception {
+        Random r = new Random(7);
+        for(String c : CATEGORIES) b.createCategory(c, RandomOps.PASSW);
+        for(int i = 0; i < 10000; i++) {
+            String c = CATEGORIES[r.nextInt(CATEGORIES.length)], f = "f" + r.nextInt(3);
+            String text = WORDS[r.nextInt(WORDS.length)]
+                + (r.nextBoolean() ? " " + WORDS[r.nextInt(WORDS.length)] + ", " + WORDS[r.nextInt(WORDS.length)] + "!" : "")
+                + " n" + i;
+            long id = 1 + r.nextInt(i + 1);
+            try {
+                switch(r.nextInt(9)) {
+                case 0:
+                case 1:
+                    b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, text), c);
+                    break;
+                case 2:
+                    b.putAll(RandomOps.PASSW, c, Arrays.asList(new DataElement(RandomOps.OWNER, text),
+                        new DataElement(RandomOps.OWNER, text + "b")));
+                    break;
+                case 3:
+                    b.remove(RandomOps.PASSW, id);
+                    break;
+                case 4:
+                    b.insertLike(f, id);
+                    break;
+                case 5:
+                    b.addFriend(c, RandomOps.PASSW, f);
+                    break;
+                case 6:
+                    b.removeFriend(c, RandomOps.PASSW, f);
+                    break;
+                case 7:
+                    if(r.nextInt(50) == 0) {
+                        b.removeCategory(c, RandomOps.PASSW);
+                        b.createCategory(c, RandomOps.PASSW);
+                    }
+                    break;
+                default:
+                    b.removeAll(RandomOps.PASSW, Arrays.asList(id, id + 1));
+                }
+            } catch(DataNotFoundException | DuplicateDataException e) {
+                // a post already removed or liked
+            }
+            if(i % 50 != 0) continue;
+            String query = WORDS[r.nextInt(WORDS.length)].toUpperCase(Locale.ROOT)
+                + (r.nextBoolean() ? " -" + WORDS[r.nextInt(WORDS.length)] : "");
+            String friend = r.nextBoolean() ? null : "f" + r.nextInt(4);
+            assertEquals(b.getClass().getSimpleName() + " call " + i + " '" + query + "' as " + friend,
+                scan(b, friend, query), search(b, friend, query, 1 + r.nextInt(5)));
+        }
+    }
+
+    public void testBoard() throws Exception {
+        assertSameAsScan(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testBoard2() throws Exception {
+        assertSameAsScan(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertSameAsScan(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testVersionedBoard() throws Exception {
+        assertSameAsScan(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testInvalidSearches() throws Exception {
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        b.createCategory("c0", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "red sky"), "c0");
+        try {
+            b.search(RandomOps.PASSW, " ,; ", null, 3);
+            fail("query without words accepted");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+        try {
+            b.search("wrong", "red", null, 3);
+            fail("wrong password accepted");
+        } catch(UnauthorizedLoginException e) {
+            // expected
+        }
+        try {
+            b.searchAsFriend("f0", "red", null, -1);
+            fail("negative page size accepted");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+        assertEquals(1, b.search(RandomOps.PASSW, "RED", null, 2).getItems().size());
+        assertTrue(b.searchAsFriend("f0", "red", null, 2).getItems().isEmpty());
+    }
+}
@@ -0,0 +1,95 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Sessions in place of the password, their expiry and revocation, on each board.
+ */
+public class SessionTest extends TestCase {
+
+    private static void assertRefused(String what, RandomOps.Op op, DataBoard<DataElement> b) throws Exception {
+        try {
+            op.run(b);
+            fail(b.getClass().getSimpleName() + " accepted " + what);
+        } catch(UnauthorizedLoginException e) {
+            // expected
+        }
+    }
+
+    private static void assertSessions(DataBoard<DataElement> b, DataBoard<DataElement> other) throws Exception {
+        Session s = b.login(RandomOps.PASSW);
+        assertTrue(s.isValid());
+        b.createCategory("c0", s);
+        b.addFriend("c0", s, "f0");
+        assertTrue(b.put(s, new DataElement(RandomOps.OWNER, "a"), "c0"));
+        assertEquals(2, b.putAll(s, "c0", Arrays.asList(new DataElement(RandomOps.OWNER, "b"),
+            new DataElement(RandomOps.OWNER, "c"))));
+        assertEquals("a", b.get(s, 1).getText());
+        assertEquals(3, b.getDataCategory(s, "c0").size());
+        assertEquals(3, b.getTopK(s, 5).size());
+        assertEquals("b", b.remove(s, 2).getText());
+        // the password keeps working next to the session
+        assertEquals(2, b.getDataCategory(RandomOps.PASSW, "c0").size());
+
+        // a session of another board with the same password, and a copy of the token
+        Session foreign = other.login(RandomOps.PASSW);
+        assertRefused("a session of another board", x -> x.getIterator(foreign), b);
+        String copy = new String(s.authorize());
+        assertRefused("a copy of the token", x -> x.getIterator(copy), b);
+
+        Session revoked = b.login(RandomOps.PASSW);
+        revoked.revoke();
+        assertFalse(revoked.isValid());
+        assertRefused("a revoked session", x -> x.put(revoked, new DataElement(RandomOps.OWNER, "d"), "c0"), b);
+        assertTrue(s.isValid());
+
+        Session brief = b.login(RandomOps.PASSW, 1);
+        long end = brief.getExpiry();
+        while(System.currentTimeMillis() < end + 2) Thread.sleep(1);
+        assertFalse(brief.isValid());
+        assertRefused("an expired session", x -> x.getDataCategory(brief, "c0"), b);
+        assertEquals(2, ((BoardGauges)b).getPostCount());
+
+        Session forever = b.login(RandomOps.PASSW, Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, forever.getExpiry());
+        assertTrue(forever.isValid());
+
+        assertRefused("a wrong password", x -> x.login("wrong-password"), b);
+        try {
+            b.login(RandomOps.PASSW, 0);
+            fail("a session without duration");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+    }
+
+    public void testBoard() throws Exception {
+        assertSessions(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testBoard2() throws Exception {
+        assertSessions(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertSessions(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testVersionedBoard() throws Exception {
+        assertSessions(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+            new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testTokenOfEqualPasswords() {
+        assertEquals(Session.token(RandomOps.PASSW), Session.token(new String(RandomOps.PASSW)));
+        assertFalse(Session.token(RandomOps.PASSW).equals(Session.token("password2")));
+        assertFalse(Session.token(RandomOps.PASSW).contains(RandomOps.PASSW));
+    }
+}
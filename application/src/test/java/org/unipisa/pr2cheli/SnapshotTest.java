@@ -0,0 +1,119 @@
+package org.unipisa.pr2cheli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Snapshots read back as the board they were taken of, corrupt ones are refused.
+ */
+public class SnapshotTest extends TestCase {
+    private Path path;
+
+    @Override
+    protected void setUp() throws IOException {
+        this.path = Files.createTempFile("board", ".snapshot");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(this.path);
+    }
+
+    private static void fill(DataBoard<DataElement> b, RandomOps ops, int n) {
+        for(int i = 0; i < n; i++) RandomOps.outcome(b, ops.next());
+    }
+
+    public void testRoundTrip() throws Exception {
+        RandomOps ops = new RandomOps(11);
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        fill(b, ops, 5000);
+        b.writeSnapshot(RandomOps.PASSW, this.path);
+        Board<DataElement> r = Board.loadSnapshot(this.path, RandomOps.PASSW);
+        assertEquals(RandomOps.dump(b), RandomOps.dump(r));
+        // the loaded board goes on as the original, new posts included
+        ops.assertSameOutcomes(b, r, 5000);
+    }
+
+    public void testBoard2RoundTrip() throws Exception {
+        RandomOps ops = new RandomOps(12);
+        Board2<DataElement> b = new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        fill(b, ops, 5000);
+        b.writeSnapshot(RandomOps.PASSW, this.path);
+        assertEquals(RandomOps.dump(b), RandomOps.dump(Board2.loadSnapshot(this.path, RandomOps.PASSW)));
+        assertEquals(RandomOps.dump(b), RandomOps.dump(Board.loadSnapshot(this.path, RandomOps.PASSW)));
+    }
+
+    public void testCheckpointSeesTheBoardWhenTaken() throws Exception {
+        RandomOps ops = new RandomOps(13);
+        TextArena arena = new TextArena(1024);
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW, arena);
+        fill(b, ops, 3000);
+        String taken = RandomOps.dump(b);
+        Path second = Files.createTempFile("board", ".snapshot");
+        try {
+            List<Runnable> pending = new ArrayList<Runnable>();
+            CompletableFuture<Void> f1 = b.checkpoint(RandomOps.PASSW, this.path, pending::add);
+            CompletableFuture<Void> f2 = b.checkpoint(RandomOps.PASSW, second, pending::add);
+            // the later checkpoint completes first
+            pending.get(1).run();
+            f2.get();
+            // the arena is not compacted under the other checkpoint
+            long used = arena.usedBytes();
+            for(long id = 1; id <= 5000; id++) {
+                try {
+                    b.remove(RandomOps.PASSW, id);
+                } catch(DataNotFoundException e) {
+                    // already removed
+                }
+            }
+            assertEquals(used, arena.usedBytes());
+            pending.get(0).run();
+            f1.get();
+            assertEquals(taken, RandomOps.dump(Board.loadSnapshot(this.path, RandomOps.PASSW)));
+            assertEquals(taken, RandomOps.dump(Board.loadSnapshot(second, RandomOps.PASSW)));
+        } finally {
+            Files.deleteIfExists(second);
+        }
+    }
+
+    public void testCorruptSnapshotIsRefused() throws Exception {
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        fill(b, new RandomOps(14), 1000);
+        b.writeSnapshot(RandomOps.PASSW, this.path);
+        long size = Files.size(this.path);
+        try(FileChannel ch = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer one = ByteBuffer.allocate(1);
+            ch.read(one, size / 2);
+            one.put(0, (byte)(one.get(0) ^ 1));
+            one.rewind();
+            ch.write(one, size / 2);
+        }
+        this.assertRefused();
+        try(FileChannel ch = FileChannel.open(this.path, StandardOpenOption.WRITE)) {
+            ch.truncate(size / 2);
+        }
+        this.assertRefused();
+        Files.write(this.path, new byte[] { 1, 2, 3 });
+        this.assertRefused();
+    }
+
+    private void assertRefused() throws Exception {
+        try {
+            Board.loadSnapshot(this.path, RandomOps.PASSW);
+            fail("corrupt snapshot loaded");
+        } catch(IOException e) {
+            // expected
+        }
+    }
+}
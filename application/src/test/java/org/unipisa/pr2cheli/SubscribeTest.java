@@ -0,0 +1,164 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import junit.framework.TestCase;
+
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Delivery of the changes of a board to the subscriptions of its friends, on each board.
+ */
+public class SubscribeTest extends TestCase {
+
+    /**
+     * An executor running its tasks only when asked, so that the queues fill up.
+     */
+    private static class Manual implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+        @Override
+        public void execute(Runnable r) {
+            this.tasks.add(r);
+        }
+
+        void drain() {
+            while(!this.tasks.isEmpty()) this.tasks.poll().run();
+        }
+    }
+
+    /**
+     * Collects the events delivered, rendered as type and text.
+     */
+    private static class Events implements BoardListener<DataElement> {
+        final List<String> got = new ArrayList<String>();
+
+        @Override
+        public void onEvent(BoardEvent<DataElement> event) {
+            DataElement e = event.getPost();
+            this.got.add(e == null ? event.getType().toString() : event.getType() + " " + e.getText() + "+" + e.getNumlikes());
+        }
+    }
+
+    /**
+     * @return b with the category c0 shared with f0 and f1, and c1 shared with f1 only
+     */
+    private static DataBoard<DataElement> shared(DataBoard<DataElement> b) throws Exception {
+        b.createCategory("c0", RandomOps.PASSW);
+        b.createCategory("c1", RandomOps.PASSW);
+        b.addFriend("c0", RandomOps.PASSW, "f0");
+        b.addFriend("c0", RandomOps.PASSW, "f1");
+        b.addFriend("c1", RandomOps.PASSW, "f1");
+        return b;
+    }
+
+    private static void assertDelivered(DataBoard<DataElement> b) throws Exception {
+        shared(b);
+        Manual ex = new Manual();
+        Events f0 = new Events(), f1 = new Events();
+        b.subscribe("f0", 100, ex, f0);
+        b.subscribe("f1", 100, ex, f1);
+        // the first post of a board gets id 1
+        long a = 1;
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "b"), "c1");
+        b.insertLike("f1", a);
+        b.remove(RandomOps.PASSW, a);
+        b.removeCategory("c1", RandomOps.PASSW);
+        ex.drain();
+        String name = b.getClass().getSimpleName();
+        assertEquals(name, Arrays.asList("ADDED a+0", "LIKED a+1", "REMOVED a+1"), f0.got);
+        assertEquals(name, Arrays.asList("ADDED a+0", "ADDED b+0", "LIKED a+1", "REMOVED a+1", "REMOVED b+0"), f1.got);
+    }
+
+    public void testBoard() throws Exception {
+        assertDelivered(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testBoard2() throws Exception {
+        assertDelivered(new Board2<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testConcurrentBoard() throws Exception {
+        assertDelivered(new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testVersionedBoard() throws Exception {
+        assertDelivered(new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+    }
+
+    public void testOverflow() throws Exception {
+        DataBoard<DataElement> b = shared(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        Manual ex = new Manual();
+        Events f0 = new Events();
+        Subscription s = b.subscribe("f0", 2, ex, f0);
+        for(int i = 0; i < 5; i++) b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "p" + i), "c0");
+        assertEquals(2, s.getPending());
+        assertEquals(3, s.getDropped());
+        // one run scheduled however many events were offered
+        assertEquals(1, ex.tasks.size());
+        ex.drain();
+        assertEquals(Arrays.asList("OVERFLOW", "ADDED p0+0", "ADDED p1+0"), f0.got);
+        assertEquals(0, s.getPending());
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "q"), "c0");
+        ex.drain();
+        assertEquals("ADDED q+0", f0.got.get(3));
+        assertEquals(4, f0.got.size());
+    }
+
+    public void testFailuresAndCancel() throws Exception {
+        DataBoard<DataElement> b = shared(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        Manual ex = new Manual();
+        Events f0 = new Events();
+        Subscription s = b.subscribe("f0", 10, ex, e -> {
+            if(e.getPost().getText().equals("bad")) throw new IllegalStateException();
+            f0.onEvent(e);
+        });
+        long id = 1;
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "bad"), "c0");
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "good"), "c0");
+        ex.drain();
+        assertEquals(1, s.getFailures());
+        assertEquals(Arrays.asList("ADDED good+0"), f0.got);
+        b.insertLike("f0", id);
+        s.cancel();
+        assertTrue(s.isCancelled());
+        assertEquals(0, s.getPending());
+        b.remove(RandomOps.PASSW, id);
+        ex.drain();
+        assertEquals(Arrays.asList("ADDED good+0"), f0.got);
+    }
+
+    public void testEventHoldsACopy() throws Exception {
+        DataBoard<DataElement> b = shared(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW, new TextArena(1024)));
+        Manual ex = new Manual();
+        List<BoardEvent<DataElement>> got = new ArrayList<BoardEvent<DataElement>>();
+        b.subscribe("f0", 10, ex, got::add);
+        long id = 1;
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        b.insertLike("f0", id);
+        b.remove(RandomOps.PASSW, id);
+        ex.drain();
+        assertEquals(0, got.get(0).getPost().getNumlikes());
+        assertEquals("a", got.get(0).getPost().getText());
+        assertEquals(1, got.get(1).getPost().getNumlikes());
+    }
+
+    public void testInvalidSubscriptions() throws Exception {
+        DataBoard<DataElement> b = shared(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW));
+        try {
+            b.subscribe("f0", 0, new Manual(), new Events());
+            fail("queue without room accepted");
+        } catch(InvalidDataException e) {
+            // expected
+        }
+        Subscription s = b.subscribe("f0", 10, r -> { throw new RejectedExecutionException(); }, new Events());
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "a"), "c0");
+        assertTrue(s.isCancelled());
+    }
+}
@@ -0,0 +1,77 @@
+package org.unipisa.pr2cheli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Boards keeping their texts in a TextArena against boards keeping them on the heap.
+ */
+public class TextArenaTest extends TestCase {
+    /* Pieces of text of 1 to 4 UTF-8 bytes, an unpaired surrogate and a character above U+FFFF */
+    private static final String[] PIECES = { "a", "z", "è", "€", "￮", "😀", "\ud800", " " };
+
+    public void testSameOutcomesAsHeapTexts() throws Exception {
+        for(long seed = 1; seed <= 3; seed++) {
+            // small segments, so that the arena compacts often
+            new RandomOps(seed).assertSameOutcomes(
+                new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+                new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW, new TextArena(1024)), 20000);
+        }
+    }
+
+    public void testUnicodeOrder() throws Exception {
+        Random r = new Random(13);
+        Board<DataElement> heap = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        Board<DataElement> off = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW, new TextArena(1024));
+        List<String> texts = new ArrayList<String>();
+        for(DataBoard<DataElement> b : new DataBoard[] { heap, off }) b.createCategory("c0", RandomOps.PASSW);
+        for(int i = 0; i < 2000; i++) {
+            StringBuilder t = new StringBuilder();
+            for(int n = 1 + r.nextInt(6); n > 0; n--) t.append(PIECES[r.nextInt(PIECES.length)]);
+            String text = t.toString();
+            if(texts.contains(text)) continue;
+            texts.add(text);
+            heap.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, text), "c0");
+            off.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, text), "c0");
+        }
+        Collections.sort(texts);
+        List<String> read = new ArrayList<String>();
+        for(Iterator<DataElement> it = off.getIterator(RandomOps.PASSW); it.hasNext();) read.add(it.next().getText());
+        assertEquals(texts, read);
+        assertEquals(RandomOps.dump(heap), RandomOps.dump(off));
+    }
+
+    public void testBytesAreReclaimed() throws Exception {
+        TextArena arena = new TextArena(1024);
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW, arena);
+        b.createCategory("c0", RandomOps.PASSW);
+        for(int i = 0; i < 200; i++) b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "text number " + i), "c0");
+        assertEquals(arena.liveBytes(), arena.usedBytes());
+        long full = arena.capacity();
+        assertTrue(full > 1024);
+        List<DataElement> handedOut = b.getDataCategory(RandomOps.PASSW, "c0");
+        for(DataElement e : handedOut) b.remove(RandomOps.PASSW, e.getId());
+        assertEquals(0, arena.liveBytes());
+        assertTrue(arena.usedBytes() <= 1024);
+        assertTrue(arena.capacity() < full);
+        // copies handed out before the compaction still read their texts
+        for(DataElement e : handedOut) assertTrue(e.getText().startsWith("text number "));
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "again"), "c0");
+        assertEquals("again", b.getDataCategory(RandomOps.PASSW, "c0").get(0).getText());
+    }
+
+    public void testSegmentTooSmall() {
+        try {
+            new TextArena(383);
+            fail("a segment can not hold the longest text");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+        new TextArena(384);
+    }
+}
@@ -0,0 +1,80 @@
+package org.unipisa.pr2cheli;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Traces written by RecordingBoard and replayed by TraceReplayer.
+ */
+public class TraceTest extends TestCase {
+    private static final String OTHER = "another-password";
+
+    /**
+     * @return the trace of n random calls to a Board, and of a few calls through a session
+     */
+    private static byte[] record(long seed, int n) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordingBoard<DataElement> b = new RecordingBoard<DataElement>(
+            new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), RandomOps.PASSW, out);
+        RandomOps ops = new RandomOps(seed);
+        for(int i = 0; i < n; i++) RandomOps.outcome(b, ops.next());
+        Session s = b.login(RandomOps.PASSW);
+        RandomOps.outcome(b, x -> x.put(s, new DataElement(RandomOps.OWNER, "by session"), "c0"));
+        RandomOps.outcome(b, x -> x.getTopK(s, 3));
+        b.close();
+        assertNull(b.getFailure());
+        return out.toByteArray();
+    }
+
+    private static ReplayReport replay(DataBoard<DataElement> b, String passw, byte[] trace) throws Exception {
+        return new TraceReplayer<DataElement>(b, passw, DataElement::new).replay(new ByteArrayInputStream(trace), false);
+    }
+
+    public void testRoundTrip() throws Exception {
+        byte[] trace = record(23, 5000);
+        assertFalse(new String(trace, StandardCharsets.ISO_8859_1).contains(RandomOps.PASSW));
+        for(DataBoard<DataElement> b : Arrays.<DataBoard<DataElement>>asList(
+                new Board<DataElement>(RandomOps.OWNER, OTHER),
+                new Board2<DataElement>(RandomOps.OWNER, OTHER),
+                new ConcurrentBoard<DataElement>(RandomOps.OWNER, OTHER),
+                new VersionedBoard<DataElement>(RandomOps.OWNER, OTHER))) {
+            ReplayReport r = replay(b, OTHER, trace);
+            assertEquals(b.getClass().getSimpleName() + " " + r.getDivergenceSamples(), 0, r.getDivergences());
+            assertFalse(r.isTruncated());
+            // the random calls, the login and the two calls through the session
+            assertEquals(5003, r.getCalls());
+            assertEquals(r.getRecorded().size(), r.getReplayed().size());
+            for(int i = 0; i < r.getRecorded().size(); i++) {
+                assertEquals(r.getRecorded().get(i).getName(), r.getReplayed().get(i).getName());
+                assertEquals(r.getRecorded().get(i).getCalls(), r.getReplayed().get(i).getCalls());
+            }
+        }
+    }
+
+    public void testDivergentBoardIsReported() throws Exception {
+        byte[] trace = record(24, 2000);
+        Board<DataElement> b = new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        // not in the state the recorded board started from
+        b.createCategory("c0", RandomOps.PASSW);
+        b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "extra"), "c0");
+        ReplayReport r = replay(b, RandomOps.PASSW, trace);
+        assertTrue(r.getDivergences() > 0);
+        assertFalse(r.getDivergenceSamples().isEmpty());
+        long byOperation = 0;
+        for(long n : r.getDivergencesByOperation().values()) byOperation += n;
+        assertEquals(r.getDivergences(), byOperation);
+    }
+
+    public void testTruncatedTrace() throws Exception {
+        byte[] trace = record(25, 2000);
+        byte[] cut = Arrays.copyOf(trace, trace.length / 2);
+        ReplayReport r = replay(new Board<DataElement>(RandomOps.OWNER, RandomOps.PASSW), RandomOps.PASSW, cut);
+        assertTrue(r.isTruncated());
+        assertTrue(r.getCalls() > 0 && r.getCalls() < 2003);
+        assertEquals(0, r.getDivergences());
+    }
+}
@@ -0,0 +1,81 @@
+package org.unipisa.pr2cheli;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+/**
+ * VersionedBoard against ConcurrentBoard, and its versions read while it changes.
+ */
+public class VersionedBoardTest extends TestCase {
+
+    public void testSameOutcomesAsConcurrentBoard() throws Exception {
+        for(long seed = 1; seed <= 3; seed++) {
+            new RandomOps(seed).assertSameOutcomes(
+                new ConcurrentBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW),
+                new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW), 20000);
+        }
+    }
+
+    public void testVersionIsStableUnderWriters() throws Exception {
+        VersionedBoard<DataElement> b = new VersionedBoard<DataElement>(RandomOps.OWNER, RandomOps.PASSW);
+        String[] categories = { "c0", "c1", "c2", "c3" };
+        for(String c : categories) {
+            b.createCategory(c, RandomOps.PASSW);
+            b.addFriend(c, RandomOps.PASSW, "f0");
+        }
+        for(int i = 0; i < 2000; i++) {
+            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, "p" + i), categories[i % categories.length]);
+        }
+        ExecutorService ex = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> writer = ex.submit(() -> {
+                Random r = new Random(1);
+                for(int i = 0; i < 20000; i++) {
+                    long id = 1 + r.nextInt(2000);
+                    try {
+                        if(r.nextBoolean()) b.insertLike("f" + r.nextInt(50), id);
+                        else {
+                            DataElement e = b.remove(RandomOps.PASSW, id);
+                            b.put(RandomOps.PASSW, new DataElement(RandomOps.OWNER, e.getText()), e.getCategory());
+                        }
+                    } catch(Exception e) {
+                        // a post moved or liked before
+                    }
+                }
+                return null;
+            });
+            Future<?> reader1 = ex.submit(() -> readVersions(b, writer));
+            Future<?> reader2 = ex.submit(() -> readVersions(b, writer));
+            writer.get();
+            reader1.get();
+            reader2.get();
+        } finally {
+            ex.shutdown();
+        }
+    }
+
+    /**
+     * Walk whole versions until writer is done: each must be ordered and hold as many
+     * posts as it says.
+     */
+    private static Void readVersions(VersionedBoard<DataElement> b, Future<?> writer) throws Exception {
+        do {
+            BoardVersion<DataElement> v = b.view(RandomOps.PASSW);
+            int posts = 0;
+            DataElement prev = null;
+            for(Iterator<DataElement> it = v.getIterator(); it.hasNext();) {
+                DataElement e = it.next();
+                assertTrue(prev == null || prev.compareTo(e) <= 0);
+                prev = e;
+                posts++;
+            }
+            assertEquals(v.getPostCount(), posts);
+        } while(!writer.isDone());
+        return null;
+    }
+}
@@ -0,0 +1,105 @@
+package org.unipisa.pr2cheli;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Recovery of the write-ahead log after clean closes and damaged files.
+ */
+public class WriteAheadLogTest extends TestCase {
+    private Path path;
+
+    @Override
+    protected void setUp() throws IOException {
+        this.path = Files.createTempFile("wal", ".log");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        Files.deleteIfExists(this.path);
+    }
+
+    private List<String> recover(WriteAheadLog log) throws IOException {
+        List<String> l = new ArrayList<String>();
+        log.recover(p -> l.add(new String(p, StandardCharsets.UTF_8)));
+        return l;
+    }
+
+    /**
+     * Write records r0 ... r(n-1) under policy and close the log.
+     * @return the end of each record
+     */
+    private long[] write(SyncPolicy policy, int n) throws IOException {
+        long[] ends = new long[n];
+        try(WriteAheadLog log = new WriteAheadLog(this.path, policy)) {
+            assertTrue(this.recover(log).isEmpty());
+            for(int i = 0; i < n; i++) {
+                ends[i] = log.append(("r" + i).getBytes(StandardCharsets.UTF_8));
+                log.commit(ends[i]);
+            }
+        }
+        return ends;
+    }
+
+    public void testRecoverWhatWasWritten() throws IOException {
+        for(SyncPolicy policy : SyncPolicy.values()) {
+            Files.deleteIfExists(this.path);
+            long[] ends = this.write(policy, 100);
+            try(WriteAheadLog log = new WriteAheadLog(this.path, policy)) {
+                List<String> l = this.recover(log);
+                assertEquals(policy.toString(), 100, l.size());
+                for(int i = 0; i < l.size(); i++) assertEquals("r" + i, l.get(i));
+                assertEquals(ends[99], log.size());
+            }
+        }
+    }
+
+    public void testTornTailIsCut() throws IOException {
+        long[] ends = this.write(SyncPolicy.GROUP, 10);
+        try(FileChannel ch = FileChannel.open(this.path, StandardOpenOption.WRITE)) {
+            ch.truncate(ends[9] - 1);
+        }
+        try(WriteAheadLog log = new WriteAheadLog(this.path, SyncPolicy.GROUP)) {
+            assertEquals(9, this.recover(log).size());
+            assertEquals(ends[8], log.size());
+            log.commit(log.append(new byte[] { 1 }));
+        }
+        try(WriteAheadLog log = new WriteAheadLog(this.path, SyncPolicy.GROUP)) {
+            assertEquals(10, this.recover(log).size());
+        }
+    }
+
+    public void testCorruptRecordCutsTheRest() throws IOException {
+        long[] ends = this.write(SyncPolicy.ALWAYS, 10);
+        try(FileChannel ch = FileChannel.open(this.path, StandardOpenOption.WRITE)) {
+            // the last byte of the payload of record 4
+            ch.write(ByteBuffer.wrap(new byte[] { 'X' }), ends[4] - 1);
+        }
+        try(WriteAheadLog log = new WriteAheadLog(this.path, SyncPolicy.ALWAYS)) {
+            List<String> l = this.recover(log);
+            assertEquals(4, l.size());
+            assertEquals("r3", l.get(3));
+            assertEquals(ends[3], log.size());
+        }
+        assertEquals(ends[3], Files.size(this.path));
+    }
+
+    public void testIntervalMustBePositive() throws IOException {
+        try {
+            new WriteAheadLog(this.path, SyncPolicy.INTERVAL, 0, TimeUnit.MILLISECONDS);
+            fail("zero interval accepted");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
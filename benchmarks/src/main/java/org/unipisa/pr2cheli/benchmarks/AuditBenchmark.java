@@ -0,0 +1,72 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.AuditLevel;
+import org.unipisa.pr2cheli.AuditLog;
+import org.unipisa.pr2cheli.Board;
+import org.unipisa.pr2cheli.Board2;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * What the audit log costs a writer: a post is put, liked and removed by id, with the
+ * log disabled, at INFO (put and remove recorded) and at DEBUG (the like too).
+ * The sink only counts the events, so this is the cost of recording, not of writing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AuditBenchmark {
+    private static final String AUDITED = "audited";
+
+    @Param({"Board", "Board2"})
+    public String impl;
+
+    @Param({"OFF", "INFO", "DEBUG"})
+    public String level;
+
+    private DataBoard<DataElement> board;
+    private AuditLog log;
+    private String friend;
+    private DataElement post;
+    private long nextId;
+    private final AtomicLong written = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        Boards.populate(this.board, 10, 100, 8, 0);
+        if(!this.level.equals("OFF")) {
+            this.log = new AuditLog(e -> this.written.incrementAndGet(), 1 << 16, AuditLevel.valueOf(this.level));
+            if(this.board instanceof Board) ((Board<DataElement>) this.board).setAuditLog(this.log);
+            else ((Board2<DataElement>) this.board).setAuditLog(this.log);
+        }
+        this.friend = Boards.friend(0, 0, 8);
+        this.board.createCategory(AUDITED, Boards.PASSW);
+        this.board.addFriend(AUDITED, Boards.PASSW, this.friend);
+        this.post = new DataElement(Boards.OWNER, "audited post");
+        this.board.put(Boards.PASSW, this.post, AUDITED);
+        this.nextId = this.board.getDataCategory(Boards.PASSW, AUDITED).get(0).getId();
+        this.board.remove(Boards.PASSW, this.nextId++);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(this.log != null) this.log.close();
+    }
+
+    @Benchmark
+    public DataElement putLikeRemove() throws Exception {
+        this.board.put(Boards.PASSW, this.post, AUDITED);
+        this.board.insertLike(this.friend, this.nextId);
+        return this.board.remove(Boards.PASSW, this.nextId++);
+    }
+}
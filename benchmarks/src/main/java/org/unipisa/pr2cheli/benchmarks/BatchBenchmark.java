@@ -0,0 +1,78 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.Like;
+
+/**
+ * Ingestion of a batch of posts into an empty category of a populated board:
+ * put every post, like each of them once, then remove them all, so every invocation
+ * sees the same board. The loop variants call put, insertLike and remove once per post,
+ * the batch variants call putAll, insertLikes and removeAll once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchBenchmark {
+    private static final String BATCH = "batch";
+    private static final String FRIEND = "ingestfriend";
+
+    @Param({"Board", "Board2", "ConcurrentBoard"})
+    public String impl;
+
+    @Param({"100", "1000"})
+    public int batch;
+
+    @Param({"1000"})
+    public int categories;
+
+    private DataBoard<DataElement> board;
+    private List<DataElement> posts;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        Boards.populate(this.board, this.categories, 10, 8, 0);
+        this.board.createCategory(BATCH, Boards.PASSW);
+        this.board.addFriend(BATCH, Boards.PASSW, FRIEND);
+        this.posts = new ArrayList<DataElement>(this.batch);
+        for(int i = 0; i < this.batch; i++) {
+            this.posts.add(new DataElement(Boards.OWNER, "ingested post " + i));
+        }
+    }
+
+    private List<Long> ids() throws Exception {
+        List<Long> ids = new ArrayList<Long>(this.batch);
+        for(DataElement e : this.board.getDataCategory(Boards.PASSW, BATCH)) ids.add(e.getId());
+        return ids;
+    }
+
+    @Benchmark
+    public int loop() throws Exception {
+        for(DataElement e : this.posts) this.board.put(Boards.PASSW, e, BATCH);
+        List<Long> ids = this.ids();
+        for(long id : ids) this.board.insertLike(FRIEND, id);
+        for(long id : ids) this.board.remove(Boards.PASSW, id);
+        return ids.size();
+    }
+
+    @Benchmark
+    public int batch() throws Exception {
+        this.board.putAll(Boards.PASSW, BATCH, this.posts);
+        List<Long> ids = this.ids();
+        List<Like> likes = new ArrayList<Like>(ids.size());
+        for(long id : ids) likes.add(new Like(FRIEND, id));
+        this.board.insertLikes(likes);
+        return this.board.removeAll(Boards.PASSW, ids).size();
+    }
+}
@@ -0,0 +1,27 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar.
+ * Accepts the usual JMH command line (benchmark regexp, -p, -f, -wi, -i, -t ...)
+ * and always attaches the GC profiler, so every run reports throughput,
+ * average latency and allocation rate (gc.alloc.rate.norm) side by side.
+ *
+ * Example: java -jar benchmarks/target/benchmarks.jar DataBoardBenchmark -p impl=Board2
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        Options opts = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,110 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.unipisa.pr2cheli.Board;
+import org.unipisa.pr2cheli.Board2;
+import org.unipisa.pr2cheli.ConcurrentBoard;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.InstrumentedBoard;
+import org.unipisa.pr2cheli.TextArena;
+import org.unipisa.pr2cheli.VersionedBoard;
+import org.unipisa.pr2cheli.Exceptions.*;
+
+/**
+ * Fixtures shared by the benchmarks: board factory and deterministic population.
+ *
+ * Category c is named "cat{c}" and shares it with friendsPerCategory friends taken
+ * from a pool of 2 * friendsPerCategory names, so "friend0" sees about half of the board.
+ * Every post of a category is liked by the first likesPerPost friends of that category.
+ */
+public class Boards {
+    public static final String OWNER = "owner";
+    public static final String PASSW = "benchpassw";
+
+    /**
+     * Create an empty board of the given implementation
+     * @param impl the simple class name of the implementation, "BoardArena" for a Board with a TextArena,
+     * "InstrumentedBoard" for a Board measured by an InstrumentedBoard
+     * @throws IllegalArgumentException if impl is unknown
+     */
+    public static DataBoard<DataElement> create(String impl) throws InvalidDataException {
+        if(impl.equals("Board")) return new Board<DataElement>(OWNER, PASSW);
+        if(impl.equals("BoardArena")) return new Board<DataElement>(OWNER, PASSW, new TextArena());
+        if(impl.equals("Board2")) return new Board2<DataElement>(OWNER, PASSW);
+        if(impl.equals("ConcurrentBoard")) return new ConcurrentBoard<DataElement>(OWNER, PASSW);
+        if(impl.equals("VersionedBoard")) return new VersionedBoard<DataElement>(OWNER, PASSW);
+        if(impl.equals("InstrumentedBoard")) return new InstrumentedBoard<DataElement>(new Board<DataElement>(OWNER, PASSW));
+        if(impl.equals("SynchronizedBoard")) return new SynchronizedBoard<DataElement>(new Board<DataElement>(OWNER, PASSW));
+        throw new IllegalArgumentException("unknown board implementation: " + impl);
+    }
+
+    public static String category(int c) {
+        return "cat" + c;
+    }
+
+    /**
+     * @return the j-th friend of category c; indexes past friendsPerCategory are extra likers
+     */
+    public static String friend(int c, int j, int friendsPerCategory) {
+        if(j >= friendsPerCategory) return "extra" + (j - friendsPerCategory);
+        return "friend" + ((c * friendsPerCategory + j) % (2 * friendsPerCategory));
+    }
+
+    public static String text(int c, int p) {
+        return "post " + p + " in category " + c;
+    }
+
+    /**
+     * Fill a board with categories, friends, posts and likes.
+     * @return the stored posts, usable as handles for get/remove/insertLike
+     */
+    public static DataElement[] populate(DataBoard<DataElement> board, int categories,
+            int postsPerCategory, int friendsPerCategory, int likesPerPost) throws Exception {
+        if(likesPerPost > friendsPerCategory)
+            throw new IllegalArgumentException("likesPerPost must not exceed friendsPerCategory");
+        DataElement[] live = new DataElement[categories * postsPerCategory];
+        int i = 0;
+        for(int c = 0; c < categories; c++) {
+            String cat = category(c);
+            board.createCategory(cat, PASSW);
+            for(int j = 0; j < friendsPerCategory; j++) {
+                board.addFriend(cat, PASSW, friend(c, j, friendsPerCategory));
+            }
+            for(int p = 0; p < postsPerCategory; p++) {
+                board.put(PASSW, new DataElement(OWNER, text(c, p)), cat);
+            }
+            for(DataElement e : board.getDataCategory(PASSW, cat)) {
+                DataElement x = e;
+                for(int j = 0; j < likesPerPost; j++) {
+                    String f = friend(c, j, friendsPerCategory);
+                    board.insertLike(f, x);
+                    x = x.clone();
+                    x.addLike(f);
+                }
+            }
+            for(DataElement e : board.getDataCategory(PASSW, cat)) {
+                live[i++] = e;
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Drop everything written to System.out: Board2 logs on put and insertLike,
+     * and console I/O would dominate every measurement.
+     */
+    public static void silenceStdout() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+}
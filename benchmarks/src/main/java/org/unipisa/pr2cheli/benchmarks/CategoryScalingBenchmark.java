@@ -0,0 +1,68 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * Operations that look a category up by name, as the number of categories grows.
+ * The other categories hold a single post each, so the lookup dominates. The category used is
+ * an empty one created last, the worst case for a board that scans its categories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CategoryScalingBenchmark {
+    private static final String SCALING = "scaling";
+
+    @Param({"Board", "Board2"})
+    public String impl;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int categories;
+
+    private DataBoard<DataElement> board;
+    private DataElement post;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        Boards.populate(this.board, this.categories - 1, 1, 2, 0);
+        this.board.createCategory(SCALING, Boards.PASSW);
+        this.post = new DataElement(Boards.OWNER, "scaling post");
+        this.board.put(Boards.PASSW, this.post, SCALING);
+        this.nextId = this.board.getDataCategory(Boards.PASSW, SCALING).get(0).getId();
+        this.board.remove(Boards.PASSW, this.nextId++);
+    }
+
+    @Benchmark
+    public Object getDataCategory() throws Exception {
+        return this.board.getDataCategory(Boards.PASSW, SCALING);
+    }
+
+    @Benchmark
+    public DataElement putAndRemove() throws Exception {
+        this.board.put(Boards.PASSW, this.post, SCALING);
+        return this.board.remove(Boards.PASSW, this.nextId++);
+    }
+
+    @Benchmark
+    public void addAndRemoveFriend() throws Exception {
+        this.board.addFriend(SCALING, Boards.PASSW, "scalingfriend");
+        this.board.removeFriend(SCALING, Boards.PASSW, "scalingfriend");
+    }
+
+    @Benchmark
+    public void createAndRemoveCategory() throws Exception {
+        this.board.createCategory("scalingcategory", Boards.PASSW);
+        this.board.removeCategory("scalingcategory", Boards.PASSW);
+    }
+}
@@ -0,0 +1,99 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.Changes;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.Subscription;
+
+/**
+ * Cost of the change feed for the writer and for the friend.
+ * putRemove adds a post to a category shared with a friend and removes it by id, with
+ * no subscription, with a subscription delivered on its own thread, and with a stalled
+ * one whose executor never runs, so its queue is full and every event is dropped.
+ * poll is what the friend pays without a subscription to find the same post: a full
+ * getFriendIterator over every post it can see. sync is putRemove with the friend asking
+ * for the changes since its last version after the put and after the remove.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ChangeFeedBenchmark {
+    private static final String FEED = "feed";
+
+    @Param({"Board", "ConcurrentBoard"})
+    public String impl;
+
+    @Param({"none", "delivered", "stalled"})
+    public String subscriber;
+
+    private DataBoard<DataElement> board;
+    private String friend;
+    private DataElement post;
+    private long nextId;
+    private long version;
+    private ExecutorService executor;
+    private Subscription subscription;
+    private final AtomicLong delivered = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        Boards.populate(this.board, 1000, 10, 8, 0);
+        // sees half of the categories
+        this.friend = Boards.friend(0, 0, 8);
+        this.board.createCategory(FEED, Boards.PASSW);
+        this.board.addFriend(FEED, Boards.PASSW, this.friend);
+        this.post = new DataElement(Boards.OWNER, "fresh post");
+        this.board.put(Boards.PASSW, this.post, FEED);
+        this.nextId = this.board.getDataCategory(Boards.PASSW, FEED).get(0).getId();
+        this.board.remove(Boards.PASSW, this.nextId++);
+        this.version = this.board.getFriendChangesSince(this.friend, 0).getVersion();
+        if(this.subscriber.equals("delivered")) {
+            this.executor = Executors.newSingleThreadExecutor();
+            this.subscription = this.board.subscribe(this.friend, 1024, this.executor, e -> this.delivered.incrementAndGet());
+        } else if(this.subscriber.equals("stalled")) {
+            this.subscription = this.board.subscribe(this.friend, 1024, r -> {}, e -> {});
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(this.subscription != null) this.subscription.cancel();
+        if(this.executor != null) this.executor.shutdownNow();
+    }
+
+    @Benchmark
+    public DataElement putRemove() throws Exception {
+        this.board.put(Boards.PASSW, this.post, FEED);
+        return this.board.remove(Boards.PASSW, this.nextId++);
+    }
+
+    @Benchmark
+    public int poll() throws Exception {
+        int n = 0;
+        for(Iterator<DataElement> it = this.board.getFriendIterator(this.friend); it.hasNext(); it.next()) n++;
+        return n;
+    }
+
+    @Benchmark
+    public long sync() throws Exception {
+        this.board.put(Boards.PASSW, this.post, FEED);
+        Changes<DataElement> c = this.board.getFriendChangesSince(this.friend, this.version);
+        this.board.remove(Boards.PASSW, this.nextId++);
+        c = this.board.getFriendChangesSince(this.friend, c.getVersion());
+        this.version = c.getVersion();
+        return c.getRemoved().get(0);
+    }
+}
@@ -0,0 +1,82 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * One board shared by all the benchmark threads.
+ * Each thread writes to its own category and reads all of them, so ConcurrentBoard
+ * should scale with the thread count while SynchronizedBoard stays flat.
+ * VersionedBoard serializes the writers but its reads take no lock, feedPage included.
+ * Run it through ScalingMain to get the 1..N threads table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentBoardBenchmark {
+    @Param({"ConcurrentBoard", "VersionedBoard", "SynchronizedBoard"})
+    public String impl;
+
+    @Param({"64"})
+    public int categories;
+
+    @Param({"100"})
+    public int postsPerCategory;
+
+    private DataBoard<DataElement> board;
+    private DataElement[] live;
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Worker {
+        String category;
+        DataElement fresh;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void setup(ConcurrentBoardBenchmark b) throws Exception {
+            int id = b.threads.getAndIncrement();
+            this.category = Boards.category(id % b.categories);
+            this.fresh = new DataElement(Boards.OWNER, "post written by thread " + id);
+            this.cursor = id * 7919;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        this.live = Boards.populate(this.board, this.categories, this.postsPerCategory, 8, 0);
+    }
+
+    @Benchmark
+    public DataElement putAndRemove(Worker w) throws Exception {
+        this.board.put(Boards.PASSW, w.fresh, w.category);
+        return this.board.remove(Boards.PASSW, w.fresh);
+    }
+
+    @Benchmark
+    public Object getDataCategory(Worker w) throws Exception {
+        w.cursor = (w.cursor + 1) % this.categories;
+        return this.board.getDataCategory(Boards.PASSW, Boards.category(w.cursor));
+    }
+
+    @Benchmark
+    public DataElement get(Worker w) throws Exception {
+        w.cursor = (w.cursor + 1) % this.live.length;
+        return this.board.get(Boards.PASSW, this.live[w.cursor]);
+    }
+
+    @Benchmark
+    public Object feedPage() throws Exception {
+        return this.board.getPage(Boards.PASSW, null, 20);
+    }
+}
@@ -0,0 +1,137 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.unipisa.pr2cheli.Cursor;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * Every DataBoard operation on a populated board, for each implementation.
+ * Mutations that would change the board shape are measured as a do/undo pair
+ * (put + remove, createCategory + removeCategory, addFriend + removeFriend) so that
+ * every invocation sees the same board; insertLike has its own state in LikeBenchmark.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataBoardBenchmark {
+    @Param({"Board", "Board2"})
+    public String impl;
+
+    @Param({"10", "1000"})
+    public int categories;
+
+    @Param({"10", "100"})
+    public int postsPerCategory;
+
+    @Param({"8"})
+    public int friendsPerCategory;
+
+    @Param({"0", "4"})
+    public int likesPerPost;
+
+    private DataBoard<DataElement> board;
+    private DataElement[] live;
+    private DataElement fresh;
+    private int cursor;
+    private int catCursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        this.live = Boards.populate(this.board, this.categories, this.postsPerCategory,
+            this.friendsPerCategory, this.likesPerPost);
+        this.fresh = new DataElement(Boards.OWNER, "a post that is not on the board yet");
+    }
+
+    private DataElement nextPost() {
+        if(++this.cursor == this.live.length) this.cursor = 0;
+        return this.live[this.cursor];
+    }
+
+    private String nextCategory() {
+        if(++this.catCursor == this.categories) this.catCursor = 0;
+        return Boards.category(this.catCursor);
+    }
+
+    @Benchmark
+    public DataElement get() throws Exception {
+        return this.board.get(Boards.PASSW, this.nextPost());
+    }
+
+    @Benchmark
+    public DataElement getById() throws Exception {
+        return this.board.get(Boards.PASSW, this.nextPost().getId());
+    }
+
+    @Benchmark
+    public DataElement putAndRemove() throws Exception {
+        this.board.put(Boards.PASSW, this.fresh, this.nextCategory());
+        return this.board.remove(Boards.PASSW, this.fresh);
+    }
+
+    @Benchmark
+    public Object getDataCategory() throws Exception {
+        return this.board.getDataCategory(Boards.PASSW, this.nextCategory());
+    }
+
+    @Benchmark
+    public void getIterator(Blackhole bh) throws Exception {
+        Iterator<DataElement> it = this.board.getIterator(Boards.PASSW);
+        while(it.hasNext()) bh.consume(it.next());
+    }
+
+    @Benchmark
+    public void getFriendIterator(Blackhole bh) throws Exception {
+        Iterator<DataElement> it = this.board.getFriendIterator("friend0");
+        while(it.hasNext()) bh.consume(it.next());
+    }
+
+    @Benchmark
+    public void getFriendIteratorFirst20(Blackhole bh) throws Exception {
+        Iterator<DataElement> it = this.board.getFriendIterator("friend0");
+        for(int i = 0; i < 20 && it.hasNext(); i++) bh.consume(it.next());
+    }
+
+    @Benchmark
+    public Object getTopK20() throws Exception {
+        return this.board.getTopK(Boards.PASSW, 20);
+    }
+
+    @Benchmark
+    public Object getFriendTopK20() throws Exception {
+        return this.board.getFriendTopK("friend0", 20);
+    }
+
+    @Benchmark
+    public Object getPage20() throws Exception {
+        return this.board.getPage(Boards.PASSW, Cursor.after(this.nextPost()), 20);
+    }
+
+    @Benchmark
+    public Object getFriendPage20() throws Exception {
+        return this.board.getFriendPage("friend0", Cursor.after(this.nextPost()), 20);
+    }
+
+    @Benchmark
+    public void createAndRemoveCategory() throws Exception {
+        this.board.createCategory("benchcategory", Boards.PASSW);
+        this.board.removeCategory("benchcategory", Boards.PASSW);
+    }
+
+    @Benchmark
+    public void addAndRemoveFriend() throws Exception {
+        String cat = this.nextCategory();
+        this.board.addFriend(cat, Boards.PASSW, "benchfriend");
+        this.board.removeFriend(cat, Boards.PASSW, "benchfriend");
+    }
+}
@@ -0,0 +1,87 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.DurableBoard;
+import org.unipisa.pr2cheli.SyncPolicy;
+
+/**
+ * Mutations on a DurableBoard over a ConcurrentBoard, for each durability mode.
+ * Every invocation is a put + remove pair, two log records, or a putAll + removeAll
+ * pair of BATCH posts in a category of the thread, also two records, counted as BATCH
+ * operations. The log is created empty in the temporary directory before every iteration
+ * and deleted after it.
+ * GROUP only differs from ALWAYS with several writers: run with -t to see it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DurableBoardBenchmark {
+    private static final int BATCH = 100;
+    private static final int WRITERS = 64;
+
+    @Param({"NONE", "INTERVAL", "GROUP", "ALWAYS"})
+    public SyncPolicy policy;
+
+    private Path path;
+    private DurableBoard<DataElement> board;
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private static final AtomicInteger NEXT = new AtomicInteger();
+        DataElement post;
+        List<DataElement> batch;
+        String category;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            int n = NEXT.getAndIncrement();
+            this.post = new DataElement(Boards.OWNER, "durable post " + n);
+            this.category = "batch" + n % WRITERS;
+            this.batch = new ArrayList<DataElement>(BATCH);
+            for(int i = 0; i < BATCH; i++) this.batch.add(new DataElement(Boards.OWNER, "durable batch " + n + " " + i));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.path = Files.createTempFile("board", ".wal");
+        this.board = new DurableBoard<DataElement>(Boards.create("ConcurrentBoard"), Boards.PASSW,
+            DataElement::new, this.path, this.policy);
+        this.board.createCategory(Boards.category(0), Boards.PASSW);
+        for(int i = 0; i < WRITERS; i++) this.board.createCategory("batch" + i, Boards.PASSW);
+    }
+
+    @TearDown(Level.Iteration)
+    public void teardown() throws Exception {
+        this.board.close();
+        Files.delete(this.path);
+    }
+
+    @Benchmark
+    public DataElement putAndRemove(Writer w) throws Exception {
+        this.board.put(Boards.PASSW, w.post, Boards.category(0));
+        return this.board.remove(Boards.PASSW, w.post);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<DataElement> putAllAndRemoveAll(Writer w) throws Exception {
+        this.board.putAll(Boards.PASSW, w.category, w.batch);
+        List<Long> ids = new ArrayList<Long>(BATCH);
+        for(DataElement e : this.board.getDataCategory(Boards.PASSW, w.category)) ids.add(e.getId());
+        return this.board.removeAll(Boards.PASSW, ids);
+    }
+}
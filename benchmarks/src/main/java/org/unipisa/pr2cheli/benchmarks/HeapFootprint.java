@@ -0,0 +1,55 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * Retained heap of a populated board, measured as the used heap after full collections,
+ * and the direct buffer memory it holds off the heap.
+ * usage: HeapFootprint [impl] [categories] [postsPerCategory] [friendsPerCategory] [likesPerPost]
+ */
+public class HeapFootprint {
+    private static long usedAfterGc(MemoryMXBean memory) throws InterruptedException {
+        long used = Long.MAX_VALUE;
+        for(int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static long directMemory() {
+        for(BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if(pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String impl = args.length > 0 ? args[0] : "Board";
+        int categories = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int postsPerCategory = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int friendsPerCategory = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int likesPerPost = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        Boards.silenceStdout();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedAfterGc(memory);
+        long directBefore = directMemory();
+        DataBoard<DataElement> board = Boards.create(impl);
+        Boards.populate(board, categories, postsPerCategory, friendsPerCategory, likesPerPost);
+        long after = usedAfterGc(memory);
+        long direct = directMemory() - directBefore;
+        long posts = (long)categories * postsPerCategory;
+        System.err.printf("%s: %d categories, %d posts, %d friends/category, %d likes/post%n",
+            impl, categories, posts, friendsPerCategory, likesPerPost);
+        System.err.printf("retained %.1f MB, %d bytes/post%n", (after - before) / 1e6, (after - before) / posts);
+        if(direct > 0) System.err.printf("off heap %.1f MB%n", direct / 1e6);
+        // keep the board reachable until measured
+        if(board.hashCode() == 42) System.err.println();
+    }
+}
@@ -0,0 +1,84 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * insertLike on a populated board.
+ * Posts are liked round robin, each round by the next friend of the category that has
+ * not liked them yet; when the friends run out a new liker is added to every category,
+ * which is amortized over a whole round. The board is rebuilt before every iteration,
+ * so the like counts only grow within one iteration.
+ * Since a like replaces the stored post, the benchmark keeps its own liked copy as the
+ * next handle: that clone is the same for every implementation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LikeBenchmark {
+    @Param({"Board", "Board2"})
+    public String impl;
+
+    @Param({"10", "1000"})
+    public int categories;
+
+    @Param({"10", "100"})
+    public int postsPerCategory;
+
+    @Param({"8"})
+    public int friendsPerCategory;
+
+    @Param({"0", "4"})
+    public int likesPerPost;
+
+    private DataBoard<DataElement> board;
+    private DataElement[] live;
+    private int post;
+    private int round;
+    private int likers;
+
+    @Setup(Level.Trial)
+    public void silence() {
+        Boards.silenceStdout();
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() throws Exception {
+        this.board = Boards.create(this.impl);
+        this.live = Boards.populate(this.board, this.categories, this.postsPerCategory,
+            this.friendsPerCategory, this.likesPerPost);
+        this.post = 0;
+        this.round = this.likesPerPost;
+        this.likers = this.friendsPerCategory;
+    }
+
+    @Benchmark
+    public DataElement insertLike() throws Exception {
+        if(this.post == this.live.length) {
+            this.post = 0;
+            this.round++;
+        }
+        if(this.round == this.likers) {
+            String extra = Boards.friend(0, this.likers, this.friendsPerCategory);
+            for(int c = 0; c < this.categories; c++) {
+                this.board.addFriend(Boards.category(c), Boards.PASSW, extra);
+            }
+            this.likers++;
+        }
+        int p = this.post++;
+        DataElement dato = this.live[p];
+        String friend = Boards.friend(p / this.postsPerCategory, this.round, this.friendsPerCategory);
+        this.board.insertLike(friend, dato);
+        DataElement next = dato.clone();
+        next.addLike(friend);
+        this.live[p] = next;
+        return next;
+    }
+}
@@ -0,0 +1,51 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * Cost of the like set of a single post as it gets popular:
+ * the clone taken by insertLike, a like by a new user on that clone, and a membership test.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LikesBenchmark {
+    @Param({"10", "1000", "20000"})
+    public int likes;
+
+    private DataElement post;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.post = new DataElement(Boards.OWNER, "a popular post");
+        for(int i = 0; i < this.likes; i++) {
+            this.post.addLike("user" + i);
+        }
+    }
+
+    @Benchmark
+    public DataElement cloneAndLike() throws Exception {
+        DataElement x = this.post.clone();
+        x.addLike("newcomer");
+        return x;
+    }
+
+    @Benchmark
+    public DataElement cloneOnly() {
+        return this.post.clone();
+    }
+
+    @Benchmark
+    public boolean isLikedBy() {
+        if(++this.cursor == this.likes) this.cursor = 0;
+        return this.post.isLikedBy("user" + this.cursor);
+    }
+}
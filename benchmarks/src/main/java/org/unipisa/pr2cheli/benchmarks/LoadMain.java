@@ -0,0 +1,296 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.unipisa.pr2cheli.ConcurrentBoard;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.LatencyHistogram;
+import org.unipisa.pr2cheli.RecordingBoard;
+import org.unipisa.pr2cheli.VersionedBoard;
+
+/**
+ * Load generator: drives a board with a mix of social operations from many threads,
+ * printing throughput and latency percentiles every interval and for the whole run,
+ * so implementations can be compared under the same workload.
+ *
+ * The board is filled as by Boards.populate, without likes. Then every thread loops on:
+ *  put     a new post in a category
+ *  like    a like to a post by one of the friends of its category
+ *  feed    the first page of the feed of a friend
+ *  friend  adds its own guest to a category, or removes it from where it added it
+ * picking the operation by the weights of mix, and posts, categories and friends by
+ * Zipfian popularity with the given exponent. The loop is closed: a thread issues the
+ * next operation when the previous one returns, so latencies do not include queueing.
+ * Likes that are refused because the friend already liked the post are counted as
+ * errors (DuplicateDataException): the hottest posts run out of new likers first.
+ * Boards that are not thread safe are wrapped in a SynchronizedBoard when threads > 1.
+ * With record=file every call, populating included, is recorded in a trace for ReplayMain;
+ * the recorder sits under the SynchronizedBoard, so the trace has the order the calls ran in.
+ *
+ * Arguments are key=value, all optional:
+ *  impl=Board threads=1 duration=30 warmup=5 interval=5 (seconds)
+ *  categories=100 posts=1000 (per category) friends=20 (per category) page=20
+ *  zipf=0.99 mix=put:10,like:40,feed:45,friend:5 seed=1 record=(none)
+ *
+ * Example: java -cp benchmarks/target/benchmarks.jar org.unipisa.pr2cheli.benchmarks.LoadMain impl=ConcurrentBoard threads=4
+ */
+public class LoadMain {
+    private static final String[] OPS = {"put", "like", "feed", "friend"};
+    private static final int PUT = 0;
+    private static final int LIKE = 1;
+    private static final int FEED = 2;
+    private static final int FRIEND = 3;
+
+    /**
+     * The latencies and errors of each operation over an interval or over the run.
+     */
+    private static class Window {
+        final LatencyHistogram[] latencies = new LatencyHistogram[OPS.length];
+        final ArrayList<ConcurrentHashMap<String, LongAdder>> errors = new ArrayList<ConcurrentHashMap<String, LongAdder>>(OPS.length);
+
+        Window() {
+            for(int i = 0; i < OPS.length; i++) {
+                this.latencies[i] = new LatencyHistogram();
+                this.errors.add(new ConcurrentHashMap<String, LongAdder>());
+            }
+        }
+
+        void record(int op, long nanos, Exception error) {
+            this.latencies[op].record(nanos);
+            if(error != null) this.errors.get(op).computeIfAbsent(error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+        }
+
+        long errors(int op) {
+            long n = 0;
+            for(LongAdder a : this.errors.get(op).values()) n += a.sum();
+            return n;
+        }
+    }
+
+    private final Map<String, String> conf;
+    private final int threads;
+    private final int categories;
+    private final int posts;
+    private final int friends;
+    private final int page;
+    private final int[] weights;
+    private final String[] names;
+    private final String[][] likers;
+    private final String[] feeders;
+    private final Zipf categoryPopularity;
+    private final Zipf postPopularity;
+    private final Zipf friendPopularity;
+    private final Zipf feederPopularity;
+    private final AtomicReference<Window> current = new AtomicReference<Window>(new Window());
+    private final Window total = new Window();
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+    private DataBoard<DataElement> board;
+    private RecordingBoard<DataElement> recording;
+
+    private LoadMain(Map<String, String> conf) {
+        this.conf = conf;
+        this.threads = this.positive("threads");
+        this.categories = this.positive("categories");
+        this.posts = this.positive("posts");
+        this.friends = this.positive("friends");
+        this.page = this.positive("page");
+        this.weights = new int[OPS.length];
+        for(String w : conf.get("mix").split(",")) {
+            String[] kv = w.split(":");
+            int op = -1;
+            for(int i = 0; i < OPS.length; i++) if(OPS[i].equals(kv[0])) op = i;
+            if(op < 0 || kv.length != 2) throw new IllegalArgumentException("mix: " + w);
+            this.weights[op] = Integer.parseInt(kv[1]);
+            if(this.weights[op] < 0) throw new IllegalArgumentException("mix: " + w);
+        }
+        int sum = 0;
+        for(int i = 0; i < OPS.length; i++) {
+            sum += this.weights[i];
+            this.weights[i] = sum;
+        }
+        if(sum == 0) throw new IllegalArgumentException("mix: no operation");
+        this.names = new String[this.categories];
+        this.likers = new String[this.categories][this.friends];
+        for(int c = 0; c < this.categories; c++) {
+            this.names[c] = Boards.category(c);
+            for(int j = 0; j < this.friends; j++) this.likers[c][j] = Boards.friend(c, j, this.friends);
+        }
+        // the pool Boards.friend draws from
+        this.feeders = new String[2 * this.friends];
+        for(int k = 0; k < this.feeders.length; k++) this.feeders[k] = Boards.friend(k / this.friends, k % this.friends, this.friends);
+        double zipf = Double.parseDouble(conf.get("zipf"));
+        long seed = Long.parseLong(conf.get("seed"));
+        this.categoryPopularity = new Zipf(this.categories, zipf, seed);
+        this.postPopularity = new Zipf(this.categories * this.posts, zipf, seed + 1);
+        this.friendPopularity = new Zipf(this.friends, zipf, seed + 2);
+        this.feederPopularity = new Zipf(this.feeders.length, zipf, seed + 3);
+    }
+
+    private int positive(String key) {
+        int n = Integer.parseInt(this.conf.get(key));
+        if(n <= 0) throw new IllegalArgumentException(key + " must be positive");
+        return n;
+    }
+
+    private void populate() throws Exception {
+        DataBoard<DataElement> created = Boards.create(this.conf.get("impl"));
+        DataBoard<DataElement> b = created;
+        if(!this.conf.get("record").isEmpty())
+            b = this.recording = new RecordingBoard<DataElement>(b, Boards.PASSW, Paths.get(this.conf.get("record")));
+        Boards.populate(b, this.categories, this.posts, this.friends, 0);
+        // likes address posts by id, populate stores them category after category from 1
+        if(!b.get(Boards.PASSW, (long)this.posts).getCategory().equals(this.names[0]))
+            throw new IllegalStateException("unexpected ids in " + this.conf.get("impl"));
+        if(this.threads > 1 && !(created instanceof ConcurrentBoard) && !(created instanceof VersionedBoard)
+            && !(created instanceof SynchronizedBoard))
+            b = new SynchronizedBoard<DataElement>(b);
+        this.board = b;
+    }
+
+    private void work(int thread) {
+        SplittableRandom random = new SplittableRandom(Long.parseLong(this.conf.get("seed")) * 31 + thread);
+        String guest = "guest" + thread;
+        String guestIn = null;
+        long puts = 0;
+        int total = this.weights[OPS.length - 1];
+        while(!this.stopped) {
+            int draw = random.nextInt(total);
+            int op = 0;
+            while(draw >= this.weights[op]) op++;
+            Exception error = null;
+            long start = System.nanoTime();
+            try {
+                if(op == PUT) {
+                    String category = this.names[this.categoryPopularity.next(random)];
+                    this.board.put(Boards.PASSW, new DataElement(Boards.OWNER, "load " + thread + " " + puts++), category);
+                } else if(op == LIKE) {
+                    int p = this.postPopularity.next(random);
+                    String friend = this.likers[p / this.posts][this.friendPopularity.next(random)];
+                    this.board.insertLike(friend, (long)p + 1);
+                } else if(op == FEED) {
+                    String friend = this.feeders[this.feederPopularity.next(random)];
+                    this.board.getFriendPage(friend, null, this.page);
+                } else if(guestIn == null) {
+                    String category = this.names[this.categoryPopularity.next(random)];
+                    this.board.addFriend(category, Boards.PASSW, guest);
+                    guestIn = category;
+                } else {
+                    this.board.removeFriend(guestIn, Boards.PASSW, guest);
+                    guestIn = null;
+                }
+            } catch(Exception e) {
+                error = e;
+            }
+            long nanos = System.nanoTime() - start;
+            this.current.get().record(op, nanos, error);
+            if(this.measuring) this.total.record(op, nanos, error);
+        }
+    }
+
+    private void run() throws Exception {
+        int duration = this.positive("duration");
+        int warmup = Integer.parseInt(this.conf.get("warmup"));
+        int interval = this.positive("interval");
+        long t0 = System.nanoTime();
+        this.populate();
+        System.out.printf("%s%s, %d threads, %d categories of %d posts, %d friends each, populated in %.1f s%n",
+            this.conf.get("impl"), this.board instanceof SynchronizedBoard ? " (synchronized)" : "", this.threads, this.categories, this.posts, this.friends,
+            (System.nanoTime() - t0) / 1e9);
+        Thread[] workers = new Thread[this.threads];
+        for(int i = 0; i < this.threads; i++) {
+            final int thread = i;
+            workers[i] = new Thread(() -> this.work(thread), "load-" + i);
+            workers[i].start();
+        }
+        Thread.sleep(warmup * 1000L);
+        this.current.set(new Window());
+        this.measuring = true;
+        long start = System.nanoTime();
+        long last = start;
+        for(int elapsed = interval; elapsed <= duration; elapsed += interval) {
+            Thread.sleep(Math.max(0, start + elapsed * 1000000000L - System.nanoTime()) / 1000000);
+            Window w = this.current.getAndSet(new Window());
+            long now = System.nanoTime();
+            System.out.println(this.intervalLine(elapsed, w, (now - last) / 1e9));
+            last = now;
+        }
+        this.measuring = false;
+        this.stopped = true;
+        for(Thread t : workers) t.join();
+        if(this.recording != null) this.recording.close();
+        this.summary((last - start) / 1e9);
+    }
+
+    private String intervalLine(int elapsed, Window w, double seconds) {
+        long ops = 0;
+        for(LatencyHistogram h : w.latencies) ops += h.getCount();
+        StringBuilder b = new StringBuilder(String.format("%5ds %10.0f ops/s", elapsed, ops / seconds));
+        for(int op = 0; op < OPS.length; op++) {
+            LatencyHistogram h = w.latencies[op];
+            if(h.getCount() == 0) continue;
+            b.append(String.format(" | %s %8.0f/s p50 %7.1f p99 %8.1f us", OPS[op], h.getCount() / seconds,
+                h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3));
+            long errors = w.errors(op);
+            if(errors > 0) b.append(String.format(" (%d err)", errors));
+        }
+        return b.toString();
+    }
+
+    private void summary(double seconds) {
+        System.out.printf("%n%-8s %12s %12s %10s %10s %10s %10s %10s%n", "op", "count", "ops/s", "p50 us", "p99 us",
+            "p999 us", "max us", "errors");
+        long all = 0;
+        for(int op = 0; op < OPS.length; op++) {
+            LatencyHistogram h = this.total.latencies[op];
+            long n = h.getCount();
+            all += n;
+            if(n == 0) continue;
+            System.out.printf("%-8s %12d %12.0f %10.1f %10.1f %10.1f %10.1f %10d%n", OPS[op], n, n / seconds,
+                h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+                h.getValueAtPercentile(99.9) / 1e3, h.getMax() / 1e3, this.total.errors(op));
+        }
+        System.out.printf("%-8s %12d %12.0f%n", "total", all, all / seconds);
+        for(int op = 0; op < OPS.length; op++) {
+            if(this.total.errors.get(op).isEmpty()) continue;
+            Map<String, Long> byType = new TreeMap<String, Long>();
+            for(Map.Entry<String, LongAdder> e : this.total.errors.get(op).entrySet()) byType.put(e.getKey(), e.getValue().sum());
+            System.out.println(OPS[op] + " errors: " + byType);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> conf = new LinkedHashMap<String, String>();
+        conf.put("impl", "Board");
+        conf.put("threads", "1");
+        conf.put("duration", "30");
+        conf.put("warmup", "5");
+        conf.put("interval", "5");
+        conf.put("categories", "100");
+        conf.put("posts", "1000");
+        conf.put("friends", "20");
+        conf.put("page", "20");
+        conf.put("zipf", "0.99");
+        conf.put("mix", "put:10,like:40,feed:45,friend:5");
+        conf.put("seed", "1");
+        conf.put("record", "");
+        for(String a : args) {
+            int eq = a.indexOf('=');
+            if(eq < 0 || !conf.containsKey(a.substring(0, eq))) {
+                System.err.println("unknown argument " + a + ", expected key=value with key in " + conf.keySet());
+                System.exit(2);
+            }
+            conf.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        new LoadMain(conf).run();
+    }
+}
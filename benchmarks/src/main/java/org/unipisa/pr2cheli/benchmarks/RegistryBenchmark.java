@@ -0,0 +1,72 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.Board;
+import org.unipisa.pr2cheli.BoardRegistry;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * Lookups of random owners among many resident boards, and a read-only operation run
+ * holding the lock of the board, in a BoardRegistry and in the baseline it replaces:
+ * one HashMap guarded by a global lock, also held while running the operation.
+ * Run with -t to see the contention on the global lock.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class RegistryBenchmark {
+    @Param({"BoardRegistry", "GlobalLock"})
+    public String impl;
+
+    @Param({"100000", "1000000"})
+    public int boards;
+
+    private BoardRegistry<DataElement> registry;
+    private HashMap<String, DataBoard<DataElement>> global;
+    private String[] owners;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.owners = new String[this.boards];
+        for(int i = 0; i < this.boards; i++) this.owners[i] = "user" + i;
+        if(this.impl.equals("BoardRegistry")) {
+            this.registry = new BoardRegistry<DataElement>(Board::new);
+            for(String o : this.owners) this.registry.create(o, Boards.PASSW);
+        } else {
+            this.global = new HashMap<String, DataBoard<DataElement>>();
+            for(String o : this.owners) this.global.put(o, new Board<DataElement>(o, Boards.PASSW));
+        }
+    }
+
+    private String randomOwner() {
+        return this.owners[ThreadLocalRandom.current().nextInt(this.owners.length)];
+    }
+
+    @Benchmark
+    public DataBoard<DataElement> lookup() throws Exception {
+        String owner = this.randomOwner();
+        if(this.registry != null) return this.registry.get(owner);
+        synchronized(this.global) {
+            return this.global.get(owner);
+        }
+    }
+
+    @Benchmark
+    public List<DataElement> withBoard() throws Exception {
+        String owner = this.randomOwner();
+        if(this.registry != null) return this.registry.withBoard(owner, b -> b.getTopK(Boards.PASSW, 10));
+        synchronized(this.global) {
+            return this.global.get(owner).getTopK(Boards.PASSW, 10);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.nio.file.Paths;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.ReplayReport;
+import org.unipisa.pr2cheli.TraceReplayer;
+
+/**
+ * Replays a trace recorded by a RecordingBoard, for instance by LoadMain record=file,
+ * on a new empty board and prints recorded and replayed latencies and the divergences.
+ * The board is created by Boards.create, so its password is Boards.PASSW.
+ *
+ * Usage: ReplayMain trace [impl] [paced]
+ *  impl   a name accepted by Boards.create, default Board
+ *  paced  true to issue the calls at the recorded pace, default false (as fast as possible)
+ *
+ * Example: java -cp benchmarks/target/benchmarks.jar org.unipisa.pr2cheli.benchmarks.ReplayMain load.trace Board2
+ */
+public class ReplayMain {
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1 || args.length > 3) {
+            System.err.println("usage: ReplayMain trace [impl] [paced]");
+            System.exit(2);
+        }
+        String impl = args.length > 1 ? args[1] : "Board";
+        boolean paced = args.length > 2 && Boolean.parseBoolean(args[2]);
+        DataBoard<DataElement> board = Boards.create(impl);
+        ReplayReport report = new TraceReplayer<DataElement>(board, Boards.PASSW, DataElement::new)
+            .replay(Paths.get(args[0]), paced);
+        System.out.println(impl + (paced ? ", paced" : ", as fast as possible"));
+        System.out.print(report);
+    }
+}
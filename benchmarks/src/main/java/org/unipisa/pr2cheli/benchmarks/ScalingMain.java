@@ -0,0 +1,42 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs ConcurrentBoardBenchmark with 1, 2, 4 ... N threads, N defaulting to the number
+ * of available processors, and prints one throughput table per benchmark.
+ *
+ * Example: java -cp benchmarks/target/benchmarks.jar org.unipisa.pr2cheli.benchmarks.ScalingMain 16
+ */
+public class ScalingMain {
+    public static void main(String[] args) throws RunnerException {
+        int max = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        List<Integer> counts = new ArrayList<Integer>();
+        for(int t = 1; t < max; t *= 2) counts.add(t);
+        counts.add(max);
+
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%-50s %8s %14s%n", "benchmark", "threads", "ops/us"));
+        for(int t : counts) {
+            Options opts = new OptionsBuilder()
+                .include(ConcurrentBoardBenchmark.class.getSimpleName())
+                .threads(t)
+                .build();
+            Collection<RunResult> results = new Runner(opts).run();
+            for(RunResult r : results) {
+                String name = r.getParams().getBenchmark() + " " + r.getParams().getParam("impl");
+                table.append(String.format("%-50s %8d %14.3f%n", name.substring(name.lastIndexOf('.') + 1), t,
+                    r.getPrimaryResult().getScore()));
+            }
+        }
+        System.out.print(table);
+    }
+}
@@ -0,0 +1,70 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.Page;
+
+/**
+ * The first page of the posts containing two words, through the text index of the board
+ * (search, searchAsFriend) and by reading the whole feed and testing every text (scan),
+ * which is what a client had to do before search.
+ * Posts are "post p in category c": "42 7" matches the posts 42 of category 7 and 7 of
+ * category 42, but its rarest word still lists about categories + postsPerCategory posts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"Board", "Board2", "ConcurrentBoard", "VersionedBoard"})
+    public String impl;
+
+    @Param({"100"})
+    public int categories;
+
+    @Param({"100"})
+    public int postsPerCategory;
+
+    private static final String QUERY = "42 7";
+    private static final int PAGE = 20;
+
+    private DataBoard<DataElement> board;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        Boards.populate(this.board, this.categories, this.postsPerCategory, 8, 1);
+    }
+
+    @Benchmark
+    public Page<DataElement> search() throws Exception {
+        return this.board.search(Boards.PASSW, QUERY, null, PAGE);
+    }
+
+    @Benchmark
+    public Page<DataElement> searchAsFriend() throws Exception {
+        return this.board.searchAsFriend("friend0", QUERY, null, PAGE);
+    }
+
+    @Benchmark
+    public List<DataElement> scan() throws Exception {
+        List<String> query = Arrays.asList(QUERY.split(" "));
+        ArrayList<DataElement> l = new ArrayList<DataElement>(PAGE);
+        for(Iterator<DataElement> it = this.board.getIterator(Boards.PASSW); it.hasNext() && l.size() < PAGE; ) {
+            DataElement e = it.next();
+            if(Arrays.asList(e.getText().split(" ")).containsAll(query)) l.add(e);
+        }
+        return l;
+    }
+}
@@ -0,0 +1,50 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.Session;
+
+/**
+ * The cost of authorizing an owner operation, on the cheapest one: a post by id.
+ * passw passes a copy of the password, as a request would carry it, so the board
+ * validates and compares it; session passes a session opened once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionBenchmark {
+    @Param({"Board", "Board2", "ConcurrentBoard"})
+    public String impl;
+
+    private DataBoard<DataElement> board;
+    private String passw;
+    private Session session;
+    private long id;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        Boards.populate(this.board, 10, 10, 8, 0);
+        this.passw = new String(Boards.PASSW.toCharArray());
+        this.session = this.board.login(this.passw);
+        this.id = this.board.getDataCategory(this.passw, Boards.category(0)).get(0).getId();
+    }
+
+    @Benchmark
+    public DataElement passw() throws Exception {
+        return this.board.get(this.passw, this.id);
+    }
+
+    @Benchmark
+    public DataElement session() throws Exception {
+        return this.board.get(this.session, this.id);
+    }
+}
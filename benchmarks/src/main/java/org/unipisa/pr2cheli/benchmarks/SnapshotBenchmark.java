@@ -0,0 +1,89 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import org.unipisa.pr2cheli.Board;
+import org.unipisa.pr2cheli.Board2;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+
+/**
+ * Cold start of a populated board: loading a snapshot against replaying every put,
+ * and the cost of writing the snapshot. Replay only re-creates categories, friends
+ * and posts, likes would make it slower still.
+ * Each invocation is timed once, the page cache is warm after the first one.
+ * Populating Board2 through put takes minutes at a million posts, hence the long timeout.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Timeout(time = 30, timeUnit = TimeUnit.MINUTES)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+    @Param({"Board", "Board2"})
+    public String impl;
+
+    @Param({"1000"})
+    public int categories;
+
+    @Param({"100", "1000"})
+    public int postsPerCategory;
+
+    @Param({"8"})
+    public int friendsPerCategory;
+
+    @Param({"2"})
+    public int likesPerPost;
+
+    private DataBoard<DataElement> board;
+    private Path path;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Boards.silenceStdout();
+        this.board = Boards.create(this.impl);
+        Boards.populate(this.board, this.categories, this.postsPerCategory,
+            this.friendsPerCategory, this.likesPerPost);
+        this.path = Files.createTempFile("board", ".snapshot");
+        this.writeSnapshot();
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws Exception {
+        Files.delete(this.path);
+    }
+
+    @Benchmark
+    public void writeSnapshot() throws Exception {
+        if(this.board instanceof Board) ((Board<DataElement>)this.board).writeSnapshot(Boards.PASSW, this.path);
+        else ((Board2<DataElement>)this.board).writeSnapshot(Boards.PASSW, this.path);
+    }
+
+    @Benchmark
+    public Object loadSnapshot() throws Exception {
+        if(this.impl.equals("Board")) return Board.loadSnapshot(this.path, Boards.PASSW);
+        return Board2.loadSnapshot(this.path, Boards.PASSW);
+    }
+
+    @Benchmark
+    public Object replayPuts() throws Exception {
+        DataBoard<DataElement> b = Boards.create(this.impl);
+        for(int c = 0; c < this.categories; c++) {
+            String cat = Boards.category(c);
+            b.createCategory(cat, Boards.PASSW);
+            for(int j = 0; j < this.friendsPerCategory; j++) {
+                b.addFriend(cat, Boards.PASSW, Boards.friend(c, j, this.friendsPerCategory));
+            }
+            for(int p = 0; p < this.postsPerCategory; p++) {
+                b.put(Boards.PASSW, new DataElement(Boards.OWNER, Boards.text(c, p)), cat);
+            }
+        }
+        return b;
+    }
+}
@@ -0,0 +1,196 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.unipisa.pr2cheli.BoardListener;
+import org.unipisa.pr2cheli.Changes;
+import org.unipisa.pr2cheli.Cursor;
+import org.unipisa.pr2cheli.DataBoard;
+import org.unipisa.pr2cheli.DataElement;
+import org.unipisa.pr2cheli.Exceptions.*;
+import org.unipisa.pr2cheli.Like;
+import org.unipisa.pr2cheli.Page;
+import org.unipisa.pr2cheli.Session;
+import org.unipisa.pr2cheli.Subscription;
+
+/**
+ * A board serialized on a single lock: the baseline ConcurrentBoard is measured against.
+ */
+public class SynchronizedBoard<E extends DataElement> implements DataBoard<E> {
+    private final DataBoard<E> board;
+
+    public SynchronizedBoard(DataBoard<E> board) {
+        this.board = board;
+    }
+
+    @Override
+    public synchronized void createCategory(String category, String passw)
+    throws DuplicateDataException, InvalidDataException, UnauthorizedLoginException {
+        this.board.createCategory(category, passw);
+    }
+
+    @Override
+    public synchronized void removeCategory(String category, String passw)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.board.removeCategory(category, passw);
+    }
+
+    @Override
+    public synchronized void addFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        this.board.addFriend(category, passw, friend);
+    }
+
+    @Override
+    public synchronized void removeFriend(String category, String passw, String friend)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        this.board.removeFriend(category, passw, friend);
+    }
+
+    @Override
+    public synchronized boolean put(String passw, E dato, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        return this.board.put(passw, dato, category);
+    }
+
+    @Override
+    public synchronized int putAll(String passw, String category, Collection<? extends E> data)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException, DuplicateDataException {
+        return this.board.putAll(passw, category, data);
+    }
+
+    @Override
+    public synchronized E get(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.get(passw, dato);
+    }
+
+    @Override
+    public synchronized E remove(String passw, E dato)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.remove(passw, dato);
+    }
+
+    @Override
+    public synchronized E get(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.get(passw, id);
+    }
+
+    @Override
+    public synchronized E remove(String passw, long id)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.remove(passw, id);
+    }
+
+    @Override
+    public synchronized List<E> getAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.getAll(passw, ids);
+    }
+
+    @Override
+    public synchronized List<E> removeAll(String passw, Collection<Long> ids)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.removeAll(passw, ids);
+    }
+
+    @Override
+    public synchronized List<E> getDataCategory(String passw, String category)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.getDataCategory(passw, category);
+    }
+
+    @Override
+    public synchronized void insertLike(String friend, E dato)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        this.board.insertLike(friend, dato);
+    }
+
+    @Override
+    public synchronized void insertLike(String friend, long id)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        this.board.insertLike(friend, id);
+    }
+
+    @Override
+    public synchronized void insertLikes(List<Like> likes)
+    throws DuplicateDataException, InvalidDataException, DataNotFoundException {
+        this.board.insertLikes(likes);
+    }
+
+    @Override
+    public synchronized Iterator<E> getIterator(String passw)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.getIterator(passw);
+    }
+
+    @Override
+    public synchronized Iterator<E> getFriendIterator(String friend)
+    throws InvalidDataException {
+        return this.board.getFriendIterator(friend);
+    }
+
+    @Override
+    public synchronized List<E> getTopK(String passw, int k)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.getTopK(passw, k);
+    }
+
+    @Override
+    public synchronized List<E> getFriendTopK(String friend, int k)
+    throws InvalidDataException {
+        return this.board.getFriendTopK(friend, k);
+    }
+
+    @Override
+    public synchronized Page<E> getPage(String passw, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.getPage(passw, cursor, size);
+    }
+
+    @Override
+    public synchronized Page<E> getFriendPage(String friend, Cursor cursor, int size)
+    throws InvalidDataException {
+        return this.board.getFriendPage(friend, cursor, size);
+    }
+
+    @Override
+    public synchronized Page<E> getCategoryPage(String passw, String category, Cursor cursor, int size)
+    throws DataNotFoundException, InvalidDataException, UnauthorizedLoginException {
+        return this.board.getCategoryPage(passw, category, cursor, size);
+    }
+
+    @Override
+    public synchronized Page<E> search(String passw, String query, Cursor cursor, int size)
+    throws UnauthorizedLoginException, InvalidDataException {
+        return this.board.search(passw, query, cursor, size);
+    }
+
+    @Override
+    public synchronized Page<E> searchAsFriend(String friend, String query, Cursor cursor, int size)
+    throws InvalidDataException {
+        return this.board.searchAsFriend(friend, query, cursor, size);
+    }
+
+    @Override
+    public synchronized Subscription subscribe(String friend, int capacity, Executor executor,
+            BoardListener<E> listener) throws InvalidDataException {
+        return this.board.subscribe(friend, capacity, executor, listener);
+    }
+
+    @Override
+    public synchronized Changes<E> getFriendChangesSince(String friend, long version)
+    throws InvalidDataException {
+        return this.board.getFriendChangesSince(friend, version);
+    }
+
+    @Override
+    public synchronized Session login(String passw, long ttlMillis)
+    throws InvalidDataException, UnauthorizedLoginException {
+        return this.board.login(passw, ttlMillis);
+    }
+}
@@ -0,0 +1,60 @@
+package org.unipisa.pr2cheli.benchmarks;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws items 0..n-1 with Zipfian popularity: the item of rank r is drawn with probability
+ * proportional to 1 / (r + 1)^exponent, exponent 0 is uniform. Ranks are spread over the
+ * items by a seeded permutation, so the popular items are not the first ones created.
+ * The cumulative distribution is computed once, a draw is a binary search on it.
+ * Immutable, can be shared by threads each with its own random generator.
+ */
+public class Zipf {
+    private final double[] cdf;
+    private final int[] items;
+
+    /**
+     * @param n the number of items
+     * @param exponent the skew, 0 for uniform, about 1 for social popularity
+     * @param seed the seed of the permutation
+     * @throws IllegalArgumentException if n is not positive or exponent is negative
+     */
+    public Zipf(int n, double exponent, long seed) {
+        if(n <= 0) throw new IllegalArgumentException("n " + n);
+        if(!(exponent >= 0)) throw new IllegalArgumentException("exponent " + exponent);
+        this.cdf = new double[n];
+        double sum = 0;
+        for(int r = 0; r < n; r++) {
+            sum += 1 / Math.pow(r + 1, exponent);
+            this.cdf[r] = sum;
+        }
+        for(int r = 0; r < n; r++) this.cdf[r] /= sum;
+        this.items = new int[n];
+        for(int i = 0; i < n; i++) this.items[i] = i;
+        SplittableRandom random = new SplittableRandom(seed);
+        for(int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = this.items[i];
+            this.items[i] = this.items[j];
+            this.items[j] = t;
+        }
+    }
+
+    /**
+     * @return the number of items
+     */
+    public int size() {
+        return this.items.length;
+    }
+
+    /**
+     * @param random the generator of the calling thread
+     * @return an item between 0 and size() - 1
+     */
+    public int next(SplittableRandom random) {
+        int r = Arrays.binarySearch(this.cdf, random.nextDouble());
+        if(r < 0) r = Math.min(-r - 1, this.cdf.length - 1);
+        return this.items[r];
+    }
+}